@@ -0,0 +1,20 @@
+#!/usr/bin/env bash
+#
+# Builds flink-copy and the benchmark module and runs the JMH benchmarks.
+# Results are reported in ns/op, the GC profiler adds the allocation rate
+# (gc.alloc.rate.norm is the number of bytes allocated per operation).
+#
+# Any arguments are passed on to JMH, e.g. to run a single benchmark:
+#   ./flink-benchmarks/run-benchmarks.sh MemorySegmentAccessBenchmark.getInt
+#
+set -e
+
+ROOT_DIR="$(cd "$(dirname "$0")/.." && pwd)"
+
+mvn -B -q -f "$ROOT_DIR/pom.xml" install -DskipTests
+mvn -B -q -f "$ROOT_DIR/flink-benchmarks/pom.xml" package
+
+java -jar "$ROOT_DIR/flink-benchmarks/target/benchmarks.jar" \
+  -prof gc \
+  -rf json -rff "$ROOT_DIR/flink-benchmarks/target/jmh-result.json" \
+  "$@"
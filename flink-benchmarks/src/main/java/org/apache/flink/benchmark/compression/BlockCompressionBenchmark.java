@@ -0,0 +1,91 @@
+package org.apache.flink.benchmark.compression;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.compression.BlockCompressionCodec;
+import org.apache.flink.runtime.io.compression.Lz4BlockCompressionCodec;
+import org.apache.flink.runtime.io.compression.NoCompressionCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for compressing and decompressing one block of 32 KB, the size of a spill block or a
+ * network buffer. The text input compresses well, the random input not at all, which shows the
+ * cost of a compression attempt that does not pay off. The reported time is per block.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class BlockCompressionBenchmark {
+
+  private static final int BLOCK_SIZE = 32 * 1024;
+
+  @Param({"LZ4", "NONE"})
+  public String codecName;
+
+  @Param({"TEXT", "RANDOM"})
+  public String input;
+
+  private BlockCompressionCodec codec;
+
+  private MemorySegment source;
+
+  private MemorySegment compressed;
+
+  private int compressedLength;
+
+  private MemorySegment target;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    codec = "LZ4".equals(codecName) ? new Lz4BlockCompressionCodec() : NoCompressionCodec.INSTANCE;
+
+    Random rnd = new Random(42L);
+    byte[] data = new byte[BLOCK_SIZE];
+    if ("TEXT".equals(input)) {
+      String[] words = {"the ", "quick ", "brown ", "fox ", "jumps ", "over ", "lazy ", "dog "};
+      StringBuilder bld = new StringBuilder();
+      while (bld.length() < BLOCK_SIZE) {
+        bld.append(words[rnd.nextInt(words.length)]).append(rnd.nextInt(1000)).append(' ');
+      }
+      data = bld.substring(0, BLOCK_SIZE).getBytes(StandardCharsets.US_ASCII);
+    } else {
+      rnd.nextBytes(data);
+    }
+
+    source = HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(BLOCK_SIZE, null);
+    source.put(0, data);
+    compressed =
+        HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(
+            codec.maxCompressedLength(BLOCK_SIZE), null);
+    target = HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(BLOCK_SIZE, null);
+    compressedLength = codec.compress(source, 0, BLOCK_SIZE, compressed, 0);
+  }
+
+  @Benchmark
+  public int compress() {
+    return codec.compress(source, 0, BLOCK_SIZE, compressed, 0);
+  }
+
+  @Benchmark
+  public int decompress() throws IOException {
+    return codec.decompress(compressed, 0, compressedLength, target, 0, BLOCK_SIZE);
+  }
+}
@@ -0,0 +1,112 @@
+package org.apache.flink.benchmark.memory;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.core.memory.MemorySegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the primitive accessors of the memory segments. Every invocation walks over the
+ * whole segment, the reported time is per access.
+ *
+ * <p>With {@code polluted = true}, the access loops are first run against all {@link SegmentKind
+ * segment kinds}, so that the JIT sees both segment subclasses and on-heap as well as off-heap
+ * memory at the call sites, as it happens in a job that uses both.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class MemorySegmentAccessBenchmark {
+
+  static final int SEGMENT_SIZE = 32 * 1024;
+
+  private static final int POLLUTION_ROUNDS = 20_000;
+
+  @Param({"HEAP", "HYBRID_HEAP", "HYBRID_OFF_HEAP"})
+  public SegmentKind kind;
+
+  @Param({"false", "true"})
+  public boolean polluted;
+
+  private MemorySegment segment;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    if (polluted) {
+      for (SegmentKind other : SegmentKind.values()) {
+        MemorySegment seg = other.allocateRandom(SEGMENT_SIZE, 1L);
+        for (int i = 0; i < POLLUTION_ROUNDS; i++) {
+          readInts(seg);
+          writeLongs(seg);
+          readLongsBigEndian(seg);
+        }
+        seg.free();
+      }
+    }
+    segment = kind.allocateRandom(SEGMENT_SIZE, 42L);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    segment.free();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SEGMENT_SIZE / 4)
+  public int getInt() {
+    return readInts(segment);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SEGMENT_SIZE / 8)
+  public void putLong() {
+    writeLongs(segment);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SEGMENT_SIZE / 8)
+  public long getLongBigEndian() {
+    return readLongsBigEndian(segment);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Access loops, shared by the pollution phase and the benchmarks
+  // ------------------------------------------------------------------------
+
+  static int readInts(MemorySegment segment) {
+    int sum = 0;
+    for (int i = 0; i <= SEGMENT_SIZE - 4; i += 4) {
+      sum += segment.getInt(i);
+    }
+    return sum;
+  }
+
+  static void writeLongs(MemorySegment segment) {
+    for (int i = 0; i <= SEGMENT_SIZE - 8; i += 8) {
+      segment.putLong(i, i);
+    }
+  }
+
+  static long readLongsBigEndian(MemorySegment segment) {
+    long sum = 0;
+    for (int i = 0; i <= SEGMENT_SIZE - 8; i += 8) {
+      sum += segment.getLongBigEndian(i);
+    }
+    return sum;
+  }
+}
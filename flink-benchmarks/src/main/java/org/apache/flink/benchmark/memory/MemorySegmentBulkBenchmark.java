@@ -0,0 +1,128 @@
+package org.apache.flink.benchmark.memory;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.core.memory.MemorySegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the bulk operations of the memory segments: copying to byte arrays and other
+ * segments, and the binary {@code compare} and {@code swapBytes} used by sorting.
+ *
+ * <p>With {@code polluted = true}, the operations are first run against all {@link SegmentKind
+ * segment kinds}, so that the virtual call sites have seen both segment subclasses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class MemorySegmentBulkBenchmark {
+
+  private static final int SEGMENT_SIZE = 32 * 1024;
+
+  private static final int POLLUTION_ROUNDS = 20_000;
+
+  @Param({"HEAP", "HYBRID_HEAP", "HYBRID_OFF_HEAP"})
+  public SegmentKind kind;
+
+  @Param({"false", "true"})
+  public boolean polluted;
+
+  @Param({"16", "256", "4096"})
+  public int length;
+
+  private MemorySegment segment;
+
+  private MemorySegment other;
+
+  private byte[] array;
+
+  private byte[] swapBuffer;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    array = new byte[length];
+    swapBuffer = new byte[length];
+
+    if (polluted) {
+      for (SegmentKind k : SegmentKind.values()) {
+        MemorySegment seg1 = k.allocateRandom(SEGMENT_SIZE, 1L);
+        MemorySegment seg2 = k.allocate(SEGMENT_SIZE);
+        seg1.copyTo(0, seg2, 0, SEGMENT_SIZE);
+        for (int i = 0; i < POLLUTION_ROUNDS; i++) {
+          getBytes(seg1, array, length);
+          copy(seg1, seg2, length);
+          compare(seg1, seg2, length);
+          swap(seg1, seg2, swapBuffer, length);
+        }
+        seg1.free();
+        seg2.free();
+      }
+    }
+
+    segment = kind.allocateRandom(SEGMENT_SIZE, 42L);
+    other = kind.allocate(SEGMENT_SIZE);
+    // equal contents, so that compare() has to look at all bytes
+    segment.copyTo(0, other, 0, SEGMENT_SIZE);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    segment.free();
+    other.free();
+  }
+
+  @Benchmark
+  public byte[] getByteArray() {
+    return getBytes(segment, array, length);
+  }
+
+  @Benchmark
+  public void copyTo() {
+    copy(segment, other, length);
+  }
+
+  @Benchmark
+  public int compareEqual() {
+    return compare(segment, other, length);
+  }
+
+  @Benchmark
+  public void swapBytes() {
+    swap(segment, other, swapBuffer, length);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Operations, shared by the pollution phase and the benchmarks
+  // ------------------------------------------------------------------------
+
+  static byte[] getBytes(MemorySegment segment, byte[] target, int length) {
+    segment.get(0, target, 0, length);
+    return target;
+  }
+
+  static void copy(MemorySegment source, MemorySegment target, int length) {
+    source.copyTo(0, target, 0, length);
+  }
+
+  static int compare(MemorySegment seg1, MemorySegment seg2, int length) {
+    return seg1.compare(seg2, 0, 0, length);
+  }
+
+  static void swap(MemorySegment seg1, MemorySegment seg2, byte[] buffer, int length) {
+    seg1.swapBytes(buffer, seg2, 0, SEGMENT_SIZE - length, length);
+  }
+}
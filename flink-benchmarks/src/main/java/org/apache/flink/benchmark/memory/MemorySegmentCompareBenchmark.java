@@ -0,0 +1,96 @@
+package org.apache.flink.benchmark.memory;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.core.memory.MemorySegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for comparing short keys, as the sorter does with normalized keys. The keys share a
+ * prefix and differ only in their last byte, so that every comparison reaches the tail of less than
+ * 8 bytes. The reported time is per comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class MemorySegmentCompareBenchmark {
+
+  private static final int NUM_KEYS = 1024;
+
+  @Param({"HEAP", "HYBRID_HEAP", "HYBRID_OFF_HEAP"})
+  public SegmentKind kind;
+
+  @Param({"5", "7", "12", "15"})
+  public int length;
+
+  private MemorySegment segment;
+
+  private byte[] probeKey;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random rnd = new Random(42L);
+    byte[] prefix = new byte[length];
+    rnd.nextBytes(prefix);
+
+    segment = kind.allocate(NUM_KEYS * length);
+    for (int i = 0; i < NUM_KEYS; i++) {
+      segment.put(i * length, prefix);
+      segment.put(i * length + length - 1, (byte) rnd.nextInt());
+    }
+    probeKey = prefix.clone();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    segment.free();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_KEYS - 1)
+  public int compare() {
+    int result = 0;
+    for (int i = 0; i < NUM_KEYS - 1; i++) {
+      result += segment.compare(segment, i * length, (i + 1) * length, length);
+    }
+    return result;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_KEYS - 1)
+  public int equalTo() {
+    int result = 0;
+    for (int i = 0; i < NUM_KEYS - 1; i++) {
+      if (segment.equalTo(segment, i * length, (i + 1) * length, length)) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_KEYS)
+  public int compareByteArray() {
+    int result = 0;
+    for (int i = 0; i < NUM_KEYS; i++) {
+      result += segment.compare(i * length, probeKey, 0, length);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,89 @@
+package org.apache.flink.benchmark.memory;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.LocalBufferPool;
+import org.apache.flink.runtime.io.network.buffer.NetworkBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the unchecked recycling of pooled network buffers with the {@link
+ * MemorySegment#setUseAfterFreeDetection(boolean) use-after-free detection}, which retires every
+ * recycled segment and hands out a new segment of the next generation.
+ *
+ * <p>{@code requestWriteRecycle} measures one round trip of a buffer through its pool, which is
+ * where the detection adds an allocation. {@code putLong} measures the accesses to a segment that
+ * has gone through the pool many times, whose cost the detection does not change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class MemorySegmentRecycleBenchmark {
+
+  private static final int SEGMENT_SIZE = 32 * 1024;
+
+  private static final int NUM_BUFFERS = 16;
+
+  @Param({"false", "true"})
+  public boolean useAfterFreeDetection;
+
+  private NetworkBufferPool networkBufferPool;
+
+  private LocalBufferPool bufferPool;
+
+  private Buffer buffer;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    MemorySegment.setUseAfterFreeDetection(useAfterFreeDetection);
+    networkBufferPool = new NetworkBufferPool(NUM_BUFFERS, SEGMENT_SIZE);
+    bufferPool = networkBufferPool.createBufferPool(NUM_BUFFERS, NUM_BUFFERS);
+    for (int i = 0; i < 100_000; i++) {
+      requestWriteRecycle();
+    }
+    buffer = bufferPool.requestBuffer();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    buffer.recycleBuffer();
+    bufferPool.lazyDestroy();
+    networkBufferPool.destroy();
+    MemorySegment.setUseAfterFreeDetection(false);
+  }
+
+  @Benchmark
+  public long requestWriteRecycle() {
+    final Buffer requested = bufferPool.requestBuffer();
+    final MemorySegment segment = requested.getMemorySegment();
+    segment.putLong(0, segment.getLong(8) + 1);
+    requested.recycleBuffer();
+    return segment.getGeneration();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SEGMENT_SIZE / 8)
+  public void putLong() {
+    final MemorySegment segment = buffer.getMemorySegment();
+    for (int i = 0; i < SEGMENT_SIZE; i += 8) {
+      segment.putLong(i, i);
+    }
+  }
+}
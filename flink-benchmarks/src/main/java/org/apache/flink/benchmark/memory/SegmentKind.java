@@ -0,0 +1,45 @@
+package org.apache.flink.benchmark.memory;
+
+import java.util.Random;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+
+/** The memory segment implementations that are compared by the benchmarks. */
+public enum SegmentKind {
+
+  /** A {@link HeapMemorySegment}. */
+  HEAP {
+    @Override
+    MemorySegment allocate(int size) {
+      return HeapMemorySegment.FACTORY.allocateUnpooledSegment(size, null);
+    }
+  },
+
+  /** A {@link HybridMemorySegment} backed by a byte array. */
+  HYBRID_HEAP {
+    @Override
+    MemorySegment allocate(int size) {
+      return HybridMemorySegment.FACTORY.allocateUnpooledSegment(size, null);
+    }
+  },
+
+  /** A {@link HybridMemorySegment} backed by a direct byte buffer. */
+  HYBRID_OFF_HEAP {
+    @Override
+    MemorySegment allocate(int size) {
+      return HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(size, null);
+    }
+  };
+
+  abstract MemorySegment allocate(int size);
+
+  /** Allocates a segment of this kind and fills it with reproducible random bytes. */
+  MemorySegment allocateRandom(int size, long seed) {
+    byte[] data = new byte[size];
+    new Random(seed).nextBytes(data);
+    MemorySegment segment = allocate(size);
+    segment.put(0, data);
+    return segment;
+  }
+}
@@ -0,0 +1,101 @@
+package org.apache.flink.benchmark.sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.api.common.typeutils.base.StringComparator;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.operators.sort.NormalizedKeySorter;
+import org.apache.flink.runtime.operators.sort.QuickSort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks sorting short string keys with the {@link NormalizedKeySorter}, which compares the
+ * normalized key prefixes binary. The strings are drawn from a small alphabet, so that many keys
+ * share prefixes and the comparisons reach the tail of the normalized keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class NormalizedKeySorterBenchmark {
+
+  private static final int SEGMENT_SIZE = 32 * 1024;
+
+  private static final int NUM_SEGMENTS = 64;
+
+  private static final int NUM_RECORDS = 20_000;
+
+  @Param({"4", "7", "12"})
+  public int keyLength;
+
+  private final QuickSort quickSort = new QuickSort();
+
+  private String[] keys;
+
+  private List<MemorySegment> memory;
+
+  private NormalizedKeySorter<String> sorter;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random rnd = new Random(42L);
+    keys = new String[NUM_RECORDS];
+    char[] chars = new char[keyLength];
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      for (int j = 0; j < keyLength; j++) {
+        chars[j] = (char) ('a' + rnd.nextInt(4));
+      }
+      keys[i] = new String(chars);
+    }
+
+    memory = new ArrayList<>(NUM_SEGMENTS);
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      memory.add(HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(SEGMENT_SIZE, null));
+    }
+    sorter =
+        new NormalizedKeySorter<>(
+            StringSerializer.INSTANCE, new StringComparator(true), memory, keyLength);
+  }
+
+  @Setup(Level.Invocation)
+  public void fill() throws Exception {
+    sorter.reset();
+    for (String key : keys) {
+      if (!sorter.write(key)) {
+        throw new IllegalStateException("The sorter is too small for the records.");
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    sorter.dispose();
+    for (MemorySegment segment : memory) {
+      segment.free();
+    }
+  }
+
+  @Benchmark
+  public int sort() {
+    quickSort.sort(sorter);
+    return sorter.size();
+  }
+}
@@ -0,0 +1,108 @@
+package org.apache.flink.benchmark.state;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.core.memory.MemoryType;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.offheap.OffHeapKeyedStateBackend;
+import org.apache.flink.runtime.state.offheap.OffHeapSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Samples the latency of updates of off-heap value state, without snapshots and while snapshots
+ * are taken back to back. Every update that finds the previous snapshot completed takes the next
+ * one, so the samples include the barriers and the copies of the pages that the snapshot thread
+ * has not written yet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OffHeapStateSnapshotBenchmark {
+
+  private static final int NUM_KEYS = 200_000;
+
+  private static final int NUM_KEY_GROUPS = 128;
+
+  @Param({"none", "full", "incremental"})
+  public String snapshots;
+
+  private MemoryManager memoryManager;
+
+  private OffHeapKeyedStateBackend<Long> backend;
+
+  private ValueState<Long> state;
+
+  private ExecutorService snapshotThread;
+
+  private Path file;
+
+  private Future<?> running;
+
+  private long checkpointId;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    memoryManager = new MemoryManager(256L << 20, MemoryType.OFF_HEAP);
+    backend =
+        new OffHeapKeyedStateBackend<>(
+            LongSerializer.INSTANCE,
+            NUM_KEY_GROUPS,
+            KeyGroupRange.of(NUM_KEY_GROUPS),
+            memoryManager);
+    state = backend.getValueState("value", LongSerializer.INSTANCE);
+    for (long key = 0; key < NUM_KEYS; key++) {
+      backend.setCurrentKey(key);
+      state.update(key);
+    }
+    snapshotThread = Executors.newSingleThreadExecutor();
+    file = Files.createTempFile("snapshot", ".bin");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    if (running != null) {
+      running.get();
+    }
+    snapshotThread.shutdown();
+    backend.dispose();
+    memoryManager.shutdown();
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public void update() throws IOException {
+    if (!snapshots.equals("none") && (running == null || running.isDone())) {
+      final RunnableFuture<OffHeapSnapshot> snapshot =
+          backend.snapshot(++checkpointId, file, snapshots.equals("incremental"));
+      running = snapshotThread.submit(snapshot);
+    }
+    final long key = ThreadLocalRandom.current().nextInt(NUM_KEYS);
+    backend.setCurrentKey(key);
+    state.update(key + 1);
+  }
+}
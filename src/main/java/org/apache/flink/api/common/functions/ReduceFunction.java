@@ -0,0 +1,24 @@
+package org.apache.flink.api.common.functions;
+
+import java.io.Serializable;
+
+/**
+ * Combines two values into one value of the same type. The function is applied repeatedly to
+ * aggregate a group of values, for example by a {@link
+ * org.apache.flink.api.common.state.ReducingState}, so it must be associative.
+ *
+ * @param <T> The type of the values.
+ */
+@FunctionalInterface
+public interface ReduceFunction<T> extends Serializable {
+
+  /**
+   * Combines two values into one.
+   *
+   * @param value1 The first value to combine.
+   * @param value2 The second value to combine.
+   * @return The combined value.
+   * @throws Exception Thrown, if the function fails, which fails the operation that applied it.
+   */
+  T reduce(T value1, T value2) throws Exception;
+}
@@ -0,0 +1,26 @@
+package org.apache.flink.api.common.state;
+
+/**
+ * Partitioned state to which values are added, and which combines the added values into a result.
+ *
+ * @param <IN> The type of the values that are added.
+ * @param <OUT> The type of the result.
+ */
+public interface AppendingState<IN, OUT> extends State {
+
+  /**
+   * Gets the result of the values added for the current key.
+   *
+   * @return The result.
+   * @throws Exception Thrown, if the result cannot be read from the state backend.
+   */
+  OUT get() throws Exception;
+
+  /**
+   * Adds a value for the current key.
+   *
+   * @param value The value to add.
+   * @throws Exception Thrown, if the value cannot be added in the state backend.
+   */
+  void add(IN value) throws Exception;
+}
@@ -0,0 +1,28 @@
+package org.apache.flink.api.common.state;
+
+import java.util.List;
+
+/**
+ * Partitioned state that holds a list of values per key. {@link #get()} returns the values in the
+ * order in which they were added, and an empty iterable, if the state holds no values for the key.
+ *
+ * @param <T> The type of the values.
+ */
+public interface ListState<T> extends AppendingState<T, Iterable<T>> {
+
+  /**
+   * Replaces the values of the current key with the given values.
+   *
+   * @param values The new values, or null or an empty list, to remove all values.
+   * @throws Exception Thrown, if the values cannot be written to the state backend.
+   */
+  void update(List<T> values) throws Exception;
+
+  /**
+   * Appends the given values to the values of the current key.
+   *
+   * @param values The values to append.
+   * @throws Exception Thrown, if the values cannot be written to the state backend.
+   */
+  void addAll(List<T> values) throws Exception;
+}
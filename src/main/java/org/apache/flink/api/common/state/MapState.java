@@ -0,0 +1,90 @@
+package org.apache.flink.api.common.state;
+
+import java.util.Map;
+
+/**
+ * Partitioned state that holds a map of user keys to user values per key.
+ *
+ * <p>The iterables returned by {@link #entries()}, {@link #keys()} and {@link #values()} are
+ * snapshots of the map of the current key, which later updates do not change.
+ *
+ * @param <UK> The type of the user keys.
+ * @param <UV> The type of the user values.
+ */
+public interface MapState<UK, UV> extends State {
+
+  /**
+   * Gets the value of the given user key.
+   *
+   * @param key The user key.
+   * @return The value, or null, if the map holds no value for the user key.
+   * @throws Exception Thrown, if the value cannot be read from the state backend.
+   */
+  UV get(UK key) throws Exception;
+
+  /**
+   * Sets the value of the given user key.
+   *
+   * @param key The user key.
+   * @param value The value.
+   * @throws Exception Thrown, if the value cannot be written to the state backend.
+   */
+  void put(UK key, UV value) throws Exception;
+
+  /**
+   * Sets the values of all user keys of the given map.
+   *
+   * @param map The user keys and values to set.
+   * @throws Exception Thrown, if the values cannot be written to the state backend.
+   */
+  void putAll(Map<UK, UV> map) throws Exception;
+
+  /**
+   * Removes the value of the given user key.
+   *
+   * @param key The user key.
+   * @throws Exception Thrown, if the value cannot be removed from the state backend.
+   */
+  void remove(UK key) throws Exception;
+
+  /**
+   * Checks whether the map holds a value for the given user key.
+   *
+   * @param key The user key.
+   * @return True, if the map holds a value for the key, false otherwise.
+   * @throws Exception Thrown, if the state backend cannot be read.
+   */
+  boolean contains(UK key) throws Exception;
+
+  /**
+   * Gets all user keys and values of the map.
+   *
+   * @return The entries of the map.
+   * @throws Exception Thrown, if the entries cannot be read from the state backend.
+   */
+  Iterable<Map.Entry<UK, UV>> entries() throws Exception;
+
+  /**
+   * Gets all user keys of the map.
+   *
+   * @return The user keys of the map.
+   * @throws Exception Thrown, if the keys cannot be read from the state backend.
+   */
+  Iterable<UK> keys() throws Exception;
+
+  /**
+   * Gets all user values of the map.
+   *
+   * @return The user values of the map.
+   * @throws Exception Thrown, if the values cannot be read from the state backend.
+   */
+  Iterable<UV> values() throws Exception;
+
+  /**
+   * Checks whether the map of the current key is empty.
+   *
+   * @return True, if the map holds no entries, false otherwise.
+   * @throws Exception Thrown, if the state backend cannot be read.
+   */
+  boolean isEmpty() throws Exception;
+}
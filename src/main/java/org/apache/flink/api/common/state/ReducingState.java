@@ -0,0 +1,10 @@
+package org.apache.flink.api.common.state;
+
+/**
+ * Partitioned state that combines the added values with a {@link
+ * org.apache.flink.api.common.functions.ReduceFunction} into a single value per key. {@link
+ * #get()} returns null, if no value was added for the key.
+ *
+ * @param <T> The type of the values.
+ */
+public interface ReducingState<T> extends AppendingState<T, T> {}
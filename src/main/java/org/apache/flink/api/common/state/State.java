@@ -0,0 +1,12 @@
+package org.apache.flink.api.common.state;
+
+/**
+ * The interface of all partitioned state. The state is scoped to the key of the record that is
+ * currently processed, which the runtime sets on the state backend before it hands the record to
+ * the operator. All accesses to the state refer to the value of that key.
+ */
+public interface State {
+
+  /** Removes the value of the current key from the state. */
+  void clear();
+}
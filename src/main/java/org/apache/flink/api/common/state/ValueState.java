@@ -0,0 +1,27 @@
+package org.apache.flink.api.common.state;
+
+import java.io.IOException;
+
+/**
+ * Partitioned state that holds a single value per key.
+ *
+ * @param <T> The type of the value.
+ */
+public interface ValueState<T> extends State {
+
+  /**
+   * Gets the value of the current key.
+   *
+   * @return The value, or null, if the state holds no value for the key.
+   * @throws IOException Thrown, if the value cannot be read from the state backend.
+   */
+  T value() throws IOException;
+
+  /**
+   * Sets the value of the current key. Setting null removes the value, like {@link #clear()}.
+   *
+   * @param value The new value.
+   * @throws IOException Thrown, if the value cannot be written to the state backend.
+   */
+  void update(T value) throws IOException;
+}
@@ -0,0 +1,33 @@
+package org.apache.flink.api.common.typeutils;
+
+/**
+ * A {@link TypePairComparator} for two records of the same type, delegating to the type's {@link
+ * TypeComparator}.
+ *
+ * @param <T> The type of the records.
+ */
+public class SameTypePairComparator<T> extends TypePairComparator<T, T> {
+
+  private final TypeComparator<T> comparator;
+
+  private T reference;
+
+  public SameTypePairComparator(TypeComparator<T> comparator) {
+    this.comparator = comparator;
+  }
+
+  @Override
+  public void setReference(T reference) {
+    this.reference = reference;
+  }
+
+  @Override
+  public boolean equalToReference(T candidate) {
+    return this.comparator.compare(this.reference, candidate) == 0;
+  }
+
+  @Override
+  public int compareToReference(T candidate) {
+    return this.comparator.compare(this.reference, candidate);
+  }
+}
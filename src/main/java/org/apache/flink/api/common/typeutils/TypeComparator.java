@@ -0,0 +1,100 @@
+package org.apache.flink.api.common.typeutils;
+
+import java.io.Serializable;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * This interface describes the methods that are required for a data type to be handled by the
+ * sorting and hashing runtime components. It compares records by their key and computes hash codes
+ * of the key.
+ *
+ * <p>The sort algorithms work best with <i>normalized keys</i>: a binary prefix of the key whose
+ * byte-wise unsigned comparison gives the same order as the comparator. Sorting on normalized keys
+ * works directly on the binary data in the memory segments and avoids de-serializing the records.
+ * The normalized key may be only a prefix of the key, in which case ties are broken by comparing
+ * the records.
+ *
+ * @param <T> The data type that the comparator works on.
+ */
+public abstract class TypeComparator<T> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Computes a hash value for the given record. The hash value should include all fields in the
+   * record relevant to the comparison.
+   *
+   * @param record The record to be hashed.
+   * @return A hash value for the record.
+   */
+  public abstract int hash(T record);
+
+  /**
+   * Compares two records.
+   *
+   * @param first The first record.
+   * @param second The second record.
+   * @return An integer that is less than, equal to, or greater than zero, if the first record is
+   *     less than, equal to, or greater than the second record.
+   */
+  public abstract int compare(T first, T second);
+
+  /**
+   * Checks whether the data type supports the creation of a normalized key for comparison.
+   *
+   * @return True, if the data type supports the creation of a normalized key for comparison, false
+   *     otherwise.
+   */
+  public abstract boolean supportsNormalizedKey();
+
+  /**
+   * Gets the number of bytes that the normalized key would maximally take. A value of {@link
+   * Integer#MAX_VALUE} is interpreted as infinite.
+   *
+   * @return The number of bytes that the normalized key would maximally take.
+   */
+  public abstract int getNormalizeKeyLen();
+
+  /**
+   * Checks, whether the given number of bytes for a normalized is only a prefix to determine the
+   * order of elements of the data type for which this comparator provides the comparison methods.
+   * For example, if the data type is ordered with respect to an integer value it contains, then
+   * this method would return true, if the number of key bytes is smaller than four.
+   *
+   * @return True, if the given number of bytes is only a prefix, false otherwise.
+   */
+  public abstract boolean isNormalizedKeyPrefixOnly(int keyBytes);
+
+  /**
+   * Writes a normalized key for the given record into the target byte array, starting at the
+   * specified position and writing exactly the given number of bytes. Note that the comparison of
+   * the bytes is treating the bytes as unsigned bytes: {@code int byteI = bytes[i] & 0xFF;}
+   *
+   * <p>If the meaningful part of the normalized key takes less than the given number of bytes,
+   * then it must be padded. Padding is typically required for variable length data types, such as
+   * strings. The padding uses a special character, either {@code 0} or {@code 0xff}, depending on
+   * whether shorter values are sorted to the beginning or the end.
+   *
+   * @param record The record for which to create the normalized key.
+   * @param target The memory segment to put the normalized key bytes into.
+   * @param offset The offset in the byte array, where to start writing the normalized key bytes.
+   * @param numBytes The number of bytes to be written exactly.
+   */
+  public abstract void putNormalizedKey(T record, MemorySegment target, int offset, int numBytes);
+
+  /**
+   * Flag whether normalized key comparisons should be inverted, i.e. descending.
+   *
+   * @return True, if all normalized key comparisons should invert the sign of the comparison
+   *     result, false if the normalized key should be used as is.
+   */
+  public abstract boolean invertNormalizedKey();
+
+  /**
+   * Creates a copy of this class. The copy must be deep such that no state set in the copy affects
+   * this instance of the comparator class.
+   *
+   * @return A deep copy of this comparator instance.
+   */
+  public abstract TypeComparator<T> duplicate();
+}
@@ -0,0 +1,40 @@
+package org.apache.flink.api.common.typeutils;
+
+/**
+ * This interface defines the method required by the runtime to use data types in join-like
+ * operations. In such operations, instances of different data types are compared for equality
+ * with respect to certain attributes, such as the key fields.
+ *
+ * <p>The comparator is stateful: it holds a reference record of the first type, against which
+ * candidate records of the second type are compared.
+ *
+ * @param <T1> The class of the first data type.
+ * @param <T2> The class of the second data type.
+ */
+public abstract class TypePairComparator<T1, T2> {
+
+  /**
+   * Sets the reference for comparisons.
+   *
+   * @param reference The reference instance.
+   */
+  public abstract void setReference(T1 reference);
+
+  /**
+   * Checks, whether the given candidate instance is equal to the reference instance, with respect
+   * to this comparator's equality definition.
+   *
+   * @param candidate The candidate to check.
+   * @return True, if the candidate is equal to the reference, false otherwise.
+   */
+  public abstract boolean equalToReference(T2 candidate);
+
+  /**
+   * Compares the candidate to the reference.
+   *
+   * @param candidate The candidate to compare.
+   * @return An integer that is less than, equal to, or greater than zero, if the reference is less
+   *     than, equal to, or greater than the candidate.
+   */
+  public abstract int compareToReference(T2 candidate);
+}
@@ -0,0 +1,97 @@
+package org.apache.flink.api.common.typeutils;
+
+import java.io.IOException;
+import java.io.Serializable;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+
+/**
+ * This interface describes the methods that are required for a data type to be handled by the
+ * memory based runtime components, such as the sorters and hash tables. Records are written to and
+ * read from {@link DataOutputView}s and {@link DataInputView}s, which are usually backed by {@link
+ * org.apache.flink.core.memory.MemorySegment}s.
+ *
+ * <p>Serializers may be stateful (for example hold reusable buffers) and must then return a new
+ * instance from {@link #duplicate()}, because each component that runs in its own thread works
+ * with its own serializer.
+ *
+ * @param <T> The data type that the serializer serializes.
+ */
+public abstract class TypeSerializer<T> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates a deep copy of this serializer if it is necessary, i.e. if it is stateful. This can
+   * return itself if the serializer is not stateful.
+   *
+   * @return A copy of this serializer, or the serializer itself, if it is stateless.
+   */
+  public abstract TypeSerializer<T> duplicate();
+
+  /**
+   * Creates a new instance of the data type.
+   *
+   * @return A new instance of the data type.
+   */
+  public abstract T createInstance();
+
+  /**
+   * Creates a deep copy of the given element in a new element.
+   *
+   * @param from The element reuse be copied.
+   * @return A deep copy of the element.
+   */
+  public abstract T copy(T from);
+
+  /**
+   * Gets the length of the data type, if it is a fix length data type.
+   *
+   * @return The length of the data type, or <code>-1</code> for variable length data types.
+   */
+  public abstract int getLength();
+
+  /**
+   * Serializes the given record to the given target output view.
+   *
+   * @param record The record to serialize.
+   * @param target The output view to write the serialized data to.
+   * @throws IOException Thrown, if the serialization encountered an I/O related error. Typically
+   *     raised by the output view, which may have an underlying I/O channel to which it delegates.
+   */
+  public abstract void serialize(T record, DataOutputView target) throws IOException;
+
+  /**
+   * De-serializes a record from the given source input view.
+   *
+   * @param source The input view from which to read the data.
+   * @return The deserialized element.
+   * @throws IOException Thrown, if the de-serialization encountered an I/O related error.
+   *     Typically raised by the input view, which may have an underlying I/O channel from which it
+   *     reads.
+   */
+  public abstract T deserialize(DataInputView source) throws IOException;
+
+  /**
+   * De-serializes a record from the given source input view into the given reuse record instance
+   * if mutable.
+   *
+   * @param reuse The record instance into which to de-serialize the data.
+   * @param source The input view from which to read the data.
+   * @return The deserialized element.
+   * @throws IOException Thrown, if the de-serialization encountered an I/O related error.
+   */
+  public abstract T deserialize(T reuse, DataInputView source) throws IOException;
+
+  /**
+   * Copies exactly one record from the source input view to the target output view. Whether this
+   * operation works on binary data or partially de-serializes the record to determine its length
+   * (such as for records of variable length) is up to the implementer. Binary copies are typically
+   * faster.
+   *
+   * @param source The input view from which to read the record.
+   * @param target The target output view to which to write the record.
+   * @throws IOException Thrown if any of the two views raises an exception.
+   */
+  public abstract void copy(DataInputView source, DataOutputView target) throws IOException;
+}
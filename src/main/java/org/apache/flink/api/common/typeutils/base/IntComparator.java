@@ -0,0 +1,73 @@
+package org.apache.flink.api.common.typeutils.base;
+
+import org.apache.flink.api.common.typeutils.TypeComparator;
+import org.apache.flink.core.memory.MemorySegment;
+
+/** Type comparator for {@code Integer}, with an order preserving 4 byte normalized key. */
+public final class IntComparator extends TypeComparator<Integer> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final boolean ascendingComparison;
+
+  public IntComparator(boolean ascending) {
+    this.ascendingComparison = ascending;
+  }
+
+  @Override
+  public int hash(Integer value) {
+    return value.hashCode();
+  }
+
+  @Override
+  public int compare(Integer first, Integer second) {
+    int cmp = Integer.compare(first, second);
+    return ascendingComparison ? cmp : -cmp;
+  }
+
+  @Override
+  public boolean supportsNormalizedKey() {
+    return true;
+  }
+
+  @Override
+  public int getNormalizeKeyLen() {
+    return 4;
+  }
+
+  @Override
+  public boolean isNormalizedKeyPrefixOnly(int keyBytes) {
+    return keyBytes < 4;
+  }
+
+  @Override
+  public void putNormalizedKey(Integer record, MemorySegment target, int offset, int numBytes) {
+    // flip the sign bit, so that the unsigned byte order matches the signed value order
+    int value = record - Integer.MIN_VALUE;
+
+    if (numBytes == 4) {
+      target.putIntBigEndian(offset, value);
+    } else if (numBytes > 0) {
+      if (numBytes < 4) {
+        for (int i = 0; numBytes > 0; numBytes--, i++) {
+          target.put(offset + i, (byte) (value >>> ((3 - i) << 3)));
+        }
+      } else {
+        target.putIntBigEndian(offset, value);
+        for (int i = 4; i < numBytes; i++) {
+          target.put(offset + i, (byte) 0);
+        }
+      }
+    }
+  }
+
+  @Override
+  public boolean invertNormalizedKey() {
+    return !ascendingComparison;
+  }
+
+  @Override
+  public IntComparator duplicate() {
+    return new IntComparator(ascendingComparison);
+  }
+}
@@ -0,0 +1,57 @@
+package org.apache.flink.api.common.typeutils.base;
+
+import java.io.IOException;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+
+/** Type serializer for {@code Integer} (and {@code int}, via auto-boxing). */
+public final class IntSerializer extends TypeSerializer<Integer> {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Sharable instance of the IntSerializer. */
+  public static final IntSerializer INSTANCE = new IntSerializer();
+
+  private static final Integer ZERO = 0;
+
+  @Override
+  public IntSerializer duplicate() {
+    return this;
+  }
+
+  @Override
+  public Integer createInstance() {
+    return ZERO;
+  }
+
+  @Override
+  public Integer copy(Integer from) {
+    return from;
+  }
+
+  @Override
+  public int getLength() {
+    return 4;
+  }
+
+  @Override
+  public void serialize(Integer record, DataOutputView target) throws IOException {
+    target.writeInt(record);
+  }
+
+  @Override
+  public Integer deserialize(DataInputView source) throws IOException {
+    return source.readInt();
+  }
+
+  @Override
+  public Integer deserialize(Integer reuse, DataInputView source) throws IOException {
+    return deserialize(source);
+  }
+
+  @Override
+  public void copy(DataInputView source, DataOutputView target) throws IOException {
+    target.writeInt(source.readInt());
+  }
+}
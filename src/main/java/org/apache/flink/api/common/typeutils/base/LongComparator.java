@@ -0,0 +1,73 @@
+package org.apache.flink.api.common.typeutils.base;
+
+import org.apache.flink.api.common.typeutils.TypeComparator;
+import org.apache.flink.core.memory.MemorySegment;
+
+/** Type comparator for {@code Long}, with an order preserving 8 byte normalized key. */
+public final class LongComparator extends TypeComparator<Long> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final boolean ascendingComparison;
+
+  public LongComparator(boolean ascending) {
+    this.ascendingComparison = ascending;
+  }
+
+  @Override
+  public int hash(Long value) {
+    return value.hashCode();
+  }
+
+  @Override
+  public int compare(Long first, Long second) {
+    int cmp = Long.compare(first, second);
+    return ascendingComparison ? cmp : -cmp;
+  }
+
+  @Override
+  public boolean supportsNormalizedKey() {
+    return true;
+  }
+
+  @Override
+  public int getNormalizeKeyLen() {
+    return 8;
+  }
+
+  @Override
+  public boolean isNormalizedKeyPrefixOnly(int keyBytes) {
+    return keyBytes < 8;
+  }
+
+  @Override
+  public void putNormalizedKey(Long record, MemorySegment target, int offset, int numBytes) {
+    // flip the sign bit, so that the unsigned byte order matches the signed value order
+    long value = record - Long.MIN_VALUE;
+
+    if (numBytes == 8) {
+      target.putLongBigEndian(offset, value);
+    } else if (numBytes > 0) {
+      if (numBytes < 8) {
+        for (int i = 0; numBytes > 0; numBytes--, i++) {
+          target.put(offset + i, (byte) (value >>> ((7 - i) << 3)));
+        }
+      } else {
+        target.putLongBigEndian(offset, value);
+        for (int i = 8; i < numBytes; i++) {
+          target.put(offset + i, (byte) 0);
+        }
+      }
+    }
+  }
+
+  @Override
+  public boolean invertNormalizedKey() {
+    return !ascendingComparison;
+  }
+
+  @Override
+  public LongComparator duplicate() {
+    return new LongComparator(ascendingComparison);
+  }
+}
@@ -0,0 +1,57 @@
+package org.apache.flink.api.common.typeutils.base;
+
+import java.io.IOException;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+
+/** Type serializer for {@code Long} (and {@code long}, via auto-boxing). */
+public final class LongSerializer extends TypeSerializer<Long> {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Sharable instance of the LongSerializer. */
+  public static final LongSerializer INSTANCE = new LongSerializer();
+
+  private static final Long ZERO = 0L;
+
+  @Override
+  public LongSerializer duplicate() {
+    return this;
+  }
+
+  @Override
+  public Long createInstance() {
+    return ZERO;
+  }
+
+  @Override
+  public Long copy(Long from) {
+    return from;
+  }
+
+  @Override
+  public int getLength() {
+    return 8;
+  }
+
+  @Override
+  public void serialize(Long record, DataOutputView target) throws IOException {
+    target.writeLong(record);
+  }
+
+  @Override
+  public Long deserialize(DataInputView source) throws IOException {
+    return source.readLong();
+  }
+
+  @Override
+  public Long deserialize(Long reuse, DataInputView source) throws IOException {
+    return deserialize(source);
+  }
+
+  @Override
+  public void copy(DataInputView source, DataOutputView target) throws IOException {
+    target.writeLong(source.readLong());
+  }
+}
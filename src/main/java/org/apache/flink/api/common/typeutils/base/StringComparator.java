@@ -0,0 +1,93 @@
+package org.apache.flink.api.common.typeutils.base;
+
+import org.apache.flink.api.common.typeutils.TypeComparator;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * Type comparator for {@code String}. The normalized key is an order preserving variable length
+ * encoding of the leading characters and therefore always only a prefix of the key.
+ */
+public final class StringComparator extends TypeComparator<String> {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int HIGH_BIT = 0x1 << 7;
+
+  private static final int HIGH_BIT2 = 0x1 << 13;
+
+  private static final int HIGH_BIT2_MASK = 0x3 << 6;
+
+  private final boolean ascendingComparison;
+
+  public StringComparator(boolean ascending) {
+    this.ascendingComparison = ascending;
+  }
+
+  @Override
+  public int hash(String record) {
+    return record.hashCode();
+  }
+
+  @Override
+  public int compare(String first, String second) {
+    int cmp = first.compareTo(second);
+    return ascendingComparison ? cmp : -cmp;
+  }
+
+  @Override
+  public boolean supportsNormalizedKey() {
+    return true;
+  }
+
+  @Override
+  public int getNormalizeKeyLen() {
+    return Integer.MAX_VALUE;
+  }
+
+  @Override
+  public boolean isNormalizedKeyPrefixOnly(int keyBytes) {
+    return true;
+  }
+
+  @Override
+  public void putNormalizedKey(String record, MemorySegment target, int offset, int len) {
+    final int limit = offset + len;
+    final int end = record.length();
+    int pos = 0;
+
+    // characters below 0x80 take one byte, below 0x2000 two bytes and all others three bytes,
+    // such that the unsigned byte order matches the character order
+    while (pos < end && offset < limit) {
+      char c = record.charAt(pos++);
+      if (c < HIGH_BIT) {
+        target.put(offset++, (byte) c);
+      } else if (c < HIGH_BIT2) {
+        target.put(offset++, (byte) ((c >>> 7) | HIGH_BIT));
+        if (offset < limit) {
+          target.put(offset++, (byte) c);
+        }
+      } else {
+        target.put(offset++, (byte) ((c >>> 10) | HIGH_BIT2_MASK));
+        if (offset < limit) {
+          target.put(offset++, (byte) (c >>> 2));
+        }
+        if (offset < limit) {
+          target.put(offset++, (byte) c);
+        }
+      }
+    }
+    while (offset < limit) {
+      target.put(offset++, (byte) 0);
+    }
+  }
+
+  @Override
+  public boolean invertNormalizedKey() {
+    return !ascendingComparison;
+  }
+
+  @Override
+  public StringComparator duplicate() {
+    return new StringComparator(ascendingComparison);
+  }
+}
@@ -0,0 +1,168 @@
+package org.apache.flink.api.common.typeutils.base;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+
+/**
+ * Type serializer for {@code String}. The length and every character are written in a variable
+ * length encoding of 7 bits per byte, so that ASCII strings take one byte per character. Unlike
+ * {@link DataOutput#writeUTF(String)}, the length of the strings is not limited, and null strings
+ * are supported.
+ */
+public final class StringSerializer extends TypeSerializer<String> {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Sharable instance of the StringSerializer. */
+  public static final StringSerializer INSTANCE = new StringSerializer();
+
+  private static final String EMPTY = "";
+
+  private static final int HIGH_BIT = 0x1 << 7;
+
+  @Override
+  public StringSerializer duplicate() {
+    return this;
+  }
+
+  @Override
+  public String createInstance() {
+    return EMPTY;
+  }
+
+  @Override
+  public String copy(String from) {
+    return from;
+  }
+
+  @Override
+  public int getLength() {
+    return -1;
+  }
+
+  @Override
+  public void serialize(String record, DataOutputView target) throws IOException {
+    writeString(record, target);
+  }
+
+  @Override
+  public String deserialize(DataInputView source) throws IOException {
+    return readString(source);
+  }
+
+  @Override
+  public String deserialize(String reuse, DataInputView source) throws IOException {
+    return deserialize(source);
+  }
+
+  @Override
+  public void copy(DataInputView source, DataOutputView target) throws IOException {
+    int len = source.readUnsignedByte();
+    target.writeByte(len);
+
+    if (len >= HIGH_BIT) {
+      int shift = 7;
+      int curr;
+      len = len & 0x7f;
+      while ((curr = source.readUnsignedByte()) >= HIGH_BIT) {
+        target.writeByte(curr);
+        len |= (curr & 0x7f) << shift;
+        shift += 7;
+      }
+      target.writeByte(curr);
+      len |= curr << shift;
+    }
+
+    // the length is offset by one, a length of zero indicates a null value
+    for (int i = 1; i < len; i++) {
+      int c = source.readUnsignedByte();
+      target.writeByte(c);
+      while (c >= HIGH_BIT) {
+        c = source.readUnsignedByte();
+        target.writeByte(c);
+      }
+    }
+  }
+
+  // --------------------------------------------------------------------------------------------
+  //                           Static Helpers for String Serialization
+  // --------------------------------------------------------------------------------------------
+
+  public static void writeString(CharSequence cs, DataOutput out) throws IOException {
+    if (cs != null) {
+      // the length we write is offset by one, because a length of zero indicates a null value
+      int lenToWrite = cs.length() + 1;
+      if (lenToWrite < 0) {
+        throw new IllegalArgumentException("CharSequence is too long.");
+      }
+
+      // write the length, variable-length encoded
+      while (lenToWrite >= HIGH_BIT) {
+        out.write(lenToWrite | HIGH_BIT);
+        lenToWrite >>>= 7;
+      }
+      out.write(lenToWrite);
+
+      // write the char data, variable length encoded
+      for (int i = 0; i < cs.length(); i++) {
+        int c = cs.charAt(i);
+
+        while (c >= HIGH_BIT) {
+          out.write(c | HIGH_BIT);
+          c >>>= 7;
+        }
+        out.write(c);
+      }
+    } else {
+      out.write(0);
+    }
+  }
+
+  public static String readString(DataInput in) throws IOException {
+    // the length we read is offset by one, because a length of zero indicates a null value
+    int len = in.readUnsignedByte();
+
+    if (len == 0) {
+      return null;
+    }
+
+    if (len >= HIGH_BIT) {
+      int shift = 7;
+      int curr;
+      len = len & 0x7f;
+      while ((curr = in.readUnsignedByte()) >= HIGH_BIT) {
+        len |= (curr & 0x7f) << shift;
+        shift += 7;
+      }
+      len |= curr << shift;
+    }
+
+    // subtract one for the null length
+    len -= 1;
+
+    final char[] data = new char[len];
+
+    for (int i = 0; i < len; i++) {
+      int c = in.readUnsignedByte();
+      if (c < HIGH_BIT) {
+        data[i] = (char) c;
+      } else {
+        int shift = 7;
+        int curr;
+        c = c & 0x7f;
+        while ((curr = in.readUnsignedByte()) >= HIGH_BIT) {
+          c |= (curr & 0x7f) << shift;
+          shift += 7;
+        }
+        c |= curr << shift;
+        data[i] = (char) c;
+      }
+    }
+
+    return new String(data, 0, len);
+  }
+}
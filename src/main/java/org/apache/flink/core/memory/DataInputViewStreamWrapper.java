@@ -0,0 +1,25 @@
+package org.apache.flink.core.memory;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Utility class that turns an {@link InputStream} into a {@link DataInputView}. */
+public class DataInputViewStreamWrapper extends DataInputStream implements DataInputView {
+
+  public DataInputViewStreamWrapper(InputStream in) {
+    super(in);
+  }
+
+  @Override
+  public void skipBytesToRead(int numBytes) throws IOException {
+    while (numBytes > 0) {
+      int skipped = skipBytes(numBytes);
+      if (skipped <= 0) {
+        throw new EOFException("Could not skip " + numBytes + " bytes.");
+      }
+      numBytes -= skipped;
+    }
+  }
+}
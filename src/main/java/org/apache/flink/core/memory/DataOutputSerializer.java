@@ -0,0 +1,296 @@
+package org.apache.flink.core.memory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+
+/**
+ * A simple and efficient serializer for the {@link java.io.DataOutput} interface, writing into a
+ * heap byte array that grows as needed. The array is kept when the serializer is {@link #clear()
+ * cleared}, so that a serializer that is reused for many records of similar size does not
+ * allocate any memory after it warmed up.
+ *
+ * <p>Multi-byte values are written in big endian byte order, matching the paged views.
+ */
+public class DataOutputSerializer implements DataOutputView {
+
+  private byte[] buffer;
+
+  private int position;
+
+  /**
+   * Creates a new serializer with the given initial capacity.
+   *
+   * @param startSize The initial size of the byte array.
+   */
+  public DataOutputSerializer(int startSize) {
+    if (startSize < 1) {
+      throw new IllegalArgumentException("The start size must be at least one byte.");
+    }
+    this.buffer = new byte[startSize];
+  }
+
+  // ------------------------------------------------------------------------
+  //  Properties
+  // ------------------------------------------------------------------------
+
+  /**
+   * Gets a reference to the internal byte array. The array is shared and its valid bytes are the
+   * first {@link #length()} bytes.
+   *
+   * @return The internal byte array.
+   */
+  public byte[] getSharedBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Gets a copy of the written bytes.
+   *
+   * @return A copy of the written bytes.
+   */
+  public byte[] getCopyOfBuffer() {
+    return Arrays.copyOf(buffer, position);
+  }
+
+  /** Gets the number of bytes written, the current position. */
+  public int length() {
+    return position;
+  }
+
+  /** Resets the position to zero. The internal byte array is kept. */
+  public void clear() {
+    this.position = 0;
+  }
+
+  /**
+   * Sets the position to the given value. The bytes up to the position are considered written.
+   *
+   * @param position The new position, within the current capacity.
+   */
+  public void setPosition(int position) {
+    if (position < 0 || position > buffer.length) {
+      throw new IndexOutOfBoundsException("position: " + position);
+    }
+    this.position = position;
+  }
+
+  /**
+   * Writes an int at the given position without moving the current position, for example to fill
+   * in a length field that was skipped before.
+   *
+   * @param position The position to write the int to.
+   * @param value The int value.
+   */
+  public void writeIntUnsafe(int position, int value) {
+    if (position < 0 || position > this.position - 4) {
+      throw new IndexOutOfBoundsException("position: " + position);
+    }
+    putInt(position, value);
+  }
+
+  @Override
+  public String toString() {
+    return "[pos=" + position + " cap=" + buffer.length + "]";
+  }
+
+  // ------------------------------------------------------------------------
+  //  Data Output
+  // ------------------------------------------------------------------------
+
+  @Override
+  public void write(int b) throws IOException {
+    if (position >= buffer.length) {
+      resize(1);
+    }
+    buffer[position++] = (byte) (b & 0xff);
+  }
+
+  @Override
+  public void write(byte[] b) throws IOException {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (len < 0 || off > b.length - len) {
+      throw new ArrayIndexOutOfBoundsException();
+    }
+    if (position > buffer.length - len) {
+      resize(len);
+    }
+    System.arraycopy(b, off, buffer, position, len);
+    position += len;
+  }
+
+  @Override
+  public void writeBoolean(boolean v) throws IOException {
+    write(v ? 1 : 0);
+  }
+
+  @Override
+  public void writeByte(int v) throws IOException {
+    write(v);
+  }
+
+  @Override
+  public void writeShort(int v) throws IOException {
+    if (position >= buffer.length - 1) {
+      resize(2);
+    }
+    buffer[position++] = (byte) ((v >>> 8) & 0xff);
+    buffer[position++] = (byte) (v & 0xff);
+  }
+
+  @Override
+  public void writeChar(int v) throws IOException {
+    writeShort(v);
+  }
+
+  @Override
+  public void writeInt(int v) throws IOException {
+    if (position >= buffer.length - 3) {
+      resize(4);
+    }
+    putInt(position, v);
+    position += 4;
+  }
+
+  @Override
+  public void writeLong(long v) throws IOException {
+    if (position >= buffer.length - 7) {
+      resize(8);
+    }
+    putInt(position, (int) (v >>> 32));
+    putInt(position + 4, (int) v);
+    position += 8;
+  }
+
+  @Override
+  public void writeFloat(float v) throws IOException {
+    writeInt(Float.floatToRawIntBits(v));
+  }
+
+  @Override
+  public void writeDouble(double v) throws IOException {
+    writeLong(Double.doubleToRawLongBits(v));
+  }
+
+  @Override
+  public void writeBytes(String s) throws IOException {
+    final int sLen = s.length();
+    if (position >= buffer.length - sLen) {
+      resize(sLen);
+    }
+    for (int i = 0; i < sLen; i++) {
+      buffer[position++] = (byte) s.charAt(i);
+    }
+  }
+
+  @Override
+  public void writeChars(String s) throws IOException {
+    final int sLen = s.length();
+    if (position >= buffer.length - 2 * sLen) {
+      resize(2 * sLen);
+    }
+    for (int i = 0; i < sLen; i++) {
+      writeChar(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeUTF(String str) throws IOException {
+    int strlen = str.length();
+    int utflen = 0;
+    int c;
+
+    /* use charAt instead of copying String to char array */
+    for (int i = 0; i < strlen; i++) {
+      c = str.charAt(i);
+      if ((c >= 0x0001) && (c <= 0x007F)) {
+        utflen++;
+      } else if (c > 0x07FF) {
+        utflen += 3;
+      } else {
+        utflen += 2;
+      }
+    }
+
+    if (utflen > 65535) {
+      throw new UTFDataFormatException("Encoded string is too long: " + utflen);
+    } else if (position > buffer.length - utflen - 2) {
+      resize(utflen + 2);
+    }
+
+    final byte[] bytearr = this.buffer;
+    int count = this.position;
+
+    bytearr[count++] = (byte) ((utflen >>> 8) & 0xFF);
+    bytearr[count++] = (byte) (utflen & 0xFF);
+
+    int i;
+    for (i = 0; i < strlen; i++) {
+      c = str.charAt(i);
+      if (!((c >= 0x0001) && (c <= 0x007F))) {
+        break;
+      }
+      bytearr[count++] = (byte) c;
+    }
+
+    for (; i < strlen; i++) {
+      c = str.charAt(i);
+      if ((c >= 0x0001) && (c <= 0x007F)) {
+        bytearr[count++] = (byte) c;
+
+      } else if (c > 0x07FF) {
+        bytearr[count++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+        bytearr[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytearr[count++] = (byte) (0x80 | (c & 0x3F));
+      } else {
+        bytearr[count++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+        bytearr[count++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+
+    this.position = count;
+  }
+
+  @Override
+  public void skipBytesToWrite(int numBytes) throws IOException {
+    if (buffer.length - this.position < numBytes) {
+      throw new EOFException("Could not skip " + numBytes + " bytes.");
+    }
+    this.position += numBytes;
+  }
+
+  @Override
+  public void write(DataInputView source, int numBytes) throws IOException {
+    if (buffer.length - this.position < numBytes) {
+      resize(numBytes);
+    }
+    source.readFully(this.buffer, this.position, numBytes);
+    this.position += numBytes;
+  }
+
+  // ------------------------------------------------------------------------
+
+  private void putInt(int pos, int v) {
+    buffer[pos] = (byte) (v >>> 24);
+    buffer[pos + 1] = (byte) (v >>> 16);
+    buffer[pos + 2] = (byte) (v >>> 8);
+    buffer[pos + 3] = (byte) v;
+  }
+
+  private void resize(int minCapacityAdd) throws IOException {
+    int newLen = Math.max(buffer.length * 2, buffer.length + minCapacityAdd);
+    if (newLen < 0) {
+      // overflow of the doubled length, try the minimal length
+      newLen = buffer.length + minCapacityAdd;
+      if (newLen < 0) {
+        throw new IOException("Serialization failed because the record length would exceed 2GB.");
+      }
+    }
+    this.buffer = Arrays.copyOf(this.buffer, newLen);
+  }
+}
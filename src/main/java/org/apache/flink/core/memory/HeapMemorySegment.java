@@ -26,6 +26,17 @@ public class HeapMemorySegment extends MemorySegment {
     this.memory = null;
   }
 
+  @Override
+  MemorySegment duplicateHandle() {
+    return new HeapMemorySegment(heapMemory, getOwner());
+  }
+
+  @Override
+  void retire() {
+    super.retire();
+    this.memory = null;
+  }
+
   @Override
   public ByteBuffer wrap(int offset, int length) {
     try {
@@ -106,11 +117,12 @@ public class HeapMemorySegment extends MemorySegment {
     }
 
     public HeapMemorySegment allocateUnpooledSegment(int size, Object owner) {
-      return new HeapMemorySegment(new byte[size], owner);
+      return MemoryLeakDetector.track(
+          MemoryMetrics.unpooledAllocated(new HeapMemorySegment(new byte[size], owner)));
     }
 
     public HeapMemorySegment wrapPooledHeapMemory(byte[] memory, Object owner) {
-      return new HeapMemorySegment(memory, owner);
+      return MemoryLeakDetector.track(new HeapMemorySegment(memory, owner));
     }
 
     HeapMemorySegmentFactory() {}
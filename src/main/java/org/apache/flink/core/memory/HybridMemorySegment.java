@@ -5,9 +5,10 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.ReadOnlyBufferException;
-import javax.swing.plaf.basic.BasicButtonUI;
 
 /**
  * created by pengmingguo on 1/22/19
@@ -16,38 +17,66 @@ public class HybridMemorySegment extends MemorySegment {
 
   private final ByteBuffer offHeapBuffer;
 
+  /**
+   * Action to release the off-heap memory when the segment is freed, or null, if the memory is
+   * released together with the {@link #offHeapBuffer} by the garbage collector.
+   */
+  private final Runnable cleaner;
+
   HybridMemorySegment(ByteBuffer buffer) {
     this(buffer, null);
   }
 
   HybridMemorySegment(ByteBuffer buffer, Object owner) {
-    super(checkBufferAndGetAddress(buffer), buffer.capacity(), owner);
+    this(buffer, owner, null);
+  }
+
+  HybridMemorySegment(ByteBuffer buffer, Object owner, Runnable cleaner) {
+    super(checkBufferAndGetAddress(buffer), buffer.capacity(), owner, buffer.isReadOnly());
     this.offHeapBuffer = buffer;
+    this.cleaner = cleaner;
   }
 
   HybridMemorySegment(byte[] buffer) {
     this(buffer, null);
   }
 
-  HybridMemorySegment(byte[] buffer, Object owner){
+  HybridMemorySegment(byte[] buffer, Object owner) {
     super(buffer, owner);
     this.offHeapBuffer = null;
-}
+    this.cleaner = null;
+  }
 
-public ByteBuffer getOffHeapBuffer() {
+  public ByteBuffer getOffHeapBuffer() {
     if (offHeapBuffer != null) {
       return offHeapBuffer;
     } else {
       throw new IllegalStateException("memeory does not represent off heap memory");
     }
-}
+  }
+
+  @Override
+  public void free() {
+    boolean wasFreed = isFreed();
+    super.free();
+    if (cleaner != null && !wasFreed) {
+      cleaner.run();
+    }
+  }
+
+  @Override
+  MemorySegment duplicateHandle() {
+    return offHeapBuffer != null
+        ? new HybridMemorySegment(offHeapBuffer, getOwner(), cleaner)
+        : new HybridMemorySegment(heapMemory, getOwner());
+  }
 
   @Override
   public ByteBuffer wrap(int offset, int length) {
     if (address <= addressLimit) {
       if (heapMemory != null) {
-        return ByteBuffer.wrap(heapMemory,offset,length);
-      }else {
+        return ByteBuffer.wrap(heapMemory, offset, length);
+      } else {
         try {
           ByteBuffer wrapper = offHeapBuffer.duplicate();
           wrapper.limit(offset + length);
@@ -64,14 +93,12 @@ public ByteBuffer getOffHeapBuffer() {
 
   @Override
   public byte get(int index) {
-    long pos = address + index;
+    final long pos = address + index;
     if (index >= 0 && pos < addressLimit) {
-      return UNSAFE.getByte(heapMemory,pos);
-    }
-    else if (address > addressLimit) {
+      return UNSAFE.getByte(heapMemory, pos);
+    } else if (address > addressLimit) {
       throw new IllegalStateException("segment has been freed");
-    }
-    else {
+    } else {
       // index is in fact invalid
       throw new IndexOutOfBoundsException();
     }
@@ -79,98 +106,239 @@ public ByteBuffer getOffHeapBuffer() {
 
   @Override
   public void put(int index, byte b) {
-
+    final long pos = address + index;
+    if (index >= 0 && pos < writableAddressLimit) {
+      UNSAFE.putByte(heapMemory, pos, b);
+    } else if (address > addressLimit) {
+      throw new IllegalStateException("segment has been freed");
+    } else if (isReadOnly()) {
+      throw new ReadOnlyBufferException();
+    } else {
+      // index is in fact invalid
+      throw new IndexOutOfBoundsException();
+    }
   }
 
   @Override
   public void get(int index, byte[] dst) {
-
+    get(index, dst, 0, dst.length);
   }
 
   @Override
   public void put(int index, byte[] src) {
-
+    put(index, src, 0, src.length);
   }
 
   @Override
   public void get(int index, byte[] dst, int offset, int length) {
+    // check the byte array offset and length and the status
+    if ((offset | length | (offset + length) | (dst.length - (offset + length))) < 0) {
+      throw new IndexOutOfBoundsException();
+    }
 
+    final long pos = address + index;
+    if (index >= 0 && pos <= addressLimit - length) {
+      final long arrayAddress = BYTE_ARRAY_BASE_OFFSET + offset;
+      UNSAFE.copyMemory(heapMemory, pos, dst, arrayAddress, length);
+    } else if (address > addressLimit) {
+      throw new IllegalStateException("segment has been freed");
+    } else {
+      // index is in fact invalid
+      throw new IndexOutOfBoundsException(
+          String.format(
+              "pos: %d, length: %d, index: %d, offset: %d", pos, length, index, offset));
+    }
   }
 
   @Override
   public void put(int index, byte[] src, int offset, int length) {
+    // check the byte array offset and length
+    if ((offset | length | (offset + length) | (src.length - (offset + length))) < 0) {
+      throw new IndexOutOfBoundsException();
+    }
 
+    final long pos = address + index;
+    if (index >= 0 && pos <= writableAddressLimit - length) {
+      final long arrayAddress = BYTE_ARRAY_BASE_OFFSET + offset;
+      UNSAFE.copyMemory(src, arrayAddress, heapMemory, pos, length);
+    } else if (address > addressLimit) {
+      throw new IllegalStateException("segment has been freed");
+    } else if (isReadOnly()) {
+      throw new ReadOnlyBufferException();
+    } else {
+      // index is in fact invalid
+      throw new IndexOutOfBoundsException(
+          String.format(
+              "pos: %d, length: %d, index: %d, offset: %d", pos, length, index, offset));
+    }
   }
 
   @Override
   public boolean getBoolean(int index) {
-    return false;
+    return get(index) != 0;
   }
 
   @Override
   public void putBoolean(int index, boolean value) {
-
+    put(index, (byte) (value ? 1 : 0));
   }
 
   @Override
   public void get(DataOutput out, int offset, int length) throws IOException {
+    if (address <= addressLimit) {
+      if (heapMemory != null) {
+        out.write(heapMemory, offset, length);
+      } else {
+        while (length >= 8) {
+          out.writeLong(getLongBigEndian(offset));
+          offset += 8;
+          length -= 8;
+        }
 
+        while (length > 0) {
+          out.writeByte(get(offset));
+          offset++;
+          length--;
+        }
+      }
+    } else {
+      throw new IllegalStateException("segment has been freed");
+    }
   }
 
   @Override
   public void put(DataInput in, int offset, int length) throws IOException {
-
+    if (address <= addressLimit) {
+      if (heapMemory != null) {
+        in.readFully(heapMemory, offset, length);
+      } else {
+        while (length >= 8) {
+          putLongBigEndian(offset, in.readLong());
+          offset += 8;
+          length -= 8;
+        }
+        while (length > 0) {
+          put(offset, in.readByte());
+          offset++;
+          length--;
+        }
+      }
+    } else {
+      throw new IllegalStateException("segment has been freed");
+    }
   }
 
   @Override
   public void get(int offset, ByteBuffer target, int numBytes) {
-    if (( offset | numBytes | (offset + numBytes)) < 0) {
+    // check the byte array offset and length
+    if ((offset | numBytes | (offset + numBytes)) < 0) {
       throw new IndexOutOfBoundsException();
     }
-    int targetOffset = target.position();
-    int remaining = target.remaining();
+
+    final int targetOffset = target.position();
+    final int remaining = target.remaining();
+
     if (remaining < numBytes) {
       throw new BufferOverflowException();
     }
+
     if (target.isDirect()) {
       if (target.isReadOnly()) {
         throw new ReadOnlyBufferException();
       }
-    }
-    long targetPointer = getAddress(target) + targetOffset;
-    long sourcePointer = address + offset;
 
-    if (sourcePointer <= addressLimit - numBytes) {
-      UNSAFE.copyMemory(heapMemory, sourcePointer, null, targetPointer, numBytes);
+      // copy to the target memory directly
+      final long targetPointer = getAddress(target) + targetOffset;
+      final long sourcePointer = address + offset;
+
+      if (sourcePointer <= addressLimit - numBytes) {
+        UNSAFE.copyMemory(heapMemory, sourcePointer, null, targetPointer, numBytes);
+        target.position(targetOffset + numBytes);
+      } else if (address > addressLimit) {
+        throw new IllegalStateException("segment has been freed");
+      } else {
+        throw new IndexOutOfBoundsException();
+      }
+    } else if (target.hasArray()) {
+      // move directly into the byte array
+      get(offset, target.array(), targetOffset + target.arrayOffset(), numBytes);
+
+      // this must be after the get() call to ensure that the byte buffer is not
+      // modified in case the call fails
       target.position(targetOffset + numBytes);
+    } else {
+      // neither heap buffer nor direct buffer
+      while (numBytes > 0) {
+        target.put(get(offset++));
+        numBytes--;
+      }
     }
   }
 
   @Override
   public void put(int offset, ByteBuffer source, int numBytes) {
+    // check the byte array offset and length
+    if ((offset | numBytes | (offset + numBytes)) < 0) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    final int sourceOffset = source.position();
+    final int remaining = source.remaining();
+
+    if (remaining < numBytes) {
+      throw new BufferUnderflowException();
+    }
+
+    if (source.isDirect()) {
+      // copy to the target memory directly
+      final long sourcePointer = getAddress(source) + sourceOffset;
+      final long targetPointer = address + offset;
+
+      if (targetPointer <= writableAddressLimit - numBytes) {
+        UNSAFE.copyMemory(null, sourcePointer, heapMemory, targetPointer, numBytes);
+        source.position(sourceOffset + numBytes);
+      } else if (address > addressLimit) {
+        throw new IllegalStateException("segment has been freed");
+      } else if (isReadOnly()) {
+        throw new ReadOnlyBufferException();
+      } else {
+        throw new IndexOutOfBoundsException();
+      }
+    } else if (source.hasArray()) {
+      // move directly into the byte array
+      put(offset, source.array(), sourceOffset + source.arrayOffset(), numBytes);
 
+      // this must be after the put() call to ensure that the byte buffer is not
+      // modified in case the call fails
+      source.position(sourceOffset + numBytes);
+    } else {
+      // neither heap buffer nor direct buffer
+      while (numBytes > 0) {
+        put(offset++, source.get());
+        numBytes--;
+      }
+    }
   }
 
   private static final Field ADDRESS_FIELD;
 
   static {
     try {
-      ADDRESS_FIELD  =  java.nio.Buffer.class.getDeclaredField("address");
+      ADDRESS_FIELD = java.nio.Buffer.class.getDeclaredField("address");
       ADDRESS_FIELD.setAccessible(true);
-    }catch (Throwable throwable){
+    } catch (Throwable throwable) {
       throw new RuntimeException("cannot initialize hybridmemorysegment ");
     }
   }
 
-
-  private static  long getAddress(ByteBuffer buffer) {
+  private static long getAddress(ByteBuffer buffer) {
     if (buffer == null) {
       throw new NullPointerException("buffer is null");
     }
     try {
       return (long) ADDRESS_FIELD.get(buffer);
     } catch (IllegalAccessException t) {
-      throw new RuntimeException("could not access direct byte buffer address",t);
+      throw new RuntimeException("could not access direct byte buffer address", t);
     }
   }
 
@@ -184,4 +352,119 @@ public ByteBuffer getOffHeapBuffer() {
 
     return getAddress(buffer);
   }
+
+  // -------------------------------------------------------------------------
+  //  Factoring
+  // -------------------------------------------------------------------------
+
+  /**
+   * Base factory for hybrid memory segments, backed either by a heap byte array, by a direct byte
+   * buffer, or by memory allocated through {@code Unsafe}.
+   */
+  public static final class HybridMemorySegmentFactory {
+
+    /**
+     * Creates a new memory segment that targets the given heap memory region.
+     *
+     * @param memory The heap memory region.
+     * @return A new memory segment that targets the given heap memory region.
+     */
+    public HybridMemorySegment wrap(byte[] memory) {
+      return new HybridMemorySegment(memory);
+    }
+
+    /**
+     * Allocates some unpooled heap memory and creates a new memory segment that represents that
+     * memory.
+     *
+     * @param size The size of the memory segment to allocate.
+     * @param owner The owner to associate with the memory segment.
+     * @return A new memory segment, backed by unpooled heap memory.
+     */
+    public HybridMemorySegment allocateUnpooledSegment(int size, Object owner) {
+      return MemoryLeakDetector.track(
+          MemoryMetrics.unpooledAllocated(new HybridMemorySegment(new byte[size], owner)));
+    }
+
+    /**
+     * Allocates some unpooled off-heap memory in a direct byte buffer and creates a new memory
+     * segment that represents that memory. The memory is released by the garbage collector, once
+     * the segment is no longer referenced.
+     *
+     * @param size The size of the memory segment to allocate.
+     * @param owner The owner to associate with the memory segment.
+     * @return A new memory segment, backed by unpooled off-heap memory.
+     */
+    public HybridMemorySegment allocateUnpooledOffHeapMemory(int size, Object owner) {
+      ByteBuffer memory = ByteBuffer.allocateDirect(size);
+      return MemoryLeakDetector.track(
+          MemoryMetrics.unpooledAllocated(new HybridMemorySegment(memory, owner)));
+    }
+
+    /**
+     * Allocates an off-heap unsafe memory and creates a new memory segment to represent that
+     * memory. The memory is released eagerly when the segment is {@link MemorySegment#free()
+     * freed}, or by a cleaner once the segment became unreachable, whatever happens first. Unlike
+     * direct byte buffers, such memory is not limited by {@code -XX:MaxDirectMemorySize}.
+     *
+     * @param size The size of the memory segment to allocate.
+     * @param owner The owner to associate with the memory segment.
+     * @return A new memory segment, backed by off-heap unsafe memory.
+     */
+    public HybridMemorySegment allocateOffHeapUnsafeMemory(int size, Object owner) {
+      long address = MemoryUtils.allocateUnsafe(size);
+      ByteBuffer offHeapBuffer = MemoryUtils.wrapUnsafeMemoryWithByteBuffer(address, size);
+      Runnable cleaner = MemoryUtils.createMemoryGcCleaner(offHeapBuffer, address);
+      return MemoryLeakDetector.track(
+          MemoryMetrics.unpooledAllocated(new HybridMemorySegment(offHeapBuffer, owner, cleaner)));
+    }
+
+    /**
+     * Creates a memory segment that wraps the given byte array.
+     *
+     * <p>This method is intended to be used for components which pool memory and create memory
+     * segments around long-lived memory regions.
+     *
+     * @param memory The heap memory to be represented by the memory segment.
+     * @param owner The owner to associate with the memory segment.
+     * @return A new memory segment representing the given heap memory.
+     */
+    public HybridMemorySegment wrapPooledHeapMemory(byte[] memory, Object owner) {
+      return MemoryLeakDetector.track(new HybridMemorySegment(memory, owner));
+    }
+
+    /**
+     * Creates a memory segment that wraps the off-heap memory backing the given ByteBuffer. Note
+     * that the ByteBuffer needs to be a <i>direct ByteBuffer</i>.
+     *
+     * <p>This method is intended to be used for components which pool memory and create memory
+     * segments around long-lived memory regions.
+     *
+     * @param memory The byte buffer with the off-heap memory to be represented by the memory
+     *     segment.
+     * @param owner The owner to associate with the memory segment.
+     * @return A new memory segment representing the given off-heap memory.
+     */
+    public HybridMemorySegment wrapPooledOffHeapMemory(ByteBuffer memory, Object owner) {
+      return MemoryLeakDetector.track(new HybridMemorySegment(memory, owner));
+    }
+
+    /**
+     * Creates a memory segment that represents the given memory mapped region of a file. The
+     * region is unmapped when the segment is {@link MemorySegment#free() freed}, after which no
+     * other view of the buffer may be accessed any more.
+     *
+     * @param memory The memory mapped byte buffer, with a capacity of the segment size.
+     * @param owner The owner to associate with the memory segment.
+     * @return A new memory segment representing the mapped file region.
+     */
+    public HybridMemorySegment wrapMappedMemory(MappedByteBuffer memory, Object owner) {
+      return MemoryLeakDetector.track(
+          new HybridMemorySegment(memory, owner, () -> MemoryUtils.releaseDirectBuffer(memory)));
+    }
+
+    HybridMemorySegmentFactory() {}
+  }
+
+  public static final HybridMemorySegmentFactory FACTORY = new HybridMemorySegmentFactory();
 }
@@ -0,0 +1,19 @@
+package org.apache.flink.core.memory;
+
+/** An exception to be thrown when a memory allocation operation is not successful. */
+public class MemoryAllocationException extends Exception {
+
+  private static final long serialVersionUID = -403983866457947012L;
+
+  public MemoryAllocationException() {
+    super();
+  }
+
+  public MemoryAllocationException(String message) {
+    super(message);
+  }
+
+  public MemoryAllocationException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
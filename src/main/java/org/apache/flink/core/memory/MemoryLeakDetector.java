@@ -0,0 +1,242 @@
+package org.apache.flink.core.memory;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An optional debug aid that finds memory segments which were never {@link MemorySegment#free()
+ * freed}.
+ *
+ * <p>When leak detection is enabled, the segment factories record the stack trace of every
+ * segment they allocate, together with its size and owner. A segment that becomes unreachable
+ * without having been freed is reported with that stack trace, so that the code which lost the
+ * segment can be found. The detector notices collected segments while it tracks new ones, and
+ * whenever {@link #reportLeaks()} is called; it needs no thread of its own.
+ *
+ * <p>Segments of a {@link MemoryManager} stay reachable through the memory manager until they are
+ * released, so they are never collected. For them, the memory manager reports every segment that
+ * is still held by its owner when the memory manager is shut down.
+ *
+ * <p>Leak detection is enabled through the system property {@value #ENABLED_PROPERTY} or through
+ * {@link #setEnabled(boolean)}. Only segments allocated while it is enabled are tracked. When it is
+ * disabled, allocating a segment costs one additional read of a volatile flag, and freeing one
+ * costs one additional field read.
+ */
+public final class MemoryLeakDetector {
+
+  /** The system property that enables leak detection when set to {@code true}. */
+  public static final String ENABLED_PROPERTY = "flink.memory.leak-detection";
+
+  private static final Logger LOG = Logger.getLogger(MemoryLeakDetector.class.getName());
+
+  private static final ReferenceQueue<MemorySegment> QUEUE = new ReferenceQueue<>();
+
+  /** Keeps the trackers reachable until their segment has been freed or reported. */
+  private static final Set<Tracker> TRACKERS = ConcurrentHashMap.newKeySet();
+
+  private static final AtomicLong NUM_LEAKS = new AtomicLong();
+
+  private static final LeakListener LOGGING_LISTENER =
+      leak -> LOG.log(Level.WARNING, "LEAK: " + leak.getDescription(), leak.getAllocationTrace());
+
+  private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+  private static volatile LeakListener listener = LOGGING_LISTENER;
+
+  // ------------------------------------------------------------------------
+
+  /**
+   * Enables or disables leak detection for segments allocated from now on.
+   *
+   * @param enable True, to enable leak detection, false to disable it.
+   */
+  public static void setEnabled(boolean enable) {
+    enabled = enable;
+  }
+
+  /**
+   * Checks whether leak detection is enabled.
+   *
+   * @return True, if newly allocated segments are tracked, false otherwise.
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Sets the listener that is notified of leaks. By default, leaks are logged as warnings through
+   * {@link java.util.logging}.
+   *
+   * @param leakListener The listener to notify, or null, to restore the default listener.
+   */
+  public static void setListener(LeakListener leakListener) {
+    listener = leakListener == null ? LOGGING_LISTENER : leakListener;
+  }
+
+  /**
+   * Reports all tracked segments that have been collected without having been freed.
+   *
+   * @return The number of leaks that were reported.
+   */
+  public static int reportLeaks() {
+    int numReported = 0;
+    Tracker tracker;
+    while ((tracker = (Tracker) QUEUE.poll()) != null) {
+      if (tracker.close()) {
+        report(new Leak(tracker.description + " was collected without being freed.", tracker));
+        numReported++;
+      }
+    }
+    return numReported;
+  }
+
+  /**
+   * Gets the number of leaks reported since the JVM started.
+   *
+   * @return The number of reported leaks.
+   */
+  public static long getNumberOfLeaks() {
+    return NUM_LEAKS.get();
+  }
+
+  /**
+   * Gets the number of tracked segments that have neither been freed nor reported as leaks.
+   *
+   * @return The number of tracked live segments.
+   */
+  public static int getNumberOfTrackedSegments() {
+    return TRACKERS.size();
+  }
+
+  // ------------------------------------------------------------------------
+  //  Hooks for the segment factories and the memory manager
+  // ------------------------------------------------------------------------
+
+  /** Starts tracking the given newly allocated segment, if leak detection is enabled. */
+  static <T extends MemorySegment> T track(T segment) {
+    if (enabled) {
+      reportLeaks();
+      segment.leakTracker = new Tracker(segment);
+    }
+    return segment;
+  }
+
+  /**
+   * Reports the given segment as leaked if it is tracked and has not been freed. The memory
+   * manager calls this for the segments that are still held by their owners when it shuts down.
+   */
+  static void reportUnreleased(MemorySegment segment, String context) {
+    final Tracker tracker = segment.leakTracker;
+    if (tracker != null && !segment.isFreed() && tracker.close()) {
+      segment.leakTracker = null;
+      report(new Leak(tracker.description + " was not released " + context + '.', tracker));
+    }
+  }
+
+  private static void report(Leak leak) {
+    NUM_LEAKS.incrementAndGet();
+    try {
+      listener.onLeak(leak);
+    } catch (Throwable t) {
+      LOG.log(Level.WARNING, "The leak listener failed.", t);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+
+  /** A listener that is notified of leaked segments. */
+  @FunctionalInterface
+  public interface LeakListener {
+
+    /**
+     * Called for every leaked segment, by the thread that detected the leak.
+     *
+     * @param leak The description of the leak.
+     */
+    void onLeak(Leak leak);
+  }
+
+  /** Describes a leaked segment. */
+  public static final class Leak {
+
+    private final String description;
+
+    private final Throwable allocationTrace;
+
+    Leak(String description, Tracker tracker) {
+      this.description = description;
+      this.allocationTrace = tracker.allocationTrace;
+    }
+
+    /**
+     * Gets a description of the leaked segment, with its type, size and owner.
+     *
+     * @return The description of the leak.
+     */
+    public String getDescription() {
+      return description;
+    }
+
+    /**
+     * Gets a throwable whose stack trace shows where the segment was allocated.
+     *
+     * @return The allocation stack trace.
+     */
+    public Throwable getAllocationTrace() {
+      return allocationTrace;
+    }
+
+    @Override
+    public String toString() {
+      return description;
+    }
+  }
+
+  /** The stack trace of an allocation. */
+  private static final class AllocationTrace extends Throwable {
+
+    private static final long serialVersionUID = 1L;
+
+    AllocationTrace(String message) {
+      super(message);
+    }
+  }
+
+  /** Tracks one segment from its allocation until it is freed or reported. */
+  static final class Tracker extends PhantomReference<MemorySegment> {
+
+    private final String description;
+
+    private final Throwable allocationTrace;
+
+    Tracker(MemorySegment segment) {
+      super(segment, QUEUE);
+      this.description =
+          String.format(
+              "%s of %d bytes of %s memory, owned by %s",
+              segment.getClass().getSimpleName(),
+              segment.size(),
+              segment.isOffHeap() ? "off-heap" : "heap",
+              segment.getOwner());
+      this.allocationTrace = new AllocationTrace("Allocation of the " + description);
+      TRACKERS.add(this);
+    }
+
+    /**
+     * Stops tracking the segment.
+     *
+     * @return True, if the segment was tracked until now, false if it was already closed.
+     */
+    boolean close() {
+      clear();
+      return TRACKERS.remove(this);
+    }
+  }
+
+  private MemoryLeakDetector() {}
+}
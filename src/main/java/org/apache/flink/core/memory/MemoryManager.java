@@ -0,0 +1,555 @@
+package org.apache.flink.core.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.flink.metrics.MetricRegistry;
+
+/**
+ * The memory manager governs a fixed budget of memory that is split into equally sized pages. The
+ * pages are allocated once, when the memory manager is created, and are afterwards handed out to
+ * and reclaimed from their owners, so that operators working on memory segments do not produce any
+ * garbage for the collector.
+ *
+ * <p>Every page that is handed out is wrapped into a fresh {@link MemorySegment} that carries the
+ * requesting owner. The memory manager tracks the segments per owner, which allows releasing
+ * everything an owner holds through {@link #releaseAll(Object)}, for example when a task fails.
+ *
+ * <p>The pool of free pages is a lock-free queue and the number of free pages is reserved with a
+ * compare-and-swap before pages are taken from it, so that allocations either succeed completely
+ * or fail without taking any page. The per-owner bookkeeping is striped by owner.
+ *
+ * <p>The memory manager can report the memory it hands out to a {@link MetricRegistry}, see {@link
+ * #registerMetrics(MetricRegistry, String)}. When {@link MemoryLeakDetector leak detection} is
+ * enabled, shutting the memory manager down reports all segments that their owners did not release,
+ * together with the stack traces of their allocation.
+ */
+public class MemoryManager {
+
+  /** The default memory page size. Currently set to 32 KiBytes. */
+  public static final int DEFAULT_PAGE_SIZE = 32 * 1024;
+
+  /** The minimal memory page size. Currently set to 4 KiBytes. */
+  public static final int MIN_PAGE_SIZE = 4 * 1024;
+
+  /** The pool of memory that is not handed out at the moment. */
+  private final MemoryPool memoryPool;
+
+  /** The segments that are handed out, by owner. */
+  private final ConcurrentHashMap<Object, Set<MemorySegment>> allocatedSegments;
+
+  /** The number of pages that are not reserved by any owner. */
+  private final AtomicInteger numFreePages;
+
+  /** The type of memory governed by this memory manager. */
+  private final MemoryType memoryType;
+
+  /** The size of the memory pages. */
+  private final int pageSize;
+
+  /** The total number of pages governed by this memory manager. */
+  private final int totalNumPages;
+
+  /** The total size of the memory governed by this memory manager. */
+  private final long memorySize;
+
+  /** Flag marking whether the memory manager has been shut down. */
+  private volatile boolean isShutDown;
+
+  /** The metrics of the memory manager, or null, if no metrics have been registered. */
+  private volatile MemoryMetrics metrics;
+
+  /**
+   * Creates a memory manager with the given capacity, using the default page size.
+   *
+   * @param memorySize The total size of the memory to be managed by this memory manager.
+   * @param memoryType The type of memory (heap / off-heap) that the memory manager should allocate.
+   */
+  public MemoryManager(long memorySize, MemoryType memoryType) {
+    this(memorySize, DEFAULT_PAGE_SIZE, memoryType);
+  }
+
+  /**
+   * Creates a memory manager with the given capacity and given page size. All pages are allocated
+   * eagerly.
+   *
+   * @param memorySize The total size of the memory to be managed by this memory manager.
+   * @param pageSize The size of the pages handed out by the memory manager.
+   * @param memoryType The type of memory (heap / off-heap) that the memory manager should allocate.
+   */
+  public MemoryManager(long memorySize, int pageSize, MemoryType memoryType) {
+    if (memoryType == null) {
+      throw new NullPointerException("memoryType");
+    }
+    if (memorySize <= 0) {
+      throw new IllegalArgumentException("Size of total memory must be positive.");
+    }
+    if (pageSize < MIN_PAGE_SIZE) {
+      throw new IllegalArgumentException(
+          "The page size must be at least " + MIN_PAGE_SIZE + " bytes.");
+    }
+    if ((pageSize & (pageSize - 1)) != 0) {
+      throw new IllegalArgumentException("The given page size is not a power of two.");
+    }
+
+    final long numPagesLong = memorySize / pageSize;
+    if (numPagesLong > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          "The given number of memory bytes ("
+              + memorySize
+              + ") corresponds to more than MAX_INT pages.");
+    }
+    if (numPagesLong < 1) {
+      throw new IllegalArgumentException(
+          "The given amount of memory amounted to less than one page.");
+    }
+
+    this.memoryType = memoryType;
+    this.memorySize = memorySize;
+    this.pageSize = pageSize;
+    this.totalNumPages = (int) numPagesLong;
+    this.allocatedSegments = new ConcurrentHashMap<>();
+    this.numFreePages = new AtomicInteger(totalNumPages);
+
+    switch (memoryType) {
+      case HEAP:
+        this.memoryPool = new HeapMemoryPool(totalNumPages, pageSize);
+        break;
+      case OFF_HEAP:
+        this.memoryPool = new OffHeapMemoryPool(totalNumPages, pageSize);
+        break;
+      default:
+        throw new IllegalArgumentException("unrecognized memory type: " + memoryType);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Shutdown
+  // ------------------------------------------------------------------------
+
+  /**
+   * Shuts the memory manager down, trying to release all the memory it managed. Segments that are
+   * still held by their owners are freed, so that any further access to them fails.
+   */
+  public void shutdown() {
+    if (isShutDown) {
+      return;
+    }
+    isShutDown = true;
+
+    final MemoryMetrics metrics = this.metrics;
+    for (Object owner : allocatedSegments.keySet()) {
+      final Set<MemorySegment> segments = allocatedSegments.remove(owner);
+      if (segments == null) {
+        continue;
+      }
+      for (MemorySegment seg : segments) {
+        MemoryLeakDetector.reportUnreleased(seg, "before the memory manager was shut down");
+        seg.free();
+      }
+      if (metrics != null) {
+        metrics.freed(null, segments.size());
+        metrics.ownerRemoved(owner);
+      }
+    }
+    memoryPool.clear();
+    numFreePages.set(0);
+  }
+
+  /**
+   * Checks whether the memory manager has been shut down.
+   *
+   * @return True, if the memory manager is shut down, false otherwise.
+   */
+  public boolean isShutdown() {
+    return isShutDown;
+  }
+
+  /**
+   * Checks if the memory manager has all its memory available.
+   *
+   * @return True, if the memory manager is empty and valid, false if it is not empty or corrupted.
+   */
+  public boolean verifyEmpty() {
+    return numFreePages.get() == totalNumPages;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Memory allocation and release
+  // ------------------------------------------------------------------------
+
+  /**
+   * Allocates a set of memory segments from this memory manager.
+   *
+   * @param owner The owner to associate with the memory segment, for the fallback release.
+   * @param numPages The number of pages to allocate.
+   * @return A list with the memory segments.
+   * @throws MemoryAllocationException Thrown, if this memory manager does not have the requested
+   *     amount of memory pages any more.
+   */
+  public List<MemorySegment> allocatePages(Object owner, int numPages)
+      throws MemoryAllocationException {
+    final ArrayList<MemorySegment> segments = new ArrayList<>(numPages);
+    allocatePages(owner, segments, numPages);
+    return segments;
+  }
+
+  /**
+   * Allocates a set of memory segments from this memory manager. Either all requested pages are
+   * allocated, or none at all.
+   *
+   * @param owner The owner to associate with the memory segment, for the fallback release.
+   * @param target The list into which to put the allocated memory pages.
+   * @param numPages The number of pages to allocate.
+   * @throws MemoryAllocationException Thrown, if this memory manager does not have the requested
+   *     amount of memory pages any more.
+   */
+  public void allocatePages(Object owner, Collection<MemorySegment> target, int numPages)
+      throws MemoryAllocationException {
+    if (owner == null) {
+      throw new IllegalArgumentException("The memory owner must not be null.");
+    }
+    if (target == null) {
+      throw new NullPointerException("target");
+    }
+    if (numPages < 0) {
+      throw new IllegalArgumentException("The number of pages must not be negative.");
+    }
+    if (isShutDown) {
+      throw new IllegalStateException("Memory manager has been shut down.");
+    }
+
+    // reserve the pages first, so that concurrent requests cannot run the pool dry
+    while (true) {
+      final int available = numFreePages.get();
+      if (available < numPages) {
+        throw new MemoryAllocationException(
+            "Could not allocate "
+                + numPages
+                + " pages. Only "
+                + available
+                + " pages are remaining.");
+      }
+      if (numFreePages.compareAndSet(available, available - numPages)) {
+        break;
+      }
+    }
+
+    // register the segments under the owner atomically with respect to 'releaseAll()'
+    final MemoryMetrics metrics = this.metrics;
+    allocatedSegments.compute(
+        owner,
+        (o, segments) -> {
+          if (segments == null) {
+            segments = ConcurrentHashMap.newKeySet(numPages);
+            if (metrics != null) {
+              metrics.ownerAdded(o, segments);
+            }
+          }
+          for (int i = 0; i < numPages; i++) {
+            MemorySegment segment = memoryPool.requestSegmentFromPool(o);
+            target.add(segment);
+            segments.add(segment);
+          }
+          if (metrics != null) {
+            metrics.allocated(o, numPages);
+          }
+          return segments;
+        });
+  }
+
+  /**
+   * Tries to release the memory for the specified segment. If the segment has already been
+   * released or is null, the request is simply ignored.
+   *
+   * @param segment The segment to be released.
+   */
+  public void release(MemorySegment segment) {
+    if (segment == null || segment.getOwner() == null) {
+      return;
+    }
+    if (isShutDown) {
+      segment.free();
+      return;
+    }
+
+    final Object owner = segment.getOwner();
+    final Set<MemorySegment> segments = allocatedSegments.get(owner);
+    if (segments != null && segments.remove(segment)) {
+      memoryPool.returnSegmentToPool(segment);
+      numFreePages.incrementAndGet();
+
+      final MemoryMetrics metrics = this.metrics;
+      if (metrics != null) {
+        metrics.freed(owner, 1);
+      }
+
+      // drop the owner entry once it holds nothing anymore
+      allocatedSegments.computeIfPresent(
+          owner,
+          (o, s) -> {
+            if (!s.isEmpty()) {
+              return s;
+            }
+            if (metrics != null) {
+              metrics.ownerRemoved(o);
+            }
+            return null;
+          });
+    }
+  }
+
+  /**
+   * Tries to release many memory segments together.
+   *
+   * @param segments The segments to be released.
+   */
+  public void release(Collection<MemorySegment> segments) {
+    if (segments == null) {
+      return;
+    }
+    for (MemorySegment segment : segments) {
+      release(segment);
+    }
+    segments.clear();
+  }
+
+  /**
+   * Releases all memory segments for the given owner.
+   *
+   * @param owner The owner memory segments are to be released.
+   */
+  public void releaseAll(Object owner) {
+    if (owner == null) {
+      return;
+    }
+
+    final Set<MemorySegment> segments = allocatedSegments.remove(owner);
+    if (segments == null) {
+      return;
+    }
+    final MemoryMetrics metrics = this.metrics;
+    if (metrics != null) {
+      metrics.ownerRemoved(owner);
+    }
+    if (segments.isEmpty()) {
+      return;
+    }
+    if (isShutDown) {
+      for (MemorySegment segment : segments) {
+        segment.free();
+      }
+      if (metrics != null) {
+        metrics.freed(null, segments.size());
+      }
+      return;
+    }
+
+    // removing each segment individually guards against a concurrent 'release(segment)'
+    int numReleased = 0;
+    for (MemorySegment segment : segments) {
+      if (segments.remove(segment)) {
+        memoryPool.returnSegmentToPool(segment);
+        numReleased++;
+      }
+    }
+    numFreePages.addAndGet(numReleased);
+    if (metrics != null) {
+      metrics.freed(null, numReleased);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Metrics
+  // ------------------------------------------------------------------------
+
+  /**
+   * Registers the metrics of this memory manager at the given registry. The metrics are named
+   * {@code <scope>.<memory type>.<metric>}:
+   *
+   * <ul>
+   *   <li>{@code allocatedBytes}: a counter of all bytes handed out to owners,
+   *   <li>{@code freedBytes}: a counter of all bytes released by owners,
+   *   <li>{@code liveBytes}: a counter of the bytes currently held by owners,
+   *   <li>{@code owner.<owner>#<id>.allocatedBytes}, {@code .freedBytes}: counters of the bytes
+   *       handed out to and released by one owner, and {@code .liveBytes}: a gauge of the bytes
+   *       it holds. They exist as long as the owner holds memory. The owner appears by its {@code
+   *       toString()} form and an id that is unique within the process.
+   * </ul>
+   *
+   * <p>In addition, the metrics {@code <scope>.unpooled.allocatedBytes}, {@code freedBytes} and
+   * {@code liveBytes} count the segments of the whole process that the segment factories allocate
+   * without a memory manager. Unpooled segments that are collected without being freed stay live.
+   *
+   * <p>The counters are shared with other memory managers of the same memory type that register
+   * under the same scope. The metrics must be registered before the memory manager hands out its
+   * first page. Without metrics, allocating and releasing pages costs one volatile read more.
+   *
+   * @param registry The registry to register the metrics at.
+   * @param scope The scope of the metric names, for example {@code "taskmanager.memory"}.
+   * @throws IllegalStateException Thrown, if metrics have already been registered or pages have
+   *     already been handed out.
+   */
+  public void registerMetrics(MetricRegistry registry, String scope) {
+    if (registry == null) {
+      throw new NullPointerException("registry");
+    }
+    if (scope == null || scope.isEmpty()) {
+      throw new IllegalArgumentException("The metric scope must not be null or empty.");
+    }
+    synchronized (allocatedSegments) {
+      if (metrics != null) {
+        throw new IllegalStateException("The memory manager metrics are registered already.");
+      }
+      if (isShutDown || !allocatedSegments.isEmpty() || numFreePages.get() != totalNumPages) {
+        throw new IllegalStateException(
+            "The metrics must be registered before the memory manager hands out memory.");
+      }
+      metrics = new MemoryMetrics(registry, scope, memoryType, pageSize);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Properties, sizes and size conversions
+  // ------------------------------------------------------------------------
+
+  /**
+   * Gets the type of memory (heap / off-heap) managed by this memory manager.
+   *
+   * @return The type of memory managed by this memory manager.
+   */
+  public MemoryType getMemoryType() {
+    return memoryType;
+  }
+
+  /**
+   * Gets the size of the pages handled by the memory manager.
+   *
+   * @return The size of the pages handled by the memory manager.
+   */
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * Returns the total size of memory handled by this memory manager.
+   *
+   * @return The total size of memory.
+   */
+  public long getMemorySize() {
+    return memorySize;
+  }
+
+  /**
+   * Gets the total number of memory pages managed by this memory manager.
+   *
+   * @return The total number of memory pages managed by this memory manager.
+   */
+  public int getTotalNumPages() {
+    return totalNumPages;
+  }
+
+  /**
+   * Gets the number of pages that are currently not held by any owner.
+   *
+   * @return The number of free pages.
+   */
+  public int getNumberOfFreePages() {
+    return numFreePages.get();
+  }
+
+  /**
+   * Gets the number of pages that are currently held by some owner.
+   *
+   * @return The number of used pages.
+   */
+  public int getNumberOfUsedPages() {
+    return isShutDown ? 0 : totalNumPages - numFreePages.get();
+  }
+
+  // ------------------------------------------------------------------------
+  //  Memory pools
+  // ------------------------------------------------------------------------
+
+  abstract static class MemoryPool {
+
+    abstract MemorySegment requestSegmentFromPool(Object owner);
+
+    abstract void returnSegmentToPool(MemorySegment segment);
+
+    abstract void clear();
+  }
+
+  static final class HeapMemoryPool extends MemoryPool {
+
+    /** The collection of available memory segments. */
+    private final ConcurrentLinkedQueue<byte[]> availableMemory;
+
+    HeapMemoryPool(int numInitialSegments, int segmentSize) {
+      this.availableMemory = new ConcurrentLinkedQueue<>();
+      for (int i = 0; i < numInitialSegments; i++) {
+        this.availableMemory.add(new byte[segmentSize]);
+      }
+    }
+
+    @Override
+    MemorySegment requestSegmentFromPool(Object owner) {
+      byte[] buf = availableMemory.poll();
+      if (buf == null) {
+        throw new IllegalStateException("Memory pool is exhausted although pages were reserved.");
+      }
+      return HeapMemorySegment.FACTORY.wrapPooledHeapMemory(buf, owner);
+    }
+
+    @Override
+    void returnSegmentToPool(MemorySegment segment) {
+      byte[] buf = segment.getArray();
+      segment.free();
+      availableMemory.add(buf);
+    }
+
+    @Override
+    void clear() {
+      availableMemory.clear();
+    }
+  }
+
+  static final class OffHeapMemoryPool extends MemoryPool {
+
+    /** The collection of available memory segments. */
+    private final ConcurrentLinkedQueue<ByteBuffer> availableMemory;
+
+    OffHeapMemoryPool(int numInitialSegments, int segmentSize) {
+      this.availableMemory = new ConcurrentLinkedQueue<>();
+      for (int i = 0; i < numInitialSegments; i++) {
+        this.availableMemory.add(ByteBuffer.allocateDirect(segmentSize));
+      }
+    }
+
+    @Override
+    MemorySegment requestSegmentFromPool(Object owner) {
+      ByteBuffer buf = availableMemory.poll();
+      if (buf == null) {
+        throw new IllegalStateException("Memory pool is exhausted although pages were reserved.");
+      }
+      return HybridMemorySegment.FACTORY.wrapPooledOffHeapMemory(buf, owner);
+    }
+
+    @Override
+    void returnSegmentToPool(MemorySegment segment) {
+      ByteBuffer buf = ((HybridMemorySegment) segment).getOffHeapBuffer();
+      segment.free();
+      availableMemory.add(buf);
+    }
+
+    @Override
+    void clear() {
+      availableMemory.clear();
+    }
+  }
+}
@@ -0,0 +1,241 @@
+package org.apache.flink.core.memory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A file region that is mapped into memory and exposed as a sequence of {@link MemorySegment}s, so
+ * that spilled data and large read-only tables can be accessed through the regular segment API
+ * without copying them onto the heap.
+ *
+ * <p>A single mapping is limited to 2 GB, therefore larger regions are mapped as several segments
+ * of {@code segmentSize} bytes each, where only the last segment may be smaller. Byte {@code i} of
+ * the region is found in segment {@code i / segmentSize} at offset {@code i % segmentSize}, see
+ * {@link #getSegmentFor(long)} and {@link #getOffsetInSegment(long)}.
+ *
+ * <p>The segments are unmapped when the file is {@link #close() closed}, or when a segment is
+ * freed individually. Writes to the segments of a writable mapping reach the file, at the latest
+ * when it is unmapped or {@link #flush() flushed}. A non-writable mapping only needs a readable
+ * file and must lie within the file. Its segments are {@link MemorySegment#isReadOnly()
+ * read-only}: writes to them fail with a {@link java.nio.ReadOnlyBufferException}.
+ */
+public final class MemoryMappedFile implements Closeable {
+
+  private final File file;
+
+  private final List<HybridMemorySegment> segments;
+
+  private final long position;
+
+  private final long size;
+
+  private final int segmentSize;
+
+  private final boolean writable;
+
+  private boolean closed;
+
+  private MemoryMappedFile(
+      File file,
+      List<HybridMemorySegment> segments,
+      long position,
+      long size,
+      int segmentSize,
+      boolean writable) {
+    this.file = file;
+    this.segments = segments;
+    this.position = position;
+    this.size = size;
+    this.segmentSize = segmentSize;
+    this.writable = writable;
+  }
+
+  /**
+   * Maps the complete given file into memory.
+   *
+   * @param file The file to map.
+   * @param segmentSize The size of the segments, at most the maximum size of a single mapping.
+   * @param writable Flag whether changes to the segments are written back to the file.
+   * @param owner The owner to associate with the memory segments.
+   * @return The mapped file.
+   * @throws IOException Thrown, if the file could not be opened or mapped.
+   */
+  public static MemoryMappedFile map(File file, int segmentSize, boolean writable, Object owner)
+      throws IOException {
+    return map(file, 0L, file.length(), segmentSize, writable, owner);
+  }
+
+  /**
+   * Maps the given region of the file into memory. If the file is mapped writable and is smaller
+   * than the end of the region, the file is extended. A non-writable region must lie within the
+   * file.
+   *
+   * @param file The file to map.
+   * @param position The position in the file at which the mapped region starts.
+   * @param size The size of the region to map.
+   * @param segmentSize The size of the segments, at most the maximum size of a single mapping.
+   * @param writable Flag whether changes to the segments are written back to the file.
+   * @param owner The owner to associate with the memory segments.
+   * @return The mapped file.
+   * @throws IOException Thrown, if the file could not be opened or mapped, or if a non-writable
+   *     region exceeds the file.
+   */
+  public static MemoryMappedFile map(
+      File file, long position, long size, int segmentSize, boolean writable, Object owner)
+      throws IOException {
+    if (file == null) {
+      throw new NullPointerException("file");
+    }
+    if (position < 0 || size < 0) {
+      throw new IllegalArgumentException("Position and size must not be negative.");
+    }
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("The segment size must be positive.");
+    }
+
+    final FileChannel.MapMode mode =
+        writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+    final ArrayList<HybridMemorySegment> segments =
+        new ArrayList<>((int) Math.min(Integer.MAX_VALUE, (size + segmentSize - 1) / segmentSize));
+
+    // the mappings stay valid after the channel is closed
+    try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+        FileChannel channel = raf.getChannel()) {
+      if (!writable && position + size > channel.size()) {
+        throw new IOException(
+            "The region ["
+                + position
+                + ", "
+                + (position + size)
+                + ") exceeds the "
+                + channel.size()
+                + " bytes of the file "
+                + file
+                + '.');
+      }
+      long mapped = 0;
+      while (mapped < size) {
+        final int length = (int) Math.min(segmentSize, size - mapped);
+        final MappedByteBuffer buffer = channel.map(mode, position + mapped, length);
+        segments.add(HybridMemorySegment.FACTORY.wrapMappedMemory(buffer, owner));
+        mapped += length;
+      }
+    } catch (IOException | RuntimeException e) {
+      for (HybridMemorySegment segment : segments) {
+        segment.free();
+      }
+      throw e;
+    }
+
+    return new MemoryMappedFile(
+        file, Collections.unmodifiableList(segments), position, size, segmentSize, writable);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Properties
+  // ------------------------------------------------------------------------
+
+  public File getFile() {
+    return file;
+  }
+
+  /** Gets the position in the file at which the mapped region starts. */
+  public long getPosition() {
+    return position;
+  }
+
+  /** Gets the size of the mapped region, in bytes. */
+  public long getSize() {
+    return size;
+  }
+
+  public int getSegmentSize() {
+    return segmentSize;
+  }
+
+  public boolean isWritable() {
+    return writable;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  public int getNumberOfSegments() {
+    return segments.size();
+  }
+
+  /** Gets the segments that represent the mapped region, in order. */
+  public List<? extends MemorySegment> getSegments() {
+    checkNotClosed();
+    return segments;
+  }
+
+  public MemorySegment getSegment(int index) {
+    checkNotClosed();
+    return segments.get(index);
+  }
+
+  /**
+   * Gets the segment that holds the byte at the given position, relative to the start of the
+   * mapped region.
+   */
+  public MemorySegment getSegmentFor(long offset) {
+    if (offset < 0 || offset >= size) {
+      throw new IndexOutOfBoundsException("offset: " + offset + ", size: " + size);
+    }
+    return getSegment((int) (offset / segmentSize));
+  }
+
+  /**
+   * Gets the offset within its segment of the byte at the given position, relative to the start of
+   * the mapped region.
+   */
+  public int getOffsetInSegment(long offset) {
+    return (int) (offset % segmentSize);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Flushing and unmapping
+  // ------------------------------------------------------------------------
+
+  /** Forces the changes made to a writable mapping to the storage device. */
+  public void flush() {
+    checkNotClosed();
+    if (writable) {
+      for (HybridMemorySegment segment : segments) {
+        if (!segment.isFreed()) {
+          ((MappedByteBuffer) segment.getOffHeapBuffer()).force();
+        }
+      }
+    }
+  }
+
+  /**
+   * Unmaps all segments. Any further access to the segments fails. Buffers obtained from {@link
+   * MemorySegment#wrap(int, int)} of these segments must not be accessed any more, since they
+   * point to unmapped memory.
+   */
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      for (HybridMemorySegment segment : segments) {
+        segment.free();
+      }
+    }
+  }
+
+  private void checkNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("The memory mapped file has been closed.");
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package org.apache.flink.core.memory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricRegistry;
+import org.apache.flink.metrics.SimpleCounter;
+
+/**
+ * The metrics of a {@link MemoryManager}: counters for the allocated, freed and live bytes of its
+ * memory type, the same counters and a gauge of the live bytes for every owner that currently
+ * holds memory, and the process-wide counters of the unpooled segments.
+ *
+ * <p>The counters are obtained from the registry by name, so memory managers of the same type that
+ * register under the same scope share them. The owner metrics are registered when an owner
+ * allocates its first segment and are removed when the owner holds no segment anymore. Their names
+ * carry an id that is unique within the process next to the owner's {@code toString()} form, so
+ * that owners with the same string form do not replace each other's metrics.
+ *
+ * <p>Unpooled segments are allocated through the segment factories rather than a memory manager,
+ * so they are counted in static counters, which every memory manager's metrics expose.
+ */
+final class MemoryMetrics {
+
+  /** The bytes of all unpooled segments that were allocated. */
+  private static final SimpleCounter UNPOOLED_ALLOCATED_BYTES = new SimpleCounter();
+
+  /** The bytes of all unpooled segments that were freed. */
+  private static final SimpleCounter UNPOOLED_FREED_BYTES = new SimpleCounter();
+
+  /** The source of the ids in the names of the owner metrics. */
+  private static final AtomicLong NEXT_OWNER_ID = new AtomicLong();
+
+  private final MetricRegistry registry;
+
+  private final String prefix;
+
+  private final int pageSize;
+
+  final Counter allocatedBytes;
+
+  final Counter freedBytes;
+
+  final Counter liveBytes;
+
+  private final ConcurrentHashMap<Object, OwnerMetrics> ownerMetrics = new ConcurrentHashMap<>();
+
+  MemoryMetrics(MetricRegistry registry, String scope, MemoryType memoryType, int pageSize) {
+    this.registry = registry;
+    this.prefix = scope + '.' + memoryType.name() + '.';
+    this.pageSize = pageSize;
+    this.allocatedBytes = registry.counter(prefix + "allocatedBytes");
+    this.freedBytes = registry.counter(prefix + "freedBytes");
+    this.liveBytes = registry.counter(prefix + "liveBytes");
+
+    final String unpooledPrefix = scope + ".unpooled.";
+    registry.register(unpooledPrefix + "allocatedBytes", UNPOOLED_ALLOCATED_BYTES);
+    registry.register(unpooledPrefix + "freedBytes", UNPOOLED_FREED_BYTES);
+    registry.register(
+        unpooledPrefix + "liveBytes",
+        (Gauge<Long>) () -> UNPOOLED_ALLOCATED_BYTES.getCount() - UNPOOLED_FREED_BYTES.getCount());
+  }
+
+  /** Counts pages handed out to the given owner, whose metrics must have been added. */
+  void allocated(Object owner, int numPages) {
+    final long bytes = (long) numPages * pageSize;
+    allocatedBytes.inc(bytes);
+    liveBytes.inc(bytes);
+    final OwnerMetrics metrics = ownerMetrics.get(owner);
+    if (metrics != null) {
+      metrics.allocatedBytes.inc(bytes);
+    }
+  }
+
+  /**
+   * Counts pages released by the given owner. The owner may be null, if its metrics are removed
+   * anyway because it released all its pages.
+   */
+  void freed(Object owner, int numPages) {
+    final long bytes = (long) numPages * pageSize;
+    freedBytes.inc(bytes);
+    liveBytes.dec(bytes);
+    final OwnerMetrics metrics = owner == null ? null : ownerMetrics.get(owner);
+    if (metrics != null) {
+      metrics.freedBytes.inc(bytes);
+    }
+  }
+
+  /** Registers the metrics of an owner that starts holding the given segments. */
+  void ownerAdded(Object owner, Set<MemorySegment> segments) {
+    final String name = prefix + "owner." + owner + '#' + NEXT_OWNER_ID.incrementAndGet() + '.';
+    final OwnerMetrics metrics = new OwnerMetrics(name, segments);
+    final OwnerMetrics previous = ownerMetrics.put(owner, metrics);
+    if (previous != null) {
+      previous.unregister();
+    }
+    registry.register(name + "allocatedBytes", metrics.allocatedBytes);
+    registry.register(name + "freedBytes", metrics.freedBytes);
+    registry.register(name + "liveBytes", metrics.liveBytes);
+  }
+
+  /** Removes the metrics of an owner that no longer holds any segment. */
+  void ownerRemoved(Object owner) {
+    final OwnerMetrics metrics = ownerMetrics.remove(owner);
+    if (metrics != null) {
+      metrics.unregister();
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Unpooled segments
+  // ------------------------------------------------------------------------
+
+  /** Counts a segment that a factory allocated without a pool, until it is freed. */
+  static <T extends MemorySegment> T unpooledAllocated(T segment) {
+    segment.unpooled = true;
+    UNPOOLED_ALLOCATED_BYTES.inc(segment.size());
+    return segment;
+  }
+
+  /** Counts an unpooled segment that is freed, called by {@link MemorySegment#free()} once. */
+  static void unpooledFreed(MemorySegment segment) {
+    UNPOOLED_FREED_BYTES.inc(segment.size());
+  }
+
+  // ------------------------------------------------------------------------
+
+  private final class OwnerMetrics {
+
+    private final String name;
+
+    private final Counter allocatedBytes = new SimpleCounter();
+
+    private final Counter freedBytes = new SimpleCounter();
+
+    private final Gauge<Long> liveBytes;
+
+    OwnerMetrics(String name, Set<MemorySegment> segments) {
+      this.name = name;
+      this.liveBytes = () -> (long) segments.size() * pageSize;
+    }
+
+    void unregister() {
+      registry.unregister(name + "allocatedBytes", allocatedBytes);
+      registry.unregister(name + "freedBytes", freedBytes);
+      registry.unregister(name + "liveBytes", liveBytes);
+    }
+  }
+}
@@ -6,6 +6,7 @@ import java.io.IOError;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
 
 /** created by pengmingguo on 1/22/19 */
 public abstract class MemorySegment {
@@ -16,6 +17,26 @@ public abstract class MemorySegment {
 
   private static final boolean LITTLE_ENDIAN = (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
 
+  private static final long INT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(int[].class);
+
+  private static final long LONG_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(long[].class);
+
+  private static final long DOUBLE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(double[].class);
+
+  /**
+   * The maximum number of bytes copied by one call to {@link sun.misc.Unsafe#copyMemory}. Larger
+   * copies are split, so that the copy does not delay safepoints for too long, like in {@code
+   * java.nio.Bits}.
+   */
+  private static final long UNSAFE_COPY_THRESHOLD = 1024L * 1024L;
+
+  /** The system property that enables the use-after-free detection when set to {@code true}. */
+  public static final String USE_AFTER_FREE_DETECTION_PROPERTY =
+      "flink.memory.use-after-free-detection";
+
+  private static volatile boolean useAfterFreeDetection =
+      Boolean.getBoolean(USE_AFTER_FREE_DETECTION_PROPERTY);
+
   protected final byte[] heapMemory;
 
   /** the address to the data, relative to the heap memory byte array */
@@ -23,10 +44,26 @@ public abstract class MemorySegment {
 
   protected final long addressLimit;
 
+  /**
+   * The address limit for writes. It equals the address limit, unless the segment is read-only,
+   * in which case it lies below the address, so that every write fails the bounds check and takes
+   * the slow path that rejects it. Reads and writes thus cost the same check either way.
+   */
+  protected final long writableAddressLimit;
+
   protected final int size;
 
   private final Object owner;
 
+  /** The leak tracker of the segment, or null, if leak detection was disabled on allocation. */
+  MemoryLeakDetector.Tracker leakTracker;
+
+  /** Whether the segment is counted in the unpooled metrics until it is freed. */
+  boolean unpooled;
+
+  /** The number of times the memory was recycled before this handle to it was issued. */
+  private int generation;
+
   MemorySegment(byte[] buffer, Object owner) {
     if (buffer == null) {
       throw new NullPointerException("buffer");
@@ -35,10 +72,15 @@ public abstract class MemorySegment {
     this.address = BYTE_ARRAY_BASE_OFFSET;
     this.size = buffer.length;
     this.addressLimit = this.address + this.size;
+    this.writableAddressLimit = this.addressLimit;
     this.owner = owner;
   }
 
   MemorySegment(long offHeapAddress, int size, Object owner) {
+    this(offHeapAddress, size, owner, false);
+  }
+
+  MemorySegment(long offHeapAddress, int size, Object owner, boolean readOnly) {
     if (offHeapAddress < 0) {
       throw new IllegalArgumentException("negative pointer or size");
     }
@@ -52,6 +94,7 @@ public abstract class MemorySegment {
     this.heapMemory = null;
     this.address = offHeapAddress;
     this.addressLimit = this.address + size;
+    this.writableAddressLimit = readOnly ? this.address - 1 : this.addressLimit;
     this.size = size;
     this.owner = owner;
   }
@@ -64,8 +107,113 @@ public abstract class MemorySegment {
     return address > addressLimit;
   }
 
+  /**
+   * Checks whether the segment is read-only, like the segments of a read-only memory mapped file.
+   * All writes to a read-only segment fail with a {@link ReadOnlyBufferException}.
+   *
+   * @return True, if the segment is read-only, false otherwise.
+   */
+  public boolean isReadOnly() {
+    return writableAddressLimit != addressLimit;
+  }
+
   public void free() {
     address = addressLimit + 1;
+    if (unpooled) {
+      unpooled = false;
+      MemoryMetrics.unpooledFreed(this);
+    }
+    final MemoryLeakDetector.Tracker tracker = leakTracker;
+    if (tracker != null) {
+      leakTracker = null;
+      tracker.close();
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Recycling and use-after-free detection
+  // ------------------------------------------------------------------------
+
+  /**
+   * Enables or disables the use-after-free detection for segments recycled from now on.
+   *
+   * @param enable True, to enable the detection, false to disable it.
+   * @see #recycle()
+   */
+  public static void setUseAfterFreeDetection(boolean enable) {
+    useAfterFreeDetection = enable;
+  }
+
+  /**
+   * Checks whether the use-after-free detection is enabled. It is enabled through the system
+   * property {@value #USE_AFTER_FREE_DETECTION_PROPERTY} or {@link
+   * #setUseAfterFreeDetection(boolean)}.
+   *
+   * @return True, if recycled segments are handed out under a new handle, false otherwise.
+   */
+  public static boolean isUseAfterFreeDetectionEnabled() {
+    return useAfterFreeDetection;
+  }
+
+  /**
+   * Gets the generation of this segment, which is the number of times its memory was {@link
+   * #recycle() recycled} before this segment was issued as a handle to it.
+   *
+   * @return The generation of this segment.
+   */
+  public int getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Called by pools that hand out the same segment many times, when the segment is returned to
+   * the pool. The pool keeps the returned segment in place of this one.
+   *
+   * <p>By default, this returns this segment, so recycling costs nothing. A component that kept a
+   * reference to the segment after it returned it can then read or overwrite the data of the next
+   * user of the segment. With the use-after-free detection enabled, this segment is retired and a
+   * new segment of the next generation is returned for the same memory. Any further access through
+   * the retired segment fails with an {@link IllegalStateException}, like an access to a freed
+   * segment, while the memory itself stays valid. Retiring costs one allocation per recycling and
+   * nothing per access, because the accessors check for freed segments anyway.
+   *
+   * <p>Views that were taken from the segment before, like the {@link ByteBuffer} of {@link
+   * #wrap(int, int)} or the array of {@link #getArray()}, are not checked.
+   *
+   * @return The segment to keep in the pool.
+   * @throws IllegalStateException Thrown, if the detection is enabled and the segment has been
+   *     freed or recycled before.
+   */
+  public MemorySegment recycle() {
+    if (!useAfterFreeDetection) {
+      return this;
+    }
+    if (isFreed()) {
+      throw new IllegalStateException(
+          "segment has been freed or recycled before (generation " + generation + ')');
+    }
+    final MemorySegment next = duplicateHandle();
+    next.generation = generation + 1;
+    next.unpooled = unpooled;
+    unpooled = false;
+    retire();
+    return MemoryLeakDetector.track(next);
+  }
+
+  /** Creates a new segment for the memory of this segment, taking over any release action. */
+  abstract MemorySegment duplicateHandle();
+
+  /**
+   * Marks this segment as freed without releasing its memory, which is taken over by the segment
+   * of the next generation.
+   */
+  void retire() {
+    address = addressLimit + 1;
+    final MemoryLeakDetector.Tracker tracker = leakTracker;
+    if (tracker != null) {
+      leakTracker = null;
+      tracker.close();
+    }
   }
 
   public boolean isOffHeap() {
@@ -139,10 +287,12 @@ public abstract class MemorySegment {
 
   public void putChar(int index, char value) {
     long pos = address + index;
-    if (index >= 0 && pos <= addressLimit - 2) {
+    if (index >= 0 && pos <= writableAddressLimit - 2) {
       UNSAFE.putChar(heapMemory, pos, value);
     } else if (address > addressLimit) {
       throw new IllegalStateException("segment has been freed");
+    } else if (isReadOnly()) {
+      throw new ReadOnlyBufferException();
     } else {
       throw new IndexOutOfBoundsException();
     }
@@ -194,10 +344,12 @@ public abstract class MemorySegment {
 
   public final void putShort(int index, short value) {
     final long pos = address + index;
-    if (index >= 0 && pos <= addressLimit - 2) {
+    if (index >= 0 && pos <= writableAddressLimit - 2) {
       UNSAFE.putShort(heapMemory, pos, value);
     } else if (address > addressLimit) {
       throw new IllegalStateException("segment has been freed");
+    } else if (isReadOnly()) {
+      throw new ReadOnlyBufferException();
     } else {
       // index is in fact invalid
       throw new IndexOutOfBoundsException();
@@ -299,10 +451,12 @@ public abstract class MemorySegment {
    */
   public final void putInt(int index, int value) {
     final long pos = address + index;
-    if (index >= 0 && pos <= addressLimit - 4) {
+    if (index >= 0 && pos <= writableAddressLimit - 4) {
       UNSAFE.putInt(heapMemory, pos, value);
     } else if (address > addressLimit) {
       throw new IllegalStateException("segment has been freed");
+    } else if (isReadOnly()) {
+      throw new ReadOnlyBufferException();
     } else {
       // index is in fact invalid
       throw new IndexOutOfBoundsException();
@@ -431,10 +585,12 @@ public abstract class MemorySegment {
    */
   public final void putLong(int index, long value) {
     final long pos = address + index;
-    if (index >= 0 && pos <= addressLimit - 8) {
+    if (index >= 0 && pos <= writableAddressLimit - 8) {
       UNSAFE.putLong(heapMemory, pos, value);
     } else if (address > addressLimit) {
       throw new IllegalStateException("segment has been freed");
+    } else if (isReadOnly()) {
+      throw new ReadOnlyBufferException();
     } else {
       // index is in fact invalid
       throw new IndexOutOfBoundsException();
@@ -687,6 +843,279 @@ public abstract class MemorySegment {
     putLongBigEndian(index, Double.doubleToRawLongBits(value));
   }
 
+  // ------------------------------------------------------------------------
+  //  Bulk access to primitive arrays
+  // ------------------------------------------------------------------------
+
+  /**
+   * Bulk get method. Copies {@code length} ints from the given position in this segment into the
+   * given array, starting at the given offset, in the system's native byte order. The bounds are
+   * checked once for the whole range and the values are copied with a single memory copy.
+   *
+   * @param index The position in this segment of the first value to read.
+   * @param dst The array to copy the values into.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void getInts(int index, int[] dst, int offset, int length) {
+    final long pos = checkBulkAccess(index, offset, length, dst.length, 2, false);
+    copyMemory(
+        heapMemory, pos, dst, INT_ARRAY_BASE_OFFSET + ((long) offset << 2), (long) length << 2);
+  }
+
+  /**
+   * Bulk get method. Copies {@code length} ints in the given byte order from the given position in
+   * this segment into the given array. Only a non-native byte order requires a loop, which swaps
+   * the bytes of each value.
+   *
+   * @param index The position in this segment of the first value to read.
+   * @param dst The array to copy the values into.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @param order The byte order of the values in this segment.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void getInts(int index, int[] dst, int offset, int length, ByteOrder order) {
+    if (order == ByteOrder.nativeOrder()) {
+      getInts(index, dst, offset, length);
+      return;
+    }
+    long pos = checkBulkAccess(index, offset, length, dst.length, 2, false);
+    for (int i = offset; i < offset + length; i++, pos += 4) {
+      dst[i] = Integer.reverseBytes(UNSAFE.getInt(heapMemory, pos));
+    }
+  }
+
+  /**
+   * Bulk put method. Copies {@code length} ints from the given array, starting at the given offset,
+   * to the given position in this segment, in the system's native byte order. The bounds are
+   * checked once for the whole range and the values are copied with a single memory copy.
+   *
+   * @param index The position in this segment of the first value to write.
+   * @param src The array to copy the values from.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void putInts(int index, int[] src, int offset, int length) {
+    final long pos = checkBulkAccess(index, offset, length, src.length, 2, true);
+    copyMemory(
+        src, INT_ARRAY_BASE_OFFSET + ((long) offset << 2), heapMemory, pos, (long) length << 2);
+  }
+
+  /**
+   * Bulk put method. Copies {@code length} ints from the given array to the given position in this
+   * segment, in the given byte order. Only a non-native byte order requires a loop, which swaps the
+   * bytes of each value.
+   *
+   * @param index The position in this segment of the first value to write.
+   * @param src The array to copy the values from.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @param order The byte order of the values in this segment.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void putInts(int index, int[] src, int offset, int length, ByteOrder order) {
+    if (order == ByteOrder.nativeOrder()) {
+      putInts(index, src, offset, length);
+      return;
+    }
+    long pos = checkBulkAccess(index, offset, length, src.length, 2, true);
+    for (int i = offset; i < offset + length; i++, pos += 4) {
+      UNSAFE.putInt(heapMemory, pos, Integer.reverseBytes(src[i]));
+    }
+  }
+
+  /**
+   * Bulk get method. Copies {@code length} longs from the given position in this segment into the
+   * given array, in the system's native byte order. See {@link #getInts(int, int[], int, int)}.
+   *
+   * @param index The position in this segment of the first value to read.
+   * @param dst The array to copy the values into.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void getLongs(int index, long[] dst, int offset, int length) {
+    final long pos = checkBulkAccess(index, offset, length, dst.length, 3, false);
+    copyMemory(
+        heapMemory, pos, dst, LONG_ARRAY_BASE_OFFSET + ((long) offset << 3), (long) length << 3);
+  }
+
+  /**
+   * Bulk get method. Copies {@code length} longs in the given byte order from the given position in
+   * this segment into the given array. See {@link #getInts(int, int[], int, int, ByteOrder)}.
+   *
+   * @param index The position in this segment of the first value to read.
+   * @param dst The array to copy the values into.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @param order The byte order of the values in this segment.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void getLongs(int index, long[] dst, int offset, int length, ByteOrder order) {
+    if (order == ByteOrder.nativeOrder()) {
+      getLongs(index, dst, offset, length);
+      return;
+    }
+    long pos = checkBulkAccess(index, offset, length, dst.length, 3, false);
+    for (int i = offset; i < offset + length; i++, pos += 8) {
+      dst[i] = Long.reverseBytes(UNSAFE.getLong(heapMemory, pos));
+    }
+  }
+
+  /**
+   * Bulk put method. Copies {@code length} longs from the given array to the given position in this
+   * segment, in the system's native byte order. See {@link #putInts(int, int[], int, int)}.
+   *
+   * @param index The position in this segment of the first value to write.
+   * @param src The array to copy the values from.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void putLongs(int index, long[] src, int offset, int length) {
+    final long pos = checkBulkAccess(index, offset, length, src.length, 3, true);
+    copyMemory(
+        src, LONG_ARRAY_BASE_OFFSET + ((long) offset << 3), heapMemory, pos, (long) length << 3);
+  }
+
+  /**
+   * Bulk put method. Copies {@code length} longs from the given array to the given position in this
+   * segment, in the given byte order. See {@link #putInts(int, int[], int, int, ByteOrder)}.
+   *
+   * @param index The position in this segment of the first value to write.
+   * @param src The array to copy the values from.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @param order The byte order of the values in this segment.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void putLongs(int index, long[] src, int offset, int length, ByteOrder order) {
+    if (order == ByteOrder.nativeOrder()) {
+      putLongs(index, src, offset, length);
+      return;
+    }
+    long pos = checkBulkAccess(index, offset, length, src.length, 3, true);
+    for (int i = offset; i < offset + length; i++, pos += 8) {
+      UNSAFE.putLong(heapMemory, pos, Long.reverseBytes(src[i]));
+    }
+  }
+
+  /**
+   * Bulk get method. Copies {@code length} doubles from the given position in this segment into
+   * the given array, in the system's native byte order. See {@link #getInts(int, int[], int,
+   * int)}.
+   *
+   * @param index The position in this segment of the first value to read.
+   * @param dst The array to copy the values into.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void getDoubles(int index, double[] dst, int offset, int length) {
+    final long pos = checkBulkAccess(index, offset, length, dst.length, 3, false);
+    copyMemory(
+        heapMemory, pos, dst, DOUBLE_ARRAY_BASE_OFFSET + ((long) offset << 3), (long) length << 3);
+  }
+
+  /**
+   * Bulk get method. Copies {@code length} doubles in the given byte order from the given position
+   * in this segment into the given array. See {@link #getInts(int, int[], int, int, ByteOrder)}.
+   *
+   * @param index The position in this segment of the first value to read.
+   * @param dst The array to copy the values into.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @param order The byte order of the values in this segment.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void getDoubles(int index, double[] dst, int offset, int length, ByteOrder order) {
+    if (order == ByteOrder.nativeOrder()) {
+      getDoubles(index, dst, offset, length);
+      return;
+    }
+    long pos = checkBulkAccess(index, offset, length, dst.length, 3, false);
+    for (int i = offset; i < offset + length; i++, pos += 8) {
+      dst[i] = Double.longBitsToDouble(Long.reverseBytes(UNSAFE.getLong(heapMemory, pos)));
+    }
+  }
+
+  /**
+   * Bulk put method. Copies {@code length} doubles from the given array to the given position in
+   * this segment, in the system's native byte order. See {@link #putInts(int, int[], int, int)}.
+   *
+   * @param index The position in this segment of the first value to write.
+   * @param src The array to copy the values from.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void putDoubles(int index, double[] src, int offset, int length) {
+    final long pos = checkBulkAccess(index, offset, length, src.length, 3, true);
+    copyMemory(
+        src, DOUBLE_ARRAY_BASE_OFFSET + ((long) offset << 3), heapMemory, pos, (long) length << 3);
+  }
+
+  /**
+   * Bulk put method. Copies {@code length} doubles from the given array to the given position in
+   * this segment, in the given byte order. See {@link #putInts(int, int[], int, int, ByteOrder)}.
+   *
+   * @param index The position in this segment of the first value to write.
+   * @param src The array to copy the values from.
+   * @param offset The position in the array of the first value.
+   * @param length The number of values to copy.
+   * @param order The byte order of the values in this segment.
+   * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment or the array.
+   */
+  public final void putDoubles(int index, double[] src, int offset, int length, ByteOrder order) {
+    if (order == ByteOrder.nativeOrder()) {
+      putDoubles(index, src, offset, length);
+      return;
+    }
+    long pos = checkBulkAccess(index, offset, length, src.length, 3, true);
+    for (int i = offset; i < offset + length; i++, pos += 8) {
+      UNSAFE.putLong(heapMemory, pos, Long.reverseBytes(Double.doubleToRawLongBits(src[i])));
+    }
+  }
+
+  /**
+   * Checks a bulk access of {@code length} values of {@code 1 << shift} bytes each, at the given
+   * position of this segment and the given offset of an array of the given length.
+   *
+   * @return The address of the first value in this segment.
+   */
+  private long checkBulkAccess(
+      int index, int offset, int length, int arrayLength, int shift, boolean write) {
+    final long pos = address + index;
+    if ((index | offset | length) >= 0
+        && offset <= arrayLength - length
+        && pos <= (write ? writableAddressLimit : addressLimit) - ((long) length << shift)) {
+      return pos;
+    } else if (address > addressLimit) {
+      throw new IllegalStateException("segment has been freed");
+    } else if (write && isReadOnly()) {
+      throw new ReadOnlyBufferException();
+    } else {
+      throw new IndexOutOfBoundsException(
+          String.format(
+              "index=%d, offset=%d, length=%d, arrayLength=%d, size=%d",
+              index, offset, length, arrayLength, size));
+    }
+  }
+
+  private static void copyMemory(
+      Object srcBase, long srcOffset, Object destBase, long destOffset, long numBytes) {
+    while (numBytes > 0) {
+      final long chunk = Math.min(numBytes, UNSAFE_COPY_THRESHOLD);
+      UNSAFE.copyMemory(srcBase, srcOffset, destBase, destOffset, chunk);
+      srcOffset += chunk;
+      destOffset += chunk;
+      numBytes -= chunk;
+    }
+  }
+
   public abstract void get(DataOutput out, int offset, int length) throws IOException;
 
   public abstract void put(DataInput in, int offset, int length) throws IOException;
@@ -703,12 +1132,14 @@ public abstract class MemorySegment {
 
     if ((numBytes | offset | targetOffset) >= 0
         && thisPointer <= this.addressLimit - numBytes
-        && otherPointer <= target.addressLimit - numBytes) {
+        && otherPointer <= target.writableAddressLimit - numBytes) {
       UNSAFE.copyMemory(thisHeapRef, thisPointer, otherHeapRef, otherPointer, numBytes);
     } else if (this.address > this.addressLimit) {
       throw new IllegalStateException("This memory segment has been freed.");
     } else if (target.address > target.addressLimit) {
       throw new IllegalStateException("target memory segment has been freed.");
+    } else if (target.isReadOnly()) {
+      throw new ReadOnlyBufferException();
     } else {
       throw new IndexOutOfBoundsException(
           String.format(
@@ -717,32 +1148,360 @@ public abstract class MemorySegment {
     }
   }
 
+  // ------------------------------------------------------------------------
+  //  Range equality, mismatch and hashing
+  // ------------------------------------------------------------------------
+
+  private static final long XXH_PRIME64_1 = 0x9E3779B185EBCA87L;
+
+  private static final long XXH_PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+
+  private static final long XXH_PRIME64_3 = 0x165667B19E3779F9L;
+
+  private static final long XXH_PRIME64_4 = 0x85EBCA77C2B2AE63L;
+
+  private static final long XXH_PRIME64_5 = 0x27D4EB2F165667C5L;
+
+  /**
+   * Checks whether the given range of this segment holds the same bytes as the given range of the
+   * other segment. The ranges are compared 8 bytes at a time in the native byte order, which is
+   * cheaper than {@link #compare(MemorySegment, int, int, int)} when the order is not needed.
+   *
+   * @param seg2 The other segment.
+   * @param offset1 The offset of the range in this segment.
+   * @param offset2 The offset of the range in the other segment.
+   * @param len The number of bytes to compare.
+   * @return True, if the ranges are equal, false otherwise.
+   * @throws IndexOutOfBoundsException Thrown, if a range is not within its segment.
+   */
+  public final boolean equalTo(MemorySegment seg2, int offset1, int offset2, int len) {
+    this.checkRange(offset1, len);
+    seg2.checkRange(offset2, len);
+    return equalUnchecked(
+        this.heapMemory,
+        this.address + offset1,
+        this.addressLimit,
+        seg2.heapMemory,
+        seg2.address + offset2,
+        seg2.addressLimit,
+        len);
+  }
+
+  /**
+   * Checks whether the given range of this segment holds the same bytes as the given range of the
+   * byte array, without wrapping the array into a segment.
+   *
+   * @param offset The offset of the range in this segment.
+   * @param key The byte array.
+   * @param keyOffset The offset of the range in the array.
+   * @param len The number of bytes to compare.
+   * @return True, if the ranges are equal, false otherwise.
+   * @throws IndexOutOfBoundsException Thrown, if a range is not within its segment or array.
+   */
+  public final boolean equalTo(int offset, byte[] key, int keyOffset, int len) {
+    checkRange(offset, len);
+    checkArrayRange(key, keyOffset, len);
+    return equalUnchecked(
+        this.heapMemory,
+        this.address + offset,
+        this.addressLimit,
+        key,
+        BYTE_ARRAY_BASE_OFFSET + keyOffset,
+        BYTE_ARRAY_BASE_OFFSET + key.length,
+        len);
+  }
+
+  /**
+   * Finds the first position at which the given range of this segment differs from the given
+   * range of the other segment. The ranges are compared 8 bytes at a time, and the differing byte
+   * within 8 bytes is located from the bits of their difference.
+   *
+   * @param seg2 The other segment.
+   * @param offset1 The offset of the range in this segment.
+   * @param offset2 The offset of the range in the other segment.
+   * @param len The number of bytes to compare.
+   * @return The position of the first differing byte, relative to the start of the ranges, or -1,
+   *     if the ranges are equal.
+   * @throws IndexOutOfBoundsException Thrown, if a range is not within its segment.
+   */
+  public final int mismatch(MemorySegment seg2, int offset1, int offset2, int len) {
+    this.checkRange(offset1, len);
+    seg2.checkRange(offset2, len);
+    final byte[] heap1 = this.heapMemory;
+    final byte[] heap2 = seg2.heapMemory;
+    final long pos1 = this.address + offset1;
+    final long pos2 = seg2.address + offset2;
+
+    int i = 0;
+    for (; i <= len - 8; i += 8) {
+      final long diff = UNSAFE.getLong(heap1, pos1 + i) ^ UNSAFE.getLong(heap2, pos2 + i);
+      if (diff != 0) {
+        // the lowest differing byte is the first one in little endian, the highest in big endian
+        final int bit =
+            LITTLE_ENDIAN ? Long.numberOfTrailingZeros(diff) : Long.numberOfLeadingZeros(diff);
+        return i + (bit >>> 3);
+      }
+    }
+    for (; i < len; i++) {
+      if (UNSAFE.getByte(heap1, pos1 + i) != UNSAFE.getByte(heap2, pos2 + i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Computes a 64 bit hash code of the given range, with the xxHash64 algorithm. The hash code
+   * depends only on the bytes of the range and the seed, not on the system's byte order, so equal
+   * ranges in different segments have equal hash codes.
+   *
+   * @param offset The offset of the range.
+   * @param len The number of bytes to hash.
+   * @param seed The seed of the hash function.
+   * @return The hash code.
+   * @throws IndexOutOfBoundsException Thrown, if the range is not within the segment.
+   */
+  public final long hash64(int offset, int len, long seed) {
+    checkRange(offset, len);
+    final byte[] heap = this.heapMemory;
+    long pos = this.address + offset;
+    final long end = pos + len;
+
+    long hash;
+    if (len >= 32) {
+      long v1 = seed + XXH_PRIME64_1 + XXH_PRIME64_2;
+      long v2 = seed + XXH_PRIME64_2;
+      long v3 = seed;
+      long v4 = seed - XXH_PRIME64_1;
+      do {
+        v1 = xxhRound(v1, getLongLittleEndianUnchecked(heap, pos));
+        v2 = xxhRound(v2, getLongLittleEndianUnchecked(heap, pos + 8));
+        v3 = xxhRound(v3, getLongLittleEndianUnchecked(heap, pos + 16));
+        v4 = xxhRound(v4, getLongLittleEndianUnchecked(heap, pos + 24));
+        pos += 32;
+      } while (pos <= end - 32);
+
+      hash =
+          Long.rotateLeft(v1, 1)
+              + Long.rotateLeft(v2, 7)
+              + Long.rotateLeft(v3, 12)
+              + Long.rotateLeft(v4, 18);
+      hash = xxhMergeRound(hash, v1);
+      hash = xxhMergeRound(hash, v2);
+      hash = xxhMergeRound(hash, v3);
+      hash = xxhMergeRound(hash, v4);
+    } else {
+      hash = seed + XXH_PRIME64_5;
+    }
+    hash += len;
+
+    for (; pos <= end - 8; pos += 8) {
+      hash ^= xxhRound(0, getLongLittleEndianUnchecked(heap, pos));
+      hash = Long.rotateLeft(hash, 27) * XXH_PRIME64_1 + XXH_PRIME64_4;
+    }
+    if (pos <= end - 4) {
+      int k = UNSAFE.getInt(heap, pos);
+      if (!LITTLE_ENDIAN) {
+        k = Integer.reverseBytes(k);
+      }
+      hash ^= (k & 0xffffffffL) * XXH_PRIME64_1;
+      hash = Long.rotateLeft(hash, 23) * XXH_PRIME64_2 + XXH_PRIME64_3;
+      pos += 4;
+    }
+    for (; pos < end; pos++) {
+      hash ^= (UNSAFE.getByte(heap, pos) & 0xff) * XXH_PRIME64_5;
+      hash = Long.rotateLeft(hash, 11) * XXH_PRIME64_1;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= XXH_PRIME64_2;
+    hash ^= hash >>> 29;
+    hash *= XXH_PRIME64_3;
+    hash ^= hash >>> 32;
+    return hash;
+  }
+
+  /**
+   * Computes a 32 bit hash code of the given range, by folding the {@link #hash64(int, int, long)
+   * 64 bit hash code} with seed zero.
+   *
+   * @param offset The offset of the range.
+   * @param len The number of bytes to hash.
+   * @return The hash code.
+   * @throws IndexOutOfBoundsException Thrown, if the range is not within the segment.
+   */
+  public final int hash32(int offset, int len) {
+    final long hash = hash64(offset, len, 0L);
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  private static long getLongLittleEndianUnchecked(byte[] heap, long pos) {
+    final long value = UNSAFE.getLong(heap, pos);
+    return LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+  }
+
+  private static long xxhRound(long acc, long input) {
+    acc += input * XXH_PRIME64_2;
+    acc = Long.rotateLeft(acc, 31);
+    return acc * XXH_PRIME64_1;
+  }
+
+  private static long xxhMergeRound(long acc, long value) {
+    acc ^= xxhRound(0, value);
+    return acc * XXH_PRIME64_1 + XXH_PRIME64_4;
+  }
+
+  /** Checks that the range is within this segment, so that it can be read without checks. */
+  private void checkRange(int offset, int len) {
+    if ((offset | len) < 0 || this.address + offset > this.addressLimit - len) {
+      if (this.address > this.addressLimit) {
+        throw new IllegalStateException("segment has been freed");
+      }
+      throw new IndexOutOfBoundsException(
+          String.format("offset=%d, length=%d, size=%d", offset, len, this.size));
+    }
+  }
+
+  /**
+   * Compares the given range of this segment with the given range of the other segment, as
+   * unsigned bytes in lexicographic order. The ranges are compared 8 bytes at a time as big endian
+   * longs. A tail of less than 8 bytes is compared with a single masked long, if both segments
+   * have 8 bytes left at the tail, and otherwise with at most one int, short and byte read each.
+   *
+   * @param seg2 The other segment.
+   * @param offset1 The offset of the range in this segment.
+   * @param offset2 The offset of the range in the other segment.
+   * @param len The number of bytes to compare.
+   * @return A negative number, zero, or a positive number, if the range of this segment is
+   *     smaller, equal, or larger than the range of the other segment.
+   * @throws IndexOutOfBoundsException Thrown, if a range is not within its segment.
+   */
   public final int compare(MemorySegment seg2, int offset1, int offset2, int len) {
-    while (len >= 8) {
-      long l1 = this.getLongBigEndian(offset1);
-      long l2 = seg2.getLongBigEndian(offset2);
+    this.checkRange(offset1, len);
+    seg2.checkRange(offset2, len);
+    return compareUnchecked(
+        this.heapMemory,
+        this.address + offset1,
+        this.addressLimit,
+        seg2.heapMemory,
+        seg2.address + offset2,
+        seg2.addressLimit,
+        len);
+  }
 
+  /**
+   * Compares the given range of this segment with the given range of the byte array, without
+   * wrapping the array into a segment. See {@link #compare(MemorySegment, int, int, int)}.
+   *
+   * @param offset The offset of the range in this segment.
+   * @param key The byte array.
+   * @param keyOffset The offset of the range in the array.
+   * @param len The number of bytes to compare.
+   * @return A negative number, zero, or a positive number, if the range of this segment is
+   *     smaller, equal, or larger than the range of the array.
+   * @throws IndexOutOfBoundsException Thrown, if a range is not within its segment or array.
+   */
+  public final int compare(int offset, byte[] key, int keyOffset, int len) {
+    checkRange(offset, len);
+    checkArrayRange(key, keyOffset, len);
+    return compareUnchecked(
+        this.heapMemory,
+        this.address + offset,
+        this.addressLimit,
+        key,
+        BYTE_ARRAY_BASE_OFFSET + keyOffset,
+        BYTE_ARRAY_BASE_OFFSET + key.length,
+        len);
+  }
+
+  private static int compareUnchecked(
+      Object base1, long pos1, long limit1, Object base2, long pos2, long limit2, int len) {
+    for (; len >= 8; len -= 8, pos1 += 8, pos2 += 8) {
+      final long l1 = getLongBigEndianUnchecked(base1, pos1);
+      final long l2 = getLongBigEndianUnchecked(base2, pos2);
       if (l1 != l2) {
-        // TODO
-        return (l1 < l2) ^ (l1 < 0) ^ (l2 < 0) ? -1 : 1;
+        return compareUnsigned(l1, l2);
       }
-      offset1 += 8;
-      offset2 += 8;
-      len -= 8;
-    }
-    while (len > 0) {
-      // TODO
-      int b1 = this.get(offset1) & 0xff;
-      int b2 = seg2.get(offset2) & 0xff;
-      int cmp = b1 - b2;
-      if (cmp != 0) {
-        return cmp;
+    }
+    if (len == 0) {
+      return 0;
+    }
+
+    final long l1;
+    final long l2;
+    if (pos1 <= limit1 - 8 && pos2 <= limit2 - 8) {
+      // keep the len highest bytes, which are the first ones in big endian order
+      final long mask = -1L << ((8 - len) << 3);
+      l1 = getLongBigEndianUnchecked(base1, pos1) & mask;
+      l2 = getLongBigEndianUnchecked(base2, pos2) & mask;
+    } else {
+      l1 = getTailBigEndianUnchecked(base1, pos1, len);
+      l2 = getTailBigEndianUnchecked(base2, pos2, len);
+    }
+    return l1 == l2 ? 0 : compareUnsigned(l1, l2);
+  }
+
+  private static boolean equalUnchecked(
+      Object base1, long pos1, long limit1, Object base2, long pos2, long limit2, int len) {
+    for (; len >= 8; len -= 8, pos1 += 8, pos2 += 8) {
+      if (UNSAFE.getLong(base1, pos1) != UNSAFE.getLong(base2, pos2)) {
+        return false;
       }
-      offset1++;
-      offset2++;
-      len--;
     }
-    return 0;
+    if (len == 0) {
+      return true;
+    }
+    if (pos1 <= limit1 - 8 && pos2 <= limit2 - 8) {
+      // keep the len bytes at the lowest addresses
+      final long mask = LITTLE_ENDIAN ? -1L >>> ((8 - len) << 3) : -1L << ((8 - len) << 3);
+      return ((UNSAFE.getLong(base1, pos1) ^ UNSAFE.getLong(base2, pos2)) & mask) == 0;
+    }
+    return getTailBigEndianUnchecked(base1, pos1, len)
+        == getTailBigEndianUnchecked(base2, pos2, len);
+  }
+
+  /**
+   * Reads the 1 to 7 bytes at the given position into the highest bytes of a long, in big endian
+   * order, with at most one int, short and byte read each, so that no byte behind them is read.
+   */
+  private static long getTailBigEndianUnchecked(Object base, long pos, int len) {
+    long value = 0;
+    int shift = 64;
+    if ((len & 4) != 0) {
+      int i = UNSAFE.getInt(base, pos);
+      shift -= 32;
+      value = (LITTLE_ENDIAN ? Integer.reverseBytes(i) : i) & 0xffffffffL;
+      value <<= shift;
+      pos += 4;
+    }
+    if ((len & 2) != 0) {
+      short s = UNSAFE.getShort(base, pos);
+      shift -= 16;
+      value |= ((LITTLE_ENDIAN ? Short.reverseBytes(s) : s) & 0xffffL) << shift;
+      pos += 2;
+    }
+    if ((len & 1) != 0) {
+      shift -= 8;
+      value |= (UNSAFE.getByte(base, pos) & 0xffL) << shift;
+    }
+    return value;
+  }
+
+  private static long getLongBigEndianUnchecked(Object base, long pos) {
+    final long value = UNSAFE.getLong(base, pos);
+    return LITTLE_ENDIAN ? Long.reverseBytes(value) : value;
+  }
+
+  /** Compares two different longs as unsigned values. */
+  private static int compareUnsigned(long l1, long l2) {
+    return (l1 ^ Long.MIN_VALUE) < (l2 ^ Long.MIN_VALUE) ? -1 : 1;
+  }
+
+  private static void checkArrayRange(byte[] array, int offset, int len) {
+    if ((offset | len) < 0 || offset > array.length - len) {
+      throw new IndexOutOfBoundsException(
+          String.format("offset=%d, length=%d, array length=%d", offset, len, array.length));
+    }
   }
 
   public final void swapBytes(
@@ -751,7 +1510,8 @@ public abstract class MemorySegment {
       long thisPos = this.address + offset1;
       long otherPos = seg2.address + offset2;
 
-      if (thisPos <= this.addressLimit - len && otherPos <= seg2.addressLimit - len) {
+      if (thisPos <= this.writableAddressLimit - len
+          && otherPos <= seg2.writableAddressLimit - len) {
         UNSAFE.copyMemory(this.heapMemory, thisPos, tempBuffer, BYTE_ARRAY_BASE_OFFSET, len);
 
         UNSAFE.copyMemory(seg2.heapMemory, otherPos, this.heapMemory, thisPos, len);
@@ -762,6 +1522,8 @@ public abstract class MemorySegment {
         throw new IllegalStateException("this memory segment has been freed.");
       } else if (seg2.address > seg2.addressLimit) {
         throw new IllegalStateException("other memory segment has been freed.");
+      } else if (this.isReadOnly() || seg2.isReadOnly()) {
+        throw new ReadOnlyBufferException();
       }
       // index is in fact invalid
       throw new IndexOutOfBoundsException(
@@ -1,7 +1,15 @@
 package org.apache.flink.core.memory;
 
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import sun.misc.Unsafe;
 
 /**
@@ -47,6 +55,146 @@ public class MemoryUtils {
     }
   }
 
+  /** The reflection constructor of the JDK's direct byte buffer around a raw memory address. */
+  private static final Constructor<? extends ByteBuffer> DIRECT_BUFFER_CONSTRUCTOR =
+      getDirectBufferPrivateConstructor();
+
+  @SuppressWarnings("unchecked")
+  private static Constructor<? extends ByteBuffer> getDirectBufferPrivateConstructor() {
+    try {
+      Constructor<? extends ByteBuffer> constructor =
+          ByteBuffer.allocateDirect(1).getClass().getDeclaredConstructor(long.class, int.class);
+      constructor.setAccessible(true);
+      return constructor;
+    } catch (NoSuchMethodException e) {
+      throw new RuntimeException(
+          "The private constructor java.nio.DirectByteBuffer.<init>(long, int) is not available.",
+          e);
+    } catch (SecurityException e) {
+      throw new RuntimeException(
+          "The private constructor java.nio.DirectByteBuffer.<init>(long, int) is not accessible.",
+          e);
+    }
+  }
+
+  /**
+   * Allocates unsafe native memory.
+   *
+   * @param size size of the unsafe memory to allocate.
+   * @return address of the allocated unsafe memory
+   */
+  static long allocateUnsafe(long size) {
+    return UNSAFE.allocateMemory(Math.max(1L, size));
+  }
+
+  /**
+   * Creates a cleaner to release the unsafe memory. The returned action releases the memory when it
+   * is run, and otherwise once the given owner became phantom reachable. The memory is released at
+   * most once.
+   *
+   * @param owner The object whose reachability decides when the memory is released by the GC.
+   * @param address Address of the unsafe memory to release.
+   * @return An action to run to release the unsafe memory eagerly.
+   */
+  static Runnable createMemoryGcCleaner(Object owner, long address) {
+    return new MemoryCleaner(owner, address)::clean;
+  }
+
+  /**
+   * Wraps the unsafe native memory with a ByteBuffer. The buffer does not release the memory by
+   * itself.
+   *
+   * @param address address of the unsafe memory to wrap
+   * @param size size of the unsafe memory to wrap
+   * @return a {@link ByteBuffer} which is a view of the given unsafe memory
+   */
+  static ByteBuffer wrapUnsafeMemoryWithByteBuffer(long address, int size) {
+    try {
+      return DIRECT_BUFFER_CONSTRUCTOR.newInstance(address, size);
+    } catch (Throwable t) {
+      throw new RuntimeException("Failed to wrap unsafe off-heap memory with ByteBuffer", t);
+    }
+  }
+
+  /**
+   * Releases the memory of a direct or memory mapped byte buffer eagerly, rather than when the
+   * buffer is collected. The buffer, and any other view of its memory, must not be accessed
+   * afterwards.
+   *
+   * @param buffer The direct byte buffer to release.
+   */
+  static void releaseDirectBuffer(ByteBuffer buffer) {
+    if (!buffer.isDirect()) {
+      throw new IllegalArgumentException("Only direct buffers can be released.");
+    }
+    try {
+      try {
+        // Java 9 and later expose the cleaner through Unsafe
+        Method invokeCleaner = UNSAFE.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+        invokeCleaner.invoke(UNSAFE, buffer);
+      } catch (NoSuchMethodException e) {
+        // Java 8 direct buffers carry a sun.misc.Cleaner
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        if (cleaner != null) {
+          Method cleanMethod = cleaner.getClass().getMethod("clean");
+          cleanMethod.setAccessible(true);
+          cleanMethod.invoke(cleaner);
+        }
+      }
+    } catch (Throwable t) {
+      throw new RuntimeException("Failed to release the memory of a direct byte buffer", t);
+    }
+  }
+
+  /**
+   * A phantom reference that releases unsafe memory either when {@link #clean()} is called or once
+   * its referent has been collected, whatever happens first.
+   */
+  private static final class MemoryCleaner extends PhantomReference<Object> {
+
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+
+    /** Keeps the cleaners reachable until they ran. */
+    private static final Set<MemoryCleaner> PENDING = ConcurrentHashMap.newKeySet();
+
+    static {
+      Thread cleanerThread =
+          new Thread(
+              () -> {
+                while (true) {
+                  try {
+                    ((MemoryCleaner) QUEUE.remove()).clean();
+                  } catch (InterruptedException ignored) {
+                    // the cleaner thread lives as long as the JVM
+                  }
+                }
+              },
+              "Flink Memory Cleaner");
+      cleanerThread.setDaemon(true);
+      cleanerThread.start();
+    }
+
+    private final long address;
+
+    private final AtomicBoolean cleaned = new AtomicBoolean();
+
+    MemoryCleaner(Object owner, long address) {
+      super(owner, QUEUE);
+      this.address = address;
+      PENDING.add(this);
+    }
+
+    void clean() {
+      if (cleaned.compareAndSet(false, true)) {
+        PENDING.remove(this);
+        clear();
+        UNSAFE.freeMemory(address);
+      }
+    }
+  }
+
   private MemoryUtils() {
   }
 }
@@ -0,0 +1,15 @@
+package org.apache.flink.core.memory;
+
+/**
+ * Interface marking a {@link DataInputView} as seekable. Seekable views can set the position where
+ * they read from.
+ */
+public interface SeekableDataInputView extends DataInputView {
+
+  /**
+   * Sets the read pointer to the given position.
+   *
+   * @param position The new read position.
+   */
+  void setReadPosition(long position);
+}
@@ -0,0 +1,15 @@
+package org.apache.flink.core.memory;
+
+/**
+ * Interface marking a {@link DataOutputView} as seekable. Seekable views can set the position where
+ * they write to.
+ */
+public interface SeekableDataOutputView extends DataOutputView {
+
+  /**
+   * Sets the write pointer to the given position.
+   *
+   * @param position The new write position.
+   */
+  void setWritePosition(long position);
+}
@@ -0,0 +1,32 @@
+package org.apache.flink.metrics;
+
+/** A metric that counts up and down. */
+public interface Counter extends Metric {
+
+  /** Increments the count by one. */
+  void inc();
+
+  /**
+   * Increments the count by the given value.
+   *
+   * @param n The value to add.
+   */
+  void inc(long n);
+
+  /** Decrements the count by one. */
+  void dec();
+
+  /**
+   * Decrements the count by the given value.
+   *
+   * @param n The value to subtract.
+   */
+  void dec(long n);
+
+  /**
+   * Gets the current count.
+   *
+   * @return The current count.
+   */
+  long getCount();
+}
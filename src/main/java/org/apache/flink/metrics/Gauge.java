@@ -0,0 +1,17 @@
+package org.apache.flink.metrics;
+
+/**
+ * A metric that computes its value when it is read.
+ *
+ * @param <T> The type of the value.
+ */
+@FunctionalInterface
+public interface Gauge<T> extends Metric {
+
+  /**
+   * Computes the current value of the gauge.
+   *
+   * @return The current value.
+   */
+  T getValue();
+}
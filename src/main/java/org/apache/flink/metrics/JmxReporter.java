@@ -0,0 +1,159 @@
+package org.apache.flink.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Exposes the metrics of a {@link MetricRegistry} as the attributes of one MBean.
+ *
+ * <p>The MBean is dynamic: every metric that is registered at the time a JMX client asks for the
+ * MBean's attributes is listed, with counters as {@code long} values and gauges as their value
+ * or, if that is not a simple JMX type, its string form. All attributes are read-only.
+ */
+public final class JmxReporter implements AutoCloseable {
+
+  private final MBeanServer server;
+
+  private final ObjectName objectName;
+
+  private JmxReporter(MBeanServer server, ObjectName objectName) {
+    this.server = server;
+    this.objectName = objectName;
+  }
+
+  /**
+   * Registers an MBean for the given registry under the given name at the platform MBean server.
+   *
+   * @param registry The registry whose metrics to expose.
+   * @param objectName The object name, for example {@code "org.apache.flink:type=Memory"}.
+   * @return The reporter, which unregisters the MBean when closed.
+   * @throws JMException Thrown, if the name is malformed or already taken.
+   */
+  public static JmxReporter start(MetricRegistry registry, String objectName) throws JMException {
+    return start(registry, objectName, ManagementFactory.getPlatformMBeanServer());
+  }
+
+  /**
+   * Registers an MBean for the given registry under the given name at the given MBean server.
+   *
+   * @param registry The registry whose metrics to expose.
+   * @param objectName The object name, for example {@code "org.apache.flink:type=Memory"}.
+   * @param server The MBean server to register at.
+   * @return The reporter, which unregisters the MBean when closed.
+   * @throws JMException Thrown, if the name is malformed or already taken.
+   */
+  public static JmxReporter start(MetricRegistry registry, String objectName, MBeanServer server)
+      throws JMException {
+    final ObjectName name = new ObjectName(objectName);
+    server.registerMBean(new RegistryMBean(registry), name);
+    return new JmxReporter(server, name);
+  }
+
+  /**
+   * Gets the name under which the MBean is registered.
+   *
+   * @return The object name of the MBean.
+   */
+  public ObjectName getObjectName() {
+    return objectName;
+  }
+
+  @Override
+  public void close() {
+    try {
+      server.unregisterMBean(objectName);
+    } catch (InstanceNotFoundException ignored) {
+      // already unregistered
+    } catch (JMException e) {
+      throw new IllegalStateException("Could not unregister the MBean " + objectName, e);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+
+  private static final class RegistryMBean implements DynamicMBean {
+
+    private final MetricRegistry registry;
+
+    RegistryMBean(MetricRegistry registry) {
+      this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+      final Metric metric = registry.getMetric(attribute);
+      if (metric == null) {
+        throw new AttributeNotFoundException("No metric named " + attribute);
+      }
+      return toJmxValue(MetricRegistry.valueOf(metric));
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+      final AttributeList list = new AttributeList();
+      for (String attribute : attributes) {
+        final Metric metric = registry.getMetric(attribute);
+        if (metric != null) {
+          list.add(new Attribute(attribute, toJmxValue(MetricRegistry.valueOf(metric))));
+        }
+      }
+      return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+      throw new AttributeNotFoundException("The metric " + attribute.getName() + " is read-only.");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+      return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature)
+        throws ReflectionException {
+      throw new ReflectionException(
+          new NoSuchMethodException(actionName), "The metrics MBean has no operations.");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+      final Set<String> names = new TreeSet<>(registry.getMetricNames());
+      final MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[names.size()];
+      int i = 0;
+      for (String name : names) {
+        final Metric metric = registry.getMetric(name);
+        final String type = metric instanceof Counter ? "long" : jmxType(metric);
+        attributes[i++] = new MBeanAttributeInfo(name, type, name, true, false, false);
+      }
+      return new MBeanInfo(
+          RegistryMBean.class.getName(), "Flink metrics", attributes, null, null, null);
+    }
+
+    private static String jmxType(Metric metric) {
+      final Object value = metric == null ? null : MetricRegistry.valueOf(metric);
+      return isSimpleType(value) ? value.getClass().getName() : String.class.getName();
+    }
+
+    private static Object toJmxValue(Object value) {
+      return isSimpleType(value) ? value : String.valueOf(value);
+    }
+
+    private static boolean isSimpleType(Object value) {
+      return value instanceof Number || value instanceof Boolean || value instanceof String;
+    }
+  }
+}
@@ -0,0 +1,4 @@
+package org.apache.flink.metrics;
+
+/** Common super interface for all metrics that can be registered in a {@link MetricRegistry}. */
+public interface Metric {}
@@ -0,0 +1,127 @@
+package org.apache.flink.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe registry of named {@link Metric metrics}.
+ *
+ * <p>Components register their metrics under dot-separated names, for example {@code
+ * "taskmanager.memory.HEAP.liveBytes"}. Counters that several components update together are
+ * obtained through {@link #counter(String)}, which returns the counter already registered under the
+ * name, if any. The registry only holds the metrics; {@link JmxReporter} exposes them through JMX.
+ */
+public final class MetricRegistry {
+
+  private final ConcurrentHashMap<String, Metric> metrics = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the counter registered under the given name, registering a new {@link SimpleCounter} if
+   * there is none.
+   *
+   * @param name The name of the counter.
+   * @return The counter registered under the name.
+   * @throws IllegalStateException Thrown, if a metric that is not a counter is registered under the
+   *     name.
+   */
+  public Counter counter(String name) {
+    final Metric metric = metrics.computeIfAbsent(checkName(name), n -> new SimpleCounter());
+    if (!(metric instanceof Counter)) {
+      throw new IllegalStateException("The metric '" + name + "' is not a counter.");
+    }
+    return (Counter) metric;
+  }
+
+  /**
+   * Registers the given metric under the given name, replacing any metric previously registered
+   * under that name.
+   *
+   * @param name The name of the metric.
+   * @param metric The metric to register.
+   * @param <M> The type of the metric.
+   * @return The registered metric.
+   */
+  public <M extends Metric> M register(String name, M metric) {
+    if (metric == null) {
+      throw new NullPointerException("metric");
+    }
+    metrics.put(checkName(name), metric);
+    return metric;
+  }
+
+  /**
+   * Removes the metric registered under the given name.
+   *
+   * @param name The name of the metric.
+   * @return True, if a metric was registered under the name, false otherwise.
+   */
+  public boolean unregister(String name) {
+    return metrics.remove(name) != null;
+  }
+
+  /**
+   * Removes the given metric, but only if it is still the one registered under the given name.
+   * This lets a component remove its metric without removing one that another component has since
+   * registered under the same name.
+   *
+   * @param name The name of the metric.
+   * @param metric The metric to remove.
+   * @return True, if the metric was removed, false otherwise.
+   */
+  public boolean unregister(String name, Metric metric) {
+    return metrics.remove(name, metric);
+  }
+
+  /**
+   * Gets the metric registered under the given name.
+   *
+   * @param name The name of the metric.
+   * @return The metric, or null, if no metric is registered under the name.
+   */
+  public Metric getMetric(String name) {
+    return metrics.get(name);
+  }
+
+  /**
+   * Gets the names of all registered metrics.
+   *
+   * @return An unmodifiable view of the metric names.
+   */
+  public Set<String> getMetricNames() {
+    return Collections.unmodifiableSet(metrics.keySet());
+  }
+
+  /**
+   * Reads the current values of all registered metrics, sorted by name. Counters are read as their
+   * count, gauges as their value.
+   *
+   * @return The metric values by name.
+   */
+  public Map<String, Object> snapshot() {
+    final Map<String, Object> values = new TreeMap<>();
+    for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+      values.put(entry.getKey(), valueOf(entry.getValue()));
+    }
+    return values;
+  }
+
+  static Object valueOf(Metric metric) {
+    if (metric instanceof Counter) {
+      return ((Counter) metric).getCount();
+    } else if (metric instanceof Gauge) {
+      return ((Gauge<?>) metric).getValue();
+    } else {
+      return String.valueOf(metric);
+    }
+  }
+
+  private static String checkName(String name) {
+    if (name == null || name.isEmpty()) {
+      throw new IllegalArgumentException("The metric name must not be null or empty.");
+    }
+    return name;
+  }
+}
@@ -0,0 +1,39 @@
+package org.apache.flink.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe {@link Counter}. The count is kept in a {@link LongAdder}, so that threads that
+ * update the counter concurrently do not contend on one memory location. Reading the count sums up
+ * the cells and is comparatively expensive, which suits metrics that are updated often and read
+ * rarely.
+ */
+public final class SimpleCounter implements Counter {
+
+  private final LongAdder count = new LongAdder();
+
+  @Override
+  public void inc() {
+    count.increment();
+  }
+
+  @Override
+  public void inc(long n) {
+    count.add(n);
+  }
+
+  @Override
+  public void dec() {
+    count.decrement();
+  }
+
+  @Override
+  public void dec(long n) {
+    count.add(-n);
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+}
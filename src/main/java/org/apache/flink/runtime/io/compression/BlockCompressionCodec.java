@@ -0,0 +1,66 @@
+package org.apache.flink.runtime.io.compression;
+
+import java.io.IOException;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A codec that compresses a range of a {@link MemorySegment} into another segment, and
+ * decompresses it back. The compressed form is a self-contained block: decompressing it needs no
+ * other information than the compressed bytes and an upper bound of the decompressed length.
+ *
+ * <p>Codecs may keep scratch state between calls, so an instance must not be used by several
+ * threads concurrently. Source and target ranges must not overlap.
+ *
+ * @see Lz4BlockCompressionCodec
+ * @see NoCompressionCodec
+ */
+public interface BlockCompressionCodec {
+
+  /**
+   * Gets the maximal length of the compressed form of the given number of bytes. The target range
+   * of {@link #compress(MemorySegment, int, int, MemorySegment, int)} must be at least as long.
+   *
+   * @param length The number of bytes to compress.
+   * @return The maximal number of bytes of the compressed data.
+   */
+  int maxCompressedLength(int length);
+
+  /**
+   * Compresses the given range of the source segment into the target segment.
+   *
+   * @param source The segment holding the data to compress.
+   * @param sourceOffset The offset of the data in the source segment.
+   * @param length The number of bytes to compress.
+   * @param target The segment to write the compressed data to.
+   * @param targetOffset The offset in the target segment to write the compressed data at.
+   * @return The number of bytes of the compressed data.
+   * @throws IndexOutOfBoundsException Thrown, if the source range is not within the source
+   *     segment, or the target segment has fewer than {@link #maxCompressedLength(int)} bytes
+   *     behind the target offset.
+   */
+  int compress(
+      MemorySegment source, int sourceOffset, int length, MemorySegment target, int targetOffset);
+
+  /**
+   * Decompresses data that was compressed by this codec.
+   *
+   * @param source The segment holding the compressed data.
+   * @param sourceOffset The offset of the compressed data in the source segment.
+   * @param length The number of bytes of the compressed data.
+   * @param target The segment to write the decompressed data to.
+   * @param targetOffset The offset in the target segment to write the decompressed data at.
+   * @param maxLength The maximal number of bytes to write into the target segment.
+   * @return The number of bytes of the decompressed data.
+   * @throws IOException Thrown, if the compressed data is malformed or decompresses to more than
+   *     the given maximal number of bytes.
+   * @throws IndexOutOfBoundsException Thrown, if one of the ranges is not within its segment.
+   */
+  int decompress(
+      MemorySegment source,
+      int sourceOffset,
+      int length,
+      MemorySegment target,
+      int targetOffset,
+      int maxLength)
+      throws IOException;
+}
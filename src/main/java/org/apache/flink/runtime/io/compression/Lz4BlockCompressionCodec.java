@@ -0,0 +1,338 @@
+package org.apache.flink.runtime.io.compression;
+
+import java.io.IOException;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A fast {@link BlockCompressionCodec} that writes the LZ4 block format, implemented in pure Java
+ * on top of {@link MemorySegment}s.
+ *
+ * <p>The compressed block is a sequence of sequences, each made of a token byte, a run of literal
+ * bytes and a back reference of a 2-byte little-endian offset (up to 64 KB back) and a match
+ * length of at least 4 bytes. The high and low four bits of the token hold the literal length and
+ * the match length minus 4; the value 15 announces further length bytes, which are summed up until
+ * a byte below 255. The last sequence consists of literals only. As in the reference
+ * implementation, the last 5 bytes of the input are always literals and no match starts within
+ * the last 12 bytes, so the output is readable by any LZ4 block decoder.
+ *
+ * <p>The compressor finds matches through a hash table over the 4-byte words of the input. The
+ * table stores positions relative to the start of the input and is not cleared between blocks:
+ * every candidate is verified against the input anyway, so stale entries of earlier blocks only
+ * cost a missed match. The search skips ahead faster the longer it finds no match, which keeps the
+ * throughput high on incompressible data.
+ *
+ * <p>The decompressor validates every length and offset against the source and target ranges
+ * before it copies, so that malformed input fails with an {@link IOException} instead of reading
+ * or writing out of bounds. Like the reference implementation, it copies short literal runs and
+ * matches as whole words, so it may write behind the end of the decompressed data, though never
+ * behind the given maximal length.
+ */
+public final class Lz4BlockCompressionCodec implements BlockCompressionCodec {
+
+  private static final int MIN_MATCH = 4;
+
+  /** The number of bytes at the end of the input that are always literals. */
+  private static final int LAST_LITERALS = 5;
+
+  /** The distance from the end of the input within which no match may start. */
+  private static final int MF_LIMIT = 12;
+
+  /** Inputs shorter than this are written as literals only. */
+  private static final int MIN_LENGTH = MF_LIMIT + 1;
+
+  private static final int MAX_DISTANCE = (1 << 16) - 1;
+
+  private static final int HASH_LOG = 12;
+
+  /** The number of unsuccessful probes after which the search step grows by one byte. */
+  private static final int SKIP_STRENGTH = 6;
+
+  private static final int RUN_MASK = 0xf;
+
+  /** The number of bytes the decompressor copies at once for short literal runs and matches. */
+  private static final int WILD_COPY_LENGTH = 16;
+
+  /** The maximal length of copies that are done word by word instead of as bulk copies. */
+  private static final int SHORT_COPY_LENGTH = 32;
+
+  // ------------------------------------------------------------------------
+
+  /** The positions of the last 4-byte words with the same hash, relative to the input start. */
+  private final int[] hashTable = new int[1 << HASH_LOG];
+
+  @Override
+  public int maxCompressedLength(int length) {
+    if (length < 0) {
+      throw new IllegalArgumentException("Negative length: " + length);
+    }
+    return length + length / 255 + 16;
+  }
+
+  @Override
+  public int compress(
+      MemorySegment source, int sourceOffset, int length, MemorySegment target, int targetOffset) {
+    checkRange(source, sourceOffset, length);
+    checkRange(target, targetOffset, maxCompressedLength(length));
+
+    final int[] table = hashTable;
+    final int end = sourceOffset + length;
+    int anchor = sourceOffset;
+    int dp = targetOffset;
+
+    if (length >= MIN_LENGTH) {
+      final int matchLimit = end - LAST_LITERALS;
+      final int searchLimit = end - MF_LIMIT;
+      int sp = sourceOffset;
+
+      while (sp < searchLimit) {
+        final int word = source.getInt(sp);
+        final int h = hash(word);
+        final int ref = sourceOffset + table[h];
+        table[h] = sp - sourceOffset;
+
+        if (ref < sourceOffset
+            || ref >= sp
+            || sp - ref > MAX_DISTANCE
+            || source.getInt(ref) != word) {
+          sp += 1 + ((sp - anchor) >>> SKIP_STRENGTH);
+          continue;
+        }
+
+        // extend the match backwards over the pending literals, then forwards
+        int start = sp;
+        int matchRef = ref;
+        while (start > anchor
+            && matchRef > sourceOffset
+            && source.get(start - 1) == source.get(matchRef - 1)) {
+          start--;
+          matchRef--;
+        }
+        final int matchEnd = findMatchEnd(source, sp + MIN_MATCH, ref + MIN_MATCH, matchLimit);
+
+        dp =
+            writeSequence(
+                source, anchor, start - anchor, start - matchRef, matchEnd - start, target, dp);
+        sp = matchEnd;
+        anchor = sp;
+
+        if (sp < searchLimit) {
+          // the position just before the match end gives matches in repetitive data
+          table[hash(source.getInt(sp - 2))] = sp - 2 - sourceOffset;
+        }
+      }
+    }
+
+    // the remaining bytes are written as the last literals
+    final int literals = end - anchor;
+    if (literals >= RUN_MASK) {
+      target.put(dp++, (byte) (RUN_MASK << 4));
+      dp = writeLength(target, dp, literals - RUN_MASK);
+    } else {
+      target.put(dp++, (byte) (literals << 4));
+    }
+    copy(source, anchor, target, dp, literals);
+    dp += literals;
+
+    return dp - targetOffset;
+  }
+
+  @Override
+  public int decompress(
+      MemorySegment source,
+      int sourceOffset,
+      int length,
+      MemorySegment target,
+      int targetOffset,
+      int maxLength)
+      throws IOException {
+    checkRange(source, sourceOffset, length);
+    checkRange(target, targetOffset, maxLength);
+
+    final int end = sourceOffset + length;
+    final int targetEnd = targetOffset + maxLength;
+    int sp = sourceOffset;
+    int dp = targetOffset;
+
+    while (true) {
+      if (sp >= end) {
+        throw malformed(sp - sourceOffset, "The input ends before the last sequence.");
+      }
+      final int token = source.get(sp++) & 0xff;
+
+      // literals
+      int literals = token >>> 4;
+      if (literals < RUN_MASK
+          && end - sp >= WILD_COPY_LENGTH
+          && targetEnd - dp >= WILD_COPY_LENGTH) {
+        // short runs are copied as two words, the excess bytes are overwritten by what follows
+        target.putLong(dp, source.getLong(sp));
+        target.putLong(dp + 8, source.getLong(sp + 8));
+      } else {
+        if (literals == RUN_MASK) {
+          int b;
+          do {
+            if (sp >= end) {
+              throw malformed(sp - sourceOffset, "The input ends within a literal length.");
+            }
+            b = source.get(sp++) & 0xff;
+            literals += b;
+          } while (b == 255 && literals <= maxLength);
+        }
+        if (literals > end - sp || literals > targetEnd - dp) {
+          throw malformed(
+              sp - sourceOffset,
+              "The literal length " + literals + " exceeds the input or the output bounds.");
+        }
+        copy(source, sp, target, dp, literals);
+      }
+      sp += literals;
+      dp += literals;
+
+      if (sp == end) {
+        // the last sequence has no match
+        return dp - targetOffset;
+      }
+
+      // match
+      if (end - sp < 2) {
+        throw malformed(sp - sourceOffset, "The input ends within a match offset.");
+      }
+      final int offset = source.getShortLittleEndian(sp) & 0xffff;
+      sp += 2;
+      if (offset == 0 || offset > dp - targetOffset) {
+        throw malformed(sp - sourceOffset, "Invalid match offset " + offset + '.');
+      }
+
+      int matchLength = token & RUN_MASK;
+      if (matchLength == RUN_MASK) {
+        int b;
+        do {
+          if (sp >= end) {
+            throw malformed(sp - sourceOffset, "The input ends within a match length.");
+          }
+          b = source.get(sp++) & 0xff;
+          matchLength += b;
+        } while (b == 255 && matchLength <= maxLength);
+      }
+      matchLength += MIN_MATCH;
+      if (matchLength > targetEnd - dp) {
+        throw malformed(
+            sp - sourceOffset, "The match length " + matchLength + " exceeds the output bounds.");
+      }
+
+      final int matchEnd = dp + matchLength;
+      final int ref = dp - offset;
+      if (offset >= 8 && matchLength <= WILD_COPY_LENGTH && targetEnd - dp >= WILD_COPY_LENGTH) {
+        // with an offset of at least 8, every word is read only after it has been written
+        target.putLong(dp, target.getLong(ref));
+        target.putLong(dp + 8, target.getLong(ref + 8));
+        dp = matchEnd;
+      } else {
+        // overlapping matches repeat the last 'offset' bytes; copying in steps of the growing
+        // distance keeps every single copy free of overlap
+        while (dp < matchEnd) {
+          final int chunk = Math.min(matchEnd - dp, dp - ref);
+          copy(target, ref, target, dp, chunk);
+          dp += chunk;
+        }
+      }
+    }
+  }
+
+  // ------------------------------------------------------------------------
+
+  private static int hash(int word) {
+    return (word * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  /**
+   * Finds the end of the match that continues at the given positions, but not behind the limit.
+   * Most matches end within the first word, which is compared right here; longer ones are
+   * extended by {@link MemorySegment#mismatch}.
+   */
+  private static int findMatchEnd(MemorySegment source, int sp, int ref, int limit) {
+    if (limit - sp >= 8) {
+      final long diff = source.getLongLittleEndian(sp) ^ source.getLongLittleEndian(ref);
+      if (diff != 0) {
+        return sp + (Long.numberOfTrailingZeros(diff) >>> 3);
+      }
+      sp += 8;
+      ref += 8;
+    }
+    final int mismatch = source.mismatch(source, sp, ref, limit - sp);
+    return mismatch < 0 ? limit : sp + mismatch;
+  }
+
+  private static int writeSequence(
+      MemorySegment source,
+      int literalStart,
+      int literals,
+      int offset,
+      int matchLength,
+      MemorySegment target,
+      int dp) {
+    final int matchCode = matchLength - MIN_MATCH;
+    final int tokenPos = dp++;
+    int token;
+
+    if (literals >= RUN_MASK) {
+      token = RUN_MASK << 4;
+      dp = writeLength(target, dp, literals - RUN_MASK);
+    } else {
+      token = literals << 4;
+    }
+    copy(source, literalStart, target, dp, literals);
+    dp += literals;
+
+    target.putShortLittleEndian(dp, (short) offset);
+    dp += 2;
+
+    if (matchCode >= RUN_MASK) {
+      token |= RUN_MASK;
+      dp = writeLength(target, dp, matchCode - RUN_MASK);
+    } else {
+      token |= matchCode;
+    }
+    target.put(tokenPos, (byte) token);
+    return dp;
+  }
+
+  /**
+   * Copies a range that the caller has checked to be within bounds. Most literal runs and matches
+   * are a few bytes long, where the fixed cost of a bulk copy outweighs copying word by word.
+   */
+  private static void copy(
+      MemorySegment source, int sourceOffset, MemorySegment target, int targetOffset, int length) {
+    if (length > SHORT_COPY_LENGTH) {
+      source.copyTo(sourceOffset, target, targetOffset, length);
+      return;
+    }
+    int i = 0;
+    for (; i <= length - 8; i += 8) {
+      target.putLong(targetOffset + i, source.getLong(sourceOffset + i));
+    }
+    for (; i < length; i++) {
+      target.put(targetOffset + i, source.get(sourceOffset + i));
+    }
+  }
+
+  private static int writeLength(MemorySegment target, int dp, int length) {
+    for (; length >= 255; length -= 255) {
+      target.put(dp++, (byte) 255);
+    }
+    target.put(dp++, (byte) length);
+    return dp;
+  }
+
+  private static void checkRange(MemorySegment segment, int offset, int length) {
+    if ((offset | length) < 0 || offset > segment.size() - length) {
+      throw new IndexOutOfBoundsException(
+          String.format("offset=%d, length=%d, size=%d", offset, length, segment.size()));
+    }
+  }
+
+  private static IOException malformed(int position, String message) {
+    return new IOException(
+        "Malformed LZ4 block at position " + position + " of the compressed data: " + message);
+  }
+}
@@ -0,0 +1,46 @@
+package org.apache.flink.runtime.io.compression;
+
+import java.io.IOException;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A {@link BlockCompressionCodec} that copies the data as it is. It fills the place of a codec
+ * where compression is configurable but disabled, and serves as the baseline for measuring the
+ * cost of the compressing codecs. The codec is stateless and may be shared between threads.
+ */
+public final class NoCompressionCodec implements BlockCompressionCodec {
+
+  /** The shared instance of the codec. */
+  public static final NoCompressionCodec INSTANCE = new NoCompressionCodec();
+
+  private NoCompressionCodec() {}
+
+  @Override
+  public int maxCompressedLength(int length) {
+    return length;
+  }
+
+  @Override
+  public int compress(
+      MemorySegment source, int sourceOffset, int length, MemorySegment target, int targetOffset) {
+    source.copyTo(sourceOffset, target, targetOffset, length);
+    return length;
+  }
+
+  @Override
+  public int decompress(
+      MemorySegment source,
+      int sourceOffset,
+      int length,
+      MemorySegment target,
+      int targetOffset,
+      int maxLength)
+      throws IOException {
+    if (length > maxLength) {
+      throw new IOException(
+          "The data of " + length + " bytes exceeds the maximal length of " + maxLength + '.');
+    }
+    source.copyTo(sourceOffset, target, targetOffset, length);
+    return length;
+  }
+}
@@ -0,0 +1,263 @@
+package org.apache.flink.runtime.io.disk;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.compression.BlockCompressionCodec;
+import org.apache.flink.runtime.memory.AbstractPagedInputView;
+import org.apache.flink.util.Crc32C;
+
+/**
+ * A {@link org.apache.flink.core.memory.DataInputView} that is backed by a {@link FileChannel},
+ * making it effectively a data input stream. The view reads the blocks written by a {@link
+ * ChannelWriterOutputView} one after the other into its memory segment, starting at the channel's
+ * current position, and stops after the block that is flagged as the last one.
+ *
+ * <p>The checksums of the blocks are verified as the blocks are read. Corrupt blocks fail with an
+ * {@link IOException} that names the file and the offset of the block in it. A view that expects
+ * checksums also fails on blocks without one, so that corruption of the flags cannot turn the
+ * verification off. Compressed blocks are read into a separate segment, verified, and decompressed
+ * into the view's segment.
+ */
+public final class ChannelReaderInputView extends AbstractPagedInputView {
+
+  private final FileChannel channel;
+
+  private final File file; // the file of the channel, for error messages, may be null
+
+  private final long startPosition; // the position of the first block in the channel
+
+  private final Crc32C checksum = new Crc32C();
+
+  private final boolean checksums; // whether every block must carry a checksum
+
+  private final BlockCompressionCodec codec; // null, if no compressed blocks are expected
+
+  private MemorySegment compressedSegment; // lazily allocated, freed on close
+
+  private ByteBuffer stagingBuffer; // lazily allocated, only needed for heap segments
+
+  private int currentLimit; // the limit of the block in the segment
+
+  private boolean lastBlockRead; // flag whether the last block of the channel has been read
+
+  private long bytesRead; // the number of bytes read from the channel, including headers
+
+  /**
+   * Creates a new input view that reads the blocks from the given channel through the given
+   * memory segment. Every block must carry a checksum. The first block is read immediately.
+   *
+   * @param channel The channel to read from.
+   * @param segment The memory segment to read the blocks into.
+   * @throws IOException Thrown, if the first block could not be read.
+   */
+  public ChannelReaderInputView(FileChannel channel, MemorySegment segment) throws IOException {
+    this(channel, segment, null);
+  }
+
+  /**
+   * Creates a new input view that reads the blocks from the given channel through the given
+   * memory segment. Every block must carry a checksum. The first block is read immediately.
+   *
+   * @param channel The channel to read from.
+   * @param segment The memory segment to read the blocks into.
+   * @param file The file of the channel, which is named in the errors about corrupt blocks.
+   * @throws IOException Thrown, if the first block could not be read.
+   */
+  public ChannelReaderInputView(FileChannel channel, MemorySegment segment, File file)
+      throws IOException {
+    this(channel, segment, file, true, null);
+  }
+
+  /**
+   * Creates a new input view that reads the blocks from the given channel through the given
+   * memory segment. The first block is read immediately.
+   *
+   * @param channel The channel to read from.
+   * @param segment The memory segment to read the blocks into.
+   * @param file The file of the channel, which is named in the errors about corrupt blocks.
+   * @param checksums Whether every block must carry a checksum, as written by a {@link
+   *     ChannelWriterOutputView} with checksums. Blocks that carry one are verified regardless.
+   * @param codec The codec the blocks were compressed with, or null, if they are not compressed.
+   * @throws IOException Thrown, if the first block could not be read.
+   */
+  public ChannelReaderInputView(
+      FileChannel channel,
+      MemorySegment segment,
+      File file,
+      boolean checksums,
+      BlockCompressionCodec codec)
+      throws IOException {
+    super(ChannelWriterOutputView.HEADER_LENGTH);
+    if (channel == null || segment == null) {
+      throw new NullPointerException();
+    }
+    this.channel = channel;
+    this.file = file;
+    this.checksums = checksums;
+    this.codec = codec;
+    this.startPosition = channel.position();
+    readBlock(segment);
+    seekInput(segment, ChannelWriterOutputView.HEADER_LENGTH, this.currentLimit);
+  }
+
+  /**
+   * Gets the number of bytes read from the channel so far, including the block headers.
+   *
+   * @return The number of bytes read.
+   */
+  public long getBytesRead() {
+    return this.bytesRead;
+  }
+
+  /**
+   * Releases the view's reference to its memory segment and frees the segment that compressed
+   * blocks were read into, which releases its off-heap memory right away. The channel itself stays
+   * open.
+   *
+   * @return The memory segment used by this view, or null, if the view was already closed.
+   */
+  public MemorySegment close() {
+    final MemorySegment segment = getCurrentSegment();
+    clear();
+    if (this.compressedSegment != null) {
+      this.compressedSegment.free();
+      this.compressedSegment = null;
+    }
+    return segment;
+  }
+
+  // --------------------------------------------------------------------------------------------
+  //                                        Utilities
+  // --------------------------------------------------------------------------------------------
+
+  @Override
+  protected MemorySegment nextSegment(MemorySegment current) throws IOException {
+    if (this.lastBlockRead || current == null) {
+      throw new EOFException();
+    }
+    readBlock(current);
+    return current;
+  }
+
+  @Override
+  protected int getLimitForSegment(MemorySegment segment) {
+    return this.currentLimit;
+  }
+
+  private void readBlock(MemorySegment segment) throws IOException {
+    final int headerLength = ChannelWriterOutputView.HEADER_LENGTH;
+
+    // read the header into the segment to learn the block length, then read the remainder
+    readFully(segment, 0, headerLength);
+    if (segment.getShortBigEndian(0) != ChannelWriterOutputView.HEADER_MAGIC_NUMBER) {
+      throw new IOException(
+          "The block at "
+              + describeBlock()
+              + " does not belong to a ChannelWriterOutputView / "
+              + "ChannelReaderInputView: Wrong magic number.");
+    }
+
+    final int blockLength =
+        segment.getIntBigEndian(ChannelWriterOutputView.HEAD_BLOCK_LENGTH_OFFSET);
+    if (blockLength < headerLength || blockLength > segment.size()) {
+      throw new IOException(
+          "Corrupt block header at "
+              + describeBlock()
+              + ": Invalid block length "
+              + blockLength
+              + '.');
+    }
+
+    // compressed blocks are read next to the segment and decompressed into it once verified
+    final short flags = segment.getShortBigEndian(ChannelWriterOutputView.HEADER_FLAGS_OFFSET);
+    final boolean compressed = (flags & ChannelWriterOutputView.FLAG_COMPRESSED) != 0;
+    final boolean hasChecksum = (flags & ChannelWriterOutputView.FLAG_CHECKSUM) != 0;
+    if (this.checksums && !hasChecksum) {
+      throw new IOException("The block at " + describeBlock() + " carries no checksum.");
+    }
+    final MemorySegment block;
+    if (compressed) {
+      if (this.codec == null) {
+        throw new IOException(
+            "The block at " + describeBlock() + " is compressed, but the reader has no codec.");
+      }
+      if (this.compressedSegment == null) {
+        this.compressedSegment =
+            HybridMemorySegment.FACTORY.allocateOffHeapUnsafeMemory(segment.size(), null);
+      }
+      block = this.compressedSegment;
+      segment.copyTo(0, block, 0, headerLength);
+    } else {
+      block = segment;
+    }
+    readFully(block, headerLength, blockLength - headerLength);
+
+    if (hasChecksum) {
+      final int expected = block.getIntBigEndian(ChannelWriterOutputView.HEADER_CHECKSUM_OFFSET);
+      final int actual = ChannelWriterOutputView.computeChecksum(this.checksum, block);
+      if (expected != actual) {
+        throw new IOException(
+            String.format(
+                "Checksum mismatch in the block at %s: expected 0x%08x, but computed 0x%08x.",
+                describeBlock(), expected, actual));
+      }
+    }
+
+    if (compressed) {
+      final int dataLength;
+      try {
+        dataLength =
+            this.codec.decompress(
+                block,
+                headerLength,
+                blockLength - headerLength,
+                segment,
+                headerLength,
+                segment.size() - headerLength);
+      } catch (IOException e) {
+        throw new IOException("Could not decompress the block at " + describeBlock() + '.', e);
+      }
+      this.currentLimit = headerLength + dataLength;
+    } else {
+      this.currentLimit = blockLength;
+    }
+    this.lastBlockRead = (flags & ChannelWriterOutputView.FLAG_LAST_BLOCK) != 0;
+    this.bytesRead += blockLength;
+  }
+
+  /** Describes the location of the block that is currently read, for error messages. */
+  private String describeBlock() {
+    final long offset = this.startPosition + this.bytesRead;
+    return "offset " + offset + " of " + (this.file != null ? "file " + this.file : "the channel");
+  }
+
+  private void readFully(MemorySegment segment, int offset, int numBytes) throws IOException {
+    final ByteBuffer buffer;
+    if (segment.isOffHeap()) {
+      buffer = segment.wrap(offset, numBytes);
+    } else {
+      if (this.stagingBuffer == null) {
+        this.stagingBuffer = ByteBuffer.allocateDirect(segment.size());
+      }
+      buffer = this.stagingBuffer;
+      buffer.clear();
+      buffer.limit(numBytes);
+    }
+
+    while (buffer.hasRemaining()) {
+      if (this.channel.read(buffer) < 0) {
+        throw new EOFException("The channel ended before the block was read completely.");
+      }
+    }
+
+    if (!segment.isOffHeap()) {
+      buffer.flip();
+      segment.put(offset, buffer, numBytes);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package org.apache.flink.runtime.io.disk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.util.MutableObjectIterator;
+
+/**
+ * A simple iterator over the records in a {@link ChannelReaderInputView}, de-serializing them
+ * with the given {@link TypeSerializer}.
+ *
+ * @param <E> The type of the records.
+ */
+public class ChannelReaderInputViewIterator<E> implements MutableObjectIterator<E> {
+
+  private final ChannelReaderInputView inView;
+
+  private final TypeSerializer<E> accessors;
+
+  public ChannelReaderInputViewIterator(
+      ChannelReaderInputView inView, TypeSerializer<E> accessors) {
+    this.inView = inView;
+    this.accessors = accessors;
+  }
+
+  @Override
+  public E next(E reuse) throws IOException {
+    try {
+      return this.accessors.deserialize(reuse, this.inView);
+    } catch (EOFException eofex) {
+      return null;
+    }
+  }
+
+  @Override
+  public E next() throws IOException {
+    try {
+      return this.accessors.deserialize(this.inView);
+    } catch (EOFException eofex) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package org.apache.flink.runtime.io.disk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.compression.BlockCompressionCodec;
+import org.apache.flink.runtime.memory.AbstractPagedOutputView;
+import org.apache.flink.util.Crc32C;
+
+/**
+ * A {@link org.apache.flink.core.memory.DataOutputView} that is backed by a {@link FileChannel},
+ * making it effectively a data output stream. The view writes its data in blocks to the channel:
+ * Whenever the memory segment is full, the segment is written as one block and the view continues
+ * writing into the same segment.
+ *
+ * <p>Each block starts with a header of {@link #HEADER_LENGTH} bytes, holding a magic number,
+ * flags, the number of valid bytes in the block (including the header), and a CRC-32C checksum
+ * of the block (see {@link Crc32C}). The checksum covers all valid bytes of the block but the
+ * checksum field itself; the reader verifies it, unless the view was created without checksums,
+ * which the flags record. Blocks are written with exactly their valid bytes, so the last block of
+ * a channel is usually shorter than the others. The blocks are read back by a {@link
+ * ChannelReaderInputView}.
+ *
+ * <p>If the view is created with a {@link BlockCompressionCodec}, the data behind the header of
+ * every block is compressed before the block is written. Blocks that do not shrink are written
+ * uncompressed, so incompressible data costs only the compression attempt. Compressed blocks are
+ * flagged in the header, and their checksum covers the compressed bytes, so corruption is
+ * detected before the data is decompressed. The reader must be created with the same codec.
+ *
+ * <p>Off-heap segments are handed to the channel directly. Heap segments are copied through {@link
+ * MemorySegment#get(int, ByteBuffer, int)} into one direct staging buffer, which the channel would
+ * otherwise have to allocate per write.
+ */
+public final class ChannelWriterOutputView extends AbstractPagedOutputView {
+
+  /** The magic number that identifies blocks as blocks from a ChannelWriterOutputView. */
+  static final short HEADER_MAGIC_NUMBER = (short) 0xC0FE;
+
+  /** The length of the header put into the blocks. */
+  public static final int HEADER_LENGTH = 12;
+
+  /** The offset to the flags in the header. */
+  static final int HEADER_FLAGS_OFFSET = 2;
+
+  /** The offset to the header field indicating the number of bytes in the block. */
+  static final int HEAD_BLOCK_LENGTH_OFFSET = 4;
+
+  /** The offset to the header field holding the checksum of the block. */
+  static final int HEADER_CHECKSUM_OFFSET = 8;
+
+  /** The flag marking a block as the last block. */
+  static final short FLAG_LAST_BLOCK = (short) 0x1;
+
+  /** The flag marking a block as carrying a checksum. */
+  static final short FLAG_CHECKSUM = (short) 0x2;
+
+  /** The flag marking the data of a block as compressed. */
+  static final short FLAG_COMPRESSED = (short) 0x4;
+
+  // --------------------------------------------------------------------------------------------
+
+  private final FileChannel channel;
+
+  private ByteBuffer stagingBuffer; // lazily allocated, only needed for heap segments
+
+  private final Crc32C checksum; // null, if the blocks carry no checksums
+
+  private final BlockCompressionCodec codec; // null, if the blocks are not compressed
+
+  private MemorySegment compressionSegment; // lazily allocated, freed on close
+
+  private long bytesWritten; // the number of bytes written to the channel, including headers
+
+  private int blockCount; // the number of blocks written to the channel
+
+  private boolean closed;
+
+  // --------------------------------------------------------------------------------------------
+
+  /**
+   * Creates a new output view that writes through the given memory segment to the channel. The
+   * channel is written from its current position on.
+   *
+   * @param channel The channel to write to.
+   * @param segment The memory segment to collect the blocks in.
+   */
+  public ChannelWriterOutputView(FileChannel channel, MemorySegment segment) {
+    this(channel, segment, true);
+  }
+
+  /**
+   * Creates a new output view that writes through the given memory segment to the channel. The
+   * channel is written from its current position on.
+   *
+   * @param channel The channel to write to.
+   * @param segment The memory segment to collect the blocks in.
+   * @param checksums Whether to write a checksum into every block.
+   */
+  public ChannelWriterOutputView(FileChannel channel, MemorySegment segment, boolean checksums) {
+    this(channel, segment, checksums, null);
+  }
+
+  /**
+   * Creates a new output view that writes through the given memory segment to the channel. The
+   * channel is written from its current position on.
+   *
+   * @param channel The channel to write to.
+   * @param segment The memory segment to collect the blocks in.
+   * @param checksums Whether to write a checksum into every block.
+   * @param codec The codec to compress the blocks with, or null, to write them uncompressed.
+   */
+  public ChannelWriterOutputView(
+      FileChannel channel, MemorySegment segment, boolean checksums, BlockCompressionCodec codec) {
+    super(segment, segment.size(), HEADER_LENGTH);
+    if (channel == null) {
+      throw new NullPointerException("channel");
+    }
+    this.channel = channel;
+    this.checksum = checksums ? new Crc32C() : null;
+    this.codec = codec;
+  }
+
+  // --------------------------------------------------------------------------------------------
+
+  /**
+   * Writes the last, partially filled block and closes the view. The channel itself stays open.
+   * The segment the blocks were compressed into is freed, which releases its off-heap memory right
+   * away, even if the last block could not be written.
+   *
+   * @return The number of bytes written to the channel, including the block headers.
+   * @throws IOException Thrown, if the last block could not be written.
+   */
+  public long close() throws IOException {
+    if (!this.closed) {
+      this.closed = true;
+      try {
+        writeSegment(getCurrentSegment(), getCurrentPositionInSegment(), true);
+      } finally {
+        clear();
+        if (this.compressionSegment != null) {
+          this.compressionSegment.free();
+          this.compressionSegment = null;
+        }
+      }
+    }
+    return this.bytesWritten;
+  }
+
+  /**
+   * Writes the given segment as one block to the channel, ahead of the data that is buffered in
+   * this view. The first {@link #HEADER_LENGTH} bytes of the segment are overwritten with the
+   * block header, the data must follow behind them. This allows to hand over data that was
+   * collected in segments of the same layout without copying it record by record.
+   *
+   * @param segment The segment to write.
+   * @param writePosition The position one after the last valid byte in the segment.
+   * @throws IOException Thrown, if the block could not be written.
+   */
+  public void writeBlock(MemorySegment segment, int writePosition) throws IOException {
+    if (this.closed) {
+      throw new IllegalStateException("The view has been closed.");
+    }
+    if (writePosition < HEADER_LENGTH || writePosition > segment.size()) {
+      throw new IllegalArgumentException("Invalid write position: " + writePosition);
+    }
+    writeSegment(segment, writePosition, false);
+  }
+
+  /**
+   * Gets the number of bytes written to the channel so far, including the block headers. Data
+   * that sits in the current, not yet written block is not counted.
+   *
+   * @return The number of bytes written to the channel.
+   */
+  public long getBytesWritten() {
+    return this.bytesWritten;
+  }
+
+  /**
+   * Gets the number of blocks written to the channel so far.
+   *
+   * @return The number of blocks written.
+   */
+  public int getBlockCount() {
+    return this.blockCount;
+  }
+
+  // --------------------------------------------------------------------------------------------
+  //                                      Page Management
+  // --------------------------------------------------------------------------------------------
+
+  @Override
+  protected MemorySegment nextSegment(MemorySegment current, int positionInCurrent)
+      throws IOException {
+    writeSegment(current, positionInCurrent, false);
+    return current;
+  }
+
+  private void writeSegment(MemorySegment segment, int writePosition, boolean lastSegment)
+      throws IOException {
+    short flags = lastSegment ? FLAG_LAST_BLOCK : 0;
+    if (this.checksum != null) {
+      flags |= FLAG_CHECKSUM;
+    }
+    if (this.codec != null && writePosition > HEADER_LENGTH) {
+      final int compressedLength = compress(segment, writePosition);
+      if (compressedLength < writePosition) {
+        segment = this.compressionSegment;
+        writePosition = compressedLength;
+        flags |= FLAG_COMPRESSED;
+      }
+    }
+    segment.putShortBigEndian(0, HEADER_MAGIC_NUMBER);
+    segment.putShortBigEndian(HEADER_FLAGS_OFFSET, flags);
+    segment.putIntBigEndian(HEAD_BLOCK_LENGTH_OFFSET, writePosition);
+    if (this.checksum != null) {
+      segment.putIntBigEndian(HEADER_CHECKSUM_OFFSET, computeChecksum(this.checksum, segment));
+    } else {
+      segment.putIntBigEndian(HEADER_CHECKSUM_OFFSET, 0);
+    }
+
+    final ByteBuffer buffer;
+    if (segment.isOffHeap()) {
+      buffer = segment.wrap(0, writePosition);
+    } else {
+      if (this.stagingBuffer == null) {
+        this.stagingBuffer = ByteBuffer.allocateDirect(this.segmentSize);
+      }
+      buffer = this.stagingBuffer;
+      buffer.clear();
+      segment.get(0, buffer, writePosition);
+      buffer.flip();
+    }
+
+    while (buffer.hasRemaining()) {
+      this.channel.write(buffer);
+    }
+
+    this.bytesWritten += writePosition;
+    this.blockCount++;
+  }
+
+  /**
+   * Compresses the data of the block into the compression segment, behind the space for the
+   * header.
+   *
+   * @return The length of the compressed block, including the header.
+   */
+  private int compress(MemorySegment segment, int writePosition) {
+    if (this.compressionSegment == null) {
+      // off-heap, so that compressed blocks are handed to the channel without staging
+      final int capacity = this.codec.maxCompressedLength(this.segmentSize - HEADER_LENGTH);
+      this.compressionSegment =
+          HybridMemorySegment.FACTORY.allocateOffHeapUnsafeMemory(HEADER_LENGTH + capacity, null);
+    }
+    return HEADER_LENGTH
+        + this.codec.compress(
+            segment,
+            HEADER_LENGTH,
+            writePosition - HEADER_LENGTH,
+            this.compressionSegment,
+            HEADER_LENGTH);
+  }
+
+  /**
+   * Computes the checksum of the block in the given segment, whose header holds the block length.
+   * The checksum covers the header up to the checksum field and the data behind the header.
+   */
+  static int computeChecksum(Crc32C checksum, MemorySegment segment) {
+    final int blockLength = segment.getIntBigEndian(HEAD_BLOCK_LENGTH_OFFSET);
+    checksum.reset();
+    checksum.update(segment, 0, HEADER_CHECKSUM_OFFSET);
+    checksum.update(segment, HEADER_LENGTH, blockLength - HEADER_LENGTH);
+    return checksum.getValue();
+  }
+}
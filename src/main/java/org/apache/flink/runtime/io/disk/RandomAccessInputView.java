@@ -0,0 +1,93 @@
+package org.apache.flink.runtime.io.disk;
+
+import java.io.EOFException;
+import java.util.ArrayList;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.SeekableDataInputView;
+import org.apache.flink.runtime.memory.AbstractPagedInputView;
+import org.apache.flink.util.MathUtils;
+
+/**
+ * A seekable input view over a list of memory segments of equal size. Positions are addressed
+ * linearly over all segments, the segment size must therefore be a power of two.
+ */
+public class RandomAccessInputView extends AbstractPagedInputView
+    implements SeekableDataInputView {
+
+  private final ArrayList<MemorySegment> segments;
+
+  private int currentSegmentIndex;
+
+  private final int segmentSizeBits;
+
+  private final int segmentSizeMask;
+
+  private final int segmentSize;
+
+  private final int limitInLastSegment;
+
+  public RandomAccessInputView(ArrayList<MemorySegment> segments, int segmentSize) {
+    this(segments, segmentSize, segmentSize);
+  }
+
+  public RandomAccessInputView(
+      ArrayList<MemorySegment> segments, int segmentSize, int limitInLastSegment) {
+    this(segments, segmentSize, limitInLastSegment, 0);
+  }
+
+  /**
+   * Creates a view over segments that each start with a header of the given length. Positions
+   * still address the segments linearly, including the headers, but reads that cross a segment
+   * boundary continue behind the next segment's header.
+   */
+  public RandomAccessInputView(
+      ArrayList<MemorySegment> segments,
+      int segmentSize,
+      int limitInLastSegment,
+      int headerLength) {
+    super(segments.get(0), segments.size() > 1 ? segmentSize : limitInLastSegment, headerLength);
+    this.segments = segments;
+    this.currentSegmentIndex = 0;
+    this.segmentSize = segmentSize;
+    this.segmentSizeBits = MathUtils.log2strict(segmentSize);
+    this.segmentSizeMask = segmentSize - 1;
+    this.limitInLastSegment = limitInLastSegment;
+  }
+
+  @Override
+  public void setReadPosition(long position) {
+    final int bufferNum = (int) (position >>> this.segmentSizeBits);
+    final int offset = (int) (position & this.segmentSizeMask);
+    this.currentSegmentIndex = bufferNum;
+    seekInput(
+        this.segments.get(bufferNum),
+        offset,
+        bufferNum < this.segments.size() - 1 ? this.segmentSize : this.limitInLastSegment);
+  }
+
+  /**
+   * Gets the position from which the next byte will be read, as an offset over all segments.
+   *
+   * @return The current read position.
+   */
+  public long getReadPosition() {
+    return (((long) currentSegmentIndex) << segmentSizeBits) + getCurrentPositionInSegment();
+  }
+
+  @Override
+  protected MemorySegment nextSegment(MemorySegment current) throws EOFException {
+    if (++this.currentSegmentIndex < this.segments.size()) {
+      return this.segments.get(this.currentSegmentIndex);
+    } else {
+      this.currentSegmentIndex--;
+      throw new EOFException();
+    }
+  }
+
+  @Override
+  protected int getLimitForSegment(MemorySegment segment) {
+    return this.currentSegmentIndex == this.segments.size() - 1
+        ? this.limitInLastSegment
+        : this.segmentSize;
+  }
+}
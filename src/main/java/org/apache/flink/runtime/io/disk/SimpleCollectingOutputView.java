@@ -0,0 +1,69 @@
+package org.apache.flink.runtime.io.disk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentSource;
+import org.apache.flink.runtime.memory.AbstractPagedOutputView;
+import org.apache.flink.util.MathUtils;
+
+/**
+ * The list with the full segments contains at any point all completely full segments, plus the
+ * segment that is currently filled.
+ */
+public class SimpleCollectingOutputView extends AbstractPagedOutputView {
+
+  private final List<MemorySegment> fullSegments;
+
+  private final MemorySegmentSource memorySource;
+
+  private final int segmentSizeBits;
+
+  private int segmentNum;
+
+  public SimpleCollectingOutputView(
+      List<MemorySegment> fullSegmentTarget, MemorySegmentSource memSource, int segmentSize) {
+    super(memSource.nextSegment(), segmentSize, 0);
+    this.segmentSizeBits = MathUtils.log2strict(segmentSize);
+    this.fullSegments = fullSegmentTarget;
+    this.memorySource = memSource;
+    this.fullSegments.add(getCurrentSegment());
+  }
+
+  public void reset() {
+    if (this.fullSegments.size() != 0) {
+      throw new IllegalStateException("The target list still contains memory segments.");
+    }
+
+    clear();
+    try {
+      advance();
+    } catch (IOException ioex) {
+      throw new RuntimeException("Error getting first segment for record collector.", ioex);
+    }
+    this.segmentNum = 0;
+  }
+
+  @Override
+  protected MemorySegment nextSegment(MemorySegment current, int positionInCurrent)
+      throws EOFException {
+    final MemorySegment next = this.memorySource.nextSegment();
+    if (next != null) {
+      this.fullSegments.add(next);
+      this.segmentNum++;
+      return next;
+    } else {
+      throw new EOFException("Can't collect further: memorySource depleted");
+    }
+  }
+
+  /**
+   * Gets the position at which the next byte will be written, as an offset over all segments.
+   *
+   * @return The current write offset.
+   */
+  public long getCurrentOffset() {
+    return (((long) this.segmentNum) << this.segmentSizeBits) + getCurrentPositionInSegment();
+  }
+}
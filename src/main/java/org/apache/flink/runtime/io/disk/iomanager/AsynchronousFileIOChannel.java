@@ -0,0 +1,174 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The base class of the channels whose requests are processed asynchronously by an I/O thread of
+ * the {@link IOManager}. The channel counts its pending requests, so that closing it waits for
+ * them, and keeps the first failure of a request, which it rethrows on the next call.
+ *
+ * @param <T> The type of the buffers that the requests read or write.
+ */
+public abstract class AsynchronousFileIOChannel<T> implements FileIOChannel {
+
+  private final ID id;
+
+  /** The file channel, which only the I/O thread uses while the channel is open. */
+  protected final FileChannel fileChannel;
+
+  private final IOThread ioThread;
+
+  private final RequestDoneCallback<T> callback;
+
+  /** The number of requests that have been issued but not returned through the callback. */
+  private final AtomicInteger requestsNotReturned = new AtomicInteger();
+
+  private final Object closeLock = new Object();
+
+  /** The first failure of a request, rethrown by the next call. */
+  private volatile IOException exception;
+
+  private volatile boolean closed;
+
+  AsynchronousFileIOChannel(
+      ID id, IOThread ioThread, RequestDoneCallback<T> callback, boolean writeEnabled)
+      throws IOException {
+    if (callback == null) {
+      throw new NullPointerException("callback");
+    }
+    this.id = id;
+    this.ioThread = ioThread;
+    this.callback = callback;
+    this.fileChannel =
+        writeEnabled
+            ? FileChannel.open(
+                id.getPath().toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+            : FileChannel.open(id.getPath().toPath(), StandardOpenOption.READ);
+  }
+
+  @Override
+  public ID getChannelID() {
+    return id;
+  }
+
+  @Override
+  public long getSize() throws IOException {
+    return fileChannel.size();
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Checks whether a request of this channel has failed.
+   *
+   * @throws IOException The failure of the first failed request.
+   */
+  public void checkErroneous() throws IOException {
+    final IOException e = exception;
+    if (e != null) {
+      throw new IOException("A request of the channel " + id + " failed: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Waits until all pending requests have been processed and closes the channel.
+   *
+   * @throws IOException Thrown, if a request of the channel failed, or the file cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (closeLock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        boolean interrupted = false;
+        while (requestsNotReturned.get() > 0) {
+          try {
+            closeLock.wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+        checkErroneous();
+      } finally {
+        fileChannel.close();
+      }
+    }
+  }
+
+  @Override
+  public void deleteChannel() {
+    if (!closed || fileChannel.isOpen()) {
+      throw new IllegalStateException("Cannot delete the file of an open channel.");
+    }
+    IOManager.deleteChannel(id);
+  }
+
+  @Override
+  public void closeAndDelete() throws IOException {
+    try {
+      close();
+    } finally {
+      IOManager.deleteChannel(id);
+    }
+  }
+
+  // --------------------------------------------------------------------------------------------
+
+  /**
+   * Queues a request for the I/O thread of the channel.
+   *
+   * @throws IOException Thrown, if an earlier request failed, or the I/O manager has shut down.
+   */
+  void addRequest(IORequest request) throws IOException {
+    checkErroneous();
+    if (closed) {
+      throw new IllegalStateException("The channel " + id + " has been closed.");
+    }
+    requestsNotReturned.incrementAndGet();
+    try {
+      ioThread.addRequest(request);
+    } catch (IOException e) {
+      requestsNotReturned.decrementAndGet();
+      throw e;
+    }
+  }
+
+  /**
+   * Hands the buffer of a done request to the callback. Called by the I/O thread.
+   *
+   * @param buffer The buffer of the request, or null, if the request had none.
+   * @param e The cause of the failure, or null, if the request completed successfully.
+   */
+  void handleProcessedBuffer(T buffer, IOException e) {
+    try {
+      if (e != null && exception == null) {
+        exception = e;
+      }
+      if (buffer != null) {
+        if (e == null) {
+          callback.requestSuccessful(buffer);
+        } else {
+          callback.requestFailed(buffer, e);
+        }
+      }
+    } finally {
+      if (requestsNotReturned.decrementAndGet() == 0 && closed) {
+        synchronized (closeLock) {
+          closeLock.notifyAll();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A channel that reads blocks from a file into memory segments, asynchronously. {@link
+ * #readBlock(MemorySegment)} only queues the segment for the reader thread of the channel's
+ * spilling directory, which fills the complete segment with the next bytes of the file. Once the
+ * segment is filled, the channel hands it to its {@link RequestDoneCallback}, usually a {@link
+ * QueuingCallback} that returns it to a queue from which the caller takes the filled segments.
+ *
+ * <p>The requests are processed in the order of the calls, so issuing several requests ahead of
+ * consuming the segments reads the file ahead sequentially. A request that reaches the end of the
+ * file fails with an {@link EOFException}, which is rethrown by the next call of the channel.
+ */
+public final class BlockChannelReader extends AsynchronousFileIOChannel<MemorySegment> {
+
+  private final LinkedBlockingQueue<MemorySegment> returnQueue; // null, with a custom callback
+
+  BlockChannelReader(ID id, IOThread readerThread, RequestDoneCallback<MemorySegment> callback)
+      throws IOException {
+    super(id, readerThread, callback, false);
+    this.returnQueue =
+        callback instanceof QueuingCallback
+            ? ((QueuingCallback<MemorySegment>) callback).getQueue()
+            : null;
+  }
+
+  /**
+   * Issues a request to read the next block of the file into the given segment.
+   *
+   * @param segment The segment to read into.
+   * @throws IOException Thrown, if an earlier request failed, or the I/O manager has shut down.
+   */
+  public void readBlock(MemorySegment segment) throws IOException {
+    addRequest(new SegmentReadRequest(this, segment));
+  }
+
+  /**
+   * Issues a request to continue reading at the given position of the file. The request takes
+   * effect after the read requests issued before it.
+   *
+   * @param position The position in the file to read the next block from.
+   * @throws IOException Thrown, if an earlier request failed, or the I/O manager has shut down.
+   */
+  public void seekToPosition(long position) throws IOException {
+    if (position < 0) {
+      throw new IllegalArgumentException("Negative position: " + position);
+    }
+    addRequest(new SeekRequest(this, position));
+  }
+
+  /**
+   * Gets the queue that the filled segments are returned to.
+   *
+   * @return The return queue.
+   * @throws IllegalStateException Thrown, if the channel was created with a custom callback.
+   */
+  public LinkedBlockingQueue<MemorySegment> getReturnQueue() {
+    if (returnQueue == null) {
+      throw new IllegalStateException("The channel returns its segments to a custom callback.");
+    }
+    return returnQueue;
+  }
+
+  /**
+   * Takes the next filled segment from the return queue, waiting until a read completes, if the
+   * queue is empty.
+   *
+   * @return The next filled segment.
+   * @throws IOException Thrown, if a request failed, or the thread was interrupted while waiting.
+   */
+  public MemorySegment getNextReturnedBlock() throws IOException {
+    return BlockChannelWriter.takeReturnedBlock(this, getReturnQueue());
+  }
+
+  // --------------------------------------------------------------------------------------------
+
+  private static final class SegmentReadRequest implements IORequest {
+
+    private final BlockChannelReader channel;
+
+    private final MemorySegment segment;
+
+    SegmentReadRequest(BlockChannelReader channel, MemorySegment segment) {
+      this.channel = channel;
+      this.segment = segment;
+    }
+
+    @Override
+    public void process(IOThread thread) throws IOException {
+      final int size = segment.size();
+      final ByteBuffer buffer =
+          segment.isOffHeap() ? segment.wrap(0, size) : thread.getStagingBuffer(size);
+      while (buffer.hasRemaining()) {
+        if (channel.fileChannel.read(buffer) < 0) {
+          throw new EOFException(
+              "The file " + channel.getChannelID() + " ended before the block was read.");
+        }
+      }
+      if (!segment.isOffHeap()) {
+        buffer.flip();
+        segment.put(0, buffer, size);
+      }
+    }
+
+    @Override
+    public void requestDone(IOException e) {
+      channel.handleProcessedBuffer(segment, e);
+    }
+  }
+
+  private static final class SeekRequest implements IORequest {
+
+    private final BlockChannelReader channel;
+
+    private final long position;
+
+    SeekRequest(BlockChannelReader channel, long position) {
+      this.channel = channel;
+      this.position = position;
+    }
+
+    @Override
+    public void process(IOThread thread) throws IOException {
+      channel.fileChannel.position(position);
+    }
+
+    @Override
+    public void requestDone(IOException e) {
+      channel.handleProcessedBuffer(null, e);
+    }
+  }
+}
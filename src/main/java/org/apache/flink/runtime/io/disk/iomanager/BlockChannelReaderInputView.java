@@ -0,0 +1,192 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.memory.AbstractPagedInputView;
+import org.apache.flink.util.Crc32C;
+
+/**
+ * A {@link org.apache.flink.core.memory.DataInputView} that reads the blocks written by a {@link
+ * BlockChannelWriterOutputView} from a {@link BlockChannelReader}. The view reads ahead: it issues
+ * a read request for each of its memory segments right away, and whenever it is done with a
+ * segment, issues the read of the next outstanding block into it. The data of a block is thus
+ * usually in memory before the view gets to it, and the disk reads while the data is processed.
+ *
+ * <p>The checksums of the blocks are verified as the view gets to them. Corrupt blocks fail with
+ * an {@link IOException} that names the channel and the index of the block.
+ */
+public final class BlockChannelReaderInputView extends AbstractPagedInputView {
+
+  private final BlockChannelReader reader;
+
+  private final int numBlocks;
+
+  private final List<MemorySegment> freeMem; // the segments that wait for no block
+
+  private final Crc32C checksum = new Crc32C();
+
+  private int numRequestsRemaining; // the number of blocks whose read was not issued yet
+
+  private int blocksRead; // the number of blocks the view got to
+
+  private int currentLimit; // the limit of the block in the current segment
+
+  private boolean lastBlockRead;
+
+  private boolean closed;
+
+  /**
+   * Creates a new input view that reads the given number of blocks from the reader, which must
+   * return its segments to a queue. The reads of the first blocks are issued, and the view waits
+   * for the first one.
+   *
+   * @param reader The reader to read the blocks from, positioned at the first block.
+   * @param memory The memory segments to read the blocks into, at least one. The more segments,
+   *     the further the view reads ahead.
+   * @param numBlocks The number of blocks in the channel, see {@link
+   *     BlockChannelWriterOutputView#getBlockCount()}.
+   * @throws IOException Thrown, if the first block could not be read.
+   */
+  public BlockChannelReaderInputView(
+      BlockChannelReader reader, List<MemorySegment> memory, int numBlocks) throws IOException {
+    super(BlockChannelWriterOutputView.HEADER_LENGTH);
+    if (reader == null || memory == null) {
+      throw new NullPointerException();
+    }
+    if (memory.isEmpty()) {
+      throw new IllegalArgumentException("The view needs at least one memory segment.");
+    }
+    if (numBlocks < 1) {
+      throw new IllegalArgumentException("Invalid number of blocks: " + numBlocks);
+    }
+    this.reader = reader;
+    this.numBlocks = numBlocks;
+    this.numRequestsRemaining = numBlocks;
+    this.freeMem = new ArrayList<>(memory.size());
+    for (MemorySegment segment : memory) {
+      sendReadRequest(segment);
+    }
+    doAdvance();
+  }
+
+  /**
+   * Waits until the issued reads are done, closes the reader, and returns the memory of the view.
+   * If a read failed, the segments can be taken from the return queue of the reader.
+   *
+   * @return The memory segments of the view.
+   * @throws IOException Thrown, if a read failed.
+   */
+  public List<MemorySegment> close() throws IOException {
+    if (this.closed) {
+      throw new IllegalStateException("The view has already been closed.");
+    }
+    this.closed = true;
+    final MemorySegment current = getCurrentSegment();
+    clear();
+    if (current != null) {
+      this.freeMem.add(current);
+    }
+    try {
+      this.reader.close();
+    } catch (IOException | RuntimeException e) {
+      this.reader.getReturnQueue().addAll(this.freeMem);
+      this.freeMem.clear();
+      throw e;
+    }
+    this.reader.getReturnQueue().drainTo(this.freeMem);
+    return this.freeMem;
+  }
+
+  // --------------------------------------------------------------------------------------------
+  //                                        Utilities
+  // --------------------------------------------------------------------------------------------
+
+  @Override
+  protected MemorySegment nextSegment(MemorySegment current) throws IOException {
+    if (this.lastBlockRead) {
+      throw new EOFException();
+    }
+    if (current != null) {
+      sendReadRequest(current);
+      // the segment waits for a block now, so a failure to get the next one must not keep it
+      clear();
+    }
+
+    final MemorySegment segment = this.reader.getNextReturnedBlock();
+    try {
+      this.currentLimit = checkBlock(segment);
+    } catch (IOException e) {
+      // the segment is neither the current one nor waiting for a block, so close() must find it
+      this.freeMem.add(segment);
+      throw e;
+    }
+    return segment;
+  }
+
+  /**
+   * Validates the header and the checksum of the block in the given segment.
+   *
+   * @return The length of the block.
+   */
+  private int checkBlock(MemorySegment segment) throws IOException {
+    final int headerLength = BlockChannelWriterOutputView.HEADER_LENGTH;
+    if (segment.getShortBigEndian(0) != BlockChannelWriterOutputView.HEADER_MAGIC_NUMBER) {
+      throw new IOException(
+          "The "
+              + describeBlock()
+              + " does not belong to a BlockChannelWriterOutputView: Wrong magic number.");
+    }
+    final int blockLength =
+        segment.getIntBigEndian(BlockChannelWriterOutputView.HEAD_BLOCK_LENGTH_OFFSET);
+    if (blockLength < headerLength || blockLength > segment.size()) {
+      throw new IOException(
+          "Corrupt header of the " + describeBlock() + ": Invalid block length " + blockLength);
+    }
+    final int expected =
+        segment.getIntBigEndian(BlockChannelWriterOutputView.HEADER_CHECKSUM_OFFSET);
+    final int actual = BlockChannelWriterOutputView.computeChecksum(this.checksum, segment);
+    if (expected != actual) {
+      throw new IOException(
+          String.format(
+              "Checksum mismatch in the %s: expected 0x%08x, but computed 0x%08x.",
+              describeBlock(), expected, actual));
+    }
+
+    final short flags =
+        segment.getShortBigEndian(BlockChannelWriterOutputView.HEADER_FLAGS_OFFSET);
+    this.lastBlockRead = (flags & BlockChannelWriterOutputView.FLAG_LAST_BLOCK) != 0;
+    this.blocksRead++;
+    if (this.lastBlockRead != (this.blocksRead == this.numBlocks)) {
+      throw new IOException(
+          "The channel "
+              + this.reader.getChannelID()
+              + " does not hold "
+              + this.numBlocks
+              + " blocks.");
+    }
+    return blockLength;
+  }
+
+  @Override
+  protected int getLimitForSegment(MemorySegment segment) {
+    return this.currentLimit;
+  }
+
+  /** Issues the read of the next outstanding block into the segment, if there is one. */
+  private void sendReadRequest(MemorySegment segment) throws IOException {
+    if (this.numRequestsRemaining > 0) {
+      this.reader.readBlock(segment);
+      this.numRequestsRemaining--;
+    } else {
+      this.freeMem.add(segment);
+    }
+  }
+
+  /** Describes the block that is currently read, for error messages. */
+  private String describeBlock() {
+    return "block " + this.blocksRead + " of the channel " + this.reader.getChannelID();
+  }
+}
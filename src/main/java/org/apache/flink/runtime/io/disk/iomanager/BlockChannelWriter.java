@@ -0,0 +1,129 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A channel that writes memory segments as blocks to a file, asynchronously. {@link
+ * #writeBlock(MemorySegment)} only queues the segment for the writer thread of the channel's
+ * spilling directory, which appends the complete segment to the file. Once the segment is
+ * written, the channel hands it to its {@link RequestDoneCallback}, usually a {@link
+ * QueuingCallback} that returns it to a queue from which the caller takes the segments to fill
+ * next. The segment must not be modified while it is being written.
+ *
+ * <p>The blocks are written in the order of the calls, and all blocks of the file have the size
+ * of their segments. A failed write is rethrown by the next call of the channel.
+ */
+public final class BlockChannelWriter extends AsynchronousFileIOChannel<MemorySegment> {
+
+  private final LinkedBlockingQueue<MemorySegment> returnQueue; // null, with a custom callback
+
+  BlockChannelWriter(ID id, IOThread writerThread, RequestDoneCallback<MemorySegment> callback)
+      throws IOException {
+    super(id, writerThread, callback, true);
+    this.returnQueue =
+        callback instanceof QueuingCallback
+            ? ((QueuingCallback<MemorySegment>) callback).getQueue()
+            : null;
+  }
+
+  /**
+   * Issues a request to write the given segment as the next block of the file.
+   *
+   * @param segment The segment to write.
+   * @throws IOException Thrown, if an earlier request failed, or the I/O manager has shut down.
+   */
+  public void writeBlock(MemorySegment segment) throws IOException {
+    addRequest(new SegmentWriteRequest(this, segment));
+  }
+
+  /**
+   * Gets the queue that the written segments are returned to.
+   *
+   * @return The return queue.
+   * @throws IllegalStateException Thrown, if the channel was created with a custom callback.
+   */
+  public LinkedBlockingQueue<MemorySegment> getReturnQueue() {
+    if (returnQueue == null) {
+      throw new IllegalStateException("The channel returns its segments to a custom callback.");
+    }
+    return returnQueue;
+  }
+
+  /**
+   * Takes the next written segment from the return queue, waiting until a write completes, if
+   * the queue is empty.
+   *
+   * @return The next written segment.
+   * @throws IOException Thrown, if a request failed, or the thread was interrupted while waiting.
+   */
+  public MemorySegment getNextReturnedBlock() throws IOException {
+    return takeReturnedBlock(this, getReturnQueue());
+  }
+
+  /**
+   * Takes the next segment from the queue, rethrowing the failures of the channel's requests. A
+   * segment that was taken when the failure is rethrown is put back into the queue.
+   */
+  static MemorySegment takeReturnedBlock(
+      AsynchronousFileIOChannel<MemorySegment> channel, LinkedBlockingQueue<MemorySegment> queue)
+      throws IOException {
+    try {
+      while (true) {
+        final MemorySegment next = queue.poll(1000, TimeUnit.MILLISECONDS);
+        try {
+          channel.checkErroneous();
+        } catch (IOException e) {
+          if (next != null) {
+            queue.add(next);
+          }
+          throw e;
+        }
+        if (next != null) {
+          return next;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the next block.", e);
+    }
+  }
+
+  // --------------------------------------------------------------------------------------------
+
+  private static final class SegmentWriteRequest implements IORequest {
+
+    private final BlockChannelWriter channel;
+
+    private final MemorySegment segment;
+
+    SegmentWriteRequest(BlockChannelWriter channel, MemorySegment segment) {
+      this.channel = channel;
+      this.segment = segment;
+    }
+
+    @Override
+    public void process(IOThread thread) throws IOException {
+      final int size = segment.size();
+      final ByteBuffer buffer;
+      if (segment.isOffHeap()) {
+        buffer = segment.wrap(0, size);
+      } else {
+        buffer = thread.getStagingBuffer(size);
+        segment.get(0, buffer, size);
+        buffer.flip();
+      }
+      while (buffer.hasRemaining()) {
+        channel.fileChannel.write(buffer);
+      }
+    }
+
+    @Override
+    public void requestDone(IOException e) {
+      channel.handleProcessedBuffer(segment, e);
+    }
+  }
+}
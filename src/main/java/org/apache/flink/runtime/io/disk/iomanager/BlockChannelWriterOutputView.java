@@ -0,0 +1,186 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.memory.AbstractPagedOutputView;
+import org.apache.flink.util.Crc32C;
+
+/**
+ * A {@link org.apache.flink.core.memory.DataOutputView} that writes its data in blocks to a {@link
+ * BlockChannelWriter}. Whenever a memory segment is full, the view issues the write of the segment
+ * and continues in the next free segment, so that the data is serialized while the previous
+ * segments are written. With a single segment, the view waits for each write to complete before
+ * it continues; with two or more, it only waits if the disk falls behind.
+ *
+ * <p>Each block occupies a complete segment and starts with a header of {@link #HEADER_LENGTH}
+ * bytes, holding a magic number, flags, the number of valid bytes in the block (including the
+ * header), and a CRC-32C checksum of the valid bytes but the checksum field itself. Since all
+ * blocks have the same size, a {@link BlockChannelReaderInputView} can read them ahead without
+ * knowing their lengths.
+ */
+public final class BlockChannelWriterOutputView extends AbstractPagedOutputView {
+
+  /** The magic number that identifies blocks as blocks from a BlockChannelWriterOutputView. */
+  static final short HEADER_MAGIC_NUMBER = (short) 0xC0FF;
+
+  /** The length of the header put into the blocks. */
+  public static final int HEADER_LENGTH = 12;
+
+  /** The offset to the flags in the header. */
+  static final int HEADER_FLAGS_OFFSET = 2;
+
+  /** The offset to the header field indicating the number of bytes in the block. */
+  static final int HEAD_BLOCK_LENGTH_OFFSET = 4;
+
+  /** The offset to the header field holding the checksum of the block. */
+  static final int HEADER_CHECKSUM_OFFSET = 8;
+
+  /** The flag marking a block as the last block. */
+  static final short FLAG_LAST_BLOCK = (short) 0x1;
+
+  // --------------------------------------------------------------------------------------------
+
+  private final BlockChannelWriter writer;
+
+  private final int numSegments;
+
+  private final Crc32C checksum = new Crc32C();
+
+  private long bytesWritten; // the number of bytes written to the channel, including headers
+
+  private int blockCount; // the number of blocks written to the channel
+
+  private boolean closed;
+
+  /**
+   * Creates a new output view that writes through the given memory segments to the writer, which
+   * must return its segments to a queue.
+   *
+   * @param writer The writer to write the blocks to.
+   * @param memory The memory segments to collect the blocks in, at least one.
+   * @param segmentSize The size of the memory segments.
+   * @throws IllegalArgumentException Thrown, if no segments are given, or a segment has another
+   *     size.
+   */
+  public BlockChannelWriterOutputView(
+      BlockChannelWriter writer, List<MemorySegment> memory, int segmentSize) {
+    super(segmentSize, HEADER_LENGTH);
+    if (writer == null || memory == null) {
+      throw new NullPointerException();
+    }
+    if (memory.isEmpty()) {
+      throw new IllegalArgumentException("The view needs at least one memory segment.");
+    }
+    for (MemorySegment segment : memory) {
+      if (segment.size() != segmentSize) {
+        throw new IllegalArgumentException(
+            "The memory segments must have a size of " + segmentSize + " bytes.");
+      }
+    }
+    this.writer = writer;
+    this.numSegments = memory.size();
+
+    // the free segments wait in the return queue, as if they had been written already
+    final LinkedBlockingQueue<MemorySegment> returnQueue = writer.getReturnQueue();
+    for (int i = 1; i < memory.size(); i++) {
+      returnQueue.add(memory.get(i));
+    }
+    seekOutput(memory.get(0), HEADER_LENGTH);
+  }
+
+  /**
+   * Writes the last, partially filled block, waits until all blocks are written, and closes the
+   * writer. If a write fails, the segments can be taken from the return queue of the writer once
+   * the writer is closed.
+   *
+   * @return The memory segments of the view.
+   * @throws IOException Thrown, if a block could not be written.
+   */
+  public List<MemorySegment> close() throws IOException {
+    if (this.closed) {
+      throw new IllegalStateException("The view has already been closed.");
+    }
+    this.closed = true;
+    final MemorySegment current = getCurrentSegment();
+    final int position = getCurrentPositionInSegment();
+    clear();
+    if (current == null) {
+      // the view lost no segment, it was handed to the writer before advancing failed
+      throw new IOException(
+          "The last block of the channel "
+              + this.writer.getChannelID()
+              + " cannot be written, because an earlier block failed.");
+    }
+    try {
+      writeSegment(current, position, true);
+    } catch (IOException | RuntimeException e) {
+      // the segment was not handed to the writer, so it joins the others in the return queue
+      this.writer.getReturnQueue().add(current);
+      throw e;
+    }
+    this.writer.close();
+
+    final List<MemorySegment> memory = new ArrayList<>(this.numSegments);
+    this.writer.getReturnQueue().drainTo(memory, this.numSegments);
+    return memory;
+  }
+
+  /**
+   * Gets the number of bytes written to the channel so far, including the block headers and the
+   * unused remainders of the blocks.
+   *
+   * @return The number of bytes written to the channel.
+   */
+  public long getBytesWritten() {
+    return this.bytesWritten;
+  }
+
+  /**
+   * Gets the number of blocks written to the channel so far, which a {@link
+   * BlockChannelReaderInputView} needs to read them back.
+   *
+   * @return The number of blocks written.
+   */
+  public int getBlockCount() {
+    return this.blockCount;
+  }
+
+  // --------------------------------------------------------------------------------------------
+  //                                      Page Management
+  // --------------------------------------------------------------------------------------------
+
+  @Override
+  protected MemorySegment nextSegment(MemorySegment current, int positionInCurrent)
+      throws IOException {
+    writeSegment(current, positionInCurrent, false);
+    // the segment belongs to the writer now, so a failure to get the next one must not keep it
+    clear();
+    return this.writer.getNextReturnedBlock();
+  }
+
+  private void writeSegment(MemorySegment segment, int writePosition, boolean lastSegment)
+      throws IOException {
+    segment.putShortBigEndian(0, HEADER_MAGIC_NUMBER);
+    segment.putShortBigEndian(HEADER_FLAGS_OFFSET, lastSegment ? FLAG_LAST_BLOCK : 0);
+    segment.putIntBigEndian(HEAD_BLOCK_LENGTH_OFFSET, writePosition);
+    segment.putIntBigEndian(HEADER_CHECKSUM_OFFSET, computeChecksum(this.checksum, segment));
+    this.writer.writeBlock(segment);
+    this.bytesWritten += this.segmentSize;
+    this.blockCount++;
+  }
+
+  /**
+   * Computes the checksum of the block in the given segment, whose header holds the block length.
+   * The checksum covers the header up to the checksum field and the data behind the header.
+   */
+  static int computeChecksum(Crc32C checksum, MemorySegment segment) {
+    final int blockLength = segment.getIntBigEndian(HEAD_BLOCK_LENGTH_OFFSET);
+    checksum.reset();
+    checksum.update(segment, 0, HEADER_CHECKSUM_OFFSET);
+    checksum.update(segment, HEADER_LENGTH, blockLength - HEADER_LENGTH);
+    return checksum.getValue();
+  }
+}
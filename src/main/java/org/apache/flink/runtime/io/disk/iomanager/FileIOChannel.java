@@ -0,0 +1,165 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A channel to a file in one of the spilling directories of an {@link IOManager}, whose requests
+ * are processed by the I/O threads of that directory.
+ */
+public interface FileIOChannel {
+
+  /**
+   * Gets the ID of the channel.
+   *
+   * @return The channel ID.
+   */
+  ID getChannelID();
+
+  /**
+   * Gets the size of the underlying file, in bytes.
+   *
+   * @return The size of the file.
+   * @throws IOException Thrown, if the size cannot be determined.
+   */
+  long getSize() throws IOException;
+
+  /**
+   * Checks whether the channel has been closed.
+   *
+   * @return True, if the channel has been closed, false otherwise.
+   */
+  boolean isClosed();
+
+  /**
+   * Closes the channel, after all of its pending requests have been processed.
+   *
+   * @throws IOException Thrown, if a request of the channel failed, or the file cannot be closed.
+   */
+  void close() throws IOException;
+
+  /** Deletes the file underlying the channel. The channel must be closed. */
+  void deleteChannel();
+
+  /**
+   * Closes the channel and deletes the underlying file. The file is deleted even if closing fails.
+   *
+   * @throws IOException Thrown, if a request of the channel failed, or the file cannot be closed.
+   */
+  void closeAndDelete() throws IOException;
+
+  // --------------------------------------------------------------------------------------------
+
+  /**
+   * The ID of a channel: the path of its file and the index of the spilling directory, whose I/O
+   * threads process the requests of the channel.
+   */
+  final class ID {
+
+    private static final int RANDOM_BYTES_LENGTH = 16;
+
+    private final File path;
+
+    private final int threadNum;
+
+    /**
+     * Creates the ID of a channel to the given file.
+     *
+     * @param path The path of the file.
+     * @param threadNum The index of the spilling directory the file is in.
+     */
+    public ID(File path, int threadNum) {
+      if (path == null) {
+        throw new NullPointerException("path");
+      }
+      this.path = path;
+      this.threadNum = threadNum;
+    }
+
+    ID(File basePath, int threadNum, Random random) {
+      this(new File(basePath, randomString(random) + ".channel"), threadNum);
+    }
+
+    /**
+     * Gets the path of the file of the channel.
+     *
+     * @return The path of the file.
+     */
+    public File getPath() {
+      return path;
+    }
+
+    /**
+     * Gets the index of the spilling directory the file of the channel is in.
+     *
+     * @return The index of the spilling directory.
+     */
+    public int getThreadNum() {
+      return threadNum;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (obj == null || obj.getClass() != ID.class) {
+        return false;
+      }
+      final ID other = (ID) obj;
+      return path.equals(other.path) && threadNum == other.threadNum;
+    }
+
+    @Override
+    public int hashCode() {
+      return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return path.getAbsolutePath();
+    }
+
+    private static String randomString(Random random) {
+      final byte[] bytes = new byte[RANDOM_BYTES_LENGTH];
+      random.nextBytes(bytes);
+      final StringBuilder sb = new StringBuilder(2 * RANDOM_BYTES_LENGTH);
+      for (byte b : bytes) {
+        sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.toString();
+    }
+  }
+
+  /**
+   * Creates the IDs of a series of channels that belong together, such as the runs of one sort.
+   * The files share a random prefix and are spread round-robin over the spilling directories.
+   */
+  final class Enumerator {
+
+    private final File[] paths;
+
+    private final String namePrefix;
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    Enumerator(File[] paths, Random random) {
+      this.paths = paths;
+      this.namePrefix = ID.randomString(random);
+    }
+
+    /**
+     * Creates the ID of the next channel.
+     *
+     * @return The channel ID.
+     */
+    public ID next() {
+      final int count = counter.getAndIncrement();
+      final int threadNum = count % paths.length;
+      final String filename = String.format("%s.%06d.channel", namePrefix, count);
+      return new ID(new File(paths[threadNum], filename), threadNum);
+    }
+  }
+}
@@ -0,0 +1,277 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * Reads and writes blocks of memory segments asynchronously, so that a task keeps computing while
+ * its spill files are read and written. Each spilling directory has one writer thread and one
+ * reader thread, which process the requests of the channels to the files in that directory from a
+ * queue, in the order in which they were issued. New channels are spread round-robin over the
+ * directories, so that the directories, ideally on different disks, are used in parallel.
+ *
+ * <p>The manager creates a directory of its own in each spilling directory, which it deletes with
+ * the files of all channels when it is shut down.
+ */
+public class IOManager implements AutoCloseable {
+
+  private static final Logger LOG = Logger.getLogger(IOManager.class.getName());
+
+  private static final String DIR_NAME_PREFIX = "flink-io-";
+
+  /** The directories of this manager, one in each spilling directory. */
+  private final File[] paths;
+
+  private final IOThread[] writers;
+
+  private final IOThread[] readers;
+
+  private final Random random = new Random();
+
+  private int nextPath;
+
+  private volatile boolean shutdown;
+
+  /**
+   * Creates an I/O manager that spills to the given directories, and starts its threads.
+   *
+   * @param tempDirectories The spilling directories, ideally on different disks.
+   * @throws IOException Thrown, if the directory of the manager cannot be created in one of the
+   *     spilling directories.
+   */
+  public IOManager(File... tempDirectories) throws IOException {
+    if (tempDirectories == null || tempDirectories.length == 0) {
+      throw new IllegalArgumentException("At least one spilling directory is required.");
+    }
+    this.paths = new File[tempDirectories.length];
+    for (int i = 0; i < tempDirectories.length; i++) {
+      final File path = new File(tempDirectories[i], DIR_NAME_PREFIX + UUID.randomUUID());
+      if (!path.mkdirs()) {
+        for (int j = 0; j < i; j++) {
+          deleteDirectory(paths[j]);
+        }
+        throw new IOException("Could not create the spilling directory " + path + '.');
+      }
+      paths[i] = path;
+    }
+
+    this.writers = new IOThread[paths.length];
+    this.readers = new IOThread[paths.length];
+    for (int i = 0; i < paths.length; i++) {
+      writers[i] = new IOThread("IOManager writer thread #" + (i + 1));
+      readers[i] = new IOThread("IOManager reader thread #" + (i + 1));
+      writers[i].start();
+      readers[i].start();
+    }
+  }
+
+  // --------------------------------------------------------------------------------------------
+  //  Channels
+  // --------------------------------------------------------------------------------------------
+
+  /**
+   * Creates the ID of a new channel, in the next spilling directory.
+   *
+   * @return The channel ID.
+   */
+  public synchronized FileIOChannel.ID createChannel() {
+    checkNotShutdown();
+    final int num = nextPath;
+    nextPath = (nextPath + 1) % paths.length;
+    return new FileIOChannel.ID(paths[num], num, random);
+  }
+
+  /**
+   * Creates an enumerator for the IDs of a series of channels that belong together.
+   *
+   * @return The channel enumerator.
+   */
+  public synchronized FileIOChannel.Enumerator createChannelEnumerator() {
+    checkNotShutdown();
+    return new FileIOChannel.Enumerator(paths, random);
+  }
+
+  /**
+   * Creates a writer for the given channel, which returns the written segments to the given
+   * queue.
+   *
+   * @param channelID The ID of the channel to write to.
+   * @param returnQueue The queue to return the written segments to.
+   * @return The block channel writer.
+   * @throws IOException Thrown, if the file of the channel cannot be opened.
+   */
+  public BlockChannelWriter createBlockChannelWriter(
+      FileIOChannel.ID channelID, LinkedBlockingQueue<MemorySegment> returnQueue)
+      throws IOException {
+    return createBlockChannelWriter(channelID, new QueuingCallback<>(returnQueue));
+  }
+
+  /**
+   * Creates a writer for the given channel, which hands the written segments to the given
+   * callback.
+   *
+   * @param channelID The ID of the channel to write to.
+   * @param callback The callback to notify when a segment has been written.
+   * @return The block channel writer.
+   * @throws IOException Thrown, if the file of the channel cannot be opened.
+   */
+  public BlockChannelWriter createBlockChannelWriter(
+      FileIOChannel.ID channelID, RequestDoneCallback<MemorySegment> callback)
+      throws IOException {
+    checkNotShutdown();
+    return new BlockChannelWriter(channelID, writers[threadNum(channelID)], callback);
+  }
+
+  /**
+   * Creates a reader for the given channel, which returns the filled segments to the given queue.
+   *
+   * @param channelID The ID of the channel to read from.
+   * @param returnQueue The queue to return the filled segments to.
+   * @return The block channel reader.
+   * @throws IOException Thrown, if the file of the channel cannot be opened.
+   */
+  public BlockChannelReader createBlockChannelReader(
+      FileIOChannel.ID channelID, LinkedBlockingQueue<MemorySegment> returnQueue)
+      throws IOException {
+    return createBlockChannelReader(channelID, new QueuingCallback<>(returnQueue));
+  }
+
+  /**
+   * Creates a reader for the given channel, which hands the filled segments to the given
+   * callback.
+   *
+   * @param channelID The ID of the channel to read from.
+   * @param callback The callback to notify when a segment has been filled.
+   * @return The block channel reader.
+   * @throws IOException Thrown, if the file of the channel cannot be opened.
+   */
+  public BlockChannelReader createBlockChannelReader(
+      FileIOChannel.ID channelID, RequestDoneCallback<MemorySegment> callback)
+      throws IOException {
+    checkNotShutdown();
+    return new BlockChannelReader(channelID, readers[threadNum(channelID)], callback);
+  }
+
+  /**
+   * Deletes the file of the given channel, if it exists.
+   *
+   * @param channelID The ID of the channel.
+   */
+  public static void deleteChannel(FileIOChannel.ID channelID) {
+    final File file = channelID.getPath();
+    if (file.exists() && !file.delete()) {
+      LOG.log(Level.WARNING, "Could not delete the file " + file + '.');
+    }
+  }
+
+  // --------------------------------------------------------------------------------------------
+  //  Lifecycle
+  // --------------------------------------------------------------------------------------------
+
+  /**
+   * Gets the directories of this manager, one in each spilling directory.
+   *
+   * @return The directories of the manager.
+   */
+  public File[] getSpillingDirectories() {
+    return paths.clone();
+  }
+
+  /**
+   * Checks whether the manager has been shut down.
+   *
+   * @return True, if the manager has been shut down, false otherwise.
+   */
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  /**
+   * Shuts down the manager: stops the I/O threads, fails the requests that were not processed yet,
+   * and deletes the directories of the manager with the files of all channels. Closing the
+   * channels afterwards rethrows the failures of their requests.
+   */
+  public void shutdown() {
+    synchronized (this) {
+      if (shutdown) {
+        return;
+      }
+      shutdown = true;
+    }
+
+    for (int i = 0; i < paths.length; i++) {
+      writers[i].shutdown();
+      readers[i].shutdown();
+    }
+    boolean interrupted = false;
+    for (int i = 0; i < paths.length; i++) {
+      interrupted |= join(writers[i]);
+      interrupted |= join(readers[i]);
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    for (File path : paths) {
+      deleteDirectory(path);
+    }
+  }
+
+  /** Shuts down the manager, see {@link #shutdown()}. */
+  @Override
+  public void close() {
+    shutdown();
+  }
+
+  // --------------------------------------------------------------------------------------------
+
+  private void checkNotShutdown() {
+    if (shutdown) {
+      throw new IllegalStateException("The I/O manager has been shut down.");
+    }
+  }
+
+  private int threadNum(FileIOChannel.ID channelID) {
+    final int num = channelID.getThreadNum();
+    if (num < 0 || num >= paths.length) {
+      throw new IllegalArgumentException(
+          "The channel " + channelID + " does not belong to a directory of this I/O manager.");
+    }
+    return num;
+  }
+
+  /** Waits for the given thread to terminate, and returns whether the wait was interrupted. */
+  private static boolean join(Thread thread) {
+    boolean interrupted = false;
+    while (thread.isAlive()) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    return interrupted;
+  }
+
+  private static void deleteDirectory(File directory) {
+    final File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isDirectory()) {
+          deleteDirectory(file);
+        } else if (!file.delete()) {
+          LOG.log(Level.WARNING, "Could not delete the file " + file + '.');
+        }
+      }
+    }
+    if (!directory.delete()) {
+      LOG.log(Level.WARNING, "Could not delete the directory " + directory + '.');
+    }
+  }
+}
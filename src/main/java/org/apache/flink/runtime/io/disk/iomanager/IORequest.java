@@ -0,0 +1,24 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import java.io.IOException;
+
+/** A request that is queued for an I/O thread of the {@link IOManager}. */
+interface IORequest {
+
+  /**
+   * Performs the I/O of the request. Called by the I/O thread.
+   *
+   * @param thread The I/O thread, which provides the staging buffer for heap segments.
+   * @throws IOException Thrown, if the I/O fails.
+   */
+  void process(IOThread thread) throws IOException;
+
+  /**
+   * Notifies the issuer of the request that the request is done. Called by the I/O thread after
+   * {@link #process(IOThread)}, or instead of it, if the I/O manager shut down before the request
+   * was processed.
+   *
+   * @param e The cause of the failure, or null, if the request completed successfully.
+   */
+  void requestDone(IOException e);
+}
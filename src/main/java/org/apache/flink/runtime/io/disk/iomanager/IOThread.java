@@ -0,0 +1,101 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A thread of the {@link IOManager} that processes the requests of one queue, one after the
+ * other. Each spilling directory has one thread for reading and one for writing, so that the
+ * requests of a channel are processed in the order in which they were issued.
+ */
+final class IOThread extends Thread {
+
+  private static final Logger LOG = Logger.getLogger(IOThread.class.getName());
+
+  private final LinkedBlockingQueue<IORequest> requestQueue = new LinkedBlockingQueue<>();
+
+  /** The direct buffer that heap segments are copied through, lazily allocated. */
+  private ByteBuffer stagingBuffer;
+
+  private volatile boolean alive = true;
+
+  IOThread(String name) {
+    super(name);
+    setDaemon(true);
+  }
+
+  /**
+   * Queues the given request. The request is failed right away, if the thread has shut down.
+   *
+   * @throws IOException Thrown, if the thread has shut down.
+   */
+  void addRequest(IORequest request) throws IOException {
+    if (!alive) {
+      throw new IOException("The I/O manager has been shut down.");
+    }
+    requestQueue.add(request);
+    // the thread may have drained its queue before the request was added
+    if (!alive && requestQueue.remove(request)) {
+      throw new IOException("The I/O manager has been shut down.");
+    }
+  }
+
+  /**
+   * Gets a direct buffer of at least the given capacity, to copy heap segments through. The
+   * buffer is only valid until the next call.
+   */
+  ByteBuffer getStagingBuffer(int capacity) {
+    if (stagingBuffer == null || stagingBuffer.capacity() < capacity) {
+      stagingBuffer = ByteBuffer.allocateDirect(capacity);
+    }
+    stagingBuffer.clear();
+    stagingBuffer.limit(capacity);
+    return stagingBuffer;
+  }
+
+  /** Stops the thread. Requests that are still queued are failed. */
+  void shutdown() {
+    if (alive) {
+      alive = false;
+      interrupt();
+    }
+  }
+
+  @Override
+  public void run() {
+    while (alive) {
+      final IORequest request;
+      try {
+        request = requestQueue.take();
+      } catch (InterruptedException e) {
+        continue;
+      }
+
+      IOException failure = null;
+      try {
+        request.process(this);
+      } catch (IOException e) {
+        failure = e;
+      } catch (Throwable t) {
+        failure = new IOException("The I/O request failed with an unexpected error.", t);
+      }
+      done(request, failure);
+    }
+
+    IORequest request;
+    while ((request = requestQueue.poll()) != null) {
+      done(request, new IOException("The I/O manager has been shut down."));
+    }
+  }
+
+  private static void done(IORequest request, IOException failure) {
+    try {
+      request.requestDone(failure);
+    } catch (Throwable t) {
+      LOG.log(Level.WARNING, "The completion callback of an I/O request failed.", t);
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@link RequestDoneCallback} that adds the buffers of completed requests to a queue. Buffers of
+ * failed requests are added as well, so that no memory gets lost; the failure itself is reported
+ * by the channel.
+ *
+ * @param <T> The type of the buffers.
+ */
+public final class QueuingCallback<T> implements RequestDoneCallback<T> {
+
+  private final LinkedBlockingQueue<T> queue;
+
+  /**
+   * Creates a callback that adds the buffers to the given queue.
+   *
+   * @param queue The queue to return the buffers to.
+   */
+  public QueuingCallback(LinkedBlockingQueue<T> queue) {
+    if (queue == null) {
+      throw new NullPointerException("queue");
+    }
+    this.queue = queue;
+  }
+
+  /**
+   * Gets the queue that the buffers are returned to.
+   *
+   * @return The queue.
+   */
+  public LinkedBlockingQueue<T> getQueue() {
+    return queue;
+  }
+
+  @Override
+  public void requestSuccessful(T buffer) {
+    queue.add(buffer);
+  }
+
+  @Override
+  public void requestFailed(T buffer, IOException e) {
+    queue.add(buffer);
+  }
+}
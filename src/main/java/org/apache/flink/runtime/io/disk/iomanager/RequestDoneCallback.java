@@ -0,0 +1,29 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import java.io.IOException;
+
+/**
+ * Callback to be notified when an asynchronous I/O request of a channel is done. The callback is
+ * invoked by the I/O thread that processed the request, in the order in which the channel issued
+ * its requests, and must not block.
+ *
+ * @param <T> The type of the buffers that the requests read or write.
+ */
+public interface RequestDoneCallback<T> {
+
+  /**
+   * Notifies that the request for the given buffer completed successfully.
+   *
+   * @param buffer The buffer that was read or written.
+   */
+  void requestSuccessful(T buffer);
+
+  /**
+   * Notifies that the request for the given buffer failed. The contents of the buffer are
+   * undefined, but the buffer may be reused.
+   *
+   * @param buffer The buffer of the failed request.
+   * @param e The cause of the failure.
+   */
+  void requestFailed(T buffer, IOException e);
+}
@@ -0,0 +1,76 @@
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import java.io.IOException;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+
+/**
+ * Interface for turning sequences of buffers into records. Buffers are handed in through {@link
+ * #setNextBuffer(Buffer)} and records are read through {@link #getNextRecord(Object)}, until the
+ * result reports that the buffer is consumed and the next buffer is needed.
+ *
+ * @param <T> The type of the records.
+ */
+public interface RecordDeserializer<T> {
+
+  /** Status of the deserialization result. */
+  enum DeserializationResult {
+    PARTIAL_RECORD(false, true),
+    INTERMEDIATE_RECORD_FROM_BUFFER(true, false),
+    LAST_RECORD_FROM_BUFFER(true, true);
+
+    private final boolean isFullRecord;
+
+    private final boolean isBufferConsumed;
+
+    DeserializationResult(boolean isFullRecord, boolean isBufferConsumed) {
+      this.isFullRecord = isFullRecord;
+      this.isBufferConsumed = isBufferConsumed;
+    }
+
+    /** Whether a full record was read, which is available through the current record. */
+    public boolean isFullRecord() {
+      return this.isFullRecord;
+    }
+
+    /** Whether the current buffer is consumed and the next buffer has to be set. */
+    public boolean isBufferConsumed() {
+      return this.isBufferConsumed;
+    }
+  }
+
+  /**
+   * Reads the next record from the buffers handed in so far.
+   *
+   * @param reuse An object that may be reused for the record, or null.
+   * @return Whether a full record was read and whether the current buffer is consumed.
+   * @throws IOException Thrown, if the record could not be deserialized.
+   */
+  DeserializationResult getNextRecord(T reuse) throws IOException;
+
+  /**
+   * Gets the record that was read by the last call to {@link #getNextRecord(Object)}, which
+   * reported a full record.
+   *
+   * @return The current record.
+   */
+  T getCurrentRecord();
+
+  /**
+   * Hands the next buffer to the deserializer. The deserializer takes ownership of the buffer and
+   * recycles it once all its data is consumed.
+   *
+   * @param buffer The next buffer of the channel.
+   * @throws IOException Thrown, if the data of the buffer could not be spilled.
+   */
+  void setNextBuffer(Buffer buffer) throws IOException;
+
+  /**
+   * Checks whether the deserializer holds the unfinished data of a record.
+   *
+   * @return True, if the data of a partially received record is pending.
+   */
+  boolean hasUnfinishedData();
+
+  /** Recycles the current buffer and drops all pending data, including spill files. */
+  void clear();
+}
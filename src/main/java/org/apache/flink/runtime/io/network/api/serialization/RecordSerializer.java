@@ -0,0 +1,74 @@
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import java.io.IOException;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+
+/**
+ * Interface for turning records into sequences of buffers. A record is first {@link
+ * #serializeRecord(Object) serialized} and then {@link #copyToBuffer(Buffer) copied} into as many
+ * buffers as it needs.
+ *
+ * @param <T> The type of the records.
+ */
+public interface RecordSerializer<T> {
+
+  /** Status of the serialization result. */
+  enum SerializationResult {
+    PARTIAL_RECORD_MEMORY_SEGMENT_FULL(false, true),
+    FULL_RECORD_MEMORY_SEGMENT_FULL(true, true),
+    FULL_RECORD(true, false);
+
+    private final boolean isFullRecord;
+
+    private final boolean isFullBuffer;
+
+    SerializationResult(boolean isFullRecord, boolean isFullBuffer) {
+      this.isFullRecord = isFullRecord;
+      this.isFullBuffer = isFullBuffer;
+    }
+
+    /**
+     * Whether the full record was copied and the serializer is ready for the next record. If
+     * false, the rest of the record has to be copied into further buffers.
+     */
+    public boolean isFullRecord() {
+      return this.isFullRecord;
+    }
+
+    /**
+     * Whether the target buffer is full. If true, the buffer should be handed on and a new buffer
+     * be used for the next copy.
+     */
+    public boolean isFullBuffer() {
+      return this.isFullBuffer;
+    }
+  }
+
+  /**
+   * Starts serializing the given record. The serialized data is held by the serializer until it is
+   * copied into buffers.
+   *
+   * @param record The record to serialize.
+   * @throws IOException Thrown, if the record could not be serialized.
+   */
+  void serializeRecord(T record) throws IOException;
+
+  /**
+   * Copies the pending data of the current record into the given buffer, starting at the buffer's
+   * size (writer index), and advances the size by the number of copied bytes.
+   *
+   * @param targetBuffer The buffer to copy into.
+   * @return How much of the record has been copied and whether the buffer is full.
+   */
+  SerializationResult copyToBuffer(Buffer targetBuffer);
+
+  /**
+   * Checks whether data of the current record is pending to be copied.
+   *
+   * @return True, if not all data of the current record has been copied yet.
+   */
+  boolean hasSerializedData();
+
+  /** Drops the pending data of the current record. */
+  void reset();
+}
@@ -0,0 +1,94 @@
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import java.io.IOException;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+
+/**
+ * Record serializer which serializes the complete record to an intermediate data serialization
+ * buffer and copies this buffer to target buffers one-by-one, spanning records across as many
+ * buffers as they need.
+ *
+ * <p>Every record is prefixed with its length as a four byte big endian int, which may itself
+ * span two buffers. The intermediate buffer is reused for all records and only grows for records
+ * larger than any record before, so serializing small records does not allocate memory.
+ *
+ * @param <T> The type of the records.
+ */
+public class SpanningRecordSerializer<T> implements RecordSerializer<T> {
+
+  /** The number of bytes of the length prefix of each record. */
+  static final int LENGTH_BYTES = 4;
+
+  /** The initial size of the intermediate serialization buffer. */
+  private static final int INITIAL_SERIALIZATION_BUFFER_SIZE = 128;
+
+  private final TypeSerializer<T> serializer;
+
+  /** Intermediate data serialization buffer holding the length prefix and the current record. */
+  private final DataOutputSerializer serializationBuffer;
+
+  /** The position of the next byte in the serialization buffer to copy to a target buffer. */
+  private int copyPosition;
+
+  /**
+   * Creates a serializer for records of the given type.
+   *
+   * @param serializer The serializer for the records.
+   */
+  public SpanningRecordSerializer(TypeSerializer<T> serializer) {
+    if (serializer == null) {
+      throw new NullPointerException("serializer");
+    }
+    this.serializer = serializer;
+    this.serializationBuffer = new DataOutputSerializer(INITIAL_SERIALIZATION_BUFFER_SIZE);
+  }
+
+  @Override
+  public void serializeRecord(T record) throws IOException {
+    serializationBuffer.clear();
+    copyPosition = 0;
+
+    // leave room for the length prefix and fill it in after serializing the record
+    serializationBuffer.setPosition(LENGTH_BYTES);
+    serializer.serialize(record, serializationBuffer);
+    serializationBuffer.writeIntUnsafe(0, serializationBuffer.length() - LENGTH_BYTES);
+  }
+
+  @Override
+  public SerializationResult copyToBuffer(Buffer targetBuffer) {
+    final MemorySegment segment = targetBuffer.getMemorySegment();
+    final int targetPosition = targetBuffer.getSize();
+    final int available = targetBuffer.getMaxCapacity() - targetPosition;
+    final int toCopy = Math.min(available, serializationBuffer.length() - copyPosition);
+
+    segment.put(
+        targetBuffer.getMemorySegmentOffset() + targetPosition,
+        serializationBuffer.getSharedBuffer(),
+        copyPosition,
+        toCopy);
+    targetBuffer.setSize(targetPosition + toCopy);
+    copyPosition += toCopy;
+
+    final boolean isFullBuffer = toCopy == available;
+    if (hasSerializedData()) {
+      return SerializationResult.PARTIAL_RECORD_MEMORY_SEGMENT_FULL;
+    }
+    return isFullBuffer
+        ? SerializationResult.FULL_RECORD_MEMORY_SEGMENT_FULL
+        : SerializationResult.FULL_RECORD;
+  }
+
+  @Override
+  public boolean hasSerializedData() {
+    return copyPosition < serializationBuffer.length();
+  }
+
+  @Override
+  public void reset() {
+    serializationBuffer.clear();
+    copyPosition = 0;
+  }
+}
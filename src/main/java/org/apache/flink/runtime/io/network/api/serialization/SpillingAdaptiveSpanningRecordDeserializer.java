@@ -0,0 +1,374 @@
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.memory.AbstractPagedInputView;
+
+/**
+ * Record deserializer for the length-prefixed records written by the {@link
+ * SpanningRecordSerializer}.
+ *
+ * <p>Records that lie completely inside one buffer are deserialized directly from the buffer's
+ * memory segment, without copying. Only records that span buffers are assembled: their bytes are
+ * collected in a byte array that is reused across records, or, if a record is larger than the
+ * spilling threshold, in a temporary file, so that very large records do not need to fit into
+ * the heap twice.
+ *
+ * @param <T> The type of the records.
+ */
+public class SpillingAdaptiveSpanningRecordDeserializer<T> implements RecordDeserializer<T> {
+
+  /** The default size from which on records are spilled to disk while they are assembled. */
+  public static final int DEFAULT_THRESHOLD_FOR_SPILLING = 5 * 1024 * 1024; // 5 MiBytes
+
+  private static final int LENGTH_BYTES = SpanningRecordSerializer.LENGTH_BYTES;
+
+  private static final String SPILL_FILE_PREFIX = "flink-record-";
+
+  private static final String SPILL_FILE_SUFFIX = ".inproc";
+
+  private final TypeSerializer<T> serializer;
+
+  /** The view over the unread bytes of the current buffer. */
+  private final SegmentInputView nonSpanningWrapper;
+
+  /** The collector for the record that spans the buffers. */
+  private final SpanningWrapper spanningWrapper;
+
+  private Buffer currentBuffer;
+
+  private T currentRecord;
+
+  /**
+   * Creates a deserializer that spills records of at least {@link #DEFAULT_THRESHOLD_FOR_SPILLING}
+   * bytes to the given directories.
+   *
+   * @param serializer The serializer for the records.
+   * @param tmpDirectories The directories for the spill files of very large records.
+   */
+  public SpillingAdaptiveSpanningRecordDeserializer(
+      TypeSerializer<T> serializer, File[] tmpDirectories) {
+    this(serializer, tmpDirectories, DEFAULT_THRESHOLD_FOR_SPILLING);
+  }
+
+  /**
+   * Creates a deserializer that spills records of at least the given size to the given
+   * directories.
+   *
+   * @param serializer The serializer for the records.
+   * @param tmpDirectories The directories for the spill files of very large records.
+   * @param thresholdForSpilling The record size from which on records are spilled.
+   */
+  public SpillingAdaptiveSpanningRecordDeserializer(
+      TypeSerializer<T> serializer, File[] tmpDirectories, int thresholdForSpilling) {
+    if (serializer == null) {
+      throw new NullPointerException("serializer");
+    }
+    if (tmpDirectories == null || tmpDirectories.length == 0) {
+      throw new IllegalArgumentException("At least one temp directory must be given.");
+    }
+    if (thresholdForSpilling <= 0) {
+      throw new IllegalArgumentException("The spilling threshold must be positive.");
+    }
+    this.serializer = serializer;
+    this.nonSpanningWrapper = new SegmentInputView();
+    this.spanningWrapper = new SpanningWrapper(tmpDirectories, thresholdForSpilling);
+  }
+
+  // ------------------------------------------------------------------------
+
+  @Override
+  public void setNextBuffer(Buffer buffer) throws IOException {
+    if (currentBuffer != null) {
+      throw new IllegalStateException("The current buffer has not been consumed yet.");
+    }
+    currentBuffer = buffer;
+
+    final MemorySegment segment = buffer.getMemorySegment();
+    final int offset = buffer.getMemorySegmentOffset();
+    int position = offset + buffer.getReaderIndex();
+    final int limit = offset + buffer.getSize();
+
+    if (spanningWrapper.hasPartialRecord()) {
+      // the bytes up to the end of the spanning record complete it, the rest stays in the buffer
+      position = spanningWrapper.addNextChunk(segment, position, limit);
+    }
+    nonSpanningWrapper.set(segment, position, limit);
+  }
+
+  @Override
+  public DeserializationResult getNextRecord(T reuse) throws IOException {
+    if (spanningWrapper.hasPartialRecord()) {
+      if (!spanningWrapper.hasFullRecord()) {
+        // the whole buffer went into the spanning record
+        recycleCurrentBuffer();
+        return DeserializationResult.PARTIAL_RECORD;
+      }
+      currentRecord = spanningWrapper.readRecord(serializer, reuse);
+      return finishRecord();
+    }
+
+    final int remaining = nonSpanningWrapper.remaining();
+    if (remaining >= LENGTH_BYTES) {
+      final int recordLength = nonSpanningWrapper.peekInt();
+      if (recordLength <= remaining - LENGTH_BYTES) {
+        nonSpanningWrapper.skipBytesToRead(LENGTH_BYTES);
+        final int end = nonSpanningWrapper.getCurrentPositionInSegment() + recordLength;
+        currentRecord = serializer.deserialize(reuse, nonSpanningWrapper);
+        if (nonSpanningWrapper.getCurrentPositionInSegment() != end) {
+          throw new IOException(
+              "Serializer consumed "
+                  + (nonSpanningWrapper.getCurrentPositionInSegment() - end + recordLength)
+                  + " bytes of a record of "
+                  + recordLength
+                  + " bytes. This indicates broken serialization.");
+        }
+        return finishRecord();
+      }
+    }
+
+    // the record, or even its length, continues in the next buffer
+    if (remaining > 0) {
+      spanningWrapper.addNextChunk(
+          nonSpanningWrapper.getCurrentSegment(),
+          nonSpanningWrapper.getCurrentPositionInSegment(),
+          nonSpanningWrapper.getCurrentSegmentLimit());
+    }
+    recycleCurrentBuffer();
+    return DeserializationResult.PARTIAL_RECORD;
+  }
+
+  private DeserializationResult finishRecord() {
+    if (nonSpanningWrapper.remaining() == 0) {
+      recycleCurrentBuffer();
+      return DeserializationResult.LAST_RECORD_FROM_BUFFER;
+    }
+    return DeserializationResult.INTERMEDIATE_RECORD_FROM_BUFFER;
+  }
+
+  @Override
+  public T getCurrentRecord() {
+    return currentRecord;
+  }
+
+  @Override
+  public boolean hasUnfinishedData() {
+    return spanningWrapper.hasPartialRecord() || nonSpanningWrapper.remaining() > 0;
+  }
+
+  @Override
+  public void clear() {
+    recycleCurrentBuffer();
+    spanningWrapper.clear();
+    currentRecord = null;
+  }
+
+  private void recycleCurrentBuffer() {
+    nonSpanningWrapper.clear();
+    if (currentBuffer != null) {
+      currentBuffer.recycleBuffer();
+      currentBuffer = null;
+    }
+  }
+
+  // ------------------------------------------------------------------------
+
+  /** A view over a range of a single memory segment. Reading beyond the range fails. */
+  private static final class SegmentInputView extends AbstractPagedInputView {
+
+    SegmentInputView() {
+      super(0);
+    }
+
+    void set(MemorySegment segment, int position, int limit) {
+      seekInput(segment, position, limit);
+    }
+
+    @Override
+    public void clear() {
+      super.clear();
+    }
+
+    int remaining() {
+      return getCurrentSegmentLimit() - getCurrentPositionInSegment();
+    }
+
+    int peekInt() {
+      return getCurrentSegment().getIntBigEndian(getCurrentPositionInSegment());
+    }
+
+    @Override
+    protected MemorySegment nextSegment(MemorySegment current) throws EOFException {
+      throw new EOFException();
+    }
+
+    @Override
+    protected int getLimitForSegment(MemorySegment segment) {
+      return getCurrentSegmentLimit();
+    }
+  }
+
+  /**
+   * Collects the bytes of a record that spans buffers, starting with its length. Small records are
+   * collected in a reused byte array, records beyond the spilling threshold in a spill file.
+   */
+  private static final class SpanningWrapper {
+
+    private final File[] tmpDirectories;
+
+    private final int thresholdForSpilling;
+
+    private final byte[] lengthBuffer = new byte[LENGTH_BYTES];
+
+    private final SegmentInputView serializationReadBuffer = new SegmentInputView();
+
+    private int nextTmpDirectory;
+
+    private int lengthBytesRead;
+
+    private int recordLength = -1;
+
+    private int accumulatedRecordBytes;
+
+    private byte[] buffer = new byte[1024];
+
+    private MemorySegment bufferSegment = HeapMemorySegment.FACTORY.wrap(buffer);
+
+    private File spillFile;
+
+    private FileChannel spillingChannel;
+
+    SpanningWrapper(File[] tmpDirectories, int thresholdForSpilling) {
+      this.tmpDirectories = tmpDirectories;
+      this.thresholdForSpilling = thresholdForSpilling;
+    }
+
+    boolean hasPartialRecord() {
+      return lengthBytesRead > 0;
+    }
+
+    boolean hasFullRecord() {
+      return recordLength >= 0 && accumulatedRecordBytes == recordLength;
+    }
+
+    /**
+     * Takes the bytes of the given segment range that belong to the spanning record.
+     *
+     * @return The position after the bytes taken.
+     */
+    int addNextChunk(MemorySegment segment, int position, int limit) throws IOException {
+      if (recordLength < 0) {
+        final int numBytes = Math.min(LENGTH_BYTES - lengthBytesRead, limit - position);
+        segment.get(position, lengthBuffer, lengthBytesRead, numBytes);
+        lengthBytesRead += numBytes;
+        position += numBytes;
+
+        if (lengthBytesRead < LENGTH_BYTES) {
+          return position;
+        }
+        recordLength =
+            ((lengthBuffer[0] & 0xff) << 24)
+                | ((lengthBuffer[1] & 0xff) << 16)
+                | ((lengthBuffer[2] & 0xff) << 8)
+                | (lengthBuffer[3] & 0xff);
+        if (recordLength < 0) {
+          throw new IOException("Invalid record length: " + recordLength);
+        }
+        prepareStorage();
+      }
+
+      final int numBytes = Math.min(recordLength - accumulatedRecordBytes, limit - position);
+      if (numBytes > 0) {
+        if (spillingChannel != null) {
+          final ByteBuffer toWrite = segment.wrap(position, numBytes);
+          while (toWrite.hasRemaining()) {
+            spillingChannel.write(toWrite);
+          }
+        } else {
+          segment.get(position, buffer, accumulatedRecordBytes, numBytes);
+        }
+        accumulatedRecordBytes += numBytes;
+      }
+      return position + numBytes;
+    }
+
+    private void prepareStorage() throws IOException {
+      if (recordLength >= thresholdForSpilling) {
+        final File dir = tmpDirectories[nextTmpDirectory];
+        nextTmpDirectory = (nextTmpDirectory + 1) % tmpDirectories.length;
+        spillFile = File.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX, dir);
+        spillingChannel =
+            FileChannel.open(
+                spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+      } else if (buffer.length < recordLength) {
+        buffer = new byte[Math.max(recordLength, buffer.length * 2)];
+        bufferSegment = HeapMemorySegment.FACTORY.wrap(buffer);
+      }
+    }
+
+    /** Deserializes the complete record and resets the wrapper for the next spanning record. */
+    <T> T readRecord(TypeSerializer<T> serializer, T reuse) throws IOException {
+      final T record;
+      try {
+        if (spillingChannel == null) {
+          serializationReadBuffer.set(bufferSegment, 0, recordLength);
+          record = serializer.deserialize(reuse, serializationReadBuffer);
+          if (serializationReadBuffer.remaining() != 0) {
+            throw new IOException(
+                "Serializer consumed "
+                    + (recordLength - serializationReadBuffer.remaining())
+                    + " bytes of a record of "
+                    + recordLength
+                    + " bytes. This indicates broken serialization.");
+          }
+        } else {
+          spillingChannel.position(0);
+          DataInputViewStreamWrapper spillInput =
+              new DataInputViewStreamWrapper(
+                  new BufferedInputStream(Channels.newInputStream(spillingChannel), 64 * 1024));
+          record = serializer.deserialize(reuse, spillInput);
+          if (spillInput.read() != -1) {
+            throw new IOException(
+                "Serializer did not consume the spilled record of "
+                    + recordLength
+                    + " bytes in "
+                    + spillFile
+                    + ". This indicates broken serialization.");
+          }
+        }
+      } finally {
+        clear();
+      }
+      return record;
+    }
+
+    void clear() {
+      serializationReadBuffer.clear();
+      lengthBytesRead = 0;
+      recordLength = -1;
+      accumulatedRecordBytes = 0;
+
+      if (spillingChannel != null) {
+        try {
+          spillingChannel.close();
+        } catch (IOException ignored) {
+          // the file is deleted anyway
+        }
+        spillFile.delete();
+        spillingChannel = null;
+        spillFile = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import java.nio.ByteBuffer;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * Wrapper for pooled {@link MemorySegment} instances with reader and writer indices and a
+ * reference count.
+ *
+ * <p>The bytes between the reader index and the writer index (the {@link #getSize() size}) are
+ * the readable bytes of the buffer. A buffer is created with a reference count of one. Every
+ * additional user of the buffer (for example, each channel a broadcast buffer is sent to) retains
+ * it through {@link #retainBuffer()} and releases it through {@link #recycleBuffer()}. Once the
+ * count drops to zero, the underlying segment is handed to the buffer's {@link BufferRecycler},
+ * usually the pool it was taken from.
+ *
+ * <p>{@link #readOnlySlice() Slices} share the memory segment and the reference count with the
+ * buffer they were created from, but have their own reader and writer indices. Creating a slice
+ * does not retain the buffer.
+ *
+ * <p>A buffer whose data was compressed by a {@link BufferCompressor} is flagged as {@link
+ * #isCompressed() compressed}, so that the receiver knows to decompress it. Slices inherit the
+ * flag of the buffer at the time they are created.
+ */
+public interface Buffer {
+
+  /**
+   * Returns the underlying memory segment. The memory segment is shared with all slices of the
+   * buffer, so the data of this buffer starts at {@link #getMemorySegmentOffset()}.
+   *
+   * @return The memory segment backing this buffer.
+   */
+  MemorySegment getMemorySegment();
+
+  /**
+   * Gets the offset of this buffer's data in the underlying memory segment. The offset is zero for
+   * buffers that own their segment and the start of the slice for slices.
+   *
+   * @return The offset of the buffer's data in the memory segment.
+   */
+  int getMemorySegmentOffset();
+
+  /**
+   * Gets the recycler that receives the memory segment once the reference count drops to zero.
+   *
+   * @return The buffer recycler.
+   */
+  BufferRecycler getRecycler();
+
+  /**
+   * Releases this buffer once, that is, decreases the reference count and recycles the memory
+   * segment, if the reference count reaches zero.
+   */
+  void recycleBuffer();
+
+  /**
+   * Checks whether this buffer has been recycled, that is, whether its reference count is zero.
+   *
+   * @return True, if the buffer has been recycled.
+   */
+  boolean isRecycled();
+
+  /**
+   * Retains this buffer for further use, increasing the reference count by one.
+   *
+   * @return This buffer, for chaining.
+   * @throws IllegalStateException Thrown, if the buffer has been recycled already.
+   */
+  Buffer retainBuffer();
+
+  /**
+   * Returns a read-only slice of this buffer's readable bytes, that is, between its reader index
+   * and its size. Reader and writer indices of the slice are independent of this buffer, the
+   * memory segment and the reference count are shared. The reference count is not increased.
+   *
+   * @return A read-only slice of this buffer.
+   */
+  Buffer readOnlySlice();
+
+  /**
+   * Returns a read-only slice of this buffer, covering the given region, relative to the start of
+   * this buffer. The reference count is not increased.
+   *
+   * @param index The index of the slice's first byte.
+   * @param length The length of the slice.
+   * @return A read-only slice of this buffer.
+   */
+  Buffer readOnlySlice(int index, int length);
+
+  /**
+   * Gets the maximum size of this buffer, the number of bytes it can hold.
+   *
+   * @return The maximum size of the buffer.
+   */
+  int getMaxCapacity();
+
+  /**
+   * Gets the reader index of this buffer, relative to the start of the buffer.
+   *
+   * @return The reader index.
+   */
+  int getReaderIndex();
+
+  /**
+   * Sets the reader index of this buffer.
+   *
+   * @param readerIndex The new reader index, between zero and the size.
+   * @throws IndexOutOfBoundsException Thrown, if the index is out of range.
+   */
+  void setReaderIndex(int readerIndex);
+
+  /**
+   * Gets the size of the written data, the writer index of the buffer.
+   *
+   * @return The size of the written data.
+   */
+  int getSize();
+
+  /**
+   * Sets the size of the written data, the writer index of the buffer.
+   *
+   * @param writerIndex The new size, between the reader index and the maximum capacity.
+   * @throws IndexOutOfBoundsException Thrown, if the index is out of range.
+   * @throws UnsupportedOperationException Thrown, if the buffer is read-only.
+   */
+  void setSize(int writerIndex);
+
+  /**
+   * Gets the number of readable bytes, the size minus the reader index.
+   *
+   * @return The number of readable bytes.
+   */
+  int readableBytes();
+
+  /**
+   * Gets a read-only {@link ByteBuffer} over the readable bytes of this buffer, sharing the
+   * memory. The position of the byte buffer is independent of the reader index.
+   *
+   * @return A read-only byte buffer over the readable bytes.
+   */
+  ByteBuffer getNioBufferReadable();
+
+  /**
+   * Checks whether the readable bytes of this buffer are compressed.
+   *
+   * @return True, if the data is compressed.
+   */
+  boolean isCompressed();
+
+  /**
+   * Flags the readable bytes of this buffer as compressed or not.
+   *
+   * @param isCompressed Whether the data is compressed.
+   */
+  void setCompressed(boolean isCompressed);
+
+  /**
+   * Gets the current reference count. Intended for tests and debugging only.
+   *
+   * @return The current reference count.
+   */
+  int refCnt();
+}
@@ -0,0 +1,88 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.compression.BlockCompressionCodec;
+
+/**
+ * Compresses the data of {@link Buffer}s before they are shipped, for channels that are marked as
+ * compressible. The data is compressed into an intermediate segment and copied back into the
+ * original buffer, so the compressed buffer stays in the pool it came from and is recycled as
+ * usual. Buffers whose data does not shrink are left as they are and not flagged as compressed,
+ * so the receiver pays for decompression only where compression paid off.
+ *
+ * <p>A compressor is not thread-safe; every thread that compresses buffers needs its own.
+ * Closing it frees its intermediate segment.
+ */
+public final class BufferCompressor implements AutoCloseable {
+
+  private final BlockCompressionCodec codec;
+
+  /** The segment to compress into, large enough for the compressed data of a whole buffer. */
+  private final MemorySegment intermediateSegment;
+
+  /**
+   * Creates a compressor for buffers of up to the given size.
+   *
+   * @param bufferSize The maximal size of the buffers to compress.
+   * @param codec The codec to compress with.
+   */
+  public BufferCompressor(int bufferSize, BlockCompressionCodec codec) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("The buffer size must be positive: " + bufferSize);
+    }
+    if (codec == null) {
+      throw new NullPointerException("codec");
+    }
+    this.codec = codec;
+    this.intermediateSegment =
+        HybridMemorySegment.FACTORY.allocateUnpooledSegment(
+            codec.maxCompressedLength(bufferSize), this);
+  }
+
+  /**
+   * Compresses the readable bytes of the given buffer in place. If the data shrinks, the buffer
+   * holds the compressed data behind its reader index afterwards, its size is reduced
+   * accordingly, and it is flagged as compressed. Otherwise, the buffer is not changed.
+   *
+   * @param buffer The buffer to compress, which must not be a read-only slice.
+   * @return The given buffer, for chaining.
+   * @throws IllegalArgumentException Thrown, if the buffer is read-only, already compressed, or
+   *     larger than the buffers of this compressor.
+   * @throws IllegalStateException Thrown, if the compressor has been closed.
+   */
+  public Buffer compressToOriginalBuffer(Buffer buffer) {
+    if (intermediateSegment.isFreed()) {
+      throw new IllegalStateException("The compressor has been closed.");
+    }
+    if (!(buffer instanceof NetworkBuffer)) {
+      throw new IllegalArgumentException("Read-only buffers cannot be compressed in place.");
+    }
+    if (buffer.isCompressed()) {
+      throw new IllegalArgumentException("The buffer is already compressed.");
+    }
+    final int length = buffer.readableBytes();
+    if (codec.maxCompressedLength(length) > intermediateSegment.size()) {
+      throw new IllegalArgumentException(
+          "The buffer of " + length + " bytes exceeds the buffer size of the compressor.");
+    }
+
+    final MemorySegment segment = buffer.getMemorySegment();
+    final int offset = buffer.getMemorySegmentOffset() + buffer.getReaderIndex();
+    final int compressedLength = codec.compress(segment, offset, length, intermediateSegment, 0);
+    if (compressedLength < length) {
+      intermediateSegment.copyTo(0, segment, offset, compressedLength);
+      buffer.setSize(buffer.getReaderIndex() + compressedLength);
+      buffer.setCompressed(true);
+    }
+    return buffer;
+  }
+
+  /** Frees the intermediate segment. The compressor cannot be used afterwards. */
+  @Override
+  public void close() {
+    if (!intermediateSegment.isFreed()) {
+      intermediateSegment.free();
+    }
+  }
+}
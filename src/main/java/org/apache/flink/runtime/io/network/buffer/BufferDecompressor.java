@@ -0,0 +1,85 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import java.io.IOException;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.compression.BlockCompressionCodec;
+
+/**
+ * Decompresses {@link Buffer}s that were compressed by a {@link BufferCompressor} with the same
+ * codec. The data is decompressed into an intermediate segment and copied back into the original
+ * buffer, which must be able to hold the decompressed data, as it does if the receiving buffers
+ * are as large as the sending ones.
+ *
+ * <p>A decompressor is not thread-safe; every thread that decompresses buffers needs its own.
+ * Closing it frees its intermediate segment.
+ */
+public final class BufferDecompressor implements AutoCloseable {
+
+  private final BlockCompressionCodec codec;
+
+  /** The segment to decompress into, as large as a whole buffer. */
+  private final MemorySegment intermediateSegment;
+
+  /**
+   * Creates a decompressor for buffers of up to the given size.
+   *
+   * @param bufferSize The maximal size of the decompressed buffers.
+   * @param codec The codec the buffers were compressed with.
+   */
+  public BufferDecompressor(int bufferSize, BlockCompressionCodec codec) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("The buffer size must be positive: " + bufferSize);
+    }
+    if (codec == null) {
+      throw new NullPointerException("codec");
+    }
+    this.codec = codec;
+    this.intermediateSegment =
+        HybridMemorySegment.FACTORY.allocateUnpooledSegment(bufferSize, this);
+  }
+
+  /**
+   * Decompresses the readable bytes of the given compressed buffer in place. Afterwards, the
+   * buffer holds the decompressed data behind its reader index and is no longer flagged as
+   * compressed.
+   *
+   * @param buffer The compressed buffer, which must not be a read-only slice.
+   * @return The given buffer, for chaining.
+   * @throws IOException Thrown, if the compressed data is malformed or does not fit into the
+   *     buffer.
+   * @throws IllegalArgumentException Thrown, if the buffer is read-only or not compressed.
+   * @throws IllegalStateException Thrown, if the decompressor has been closed.
+   */
+  public Buffer decompressToOriginalBuffer(Buffer buffer) throws IOException {
+    if (intermediateSegment.isFreed()) {
+      throw new IllegalStateException("The decompressor has been closed.");
+    }
+    if (!(buffer instanceof NetworkBuffer)) {
+      throw new IllegalArgumentException("Read-only buffers cannot be decompressed in place.");
+    }
+    if (!buffer.isCompressed()) {
+      throw new IllegalArgumentException("The buffer is not compressed.");
+    }
+
+    final MemorySegment segment = buffer.getMemorySegment();
+    final int offset = buffer.getMemorySegmentOffset() + buffer.getReaderIndex();
+    final int maxLength =
+        Math.min(intermediateSegment.size(), buffer.getMaxCapacity() - buffer.getReaderIndex());
+    final int length =
+        codec.decompress(
+            segment, offset, buffer.readableBytes(), intermediateSegment, 0, maxLength);
+    intermediateSegment.copyTo(0, segment, offset, length);
+    buffer.setSize(buffer.getReaderIndex() + length);
+    buffer.setCompressed(false);
+    return buffer;
+  }
+
+  /** Frees the intermediate segment. The decompressor cannot be used afterwards. */
+  @Override
+  public void close() {
+    if (!intermediateSegment.isFreed()) {
+      intermediateSegment.free();
+    }
+  }
+}
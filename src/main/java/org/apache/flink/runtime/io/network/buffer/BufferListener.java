@@ -0,0 +1,28 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * Interface of the availability of buffers. Listeners can register at a {@link LocalBufferPool}
+ * when it is exhausted and are notified once a buffer becomes available for them, instead of
+ * blocking the requesting thread.
+ *
+ * <p>A listener is registered for exactly one notification. Listeners that need more buffers
+ * after being notified have to register again.
+ */
+public interface BufferListener {
+
+  /**
+   * Notification that a buffer became available for this listener. The listener takes ownership
+   * of the segment and is responsible for recycling it to the buffer pool.
+   *
+   * <p>The notification happens on the thread that made the buffer available, so the listener
+   * should hand the segment over quickly and must not block.
+   *
+   * @param segment The memory segment that became available.
+   */
+  void notifyBufferAvailable(MemorySegment segment);
+
+  /** Notification that the buffer pool was destroyed while this listener was waiting. */
+  void notifyBufferDestroyed();
+}
@@ -0,0 +1,15 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import org.apache.flink.core.memory.MemorySegment;
+
+/** Interface for recycling {@link MemorySegment}s back to the pool they were taken from. */
+public interface BufferRecycler {
+
+  /**
+   * Recycles the given memory segment to the pool it originates from. The segment must not be
+   * accessed by the caller after it has been recycled.
+   *
+   * @param memorySegment The memory segment to be recycled.
+   */
+  void recycle(MemorySegment memorySegment);
+}
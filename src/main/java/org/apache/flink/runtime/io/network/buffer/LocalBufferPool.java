@@ -0,0 +1,417 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A buffer pool used to manage a number of buffers of one channel (or one group of channels) from
+ * the {@link NetworkBufferPool}.
+ *
+ * <p>Buffer requests are mediated to the network buffer pool to ensure deadlock-free operation of
+ * the network stack by limiting the number of buffers per local pool: the pool may hold at most
+ * {@link #getNumBuffers()} segments at a time, a size that the network buffer pool adjusts between
+ * the required and the maximum number of buffers, when other local pools are created or destroyed.
+ * Requests beyond the size either block the requesting thread, until a segment is recycled, or
+ * register a {@link BufferListener} that is notified once a segment is available.
+ *
+ * <p>Recycled segments stay in this pool, as long as it does not exceed its size. Segments that
+ * exceed the size, for example after the pool was shrunk, are returned to the network buffer pool.
+ */
+public class LocalBufferPool implements BufferRecycler {
+
+  /** The time a blocking request waits before it checks the global pool again, in ms. */
+  private static final long WAIT_TIMEOUT_MILLIS = 2000;
+
+  /** Global network buffer pool to get buffers from. */
+  private final NetworkBufferPool networkBufferPool;
+
+  /** The minimum number of required segments for this pool. */
+  private final int numberOfRequiredMemorySegments;
+
+  /** The maximum number of segments this pool can grow to. */
+  private final int maxNumberOfMemorySegments;
+
+  /**
+   * The currently available memory segments. These are segments, which have been requested from
+   * the network buffer pool and are currently not handed out as buffers. Also the lock for all the
+   * fields below.
+   */
+  private final ArrayDeque<MemorySegment> availableMemorySegments = new ArrayDeque<>();
+
+  /** Buffer availability listeners, which need to be notified when a buffer becomes available. */
+  private final ArrayDeque<BufferListener> registeredListeners = new ArrayDeque<>();
+
+  /** The current size of this pool. */
+  private int currentPoolSize;
+
+  /** The number of segments requested from the network buffer pool and not returned yet. */
+  private int numberOfRequestedMemorySegments;
+
+  /** The number of threads blocked in {@link #requestMemorySegmentBlocking()}. */
+  private int numberOfWaitingRequests;
+
+  /** Whether this pool is registered for a notification of the network buffer pool. */
+  private boolean isWaitingForGlobalPool;
+
+  private boolean isDestroyed;
+
+  /**
+   * Local buffer pool based on the given network buffer pool, with a minimal and maximal number of
+   * buffers. Pools are created through {@link NetworkBufferPool#createBufferPool(int, int)}.
+   */
+  LocalBufferPool(
+      NetworkBufferPool networkBufferPool,
+      int numberOfRequiredMemorySegments,
+      int maxNumberOfMemorySegments) {
+    this.networkBufferPool = networkBufferPool;
+    this.numberOfRequiredMemorySegments = numberOfRequiredMemorySegments;
+    this.maxNumberOfMemorySegments = maxNumberOfMemorySegments;
+    this.currentPoolSize = numberOfRequiredMemorySegments;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Properties
+  // ------------------------------------------------------------------------
+
+  public int getNumberOfRequiredMemorySegments() {
+    return numberOfRequiredMemorySegments;
+  }
+
+  public int getMaxNumberOfMemorySegments() {
+    return maxNumberOfMemorySegments;
+  }
+
+  /** Gets the current size of this pool, the number of segments it may hold at a time. */
+  public int getNumBuffers() {
+    synchronized (availableMemorySegments) {
+      return currentPoolSize;
+    }
+  }
+
+  public int getNumberOfAvailableMemorySegments() {
+    synchronized (availableMemorySegments) {
+      return availableMemorySegments.size();
+    }
+  }
+
+  /** Gets the number of segments that are currently handed out by this pool. */
+  public int bestEffortGetNumOfUsedBuffers() {
+    synchronized (availableMemorySegments) {
+      return Math.max(0, numberOfRequestedMemorySegments - availableMemorySegments.size());
+    }
+  }
+
+  public boolean isDestroyed() {
+    synchronized (availableMemorySegments) {
+      return isDestroyed;
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Requests
+  // ------------------------------------------------------------------------
+
+  /**
+   * Requests a buffer from this pool without blocking. The buffer's segment is recycled to this
+   * pool once the buffer and all its slices are recycled.
+   *
+   * @return The buffer, or null, if this pool is exhausted at the moment.
+   */
+  public Buffer requestBuffer() {
+    final MemorySegment segment = requestMemorySegment();
+    return segment == null ? null : new NetworkBuffer(segment, this);
+  }
+
+  /**
+   * Requests a buffer from this pool and waits until one is available, if the pool is exhausted.
+   *
+   * @return The buffer.
+   * @throws InterruptedException Thrown, if the thread was interrupted while waiting.
+   * @throws IllegalStateException Thrown, if the pool is or gets destroyed.
+   */
+  public Buffer requestBufferBlocking() throws InterruptedException {
+    return new NetworkBuffer(requestMemorySegmentBlocking(), this);
+  }
+
+  /**
+   * Requests a segment from this pool without blocking.
+   *
+   * @return The segment, or null, if this pool is exhausted at the moment.
+   */
+  public MemorySegment requestMemorySegment() {
+    synchronized (availableMemorySegments) {
+      checkDestroyed();
+      return pollMemorySegment();
+    }
+  }
+
+  /**
+   * Requests a segment from this pool and waits until one is available, if the pool is exhausted.
+   *
+   * @return The segment.
+   * @throws InterruptedException Thrown, if the thread was interrupted while waiting.
+   * @throws IllegalStateException Thrown, if the pool is or gets destroyed.
+   */
+  public MemorySegment requestMemorySegmentBlocking() throws InterruptedException {
+    synchronized (availableMemorySegments) {
+      while (true) {
+        checkDestroyed();
+
+        final MemorySegment segment = pollMemorySegment();
+        if (segment != null) {
+          return segment;
+        }
+
+        if (numberOfRequestedMemorySegments < currentPoolSize && !awaitGlobalPool()) {
+          // the network buffer pool received segments in the meantime
+          continue;
+        }
+
+        numberOfWaitingRequests++;
+        try {
+          availableMemorySegments.wait(WAIT_TIMEOUT_MILLIS);
+        } finally {
+          numberOfWaitingRequests--;
+        }
+      }
+    }
+  }
+
+  /**
+   * Registers the given listener to be notified once a segment is available for it. The listener
+   * is only registered, if the pool is exhausted.
+   *
+   * @param listener The listener to notify.
+   * @return True, if the listener was registered, false, if segments are available right now and
+   *     should be requested directly.
+   */
+  public boolean addBufferListener(BufferListener listener) {
+    synchronized (availableMemorySegments) {
+      checkDestroyed();
+
+      if (!availableMemorySegments.isEmpty()) {
+        return false;
+      }
+      if (numberOfRequestedMemorySegments < currentPoolSize && !awaitGlobalPool()) {
+        return false;
+      }
+
+      registeredListeners.add(listener);
+      return true;
+    }
+  }
+
+  /**
+   * Takes an available segment, or requests one from the network buffer pool, if this pool is
+   * below its size.
+   */
+  private MemorySegment pollMemorySegment() {
+    assert Thread.holdsLock(availableMemorySegments);
+
+    MemorySegment segment = availableMemorySegments.poll();
+    if (segment == null && numberOfRequestedMemorySegments < currentPoolSize) {
+      segment = networkBufferPool.requestMemorySegment();
+      if (segment != null) {
+        numberOfRequestedMemorySegments++;
+      }
+    }
+    return segment;
+  }
+
+  /**
+   * Registers this pool for a notification of the network buffer pool.
+   *
+   * @return True, if this pool is registered, false, if the network buffer pool has segments.
+   */
+  private boolean awaitGlobalPool() {
+    assert Thread.holdsLock(availableMemorySegments);
+
+    if (!isWaitingForGlobalPool) {
+      isWaitingForGlobalPool = networkBufferPool.registerWaitingBufferPool(this);
+    }
+    return isWaitingForGlobalPool;
+  }
+
+  /** Called by the network buffer pool when a segment was recycled to it. */
+  void onGlobalPoolAvailable() {
+    synchronized (availableMemorySegments) {
+      isWaitingForGlobalPool = false;
+    }
+    serveWaitingRequests();
+  }
+
+  /**
+   * Requests segments from the network buffer pool for waiting requests and listeners, as long as
+   * this pool is below its size. The listeners are notified outside of the lock.
+   */
+  private void serveWaitingRequests() {
+    while (true) {
+      final MemorySegment segment;
+      final BufferListener listener;
+
+      synchronized (availableMemorySegments) {
+        if (isDestroyed
+            || numberOfRequestedMemorySegments >= currentPoolSize
+            || (numberOfWaitingRequests == 0 && registeredListeners.isEmpty())) {
+          return;
+        }
+
+        segment = networkBufferPool.requestMemorySegment();
+        if (segment == null) {
+          if (awaitGlobalPool()) {
+            return;
+          }
+          continue;
+        }
+        numberOfRequestedMemorySegments++;
+
+        listener = registeredListeners.poll();
+        if (listener == null) {
+          availableMemorySegments.add(segment);
+          availableMemorySegments.notifyAll();
+          return;
+        }
+      }
+
+      listener.notifyBufferAvailable(segment);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Recycling
+  // ------------------------------------------------------------------------
+
+  /**
+   * Returns a segment that was handed out by this pool. The segment is {@link
+   * MemorySegment#recycle() recycled}, so that with the use-after-free detection enabled, buffers
+   * that still reference it fail on their next access.
+   */
+  @Override
+  public void recycle(MemorySegment recycled) {
+    final MemorySegment segment = recycled.recycle();
+    final BufferListener listener;
+
+    synchronized (availableMemorySegments) {
+      if (isDestroyed || numberOfRequestedMemorySegments > currentPoolSize) {
+        numberOfRequestedMemorySegments--;
+        listener = null;
+      } else {
+        listener = registeredListeners.poll();
+        if (listener == null) {
+          availableMemorySegments.add(segment);
+          availableMemorySegments.notifyAll();
+          return;
+        }
+      }
+    }
+
+    if (listener != null) {
+      listener.notifyBufferAvailable(segment);
+    } else {
+      networkBufferPool.returnMemorySegment(segment);
+    }
+  }
+
+  /**
+   * Sets the size of this pool. Called by the network buffer pool when it redistributes its
+   * buffers. Available segments beyond the new size are returned to the network buffer pool right
+   * away, segments that are handed out are returned when they are recycled.
+   */
+  void setNumBuffers(int numBuffers) {
+    if (numBuffers < numberOfRequiredMemorySegments) {
+      throw new IllegalArgumentException(
+          "Buffer pool needs at least "
+              + numberOfRequiredMemorySegments
+              + " buffers, but tried to set to "
+              + numBuffers);
+    }
+
+    final List<MemorySegment> excess = new ArrayList<>();
+    synchronized (availableMemorySegments) {
+      if (isDestroyed) {
+        return;
+      }
+      currentPoolSize = Math.min(numBuffers, maxNumberOfMemorySegments);
+
+      MemorySegment segment;
+      while (numberOfRequestedMemorySegments > currentPoolSize
+          && (segment = availableMemorySegments.poll()) != null) {
+        numberOfRequestedMemorySegments--;
+        excess.add(segment);
+      }
+    }
+
+    for (MemorySegment segment : excess) {
+      networkBufferPool.returnMemorySegment(segment);
+    }
+    serveWaitingRequests();
+  }
+
+  // ------------------------------------------------------------------------
+  //  Destruction
+  // ------------------------------------------------------------------------
+
+  /**
+   * Destroys this pool. The available segments are returned to the network buffer pool right
+   * away, segments that are handed out are returned when they are recycled. Waiting requests fail
+   * and registered listeners are notified about the destruction.
+   */
+  public void lazyDestroy() {
+    final List<MemorySegment> segments = new ArrayList<>();
+    final List<BufferListener> listeners = new ArrayList<>();
+
+    synchronized (availableMemorySegments) {
+      if (isDestroyed) {
+        return;
+      }
+      isDestroyed = true;
+
+      MemorySegment segment;
+      while ((segment = availableMemorySegments.poll()) != null) {
+        numberOfRequestedMemorySegments--;
+        segments.add(segment);
+      }
+      listeners.addAll(registeredListeners);
+      registeredListeners.clear();
+
+      availableMemorySegments.notifyAll();
+    }
+
+    for (MemorySegment segment : segments) {
+      networkBufferPool.returnMemorySegment(segment);
+    }
+    for (BufferListener listener : listeners) {
+      listener.notifyBufferDestroyed();
+    }
+    networkBufferPool.destroyBufferPool(this);
+  }
+
+  private void checkDestroyed() {
+    if (isDestroyed) {
+      throw new IllegalStateException("Buffer pool is destroyed.");
+    }
+  }
+
+  @Override
+  public String toString() {
+    synchronized (availableMemorySegments) {
+      return "[size: "
+          + currentPoolSize
+          + ", required: "
+          + numberOfRequiredMemorySegments
+          + ", requested: "
+          + numberOfRequestedMemorySegments
+          + ", available: "
+          + availableMemorySegments.size()
+          + ", max: "
+          + maxNumberOfMemorySegments
+          + ", listeners: "
+          + registeredListeners.size()
+          + ", destroyed: "
+          + isDestroyed
+          + "]";
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A {@link Buffer} that owns a whole {@link MemorySegment}. The reference count is updated
+ * atomically, so a buffer can be retained and recycled by different threads, for example by the
+ * consumers of all channels a broadcast buffer was sent to. The reader and writer indices are not
+ * thread-safe and belong to the single thread that reads or writes the buffer.
+ */
+public class NetworkBuffer implements Buffer {
+
+  private static final AtomicIntegerFieldUpdater<NetworkBuffer> REF_CNT_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(NetworkBuffer.class, "refCnt");
+
+  /** The backing {@link MemorySegment} instance. */
+  private final MemorySegment memorySegment;
+
+  /** The recycler for the backing {@link MemorySegment}. */
+  private final BufferRecycler recycler;
+
+  /** The number of references to this buffer, including all its slices. */
+  @SuppressWarnings("unused") // updated through REF_CNT_UPDATER
+  private volatile int refCnt = 1;
+
+  private int readerIndex;
+
+  private int writerIndex;
+
+  private boolean isCompressed;
+
+  /**
+   * Creates a new buffer instance backed by the given <tt>memorySegment</tt> with <tt>0</tt> for
+   * the <tt>readerIndex</tt> and <tt>writerIndex</tt>.
+   *
+   * @param memorySegment The backing memory segment.
+   * @param recycler The recycler for the memory segment.
+   */
+  public NetworkBuffer(MemorySegment memorySegment, BufferRecycler recycler) {
+    this(memorySegment, recycler, 0);
+  }
+
+  /**
+   * Creates a new buffer instance backed by the given <tt>memorySegment</tt> with <tt>0</tt> for
+   * the <tt>readerIndex</tt> and <tt>size</tt> as <tt>writerIndex</tt>.
+   *
+   * @param memorySegment The backing memory segment.
+   * @param recycler The recycler for the memory segment.
+   * @param size The current size of data in the buffer.
+   */
+  public NetworkBuffer(MemorySegment memorySegment, BufferRecycler recycler, int size) {
+    if (memorySegment == null) {
+      throw new NullPointerException("memorySegment");
+    }
+    if (recycler == null) {
+      throw new NullPointerException("recycler");
+    }
+    this.memorySegment = memorySegment;
+    this.recycler = recycler;
+    setSize(size);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Reference counting
+  // ------------------------------------------------------------------------
+
+  @Override
+  public void recycleBuffer() {
+    while (true) {
+      int count = refCnt;
+      if (count <= 0) {
+        throw new IllegalStateException("Buffer has already been recycled.");
+      }
+      if (REF_CNT_UPDATER.compareAndSet(this, count, count - 1)) {
+        if (count == 1) {
+          recycler.recycle(memorySegment);
+        }
+        return;
+      }
+    }
+  }
+
+  @Override
+  public boolean isRecycled() {
+    return refCnt == 0;
+  }
+
+  @Override
+  public NetworkBuffer retainBuffer() {
+    while (true) {
+      int count = refCnt;
+      if (count <= 0) {
+        throw new IllegalStateException("Buffer has already been recycled.");
+      }
+      if (count == Integer.MAX_VALUE) {
+        throw new IllegalStateException("Reference count overflow.");
+      }
+      if (REF_CNT_UPDATER.compareAndSet(this, count, count + 1)) {
+        return this;
+      }
+    }
+  }
+
+  @Override
+  public int refCnt() {
+    return refCnt;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Slicing
+  // ------------------------------------------------------------------------
+
+  @Override
+  public ReadOnlySlicedNetworkBuffer readOnlySlice() {
+    return readOnlySlice(readerIndex, readableBytes());
+  }
+
+  @Override
+  public ReadOnlySlicedNetworkBuffer readOnlySlice(int index, int length) {
+    checkSliceBounds(index, length, getMaxCapacity());
+    return new ReadOnlySlicedNetworkBuffer(this, index, length);
+  }
+
+  static void checkSliceBounds(int index, int length, int capacity) {
+    if (index < 0 || length < 0 || index > capacity - length) {
+      throw new IndexOutOfBoundsException(
+          "index: " + index + ", length: " + length + " (capacity: " + capacity + ")");
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Indices and memory
+  // ------------------------------------------------------------------------
+
+  @Override
+  public MemorySegment getMemorySegment() {
+    return memorySegment;
+  }
+
+  @Override
+  public int getMemorySegmentOffset() {
+    return 0;
+  }
+
+  @Override
+  public BufferRecycler getRecycler() {
+    return recycler;
+  }
+
+  @Override
+  public int getMaxCapacity() {
+    return memorySegment.size();
+  }
+
+  @Override
+  public int getReaderIndex() {
+    return readerIndex;
+  }
+
+  @Override
+  public void setReaderIndex(int readerIndex) {
+    if (readerIndex < 0 || readerIndex > writerIndex) {
+      throw new IndexOutOfBoundsException(
+          "readerIndex: " + readerIndex + " (expected: 0 <= readerIndex <= " + writerIndex + ")");
+    }
+    this.readerIndex = readerIndex;
+  }
+
+  @Override
+  public int getSize() {
+    return writerIndex;
+  }
+
+  @Override
+  public void setSize(int writerIndex) {
+    if (writerIndex < readerIndex || writerIndex > getMaxCapacity()) {
+      throw new IndexOutOfBoundsException(
+          "writerIndex: "
+              + writerIndex
+              + " (expected: "
+              + readerIndex
+              + " <= writerIndex <= "
+              + getMaxCapacity()
+              + ")");
+    }
+    this.writerIndex = writerIndex;
+  }
+
+  @Override
+  public int readableBytes() {
+    return writerIndex - readerIndex;
+  }
+
+  @Override
+  public ByteBuffer getNioBufferReadable() {
+    return memorySegment.wrap(readerIndex, readableBytes()).asReadOnlyBuffer();
+  }
+
+  @Override
+  public boolean isCompressed() {
+    return isCompressed;
+  }
+
+  @Override
+  public void setCompressed(boolean isCompressed) {
+    this.isCompressed = isCompressed;
+  }
+
+  @Override
+  public String toString() {
+    return "NetworkBuffer (ridx: "
+        + readerIndex
+        + ", widx: "
+        + writerIndex
+        + ", cap: "
+        + getMaxCapacity()
+        + ", refCnt: "
+        + refCnt
+        + ")";
+  }
+}
@@ -0,0 +1,338 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * The network buffer pool holds the global set of network buffers of a process. All buffers are
+ * allocated once as off-heap {@link MemorySegment}s of equal size, when the pool is created, and
+ * are afterwards lent to {@link LocalBufferPool}s, one for each channel (or each group of
+ * channels) that produces or consumes data.
+ *
+ * <p>Every local pool is created with a minimum number of required buffers, which is guaranteed,
+ * and a maximum number of buffers. The buffers that are not required by any local pool are
+ * distributed among the local pools in proportion to the number of buffers they could take in
+ * addition to their required ones, whenever a local pool is created or destroyed. As the total
+ * number of buffers is fixed, the memory used for data exchanges is bounded: a producer that runs
+ * out of buffers has to wait until its consumers recycled some, which creates backpressure rather
+ * than an out-of-memory error.
+ *
+ * <p>Local pools that are below their size while this pool is exhausted register as waiting and
+ * are notified when a segment is recycled to this pool.
+ */
+public class NetworkBufferPool implements BufferRecycler {
+
+  /** The total number of memory segments of this pool. */
+  private final int totalNumberOfMemorySegments;
+
+  /** The size of each memory segment. */
+  private final int memorySegmentSize;
+
+  /** The segments that are not lent to any local pool. Also the lock for the fields below. */
+  private final ArrayDeque<MemorySegment> availableMemorySegments;
+
+  /** The local pools that wait for segments to be recycled to this pool. */
+  private final ArrayDeque<LocalBufferPool> waitingBufferPools = new ArrayDeque<>();
+
+  private volatile boolean isDestroyed;
+
+  // ---- Managed buffer pools ----------------------------------------------
+
+  /** The lock for the creation, destruction and resizing of the local pools. */
+  private final Object factoryLock = new Object();
+
+  private final List<LocalBufferPool> allBufferPools = new ArrayList<>();
+
+  private int numTotalRequiredBuffers;
+
+  /**
+   * Allocates all {@link MemorySegment} instances managed by this pool.
+   *
+   * @param numberOfSegmentsToAllocate The number of memory segments to allocate.
+   * @param segmentSize The size of each memory segment.
+   */
+  public NetworkBufferPool(int numberOfSegmentsToAllocate, int segmentSize) {
+    if (numberOfSegmentsToAllocate <= 0) {
+      throw new IllegalArgumentException("The number of network buffers must be positive.");
+    }
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("The size of the network buffers must be positive.");
+    }
+
+    this.totalNumberOfMemorySegments = numberOfSegmentsToAllocate;
+    this.memorySegmentSize = segmentSize;
+    this.availableMemorySegments = new ArrayDeque<>(numberOfSegmentsToAllocate);
+
+    try {
+      for (int i = 0; i < numberOfSegmentsToAllocate; i++) {
+        availableMemorySegments.add(
+            HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(segmentSize, null));
+      }
+    } catch (OutOfMemoryError err) {
+      final long requiredMb = ((long) segmentSize * numberOfSegmentsToAllocate) >> 20;
+      final long allocatedMb = ((long) segmentSize * availableMemorySegments.size()) >> 20;
+      final long missingMb = requiredMb - allocatedMb;
+
+      for (MemorySegment segment : availableMemorySegments) {
+        segment.free();
+      }
+      availableMemorySegments.clear();
+
+      throw new OutOfMemoryError(
+          "Could not allocate enough memory segments for NetworkBufferPool "
+              + "(required (Mb): "
+              + requiredMb
+              + ", allocated (Mb): "
+              + allocatedMb
+              + ", missing (Mb): "
+              + missingMb
+              + "). Cause: "
+              + err.getMessage());
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Segments for the local pools
+  // ------------------------------------------------------------------------
+
+  /**
+   * Takes one segment from this pool without blocking.
+   *
+   * @return The segment, or null, if all segments are lent out.
+   */
+  MemorySegment requestMemorySegment() {
+    synchronized (availableMemorySegments) {
+      if (isDestroyed) {
+        throw new IllegalStateException("Network buffer pool has already been destroyed.");
+      }
+      return availableMemorySegments.poll();
+    }
+  }
+
+  /**
+   * Registers the given local pool to be notified through {@link
+   * LocalBufferPool#onGlobalPoolAvailable()} when the next segment is recycled to this pool.
+   *
+   * @return True, if the pool was registered, false, if segments are available right now.
+   */
+  boolean registerWaitingBufferPool(LocalBufferPool bufferPool) {
+    synchronized (availableMemorySegments) {
+      if (!availableMemorySegments.isEmpty() || isDestroyed) {
+        return false;
+      }
+      waitingBufferPools.add(bufferPool);
+      return true;
+    }
+  }
+
+  /**
+   * Returns a segment to this pool. The caller must not hold the lock of any local pool, because
+   * the local pools waiting for segments are notified from within this method.
+   *
+   * <p>The segment is {@link MemorySegment#recycle() recycled}, so that with the use-after-free
+   * detection enabled, buffers that still reference it fail on their next access.
+   */
+  @Override
+  public void recycle(MemorySegment segment) {
+    returnMemorySegment(segment.recycle());
+  }
+
+  /**
+   * Returns a segment that a local pool has recycled already, or that it never handed out. The
+   * caller must not hold the lock of any local pool.
+   */
+  void returnMemorySegment(MemorySegment segment) {
+    final LocalBufferPool[] toNotify;
+    synchronized (availableMemorySegments) {
+      if (isDestroyed) {
+        segment.free();
+        return;
+      }
+      availableMemorySegments.add(segment);
+      if (waitingBufferPools.isEmpty()) {
+        return;
+      }
+      toNotify = waitingBufferPools.toArray(new LocalBufferPool[0]);
+      waitingBufferPools.clear();
+    }
+
+    for (LocalBufferPool bufferPool : toNotify) {
+      bufferPool.onGlobalPoolAvailable();
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Local buffer pools
+  // ------------------------------------------------------------------------
+
+  /**
+   * Creates a local buffer pool that is guaranteed the given number of required buffers and may
+   * grow up to the given maximum number of buffers, if the global pool has buffers to spare.
+   *
+   * @param numRequiredBuffers The minimum number of buffers of the local pool.
+   * @param maxUsedBuffers The maximum number of buffers of the local pool.
+   * @return The created local pool.
+   * @throws IOException Thrown, if the required buffers cannot be guaranteed.
+   */
+  public LocalBufferPool createBufferPool(int numRequiredBuffers, int maxUsedBuffers)
+      throws IOException {
+    if (numRequiredBuffers <= 0) {
+      throw new IllegalArgumentException("The number of required buffers must be positive.");
+    }
+    if (maxUsedBuffers < numRequiredBuffers) {
+      throw new IllegalArgumentException(
+          "The maximum number of buffers must not be smaller than the required number.");
+    }
+
+    synchronized (factoryLock) {
+      if (isDestroyed) {
+        throw new IllegalStateException("Network buffer pool has already been destroyed.");
+      }
+
+      // ensure that the pool can satisfy the required buffers of all local pools
+      if (numTotalRequiredBuffers + numRequiredBuffers > totalNumberOfMemorySegments) {
+        throw new IOException(
+            "Insufficient number of network buffers: required "
+                + numRequiredBuffers
+                + ", but only "
+                + (totalNumberOfMemorySegments - numTotalRequiredBuffers)
+                + " available. The total number of network buffers is currently set to "
+                + totalNumberOfMemorySegments
+                + " of "
+                + memorySegmentSize
+                + " bytes each.");
+      }
+
+      numTotalRequiredBuffers += numRequiredBuffers;
+
+      LocalBufferPool localBufferPool =
+          new LocalBufferPool(this, numRequiredBuffers, maxUsedBuffers);
+      allBufferPools.add(localBufferPool);
+
+      redistributeBuffers();
+      return localBufferPool;
+    }
+  }
+
+  /**
+   * Removes the given local pool from the pools this pool distributes its buffers to. Called by
+   * {@link LocalBufferPool#lazyDestroy()}.
+   */
+  void destroyBufferPool(LocalBufferPool bufferPool) {
+    synchronized (factoryLock) {
+      if (allBufferPools.remove(bufferPool)) {
+        numTotalRequiredBuffers -= bufferPool.getNumberOfRequiredMemorySegments();
+        redistributeBuffers();
+      }
+    }
+  }
+
+  /** Destroys all local pools that were created by this pool and are not destroyed yet. */
+  public void destroyAllBufferPools() {
+    synchronized (factoryLock) {
+      // create a copy, because destroying a pool removes it from the list
+      LocalBufferPool[] pools = allBufferPools.toArray(new LocalBufferPool[0]);
+      for (LocalBufferPool pool : pools) {
+        pool.lazyDestroy();
+      }
+
+      if (!allBufferPools.isEmpty() || numTotalRequiredBuffers > 0) {
+        throw new IllegalStateException(
+            "NetworkBufferPool is not empty after destroying all LocalBufferPools");
+      }
+    }
+  }
+
+  /**
+   * Destroys this pool and frees all segments that are not lent out. Segments that are recycled
+   * later are freed right away.
+   */
+  public void destroy() {
+    synchronized (factoryLock) {
+      synchronized (availableMemorySegments) {
+        isDestroyed = true;
+        MemorySegment segment;
+        while ((segment = availableMemorySegments.poll()) != null) {
+          segment.free();
+        }
+        waitingBufferPools.clear();
+      }
+    }
+  }
+
+  /**
+   * Distributes the buffers that are not required by any local pool among the local pools, in
+   * proportion to the number of buffers each pool could take beyond its required buffers.
+   */
+  private void redistributeBuffers() {
+    assert Thread.holdsLock(factoryLock);
+
+    final int numAvailableMemorySegment = totalNumberOfMemorySegments - numTotalRequiredBuffers;
+
+    long totalCapacity = 0;
+    for (LocalBufferPool bufferPool : allBufferPools) {
+      totalCapacity +=
+          bufferPool.getMaxNumberOfMemorySegments()
+              - bufferPool.getNumberOfRequiredMemorySegments();
+    }
+
+    if (totalCapacity == 0) {
+      // all pools are at their maximum size already
+      for (LocalBufferPool bufferPool : allBufferPools) {
+        bufferPool.setNumBuffers(bufferPool.getNumberOfRequiredMemorySegments());
+      }
+      return;
+    }
+
+    final long memorySegmentsToDistribute = Math.min(numAvailableMemorySegment, totalCapacity);
+
+    long totalPartsUsed = 0; // of totalCapacity
+    long numDistributedMemorySegment = 0;
+    for (LocalBufferPool bufferPool : allBufferPools) {
+      int excessMax =
+          bufferPool.getMaxNumberOfMemorySegments()
+              - bufferPool.getNumberOfRequiredMemorySegments();
+
+      // shares are rounded down, except for the last pool, which takes the remainder
+      totalPartsUsed += excessMax;
+      int mySize =
+          (int)
+              (memorySegmentsToDistribute * totalPartsUsed / totalCapacity
+                  - numDistributedMemorySegment);
+      numDistributedMemorySegment += mySize;
+      bufferPool.setNumBuffers(bufferPool.getNumberOfRequiredMemorySegments() + mySize);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Properties
+  // ------------------------------------------------------------------------
+
+  public int getTotalNumberOfMemorySegments() {
+    return totalNumberOfMemorySegments;
+  }
+
+  public int getMemorySegmentSize() {
+    return memorySegmentSize;
+  }
+
+  public int getNumberOfAvailableMemorySegments() {
+    synchronized (availableMemorySegments) {
+      return availableMemorySegments.size();
+    }
+  }
+
+  public int getNumberOfRegisteredBufferPools() {
+    synchronized (factoryLock) {
+      return allBufferPools.size();
+    }
+  }
+
+  public boolean isDestroyed() {
+    return isDestroyed;
+  }
+}
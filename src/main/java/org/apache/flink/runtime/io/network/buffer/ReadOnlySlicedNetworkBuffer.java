@@ -0,0 +1,151 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import java.nio.ByteBuffer;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A read-only slice of a {@link NetworkBuffer}. The slice shares the memory segment and the
+ * reference count with the buffer it was created from, but has its own reader and writer indices,
+ * so that several readers can consume the same data independently. Retaining or recycling the
+ * slice retains or recycles the sliced buffer.
+ *
+ * <p>The writer index of a slice is fixed to its length.
+ */
+public final class ReadOnlySlicedNetworkBuffer implements Buffer {
+
+  private final NetworkBuffer buffer;
+
+  /** The offset of the slice in the sliced buffer. */
+  private final int memorySegmentOffset;
+
+  private final int length;
+
+  private int readerIndex;
+
+  private boolean isCompressed;
+
+  ReadOnlySlicedNetworkBuffer(NetworkBuffer buffer, int index, int length) {
+    this(buffer, index, length, buffer.isCompressed());
+  }
+
+  private ReadOnlySlicedNetworkBuffer(
+      NetworkBuffer buffer, int index, int length, boolean isCompressed) {
+    this.buffer = buffer;
+    this.memorySegmentOffset = buffer.getMemorySegmentOffset() + index;
+    this.length = length;
+    this.isCompressed = isCompressed;
+  }
+
+  @Override
+  public MemorySegment getMemorySegment() {
+    return buffer.getMemorySegment();
+  }
+
+  @Override
+  public int getMemorySegmentOffset() {
+    return memorySegmentOffset;
+  }
+
+  @Override
+  public BufferRecycler getRecycler() {
+    return buffer.getRecycler();
+  }
+
+  @Override
+  public void recycleBuffer() {
+    buffer.recycleBuffer();
+  }
+
+  @Override
+  public boolean isRecycled() {
+    return buffer.isRecycled();
+  }
+
+  @Override
+  public ReadOnlySlicedNetworkBuffer retainBuffer() {
+    buffer.retainBuffer();
+    return this;
+  }
+
+  @Override
+  public int refCnt() {
+    return buffer.refCnt();
+  }
+
+  /** Creates a slice of this slice's readable bytes. The new slice shares the sliced buffer. */
+  @Override
+  public ReadOnlySlicedNetworkBuffer readOnlySlice() {
+    return readOnlySlice(readerIndex, readableBytes());
+  }
+
+  @Override
+  public ReadOnlySlicedNetworkBuffer readOnlySlice(int index, int length) {
+    NetworkBuffer.checkSliceBounds(index, length, this.length);
+    return new ReadOnlySlicedNetworkBuffer(
+        buffer, memorySegmentOffset + index, length, isCompressed);
+  }
+
+  @Override
+  public int getMaxCapacity() {
+    return length;
+  }
+
+  @Override
+  public int getReaderIndex() {
+    return readerIndex;
+  }
+
+  @Override
+  public void setReaderIndex(int readerIndex) {
+    if (readerIndex < 0 || readerIndex > length) {
+      throw new IndexOutOfBoundsException(
+          "readerIndex: " + readerIndex + " (expected: 0 <= readerIndex <= " + length + ")");
+    }
+    this.readerIndex = readerIndex;
+  }
+
+  @Override
+  public int getSize() {
+    return length;
+  }
+
+  @Override
+  public void setSize(int writerIndex) {
+    throw new UnsupportedOperationException("The slice is read-only.");
+  }
+
+  @Override
+  public int readableBytes() {
+    return length - readerIndex;
+  }
+
+  @Override
+  public ByteBuffer getNioBufferReadable() {
+    return getMemorySegment()
+        .wrap(memorySegmentOffset + readerIndex, readableBytes())
+        .asReadOnlyBuffer();
+  }
+
+  @Override
+  public boolean isCompressed() {
+    return isCompressed;
+  }
+
+  @Override
+  public void setCompressed(boolean isCompressed) {
+    this.isCompressed = isCompressed;
+  }
+
+  @Override
+  public String toString() {
+    return "ReadOnlySlicedNetworkBuffer (offset: "
+        + memorySegmentOffset
+        + ", ridx: "
+        + readerIndex
+        + ", length: "
+        + length
+        + ", refCnt: "
+        + refCnt()
+        + ")";
+  }
+}
@@ -0,0 +1,355 @@
+package org.apache.flink.runtime.operators.columnar;
+
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * Column-at-a-time operations on {@link ColumnarBatch}es: filters that produce selection vectors,
+ * and aggregates over the selected rows of a column.
+ *
+ * <p>A selection vector is an array with the indexes of the selected rows, in ascending order,
+ * together with the number of selected rows. A null selection vector selects all rows of the
+ * batch. Filters can be chained by passing the result of one filter as the selection of the next.
+ * Null values never pass a filter and are ignored by the aggregates.
+ *
+ * <p>Without a selection vector, the kernels walk the pages of the column and read the values with
+ * a tight loop per page; the null bitmap is only consulted if the column contains nulls.
+ */
+public final class ColumnKernels {
+
+  /** The comparison of a filter, between the value of a row and a constant. */
+  public enum CompareOp {
+    LESS(0b001),
+    LESS_OR_EQUAL(0b011),
+    EQUAL(0b010),
+    NOT_EQUAL(0b101),
+    GREATER_OR_EQUAL(0b110),
+    GREATER(0b100);
+
+    /**
+     * The accepted comparison results: bit 0 for less, bit 1 for equal and bit 2 for greater, so
+     * the result of {@code compare(value, constant) + 1} selects the bit without a branch.
+     */
+    private final int mask;
+
+    CompareOp(int mask) {
+      this.mask = mask;
+    }
+
+    boolean accepts(int comparison) {
+      return ((mask >>> (comparison + 1)) & 1) != 0;
+    }
+  }
+
+  private ColumnKernels() {}
+
+  // ------------------------------------------------------------------------
+  //  Filters
+  // ------------------------------------------------------------------------
+
+  /**
+   * Selects the rows whose value in the given INT or LONG column compares to the constant as
+   * given.
+   *
+   * @param batch The batch.
+   * @param column The index of the column.
+   * @param op The comparison.
+   * @param constant The constant to compare with.
+   * @param selection The rows to consider, or null for all rows.
+   * @param numSelected The number of rows in the selection, ignored if the selection is null.
+   * @param result The array for the indexes of the selected rows, at least as long as the number
+   *     of considered rows. May be the same array as the selection.
+   * @return The number of selected rows.
+   */
+  public static int filter(
+      ColumnarBatch batch,
+      int column,
+      CompareOp op,
+      long constant,
+      int[] selection,
+      int numSelected,
+      int[] result) {
+    final FixedWidthColumnVector vector = integralColumn(batch, column);
+    final boolean isInt = vector.getType() == ColumnType.INT;
+    final boolean hasNulls = vector.getNullCount() > 0;
+    int count = 0;
+
+    if (selection != null) {
+      for (int i = 0; i < numSelected; i++) {
+        final int row = selection[i];
+        if (hasNulls && vector.isNull(row)) {
+          continue;
+        }
+        final long value = isInt ? vector.getInt(row) : vector.getLong(row);
+        if (op.accepts(Long.compare(value, constant))) {
+          result[count++] = row;
+        }
+      }
+      return count;
+    }
+
+    final int numRows = batch.getNumRows();
+    for (int row = 0; row < numRows; ) {
+      final long address = vector.base + ((long) row << vector.shift);
+      final MemorySegment segment = vector.segments[(int) (address >>> vector.pageBits)];
+      int pos = (int) address & vector.pageMask;
+      final int end = row + Math.min(numRows - row, (vector.pageSize - pos) >>> vector.shift);
+      for (; row < end; row++, pos += 1 << vector.shift) {
+        final long value = isInt ? segment.getInt(pos) : segment.getLong(pos);
+        if (op.accepts(Long.compare(value, constant)) && !(hasNulls && vector.isNull(row))) {
+          result[count++] = row;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Selects the rows whose value in the given DOUBLE column compares to the constant as given.
+   * Values are compared as by {@link Double#compare(double, double)}.
+   *
+   * @see #filter(ColumnarBatch, int, CompareOp, long, int[], int, int[])
+   */
+  public static int filter(
+      ColumnarBatch batch,
+      int column,
+      CompareOp op,
+      double constant,
+      int[] selection,
+      int numSelected,
+      int[] result) {
+    final FixedWidthColumnVector vector = doubleColumn(batch, column);
+    final boolean hasNulls = vector.getNullCount() > 0;
+    int count = 0;
+
+    if (selection != null) {
+      for (int i = 0; i < numSelected; i++) {
+        final int row = selection[i];
+        if (hasNulls && vector.isNull(row)) {
+          continue;
+        }
+        if (op.accepts(Double.compare(vector.getDouble(row), constant))) {
+          result[count++] = row;
+        }
+      }
+      return count;
+    }
+
+    final int numRows = batch.getNumRows();
+    for (int row = 0; row < numRows; ) {
+      final long address = vector.base + ((long) row << 3);
+      final MemorySegment segment = vector.segments[(int) (address >>> vector.pageBits)];
+      int pos = (int) address & vector.pageMask;
+      final int end = row + Math.min(numRows - row, (vector.pageSize - pos) >>> 3);
+      for (; row < end; row++, pos += 8) {
+        if (op.accepts(Double.compare(segment.getDouble(pos), constant))
+            && !(hasNulls && vector.isNull(row))) {
+          result[count++] = row;
+        }
+      }
+    }
+    return count;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Aggregates
+  // ------------------------------------------------------------------------
+
+  /**
+   * Counts the selected rows whose value in the given column is not null.
+   *
+   * @param batch The batch.
+   * @param column The index of the column.
+   * @param selection The rows to consider, or null for all rows.
+   * @param numSelected The number of rows in the selection, ignored if the selection is null.
+   * @return The number of non-null values.
+   */
+  public static int count(ColumnarBatch batch, int column, int[] selection, int numSelected) {
+    final ColumnVector vector = batch.getColumn(column);
+    if (selection == null) {
+      int nulls = 0;
+      if (vector.getNullCount() > 0) {
+        for (int row = 0; row < batch.getNumRows(); row++) {
+          if (vector.isNull(row)) {
+            nulls++;
+          }
+        }
+      }
+      return batch.getNumRows() - nulls;
+    }
+    int count = 0;
+    for (int i = 0; i < numSelected; i++) {
+      if (!vector.isNull(selection[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** Sums the non-null values of the selected rows of an INT or LONG column. */
+  public static long sumLong(ColumnarBatch batch, int column, int[] selection, int numSelected) {
+    return aggregateLong(batch, column, selection, numSelected, AGG_SUM, 0L);
+  }
+
+  /**
+   * Gets the minimum of the non-null values of the selected rows of an INT or LONG column, or
+   * {@link Long#MAX_VALUE}, if there are none.
+   */
+  public static long minLong(ColumnarBatch batch, int column, int[] selection, int numSelected) {
+    return aggregateLong(batch, column, selection, numSelected, AGG_MIN, Long.MAX_VALUE);
+  }
+
+  /**
+   * Gets the maximum of the non-null values of the selected rows of an INT or LONG column, or
+   * {@link Long#MIN_VALUE}, if there are none.
+   */
+  public static long maxLong(ColumnarBatch batch, int column, int[] selection, int numSelected) {
+    return aggregateLong(batch, column, selection, numSelected, AGG_MAX, Long.MIN_VALUE);
+  }
+
+  /** Sums the non-null values of the selected rows of a DOUBLE column. */
+  public static double sumDouble(
+      ColumnarBatch batch, int column, int[] selection, int numSelected) {
+    return aggregateDouble(batch, column, selection, numSelected, AGG_SUM, 0.0);
+  }
+
+  /**
+   * Gets the minimum of the non-null values of the selected rows of a DOUBLE column, or {@link
+   * Double#POSITIVE_INFINITY}, if there are none.
+   */
+  public static double minDouble(
+      ColumnarBatch batch, int column, int[] selection, int numSelected) {
+    return aggregateDouble(
+        batch, column, selection, numSelected, AGG_MIN, Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Gets the maximum of the non-null values of the selected rows of a DOUBLE column, or {@link
+   * Double#NEGATIVE_INFINITY}, if there are none.
+   */
+  public static double maxDouble(
+      ColumnarBatch batch, int column, int[] selection, int numSelected) {
+    return aggregateDouble(
+        batch, column, selection, numSelected, AGG_MAX, Double.NEGATIVE_INFINITY);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Utilities
+  // ------------------------------------------------------------------------
+
+  private static final int AGG_SUM = 0;
+
+  private static final int AGG_MIN = 1;
+
+  private static final int AGG_MAX = 2;
+
+  private static long aggregateLong(
+      ColumnarBatch batch,
+      int column,
+      int[] selection,
+      int numSelected,
+      int aggregate,
+      long identity) {
+    final FixedWidthColumnVector vector = integralColumn(batch, column);
+    final boolean isInt = vector.getType() == ColumnType.INT;
+    final boolean hasNulls = vector.getNullCount() > 0;
+    long acc = identity;
+
+    if (selection != null) {
+      for (int i = 0; i < numSelected; i++) {
+        final int row = selection[i];
+        if (!(hasNulls && vector.isNull(row))) {
+          acc = combine(acc, isInt ? vector.getInt(row) : vector.getLong(row), aggregate);
+        }
+      }
+      return acc;
+    }
+
+    final int numRows = batch.getNumRows();
+    for (int row = 0; row < numRows; ) {
+      final long address = vector.base + ((long) row << vector.shift);
+      final MemorySegment segment = vector.segments[(int) (address >>> vector.pageBits)];
+      int pos = (int) address & vector.pageMask;
+      final int end = row + Math.min(numRows - row, (vector.pageSize - pos) >>> vector.shift);
+      for (; row < end; row++, pos += 1 << vector.shift) {
+        if (!(hasNulls && vector.isNull(row))) {
+          acc = combine(acc, isInt ? segment.getInt(pos) : segment.getLong(pos), aggregate);
+        }
+      }
+    }
+    return acc;
+  }
+
+  private static double aggregateDouble(
+      ColumnarBatch batch,
+      int column,
+      int[] selection,
+      int numSelected,
+      int aggregate,
+      double identity) {
+    final FixedWidthColumnVector vector = doubleColumn(batch, column);
+    final boolean hasNulls = vector.getNullCount() > 0;
+    double acc = identity;
+
+    if (selection != null) {
+      for (int i = 0; i < numSelected; i++) {
+        final int row = selection[i];
+        if (!(hasNulls && vector.isNull(row))) {
+          acc = combine(acc, vector.getDouble(row), aggregate);
+        }
+      }
+      return acc;
+    }
+
+    final int numRows = batch.getNumRows();
+    for (int row = 0; row < numRows; ) {
+      final long address = vector.base + ((long) row << 3);
+      final MemorySegment segment = vector.segments[(int) (address >>> vector.pageBits)];
+      int pos = (int) address & vector.pageMask;
+      final int end = row + Math.min(numRows - row, (vector.pageSize - pos) >>> 3);
+      for (; row < end; row++, pos += 8) {
+        if (!(hasNulls && vector.isNull(row))) {
+          acc = combine(acc, segment.getDouble(pos), aggregate);
+        }
+      }
+    }
+    return acc;
+  }
+
+  private static long combine(long acc, long value, int aggregate) {
+    switch (aggregate) {
+      case AGG_SUM:
+        return acc + value;
+      case AGG_MIN:
+        return Math.min(acc, value);
+      default:
+        return Math.max(acc, value);
+    }
+  }
+
+  private static double combine(double acc, double value, int aggregate) {
+    switch (aggregate) {
+      case AGG_SUM:
+        return acc + value;
+      case AGG_MIN:
+        return Math.min(acc, value);
+      default:
+        return Math.max(acc, value);
+    }
+  }
+
+  private static FixedWidthColumnVector integralColumn(ColumnarBatch batch, int column) {
+    final ColumnType type = batch.getType(column);
+    if (type != ColumnType.INT && type != ColumnType.LONG) {
+      throw new IllegalArgumentException("Column " + column + " is not INT or LONG: " + type);
+    }
+    return batch.getFixedWidthColumn(column);
+  }
+
+  private static FixedWidthColumnVector doubleColumn(ColumnarBatch batch, int column) {
+    final ColumnType type = batch.getType(column);
+    if (type != ColumnType.DOUBLE) {
+      throw new IllegalArgumentException("Column " + column + " is not DOUBLE: " + type);
+    }
+    return batch.getFixedWidthColumn(column);
+  }
+}
@@ -0,0 +1,37 @@
+package org.apache.flink.runtime.operators.columnar;
+
+/** The types of the columns of a {@link ColumnarBatch}. */
+public enum ColumnType {
+
+  /** 32 bit integers, stored in a {@link FixedWidthColumnVector}. */
+  INT(4),
+
+  /** 64 bit integers, stored in a {@link FixedWidthColumnVector}. */
+  LONG(8),
+
+  /** 64 bit floating point numbers, stored in a {@link FixedWidthColumnVector}. */
+  DOUBLE(8),
+
+  /** Byte strings of arbitrary length, stored in a {@link VariableWidthColumnVector}. */
+  BYTES(-1);
+
+  private final int width;
+
+  ColumnType(int width) {
+    this.width = width;
+  }
+
+  /** Checks whether all values of this type have the same width. */
+  public boolean isFixedWidth() {
+    return width > 0;
+  }
+
+  /**
+   * Gets the number of bytes of each value of a fixed-width type.
+   *
+   * @return The width of the values, or -1, if the type is of variable width.
+   */
+  public int getWidth() {
+    return width;
+  }
+}
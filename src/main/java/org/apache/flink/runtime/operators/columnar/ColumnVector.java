@@ -0,0 +1,129 @@
+package org.apache.flink.runtime.operators.columnar;
+
+import java.util.List;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * The base class of the columns of a {@link ColumnarBatch}. A column vector holds the values of
+ * one column for up to {@link #getCapacity()} rows in a sequence of equally sized memory pages.
+ *
+ * <p>The pages start with the null bitmap, one bit per row, which is followed by the fixed-width
+ * part of the vector: the values themselves for {@link FixedWidthColumnVector}s, and the offsets
+ * of the values for {@link VariableWidthColumnVector}s. The fixed-width part starts at an offset
+ * that is a multiple of eight, so that no value of a power-of-two width spans two pages.
+ */
+public abstract class ColumnVector {
+
+  protected final ColumnType type;
+
+  protected final int capacity;
+
+  /** The pages with the null bitmap, followed by the fixed-width part. */
+  final MemorySegment[] segments;
+
+  final int pageSize;
+
+  final int pageBits;
+
+  final int pageMask;
+
+  /** The offset of the fixed-width part, behind the null bitmap. */
+  final int base;
+
+  /** The number of rows that are null. */
+  int nullCount;
+
+  ColumnVector(ColumnType type, int capacity, List<MemorySegment> segments) {
+    this.type = type;
+    this.capacity = capacity;
+    this.segments = segments.toArray(new MemorySegment[0]);
+    this.pageSize = this.segments[0].size();
+    if ((pageSize & (pageSize - 1)) != 0) {
+      throw new IllegalArgumentException("The page size must be a power of two.");
+    }
+    this.pageBits = Integer.numberOfTrailingZeros(pageSize);
+    this.pageMask = pageSize - 1;
+    this.base = bitmapBytes(capacity);
+    clearNulls();
+  }
+
+  /**
+   * Gets the number of bytes of the null bitmap for the given number of rows, rounded up to a
+   * multiple of eight.
+   */
+  static int bitmapBytes(int capacity) {
+    return ((capacity + 63) >>> 6) << 3;
+  }
+
+  /**
+   * Gets the number of pages a vector needs for the given number of bytes in its fixed-width part.
+   */
+  static int numPages(int capacity, long fixedWidthBytes, int pageSize) {
+    return (int) ((bitmapBytes(capacity) + fixedWidthBytes + pageSize - 1) / pageSize);
+  }
+
+  // ------------------------------------------------------------------------
+
+  public ColumnType getType() {
+    return type;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /** Gets the number of rows that are null. */
+  public int getNullCount() {
+    return nullCount;
+  }
+
+  /**
+   * Checks whether the value of the given row is null.
+   *
+   * @param row The row.
+   * @return True, if the value is null.
+   */
+  public boolean isNull(int row) {
+    checkRow(row);
+    final int byteIndex = row >>> 3;
+    return (segments[byteIndex >>> pageBits].get(byteIndex & pageMask) & (1 << (row & 7))) != 0;
+  }
+
+  /** Marks the value of the given row as null. */
+  void setNullBit(int row) {
+    final int byteIndex = row >>> 3;
+    final MemorySegment segment = segments[byteIndex >>> pageBits];
+    final int offset = byteIndex & pageMask;
+    final byte bits = segment.get(offset);
+    final int mask = 1 << (row & 7);
+    if ((bits & mask) == 0) {
+      segment.put(offset, (byte) (bits | mask));
+      nullCount++;
+    }
+  }
+
+  /** Clears the null bitmap and forgets all values. */
+  void reset() {
+    clearNulls();
+  }
+
+  private void clearNulls() {
+    for (int pos = 0; pos < base; pos += 8) {
+      segments[pos >>> pageBits].putLong(pos & pageMask, 0L);
+    }
+    nullCount = 0;
+  }
+
+  final void checkRow(int row) {
+    if (row < 0 || row >= capacity) {
+      throw new IndexOutOfBoundsException("row: " + row + ", capacity: " + capacity);
+    }
+  }
+
+  /** Adds the pages of this vector to the given list, for releasing them. */
+  void collectSegments(List<MemorySegment> target) {
+    for (MemorySegment segment : segments) {
+      target.add(segment);
+    }
+  }
+}
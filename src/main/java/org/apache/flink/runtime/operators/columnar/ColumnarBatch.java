@@ -0,0 +1,207 @@
+package org.apache.flink.runtime.operators.columnar;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.flink.core.memory.MemoryAllocationException;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A batch of rows in columnar layout: the values of each column are stored together in a {@link
+ * ColumnVector}, whose memory is taken from a {@link MemoryManager}. Operators that look at a few
+ * columns of wide rows scan flat memory column by column, instead of deserializing every record,
+ * see {@link ColumnKernels}.
+ *
+ * <p>A batch has a fixed capacity of rows. It is filled through a {@link ColumnarBatchWriter},
+ * and can be {@link #reset()} and filled again, keeping its memory. All memory is returned to the
+ * memory manager when the batch is {@link #close() closed}.
+ */
+public class ColumnarBatch implements AutoCloseable {
+
+  private final ColumnType[] types;
+
+  private final ColumnVector[] columns;
+
+  private final int capacity;
+
+  private final MemoryManager memoryManager;
+
+  /** Whether this batch owns the memory of its columns, false for projections. */
+  private final boolean ownsMemory;
+
+  private int numRows;
+
+  private boolean closed;
+
+  /**
+   * Creates a batch with the given column types and capacity, taking the memory for the columns
+   * from the given memory manager.
+   *
+   * @param memoryManager The memory manager to take the memory from.
+   * @param owner The owner of the memory.
+   * @param types The types of the columns.
+   * @param capacity The maximum number of rows.
+   * @throws MemoryAllocationException Thrown, if the memory manager has not enough memory.
+   */
+  public ColumnarBatch(
+      MemoryManager memoryManager, Object owner, ColumnType[] types, int capacity)
+      throws MemoryAllocationException {
+    if (types.length == 0) {
+      throw new IllegalArgumentException("A batch needs at least one column.");
+    }
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity must be positive.");
+    }
+
+    this.types = types.clone();
+    this.columns = new ColumnVector[types.length];
+    this.capacity = capacity;
+    this.memoryManager = memoryManager;
+    this.ownsMemory = true;
+
+    final int pageSize = memoryManager.getPageSize();
+    try {
+      for (int i = 0; i < types.length; i++) {
+        if (types[i].isFixedWidth()) {
+          List<MemorySegment> segments =
+              memoryManager.allocatePages(
+                  owner, FixedWidthColumnVector.numPages(types[i], capacity, pageSize));
+          columns[i] = new FixedWidthColumnVector(types[i], capacity, segments);
+        } else {
+          List<MemorySegment> segments =
+              memoryManager.allocatePages(
+                  owner, VariableWidthColumnVector.numPages(capacity, pageSize));
+          columns[i] = new VariableWidthColumnVector(capacity, segments, memoryManager, owner);
+        }
+      }
+    } catch (MemoryAllocationException | RuntimeException e) {
+      releaseMemory();
+      throw e;
+    }
+  }
+
+  /** Creates a view on the given columns of another batch. */
+  private ColumnarBatch(ColumnarBatch source, int[] columnIndexes) {
+    this.types = new ColumnType[columnIndexes.length];
+    this.columns = new ColumnVector[columnIndexes.length];
+    for (int i = 0; i < columnIndexes.length; i++) {
+      this.types[i] = source.types[columnIndexes[i]];
+      this.columns[i] = source.columns[columnIndexes[i]];
+    }
+    this.capacity = source.capacity;
+    this.memoryManager = source.memoryManager;
+    this.ownsMemory = false;
+    this.numRows = source.numRows;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Properties
+  // ------------------------------------------------------------------------
+
+  public int getNumColumns() {
+    return columns.length;
+  }
+
+  public ColumnType getType(int column) {
+    return types[column];
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public int getNumRows() {
+    return numRows;
+  }
+
+  void setNumRows(int numRows) {
+    this.numRows = numRows;
+  }
+
+  public ColumnVector getColumn(int column) {
+    return columns[column];
+  }
+
+  /**
+   * Gets the column with the given index, which must be of a fixed-width type.
+   *
+   * @param column The index of the column.
+   * @return The column vector.
+   * @throws IllegalArgumentException Thrown, if the column is not of a fixed-width type.
+   */
+  public FixedWidthColumnVector getFixedWidthColumn(int column) {
+    if (!types[column].isFixedWidth()) {
+      throw new IllegalArgumentException(
+          "Column " + column + " is of the variable-width type " + types[column]);
+    }
+    return (FixedWidthColumnVector) columns[column];
+  }
+
+  /**
+   * Gets the column with the given index, which must be of a variable-width type.
+   *
+   * @param column The index of the column.
+   * @return The column vector.
+   * @throws IllegalArgumentException Thrown, if the column is not of a variable-width type.
+   */
+  public VariableWidthColumnVector getVariableWidthColumn(int column) {
+    if (types[column].isFixedWidth()) {
+      throw new IllegalArgumentException(
+          "Column " + column + " is of the fixed-width type " + types[column]);
+    }
+    return (VariableWidthColumnVector) columns[column];
+  }
+
+  // ------------------------------------------------------------------------
+  //  Projection and life cycle
+  // ------------------------------------------------------------------------
+
+  /**
+   * Projects this batch onto the given columns, in the given order. The projection shares the
+   * column vectors with this batch, no data is copied. The projection reflects the rows of this
+   * batch at the time of the call and must not be used after this batch is reset or closed.
+   *
+   * @param columnIndexes The indexes of the columns of the projection.
+   * @return The projected batch.
+   */
+  public ColumnarBatch project(int... columnIndexes) {
+    for (int index : columnIndexes) {
+      if (index < 0 || index >= columns.length) {
+        throw new IndexOutOfBoundsException("column: " + index);
+      }
+    }
+    return new ColumnarBatch(this, columnIndexes);
+  }
+
+  /** Removes all rows from this batch. The memory is kept for the next rows. */
+  public void reset() {
+    if (!ownsMemory) {
+      throw new UnsupportedOperationException("A projection cannot be reset.");
+    }
+    for (ColumnVector column : columns) {
+      column.reset();
+    }
+    numRows = 0;
+  }
+
+  /** Closes this batch and returns its memory to the memory manager. Projections own no memory. */
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      if (ownsMemory) {
+        releaseMemory();
+      }
+    }
+  }
+
+  private void releaseMemory() {
+    final List<MemorySegment> segments = new ArrayList<>();
+    for (ColumnVector column : columns) {
+      if (column != null) {
+        column.collectSegments(segments);
+      }
+    }
+    memoryManager.release(segments);
+  }
+}
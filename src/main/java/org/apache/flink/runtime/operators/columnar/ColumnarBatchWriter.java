@@ -0,0 +1,130 @@
+package org.apache.flink.runtime.operators.columnar;
+
+import java.nio.charset.StandardCharsets;
+import org.apache.flink.core.memory.MemoryAllocationException;
+
+/**
+ * Writes rows into a {@link ColumnarBatch}. The values of the current row are set column by
+ * column, in any order, and the row is completed with {@link #finishRow()}. Columns that were not
+ * set for a row are null.
+ *
+ * <p>Each column can be set only once per row, because the values of variable-width columns are
+ * appended to their vectors right away.
+ */
+public final class ColumnarBatchWriter {
+
+  private final ColumnarBatch batch;
+
+  /** Whether the columns have been set for the current row. */
+  private final boolean[] written;
+
+  /**
+   * Creates a writer that appends rows to the given batch.
+   *
+   * @param batch The batch to write to.
+   */
+  public ColumnarBatchWriter(ColumnarBatch batch) {
+    this.batch = batch;
+    this.written = new boolean[batch.getNumColumns()];
+  }
+
+  /** Checks whether the batch is full, that is, whether no further row can be written. */
+  public boolean isFull() {
+    return batch.getNumRows() >= batch.getCapacity();
+  }
+
+  public void setInt(int column, int value) {
+    fixedWidthColumn(column, ColumnType.INT).setInt(batch.getNumRows(), value);
+  }
+
+  public void setLong(int column, long value) {
+    fixedWidthColumn(column, ColumnType.LONG).setLong(batch.getNumRows(), value);
+  }
+
+  public void setDouble(int column, double value) {
+    fixedWidthColumn(column, ColumnType.DOUBLE).setDouble(batch.getNumRows(), value);
+  }
+
+  /**
+   * Sets the value of a variable-width column of the current row.
+   *
+   * @param column The index of the column.
+   * @param value The bytes of the value.
+   * @throws MemoryAllocationException Thrown, if the memory for the value could not be allocated.
+   */
+  public void setBytes(int column, byte[] value) throws MemoryAllocationException {
+    if (value == null) {
+      setNull(column);
+      return;
+    }
+    variableWidthColumn(column).appendBytes(value, 0, value.length);
+    written[column] = true;
+  }
+
+  /**
+   * Sets the value of a variable-width column of the current row to the UTF-8 encoding of the
+   * given string.
+   *
+   * @param column The index of the column.
+   * @param value The string.
+   * @throws MemoryAllocationException Thrown, if the memory for the value could not be allocated.
+   */
+  public void setString(int column, String value) throws MemoryAllocationException {
+    setBytes(column, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Sets the value of the given column of the current row to null. */
+  public void setNull(int column) {
+    if (batch.getType(column).isFixedWidth()) {
+      fixedWidthColumn(column, batch.getType(column)).setNull(batch.getNumRows());
+    } else {
+      variableWidthColumn(column).appendNull();
+      written[column] = true;
+    }
+  }
+
+  /** Completes the current row. Columns that were not set are null. */
+  public void finishRow() {
+    checkNotFull();
+    final int row = batch.getNumRows();
+    for (int column = 0; column < written.length; column++) {
+      if (!written[column]) {
+        setNull(column);
+      }
+      written[column] = false;
+    }
+    batch.setNumRows(row + 1);
+  }
+
+  private FixedWidthColumnVector fixedWidthColumn(int column, ColumnType expectedType) {
+    if (batch.getType(column) != expectedType) {
+      throw new IllegalArgumentException(
+          "Column " + column + " is of type " + batch.getType(column) + ", not " + expectedType);
+    }
+    checkNotWritten(column);
+    written[column] = true;
+    return batch.getFixedWidthColumn(column);
+  }
+
+  /**
+   * Gets the vector of a variable-width column. Unlike for fixed-width columns, the column is not
+   * marked as written here, but only once the value was appended, because appending may fail.
+   */
+  private VariableWidthColumnVector variableWidthColumn(int column) {
+    checkNotWritten(column);
+    return batch.getVariableWidthColumn(column);
+  }
+
+  private void checkNotWritten(int column) {
+    checkNotFull();
+    if (written[column]) {
+      throw new IllegalStateException("Column " + column + " has already been set for the row.");
+    }
+  }
+
+  private void checkNotFull() {
+    if (isFull()) {
+      throw new IllegalStateException("The batch is full.");
+    }
+  }
+}
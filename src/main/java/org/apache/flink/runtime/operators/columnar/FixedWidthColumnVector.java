@@ -0,0 +1,186 @@
+package org.apache.flink.runtime.operators.columnar;
+
+import java.util.List;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A column vector for values of a fixed width, that is, of the types {@link ColumnType#INT},
+ * {@link ColumnType#LONG} and {@link ColumnType#DOUBLE}. The value of row {@code i} is stored at
+ * offset {@code i * width} of the fixed-width part, in the system's native byte order.
+ *
+ * <p>The accessors must match the type of the vector: {@link #getInt(int)} and {@link
+ * #setInt(int, int)} for INT vectors, and so on. The bulk methods copy ranges of rows from and to
+ * primitive arrays with one memory copy per page.
+ */
+public final class FixedWidthColumnVector extends ColumnVector {
+
+  /** The binary logarithm of the width of the values. */
+  final int shift;
+
+  FixedWidthColumnVector(ColumnType type, int capacity, List<MemorySegment> segments) {
+    super(type, capacity, segments);
+    if (!type.isFixedWidth()) {
+      throw new IllegalArgumentException("Not a fixed-width type: " + type);
+    }
+    this.shift = Integer.numberOfTrailingZeros(type.getWidth());
+  }
+
+  /** Gets the number of pages a vector of the given type and capacity needs. */
+  static int numPages(ColumnType type, int capacity, int pageSize) {
+    return ColumnVector.numPages(capacity, (long) capacity * type.getWidth(), pageSize);
+  }
+
+  private long address(int row) {
+    checkRow(row);
+    return base + ((long) row << shift);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Single values
+  // ------------------------------------------------------------------------
+
+  public int getInt(int row) {
+    final long address = address(row);
+    return segments[(int) (address >>> pageBits)].getInt((int) address & pageMask);
+  }
+
+  public void setInt(int row, int value) {
+    final long address = address(row);
+    segments[(int) (address >>> pageBits)].putInt((int) address & pageMask, value);
+  }
+
+  public long getLong(int row) {
+    final long address = address(row);
+    return segments[(int) (address >>> pageBits)].getLong((int) address & pageMask);
+  }
+
+  public void setLong(int row, long value) {
+    final long address = address(row);
+    segments[(int) (address >>> pageBits)].putLong((int) address & pageMask, value);
+  }
+
+  public double getDouble(int row) {
+    final long address = address(row);
+    return segments[(int) (address >>> pageBits)].getDouble((int) address & pageMask);
+  }
+
+  public void setDouble(int row, double value) {
+    final long address = address(row);
+    segments[(int) (address >>> pageBits)].putDouble((int) address & pageMask, value);
+  }
+
+  /** Marks the value of the given row as null. */
+  public void setNull(int row) {
+    checkRow(row);
+    setNullBit(row);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Ranges of values
+  // ------------------------------------------------------------------------
+
+  /**
+   * Copies the values of {@code length} rows, starting at the given row, into the given array.
+   *
+   * @param row The first row to copy.
+   * @param dst The array to copy to.
+   * @param offset The offset in the array.
+   * @param length The number of rows to copy.
+   */
+  public void getInts(int row, int[] dst, int offset, int length) {
+    checkRange(row, length);
+    while (length > 0) {
+      final long address = base + ((long) row << shift);
+      final int pos = (int) address & pageMask;
+      final int n = Math.min(length, (pageSize - pos) >>> shift);
+      segments[(int) (address >>> pageBits)].getInts(pos, dst, offset, n);
+      row += n;
+      offset += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Copies {@code length} values from the given array into the rows starting at the given row.
+   *
+   * @param row The first row to copy to.
+   * @param src The array to copy from.
+   * @param offset The offset in the array.
+   * @param length The number of rows to copy.
+   */
+  public void setInts(int row, int[] src, int offset, int length) {
+    checkRange(row, length);
+    while (length > 0) {
+      final long address = base + ((long) row << shift);
+      final int pos = (int) address & pageMask;
+      final int n = Math.min(length, (pageSize - pos) >>> shift);
+      segments[(int) (address >>> pageBits)].putInts(pos, src, offset, n);
+      row += n;
+      offset += n;
+      length -= n;
+    }
+  }
+
+  /** Copies the values of a range of rows into the given array, see {@link #getInts}. */
+  public void getLongs(int row, long[] dst, int offset, int length) {
+    checkRange(row, length);
+    while (length > 0) {
+      final long address = base + ((long) row << shift);
+      final int pos = (int) address & pageMask;
+      final int n = Math.min(length, (pageSize - pos) >>> shift);
+      segments[(int) (address >>> pageBits)].getLongs(pos, dst, offset, n);
+      row += n;
+      offset += n;
+      length -= n;
+    }
+  }
+
+  /** Copies values from the given array into a range of rows, see {@link #setInts}. */
+  public void setLongs(int row, long[] src, int offset, int length) {
+    checkRange(row, length);
+    while (length > 0) {
+      final long address = base + ((long) row << shift);
+      final int pos = (int) address & pageMask;
+      final int n = Math.min(length, (pageSize - pos) >>> shift);
+      segments[(int) (address >>> pageBits)].putLongs(pos, src, offset, n);
+      row += n;
+      offset += n;
+      length -= n;
+    }
+  }
+
+  /** Copies the values of a range of rows into the given array, see {@link #getInts}. */
+  public void getDoubles(int row, double[] dst, int offset, int length) {
+    checkRange(row, length);
+    while (length > 0) {
+      final long address = base + ((long) row << shift);
+      final int pos = (int) address & pageMask;
+      final int n = Math.min(length, (pageSize - pos) >>> shift);
+      segments[(int) (address >>> pageBits)].getDoubles(pos, dst, offset, n);
+      row += n;
+      offset += n;
+      length -= n;
+    }
+  }
+
+  /** Copies values from the given array into a range of rows, see {@link #setInts}. */
+  public void setDoubles(int row, double[] src, int offset, int length) {
+    checkRange(row, length);
+    while (length > 0) {
+      final long address = base + ((long) row << shift);
+      final int pos = (int) address & pageMask;
+      final int n = Math.min(length, (pageSize - pos) >>> shift);
+      segments[(int) (address >>> pageBits)].putDoubles(pos, src, offset, n);
+      row += n;
+      offset += n;
+      length -= n;
+    }
+  }
+
+  private void checkRange(int row, int length) {
+    if (row < 0 || length < 0 || row > capacity - length) {
+      throw new IndexOutOfBoundsException(
+          "row: " + row + ", length: " + length + ", capacity: " + capacity);
+    }
+  }
+}
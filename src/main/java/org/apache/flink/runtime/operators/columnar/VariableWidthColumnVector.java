@@ -0,0 +1,206 @@
+package org.apache.flink.runtime.operators.columnar;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.flink.core.memory.MemoryAllocationException;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A column vector for byte strings of arbitrary length, of the type {@link ColumnType#BYTES}.
+ *
+ * <p>The fixed-width part of the vector is the offset vector: {@code capacity + 1} ints, where
+ * the value of row {@code i} spans the data bytes from offset {@code i} to offset {@code i + 1}.
+ * The data bytes are stored back to back in separate pages, which are taken from the memory
+ * manager while values are appended and kept until the batch is closed, so values may span
+ * pages. Values are appended in row order.
+ */
+public final class VariableWidthColumnVector extends ColumnVector {
+
+  private final MemoryManager memoryManager;
+
+  private final Object owner;
+
+  /** The pages holding the data bytes. */
+  private final ArrayList<MemorySegment> dataPages = new ArrayList<>();
+
+  /** The number of rows that have a value (or null) appended. */
+  private int numValues;
+
+  /** The number of data bytes. */
+  private int dataSize;
+
+  VariableWidthColumnVector(
+      int capacity, List<MemorySegment> segments, MemoryManager memoryManager, Object owner) {
+    super(ColumnType.BYTES, capacity, segments);
+    this.memoryManager = memoryManager;
+    this.owner = owner;
+    setOffset(0, 0);
+  }
+
+  /** Gets the number of pages the null bitmap and the offset vector of the capacity need. */
+  static int numPages(int capacity, int pageSize) {
+    return ColumnVector.numPages(capacity, (capacity + 1L) * 4, pageSize);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Offsets
+  // ------------------------------------------------------------------------
+
+  private int getOffset(int index) {
+    final long address = base + ((long) index << 2);
+    return segments[(int) (address >>> pageBits)].getInt((int) address & pageMask);
+  }
+
+  private void setOffset(int index, int offset) {
+    final long address = base + ((long) index << 2);
+    segments[(int) (address >>> pageBits)].putInt((int) address & pageMask, offset);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Reading
+  // ------------------------------------------------------------------------
+
+  /**
+   * Gets the number of bytes of the value of the given row. Null values have length zero.
+   *
+   * @param row The row.
+   * @return The length of the value.
+   */
+  public int getLength(int row) {
+    checkValue(row);
+    return getOffset(row + 1) - getOffset(row);
+  }
+
+  /**
+   * Gets a copy of the bytes of the value of the given row.
+   *
+   * @param row The row.
+   * @return The bytes of the value, or null, if the value is null.
+   */
+  public byte[] getBytes(int row) {
+    if (isNull(row)) {
+      return null;
+    }
+    checkValue(row);
+    final int start = getOffset(row);
+    final byte[] bytes = new byte[getOffset(row + 1) - start];
+    copyData(start, bytes);
+    return bytes;
+  }
+
+  /**
+   * Gets the value of the given row as a string, decoding the bytes as UTF-8.
+   *
+   * @param row The row.
+   * @return The string, or null, if the value is null.
+   */
+  public String getString(int row) {
+    final byte[] bytes = getBytes(row);
+    return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private void copyData(int start, byte[] target) {
+    int copied = 0;
+    while (copied < target.length) {
+      final int position = start + copied;
+      final int offsetInPage = position & pageMask;
+      final int n = Math.min(target.length - copied, pageSize - offsetInPage);
+      dataPages.get(position >>> pageBits).get(offsetInPage, target, copied, n);
+      copied += n;
+    }
+  }
+
+  private void checkValue(int row) {
+    if (row < 0 || row >= numValues) {
+      throw new IndexOutOfBoundsException("row: " + row + ", number of values: " + numValues);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Appending
+  // ------------------------------------------------------------------------
+
+  /** Gets the number of rows that have a value appended. */
+  public int getNumValues() {
+    return numValues;
+  }
+
+  /**
+   * Appends the given bytes as the value of the next row.
+   *
+   * @param bytes The array holding the value.
+   * @param offset The offset of the value in the array.
+   * @param length The length of the value.
+   * @throws MemoryAllocationException Thrown, if no page for the data could be allocated.
+   */
+  public void appendBytes(byte[] bytes, int offset, int length) throws MemoryAllocationException {
+    checkRow(numValues);
+    if (offset < 0 || length < 0 || offset > bytes.length - length) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (length > Integer.MAX_VALUE - dataSize) {
+      throw new IllegalStateException("The data of the vector exceeds 2 GiBytes.");
+    }
+
+    final long required = (long) dataSize + length;
+    final int numPagesRequired = (int) ((required + pageSize - 1) >>> pageBits);
+    if (numPagesRequired > dataPages.size()) {
+      dataPages.addAll(memoryManager.allocatePages(owner, numPagesRequired - dataPages.size()));
+    }
+
+    int written = 0;
+    while (written < length) {
+      final int position = dataSize + written;
+      final int offsetInPage = position & pageMask;
+      final int n = Math.min(length - written, pageSize - offsetInPage);
+      dataPages.get(position >>> pageBits).put(offsetInPage, bytes, offset + written, n);
+      written += n;
+    }
+
+    dataSize += length;
+    numValues++;
+    setOffset(numValues, dataSize);
+  }
+
+  /**
+   * Appends the given string, encoded as UTF-8, as the value of the next row.
+   *
+   * @param value The string.
+   * @throws MemoryAllocationException Thrown, if no page for the data could be allocated.
+   */
+  public void appendString(String value) throws MemoryAllocationException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    appendBytes(bytes, 0, bytes.length);
+  }
+
+  /** Appends a null value as the value of the next row. */
+  public void appendNull() {
+    checkRow(numValues);
+    setNullBit(numValues);
+    numValues++;
+    setOffset(numValues, dataSize);
+  }
+
+  /** Gets the number of data bytes of all values. */
+  public int getDataSize() {
+    return dataSize;
+  }
+
+  /** Forgets all values. The data pages are kept for the values of the next batch. */
+  @Override
+  void reset() {
+    super.reset();
+    numValues = 0;
+    dataSize = 0;
+    setOffset(0, 0);
+  }
+
+  @Override
+  void collectSegments(List<MemorySegment> target) {
+    super.collectSegments(target);
+    target.addAll(dataPages);
+    dataPages.clear();
+  }
+}
@@ -0,0 +1,950 @@
+package org.apache.flink.runtime.operators.hash;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.flink.api.common.typeutils.TypeComparator;
+import org.apache.flink.api.common.typeutils.TypePairComparator;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.compression.BlockCompressionCodec;
+import org.apache.flink.runtime.io.disk.ChannelReaderInputView;
+import org.apache.flink.runtime.io.disk.ChannelReaderInputViewIterator;
+import org.apache.flink.runtime.io.disk.ChannelWriterOutputView;
+import org.apache.flink.runtime.io.disk.RandomAccessInputView;
+import org.apache.flink.runtime.memory.AbstractPagedOutputView;
+import org.apache.flink.runtime.operators.util.BloomFilter;
+import org.apache.flink.util.MathUtils;
+import org.apache.flink.util.MutableObjectIterator;
+
+/**
+ * A hybrid hash join over a fixed budget of memory segments.
+ *
+ * <p><b>Build phase:</b> The build side records are hash-partitioned into a number of partitions.
+ * Each partition appends its records in serialized form to its own chain of pages. When the
+ * budget is exhausted, the partition with the most pages is spilled: its pages are written to a
+ * file, all but one are released, and all further build records of the partition are written
+ * through that page to the file as well. After the build side is consumed, an open addressing hash
+ * index (hash code and record pointer per slot) is built over the partitions that stayed in memory.
+ * If the budget does not suffice for the index and one write page per spilled partition, further
+ * partitions are spilled.
+ *
+ * <p><b>Probe phase:</b> Probe records that hash into an in-memory partition are joined directly
+ * against the index, see {@link #nextRecord()} and {@link #getBuildSideIterator()}. Probe records
+ * of spilled partitions are written to a probe spill file of that partition, unless the
+ * partition's {@link BloomFilter} shows that they have no matching build record. The filters are
+ * built over the hash codes of the spilled build records, which are read back from the spill files
+ * once the build side is complete, and take one page per spilled partition.
+ *
+ * <p><b>Recursion:</b> Once the probe side is consumed, the memory of the in-memory partitions is
+ * released, and every spilled pair of build and probe files is joined by a nested hash table with
+ * a different hash function, until the data fits into memory. A partition that still exceeds the
+ * memory after {@link #MAX_RECURSION_DEPTH} levels most likely consists of a single key with too
+ * many records, which is reported as an error.
+ *
+ * <p>The pages of the partitions have the block layout of the {@link ChannelWriterOutputView}, so
+ * that spilling writes them as they are, without de-serializing the records. The spill files can
+ * be compressed with a {@link BlockCompressionCodec}, which compresses every page on its way to
+ * disk. The table owns neither the inputs nor the memory; the spill files are deleted when the
+ * table is closed.
+ *
+ * @param <BT> The type of the build side records.
+ * @param <PT> The type of the probe side records.
+ */
+public class MutableHashTable<BT, PT> implements Closeable {
+
+  /** The maximal number of partitions per level. */
+  public static final int MAX_NUM_PARTITIONS = 32;
+
+  /** The minimal number of memory segments the table requires. */
+  public static final int MIN_NUM_MEMORY_SEGMENTS = 8;
+
+  /** The maximal number of nested levels for spilled partitions. */
+  public static final int MAX_RECURSION_DEPTH = 3;
+
+  private static final double INDEX_LOAD_FACTOR = 0.75;
+
+  private static final int INDEX_SLOT_SIZE_BITS = 4;
+
+  private static final int INDEX_HASH_OFFSET = 8;
+
+  private static final long EMPTY = -1L;
+
+  private static final int PARTITION_SHIFT = 48;
+
+  private static final long POINTER_MASK = (1L << PARTITION_SHIFT) - 1;
+
+  private static final int PAGE_HEADER_LENGTH = ChannelWriterOutputView.HEADER_LENGTH;
+
+  private static final String SPILL_FILE_PREFIX = "flink-hash-";
+
+  // ------------------------------------------------------------------------
+
+  private final TypeSerializer<BT> buildSerializer;
+
+  private final TypeSerializer<PT> probeSerializer;
+
+  private final TypeComparator<BT> buildComparator;
+
+  private final TypeComparator<PT> probeComparator;
+
+  private final TypePairComparator<PT, BT> pairComparator;
+
+  private final ArrayList<MemorySegment> freeMemory;
+
+  private final File[] spillDirectories;
+
+  private final int level;
+
+  private final BlockCompressionCodec spillCompression; // null, if the spills are not compressed
+
+  private final int segmentSize;
+
+  private final int segmentSizeBits;
+
+  private final int numPartitions;
+
+  private final List<HashPartition> partitions;
+
+  private final ArrayDeque<HashPartition> spilledPartitions = new ArrayDeque<>();
+
+  private final ProbeIterator probeIterator = new ProbeIterator();
+
+  private MutableObjectIterator<PT> probeInput;
+
+  private MemorySegment[] index;
+
+  private int indexSlotMask;
+
+  private PT currentProbeRecord;
+
+  private boolean probing;
+
+  private int numSpilledPartitions;
+
+  private long numFilteredProbeRecords;
+
+  private long spilledBytes;
+
+  private int nextSpillDirectory;
+
+  private MutableHashTable<BT, PT> child;
+
+  private HashPartition childPartition;
+
+  private boolean closed;
+
+  // ------------------------------------------------------------------------
+
+  /**
+   * Creates a new hash table.
+   *
+   * @param buildSerializer The serializer for the build side records.
+   * @param probeSerializer The serializer for the probe side records.
+   * @param buildComparator The comparator providing the hash codes of the build side keys.
+   * @param probeComparator The comparator providing the hash codes of the probe side keys, which
+   *     must be equal to the hash codes of equal build side keys.
+   * @param pairComparator The comparator checking probe side and build side keys for equality.
+   * @param memory The memory segments to use, all of the same power-of-two size.
+   * @param spillDirectories The directories to write the spill files to.
+   */
+  public MutableHashTable(
+      TypeSerializer<BT> buildSerializer,
+      TypeSerializer<PT> probeSerializer,
+      TypeComparator<BT> buildComparator,
+      TypeComparator<PT> probeComparator,
+      TypePairComparator<PT, BT> pairComparator,
+      List<MemorySegment> memory,
+      File[] spillDirectories) {
+    this(
+        buildSerializer,
+        probeSerializer,
+        buildComparator,
+        probeComparator,
+        pairComparator,
+        memory,
+        spillDirectories,
+        null);
+  }
+
+  /**
+   * Creates a new hash table.
+   *
+   * @param buildSerializer The serializer for the build side records.
+   * @param probeSerializer The serializer for the probe side records.
+   * @param buildComparator The comparator providing the hash codes of the build side keys.
+   * @param probeComparator The comparator providing the hash codes of the probe side keys, which
+   *     must be equal to the hash codes of equal build side keys.
+   * @param pairComparator The comparator checking probe side and build side keys for equality.
+   * @param memory The memory segments to use, all of the same power-of-two size.
+   * @param spillDirectories The directories to write the spill files to.
+   * @param spillCompression The codec to compress the spill files with, or null, to write them
+   *     uncompressed. The codec must not be used by other threads while the table is open.
+   */
+  public MutableHashTable(
+      TypeSerializer<BT> buildSerializer,
+      TypeSerializer<PT> probeSerializer,
+      TypeComparator<BT> buildComparator,
+      TypeComparator<PT> probeComparator,
+      TypePairComparator<PT, BT> pairComparator,
+      List<MemorySegment> memory,
+      File[] spillDirectories,
+      BlockCompressionCodec spillCompression) {
+    this(
+        buildSerializer,
+        probeSerializer,
+        buildComparator,
+        probeComparator,
+        pairComparator,
+        memory,
+        spillDirectories,
+        spillCompression,
+        0);
+  }
+
+  private MutableHashTable(
+      TypeSerializer<BT> buildSerializer,
+      TypeSerializer<PT> probeSerializer,
+      TypeComparator<BT> buildComparator,
+      TypeComparator<PT> probeComparator,
+      TypePairComparator<PT, BT> pairComparator,
+      List<MemorySegment> memory,
+      File[] spillDirectories,
+      BlockCompressionCodec spillCompression,
+      int level) {
+    if (buildSerializer == null
+        || probeSerializer == null
+        || buildComparator == null
+        || probeComparator == null
+        || pairComparator == null
+        || memory == null) {
+      throw new NullPointerException();
+    }
+    if (spillDirectories == null || spillDirectories.length == 0) {
+      throw new IllegalArgumentException("At least one spill directory is required.");
+    }
+    if (memory.size() < MIN_NUM_MEMORY_SEGMENTS) {
+      throw new IllegalArgumentException(
+          "The hash join requires at least " + MIN_NUM_MEMORY_SEGMENTS + " memory segments.");
+    }
+
+    this.buildSerializer = buildSerializer;
+    this.probeSerializer = probeSerializer;
+    this.buildComparator = buildComparator;
+    this.probeComparator = probeComparator;
+    this.pairComparator = pairComparator;
+    this.freeMemory = new ArrayList<>(memory);
+    this.spillDirectories = spillDirectories;
+    this.level = level;
+    this.spillCompression = spillCompression;
+    this.segmentSize = memory.get(0).size();
+    this.segmentSizeBits = MathUtils.log2strict(this.segmentSize);
+    this.numPartitions = getNumPartitions(memory.size());
+    this.partitions = new ArrayList<>(this.numPartitions);
+  }
+
+  private static int getNumPartitions(int numSegments) {
+    // leave room for at least three pages per partition
+    return Math.max(2, Math.min(MAX_NUM_PARTITIONS, numSegments / 4));
+  }
+
+  // ------------------------------------------------------------------------
+  //  Properties
+  // ------------------------------------------------------------------------
+
+  /** Gets the number of partitions that were spilled on this level. */
+  public int getNumSpilledPartitions() {
+    return numSpilledPartitions;
+  }
+
+  /**
+   * Gets the number of probe records of spilled partitions on this level that were not spilled,
+   * because the partition's bloom filter showed that they have no matching build record.
+   */
+  public long getNumFilteredProbeRecords() {
+    return numFilteredProbeRecords;
+  }
+
+  /**
+   * Gets the number of bytes written to spill files, including those of the nested tables that
+   * have been opened so far.
+   */
+  public long getSpilledBytes() {
+    return spilledBytes + (child != null ? child.getSpilledBytes() : 0);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Life cycle
+  // ------------------------------------------------------------------------
+
+  /**
+   * Consumes the complete build side and prepares the table for probing.
+   *
+   * @param buildSide The build side input.
+   * @param probeSide The probe side input.
+   * @throws IOException Thrown, if the build side could not be read, or the spill files could not
+   *     be written.
+   */
+  public void open(MutableObjectIterator<BT> buildSide, MutableObjectIterator<PT> probeSide)
+      throws IOException {
+    if (closed) {
+      throw new IllegalStateException("The hash table has been closed.");
+    }
+    for (int i = 0; i < numPartitions; i++) {
+      partitions.add(new HashPartition(i, nextFreeSegment()));
+    }
+
+    BT record;
+    while ((record = buildSide.next()) != null) {
+      insertIntoTable(record, hash(buildComparator.hash(record), level));
+    }
+    finishBuildPhase();
+
+    this.probeInput = probeSide;
+    this.probing = true;
+  }
+
+  /**
+   * Moves to the next probe record that has to be joined. After this method returned true, the
+   * probe record is available through {@link #getCurrentProbeRecord()} and its matching build side
+   * records through {@link #getBuildSideIterator()}.
+   *
+   * @return True, if there is a next probe record, false, if the join is complete.
+   * @throws IOException Thrown, if an input or a spill file could not be read or written.
+   */
+  public boolean nextRecord() throws IOException {
+    while (true) {
+      if (child != null) {
+        if (child.nextRecord()) {
+          return true;
+        }
+        finishChild();
+      } else if (probing) {
+        final PT probe = probeInput.next();
+        if (probe == null) {
+          finishProbePhase();
+          continue;
+        }
+
+        final int hash = hash(probeComparator.hash(probe), level);
+        final HashPartition partition = partitions.get(partitionOf(hash));
+        if (partition.isSpilled()) {
+          if (partition.bloomFilter.testHash(hash)) {
+            probeSerializer.serialize(probe, partition.probeWriter);
+            partition.numProbeRecords++;
+          } else {
+            // the probe record has no match on the build side
+            numFilteredProbeRecords++;
+          }
+        } else {
+          currentProbeRecord = probe;
+          pairComparator.setReference(probe);
+          probeIterator.set(hash, partition);
+          return true;
+        }
+      } else if (!spilledPartitions.isEmpty()) {
+        openChild(spilledPartitions.poll());
+      } else {
+        return false;
+      }
+    }
+  }
+
+  /** Gets the current probe record. */
+  public PT getCurrentProbeRecord() {
+    return child != null ? child.getCurrentProbeRecord() : currentProbeRecord;
+  }
+
+  /**
+   * Gets an iterator over the build side records that match the current probe record. The
+   * iterator is valid until the next call to {@link #nextRecord()}.
+   */
+  public MutableObjectIterator<BT> getBuildSideIterator() {
+    return child != null ? child.getBuildSideIterator() : probeIterator;
+  }
+
+  /** Closes all spill files and deletes them. The memory is not touched. */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (child != null) {
+      child.close();
+    }
+    if (childPartition != null) {
+      childPartition.deleteFiles();
+    }
+    for (HashPartition partition : partitions) {
+      if (partition != null) {
+        partition.deleteFiles();
+      }
+    }
+    for (HashPartition partition : spilledPartitions) {
+      partition.deleteFiles();
+    }
+    spilledPartitions.clear();
+  }
+
+  // ------------------------------------------------------------------------
+  //  Build phase
+  // ------------------------------------------------------------------------
+
+  private void insertIntoTable(BT record, int hash) throws IOException {
+    final HashPartition partition = partitions.get(partitionOf(hash));
+    while (true) {
+      if (partition.isSpilled()) {
+        buildSerializer.serialize(record, partition.buildWriter);
+        partition.numBuildRecords++;
+        return;
+      }
+
+      final long start = partition.getCurrentOffset();
+      try {
+        buildSerializer.serialize(record, partition);
+        partition.numBuildRecords++;
+        return;
+      } catch (EOFException e) {
+        // out of memory: drop the partial record, make room, and try again
+        partition.rewind(start);
+        spillLargestPartition();
+      }
+    }
+  }
+
+  private void finishBuildPhase() throws IOException {
+    for (HashPartition partition : partitions) {
+      if (partition.isSpilled()) {
+        partition.finishBuild();
+      }
+    }
+
+    // make sure that the index and a write page and a bloom filter page per spilled partition fit
+    // into memory
+    while (true) {
+      long inMemoryRecords = 0;
+      for (HashPartition partition : partitions) {
+        if (!partition.isSpilled()) {
+          inMemoryRecords += partition.numBuildRecords;
+        }
+      }
+      final int required = getNumIndexSegments(inMemoryRecords) + 2 * numSpilledPartitions;
+      if (required <= freeMemory.size()) {
+        buildIndex(inMemoryRecords);
+        break;
+      }
+      final HashPartition spilled = spillLargestPartition();
+      spilled.finishBuild();
+    }
+
+    for (HashPartition partition : partitions) {
+      if (partition.isSpilled()) {
+        partition.buildBloomFilter();
+        partition.startProbe();
+      }
+    }
+  }
+
+  /** Spills the in-memory partition with the most pages. */
+  private HashPartition spillLargestPartition() throws IOException {
+    HashPartition largest = null;
+    for (HashPartition partition : partitions) {
+      if (!partition.isSpilled()
+          && (largest == null || partition.getNumPages() > largest.getNumPages())) {
+        largest = partition;
+      }
+    }
+    if (largest == null) {
+      throw new IOException("Too little memory for the hash join: all partitions are spilled.");
+    }
+    largest.spill();
+    numSpilledPartitions++;
+    return largest;
+  }
+
+  private int getNumIndexSegments(long numRecords) {
+    if (numRecords == 0) {
+      return 0;
+    }
+    final long numSlots = (long) Math.ceil(numRecords / INDEX_LOAD_FACTOR) + 1;
+    final long bytes = Long.highestOneBit(numSlots * 2 - 1) << INDEX_SLOT_SIZE_BITS;
+    return (int) Math.max(1, bytes >>> segmentSizeBits);
+  }
+
+  private void buildIndex(long numRecords) throws IOException {
+    final int numSegments = getNumIndexSegments(numRecords);
+    if (numSegments == 0) {
+      index = null;
+      return;
+    }
+
+    index = new MemorySegment[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      index[i] = nextFreeSegment();
+      for (int offset = 0; offset < segmentSize; offset += 1 << INDEX_SLOT_SIZE_BITS) {
+        index[i].putLong(offset, EMPTY);
+      }
+    }
+    indexSlotMask = (numSegments << (segmentSizeBits - INDEX_SLOT_SIZE_BITS)) - 1;
+
+    BT reuse = buildSerializer.createInstance();
+    for (HashPartition partition : partitions) {
+      if (partition.isSpilled() || partition.numBuildRecords == 0) {
+        continue;
+      }
+      final RandomAccessInputView reader = partition.getReader();
+      reader.setReadPosition(PAGE_HEADER_LENGTH);
+      for (long i = 0; i < partition.numBuildRecords; i++) {
+        long pointer = reader.getReadPosition();
+        if ((pointer & (segmentSize - 1)) == 0) {
+          // the previous record ended exactly at a page end, this one starts behind the header
+          pointer += PAGE_HEADER_LENGTH;
+        }
+        reuse = buildSerializer.deserialize(reuse, reader);
+        final int hash = hash(buildComparator.hash(reuse), level);
+
+        int slot = hash & indexSlotMask;
+        while (index[slot >>> (segmentSizeBits - INDEX_SLOT_SIZE_BITS)].getLong(slotOffset(slot))
+            != EMPTY) {
+          slot = (slot + 1) & indexSlotMask;
+        }
+        final MemorySegment segment = index[slot >>> (segmentSizeBits - INDEX_SLOT_SIZE_BITS)];
+        segment.putLong(slotOffset(slot), ((long) partition.number << PARTITION_SHIFT) | pointer);
+        segment.putInt(slotOffset(slot) + INDEX_HASH_OFFSET, hash);
+      }
+    }
+  }
+
+  private int slotOffset(int slot) {
+    return (slot << INDEX_SLOT_SIZE_BITS) & (segmentSize - 1);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Probe phase and recursion
+  // ------------------------------------------------------------------------
+
+  private void finishProbePhase() throws IOException {
+    probing = false;
+    currentProbeRecord = null;
+    probeIterator.set(0, null);
+
+    for (HashPartition partition : partitions) {
+      if (partition.isSpilled()) {
+        partition.finishProbe();
+        if (partition.numBuildRecords > 0 && partition.numProbeRecords > 0) {
+          spilledPartitions.add(partition);
+        } else {
+          partition.deleteFiles();
+        }
+      } else {
+        partition.releasePages();
+      }
+    }
+    if (index != null) {
+      for (MemorySegment segment : index) {
+        freeMemory.add(segment);
+      }
+      index = null;
+    }
+  }
+
+  private void openChild(HashPartition partition) throws IOException {
+    if (level >= MAX_RECURSION_DEPTH) {
+      throw new IOException(
+          "The hash join exceeded the maximum number of recursions, without reducing the "
+              + "partitions enough to fit into memory. This is most likely caused by a key with "
+              + "more records than fit into memory.");
+    }
+    if (freeMemory.size() - 2 < MIN_NUM_MEMORY_SEGMENTS) {
+      throw new IOException("Too little memory to join a spilled partition of the hash join.");
+    }
+
+    final MemorySegment buildReadSegment = nextFreeSegment();
+    final MemorySegment probeReadSegment = nextFreeSegment();
+    final ChannelReaderInputView buildReader = partition.openBuildFileForReading(buildReadSegment);
+    final ChannelReaderInputView probeReader = partition.openProbeFileForReading(probeReadSegment);
+
+    childPartition = partition;
+    child =
+        new MutableHashTable<>(
+            buildSerializer,
+            probeSerializer,
+            buildComparator,
+            probeComparator,
+            pairComparator,
+            new ArrayList<>(freeMemory),
+            spillDirectories,
+            spillCompression,
+            level + 1);
+    child.nextSpillDirectory = nextSpillDirectory;
+    child.open(
+        new ChannelReaderInputViewIterator<>(buildReader, buildSerializer),
+        new ChannelReaderInputViewIterator<>(probeReader, probeSerializer));
+  }
+
+  private void finishChild() {
+    spilledBytes += child.getSpilledBytes();
+    child.close();
+    child = null;
+
+    freeMemory.add(childPartition.buildReadSegment);
+    freeMemory.add(childPartition.probeReadSegment);
+    childPartition.deleteFiles();
+    childPartition = null;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Utilities
+  // ------------------------------------------------------------------------
+
+  /**
+   * Computes the hash code used on the given recursion level. Every level rotates the key's hash
+   * code differently, so that the records of a spilled partition spread over the partitions of
+   * the nested level.
+   */
+  private static int hash(int code, int level) {
+    code = Integer.rotateLeft(code, level * 11);
+    return MathUtils.jenkinsHash(code);
+  }
+
+  /**
+   * Derives the partition from the high bits of the (non-negative) hash, the index slots use the
+   * low bits.
+   */
+  private int partitionOf(int hash) {
+    return (int) ((((long) hash) * numPartitions) >>> 31);
+  }
+
+  private MemorySegment nextFreeSegment() {
+    return freeMemory.remove(freeMemory.size() - 1);
+  }
+
+  private File createSpillFile() throws IOException {
+    final File dir = spillDirectories[nextSpillDirectory];
+    nextSpillDirectory = (nextSpillDirectory + 1) % spillDirectories.length;
+    return File.createTempFile(SPILL_FILE_PREFIX, ".part", dir);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Partitions
+  // ------------------------------------------------------------------------
+
+  /**
+   * A partition of the build side. While it is in memory, the partition appends the serialized
+   * records to its pages, behind a page header of {@link #PAGE_HEADER_LENGTH} bytes. Once it is
+   * spilled, it writes the build and probe records to spill files.
+   */
+  private final class HashPartition extends AbstractPagedOutputView {
+
+    private final int number;
+
+    private final ArrayList<MemorySegment> pages = new ArrayList<>();
+
+    private int currentPageIndex;
+
+    private long numBuildRecords;
+
+    private long numProbeRecords;
+
+    private RandomAccessInputView reader;
+
+    private File buildFile;
+
+    private File probeFile;
+
+    private FileChannel buildChannel;
+
+    private FileChannel probeChannel;
+
+    private ChannelWriterOutputView buildWriter;
+
+    private ChannelWriterOutputView probeWriter;
+
+    private MemorySegment writeSegment;
+
+    private MemorySegment bloomFilterSegment;
+
+    private BloomFilter bloomFilter;
+
+    private MemorySegment buildReadSegment;
+
+    private MemorySegment probeReadSegment;
+
+    private ChannelReaderInputView buildFileReader;
+
+    private ChannelReaderInputView probeFileReader;
+
+    HashPartition(int number, MemorySegment initialPage) {
+      super(initialPage, MutableHashTable.this.segmentSize, PAGE_HEADER_LENGTH);
+      this.number = number;
+      this.pages.add(initialPage);
+    }
+
+    boolean isSpilled() {
+      return buildFile != null;
+    }
+
+    int getNumPages() {
+      return pages.size();
+    }
+
+    @Override
+    protected MemorySegment nextSegment(MemorySegment current, int positionInCurrent)
+        throws EOFException {
+      final int next = currentPageIndex + 1;
+      if (next == pages.size()) {
+        if (freeMemory.isEmpty()) {
+          throw new EOFException();
+        }
+        pages.add(nextFreeSegment());
+      }
+      currentPageIndex = next;
+      return pages.get(next);
+    }
+
+    long getCurrentOffset() {
+      return (((long) currentPageIndex) << segmentSizeBits) + getCurrentPositionInSegment();
+    }
+
+    void rewind(long offset) {
+      int pageIndex = (int) (offset >>> segmentSizeBits);
+      int position = (int) (offset & (segmentSize - 1));
+      if (position == 0) {
+        // the offset is the end of the previous page
+        pageIndex--;
+        position = segmentSize;
+      }
+      currentPageIndex = pageIndex;
+      seekOutput(pages.get(pageIndex), position);
+    }
+
+    RandomAccessInputView getReader() {
+      if (reader == null) {
+        reader = new RandomAccessInputView(pages, segmentSize, segmentSize, PAGE_HEADER_LENGTH);
+      }
+      return reader;
+    }
+
+    MemorySegment getRecordSegment(long pointer) {
+      return pages.get((int) (pointer >>> segmentSizeBits));
+    }
+
+    /**
+     * Writes the pages to the build spill file and keeps only the current page, as the page to
+     * write all further build records through.
+     */
+    void spill() throws IOException {
+      buildFile = createSpillFile();
+      buildChannel = FileChannel.open(buildFile.toPath(), StandardOpenOption.WRITE);
+      writeSegment = pages.get(currentPageIndex);
+      buildWriter =
+          new ChannelWriterOutputView(buildChannel, writeSegment, true, spillCompression);
+
+      for (int i = 0; i <= currentPageIndex; i++) {
+        final int limit = i < currentPageIndex ? segmentSize : getCurrentPositionInSegment();
+        if (limit > PAGE_HEADER_LENGTH) {
+          buildWriter.writeBlock(pages.get(i), limit);
+        }
+      }
+      for (int i = 0; i < pages.size(); i++) {
+        if (i != currentPageIndex) {
+          freeMemory.add(pages.get(i));
+        }
+      }
+      pages.clear();
+      clear();
+    }
+
+    void finishBuild() throws IOException {
+      spilledBytes += buildWriter.close();
+      buildChannel.close();
+      buildChannel = null;
+      buildWriter = null;
+      freeMemory.add(writeSegment);
+      writeSegment = null;
+    }
+
+    void startProbe() throws IOException {
+      probeFile = createSpillFile();
+      probeChannel = FileChannel.open(probeFile.toPath(), StandardOpenOption.WRITE);
+      writeSegment = nextFreeSegment();
+      probeWriter =
+          new ChannelWriterOutputView(probeChannel, writeSegment, true, spillCompression);
+    }
+
+    void finishProbe() throws IOException {
+      spilledBytes += probeWriter.close();
+      probeChannel.close();
+      probeChannel = null;
+      probeWriter = null;
+      freeMemory.add(writeSegment);
+      writeSegment = null;
+      freeMemory.add(bloomFilterSegment);
+      bloomFilterSegment = null;
+      bloomFilter = null;
+    }
+
+    /**
+     * Builds the bloom filter over the hash codes of the spilled build records, reading them back
+     * from the build spill file. The filter takes one page and is kept until the probe phase ends.
+     */
+    void buildBloomFilter() throws IOException {
+      bloomFilterSegment = nextFreeSegment();
+      bloomFilter = new BloomFilter((int) Math.max(1, numBuildRecords), segmentSize);
+      bloomFilter.setBitsLocation(bloomFilterSegment, 0);
+      bloomFilter.reset();
+      if (numBuildRecords == 0) {
+        return;
+      }
+
+      final MemorySegment readSegment = nextFreeSegment();
+      try (FileChannel channel = FileChannel.open(buildFile.toPath(), StandardOpenOption.READ)) {
+        final ChannelReaderInputView reader =
+            new ChannelReaderInputView(channel, readSegment, buildFile, true, spillCompression);
+        try {
+          BT record = buildSerializer.createInstance();
+          for (long i = 0; i < numBuildRecords; i++) {
+            record = buildSerializer.deserialize(record, reader);
+            bloomFilter.addHash(hash(buildComparator.hash(record), level));
+          }
+        } finally {
+          reader.close();
+        }
+      } finally {
+        freeMemory.add(readSegment);
+      }
+    }
+
+    void releasePages() {
+      freeMemory.addAll(pages);
+      pages.clear();
+      reader = null;
+      clear();
+    }
+
+    ChannelReaderInputView openBuildFileForReading(MemorySegment readSegment) throws IOException {
+      buildReadSegment = readSegment;
+      buildChannel = FileChannel.open(buildFile.toPath(), StandardOpenOption.READ);
+      buildFileReader =
+          new ChannelReaderInputView(buildChannel, readSegment, buildFile, true, spillCompression);
+      return buildFileReader;
+    }
+
+    ChannelReaderInputView openProbeFileForReading(MemorySegment readSegment) throws IOException {
+      probeReadSegment = readSegment;
+      probeChannel = FileChannel.open(probeFile.toPath(), StandardOpenOption.READ);
+      probeFileReader =
+          new ChannelReaderInputView(probeChannel, readSegment, probeFile, true, spillCompression);
+      return probeFileReader;
+    }
+
+    void deleteFiles() {
+      // closing the readers frees the segments that compressed blocks were read into
+      if (buildFileReader != null) {
+        buildFileReader.close();
+        buildFileReader = null;
+      }
+      if (probeFileReader != null) {
+        probeFileReader.close();
+        probeFileReader = null;
+      }
+      closeQuietly(buildChannel);
+      closeQuietly(probeChannel);
+      buildChannel = null;
+      probeChannel = null;
+      if (buildFile != null) {
+        buildFile.delete();
+      }
+      if (probeFile != null) {
+        probeFile.delete();
+      }
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException ignored) {
+        // the file is deleted anyway
+      }
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Probing
+  // ------------------------------------------------------------------------
+
+  /** The iterator over the build side records that match the current probe record. */
+  private final class ProbeIterator implements MutableObjectIterator<BT> {
+
+    private int hash;
+
+    private HashPartition partition;
+
+    private int slot;
+
+    void set(int hash, HashPartition partition) {
+      this.hash = hash;
+      this.partition = partition;
+      this.slot = hash & indexSlotMask;
+    }
+
+    @Override
+    public BT next(BT reuse) throws IOException {
+      final long pointer = nextCandidate();
+      return pointer < 0 ? null : readMatch(reuse, pointer, true);
+    }
+
+    @Override
+    public BT next() throws IOException {
+      final long pointer = nextCandidate();
+      return pointer < 0 ? null : readMatch(null, pointer, false);
+    }
+
+    private BT readMatch(BT reuse, long pointer, boolean reusing) throws IOException {
+      while (pointer >= 0) {
+        final RandomAccessInputView reader = partition.getReader();
+        reader.setReadPosition(pointer);
+        final BT candidate =
+            reusing
+                ? buildSerializer.deserialize(reuse, reader)
+                : buildSerializer.deserialize(reader);
+        if (pairComparator.equalToReference(candidate)) {
+          return candidate;
+        }
+        pointer = nextCandidate();
+      }
+      return null;
+    }
+
+    /** Finds the next index slot with the probe record's hash and partition. */
+    private long nextCandidate() {
+      if (partition == null || index == null) {
+        return -1;
+      }
+      final int slotsPerSegmentBits = segmentSizeBits - INDEX_SLOT_SIZE_BITS;
+      while (true) {
+        final MemorySegment segment = index[slot >>> slotsPerSegmentBits];
+        final int offset = slotOffset(slot);
+        final long entry = segment.getLong(offset);
+        if (entry == EMPTY) {
+          partition = null;
+          return -1;
+        }
+        slot = (slot + 1) & indexSlotMask;
+        if (segment.getInt(offset + INDEX_HASH_OFFSET) == hash
+            && (int) (entry >>> PARTITION_SHIFT) == partition.number) {
+          return entry & POINTER_MASK;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,535 @@
+package org.apache.flink.runtime.operators.hash;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.flink.api.common.typeutils.TypeComparator;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.disk.RandomAccessInputView;
+import org.apache.flink.runtime.memory.AbstractPagedOutputView;
+import org.apache.flink.util.MathUtils;
+
+/**
+ * A hash table for keyed aggregations that keeps keys and values in binary form in memory
+ * segments, so that neither lookups nor updates create objects per record.
+ *
+ * <p>The table uses open addressing with linear probing. The buckets are fixed-length slots in a
+ * set of bucket segments. Each slot holds the 8 byte pointer to the key, the 4 byte hash code, the
+ * 4 byte length of the serialized key, and the fixed-length value inline:
+ *
+ * <pre>
+ * +----------------+----------+------------+--------------------------+
+ * | key pointer: 8 | hash: 4  | key len: 4 | value: valueLength bytes |
+ * +----------------+----------+------------+--------------------------+
+ * </pre>
+ *
+ * <p>The slot size is rounded up to a power of two, so slots never cross segment boundaries and are
+ * addressed with shifts and masks. The keys are serialized back to back into a separate key area.
+ * Two keys are equal if their serialized forms are equal, so the key serializer must be
+ * deterministic. The values are not copied in and out: after {@link #findOrInsert(Object)} or
+ * {@link #lookup(Object)}, the caller reads and updates the value in place through {@link
+ * #getValueSegment()} and {@link #getValueOffset()}.
+ *
+ * <p>All memory is taken from the budget handed to the constructor. When the load factor exceeds
+ * {@link #LOAD_FACTOR}, the table grows by rehashing into twice as many bucket segments. If the
+ * budget has no more segments, for the buckets or for the keys, the table reports {@link
+ * Status#FULL}. The caller can then emit or spill the entries and {@link #reset()} the table.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <K> The type of the keys.
+ */
+public class OpenAddressingHashTable<K> {
+
+  /** The result of a {@link #findOrInsert(Object)} call. */
+  public enum Status {
+    /** The key was contained already, its value is available. */
+    FOUND,
+
+    /** The key was inserted with a zeroed value, which is available. */
+    INSERTED,
+
+    /** The key was not contained and could not be inserted, because the memory is exhausted. */
+    FULL
+  }
+
+  /** The load factor above which the table tries to grow. */
+  public static final double LOAD_FACTOR = 0.75;
+
+  /** The load factor above which no keys are inserted, if the table cannot grow. */
+  public static final double MAX_LOAD_FACTOR = 0.9;
+
+  private static final long EMPTY = -1L;
+
+  private static final int POINTER_OFFSET = 0;
+
+  private static final int HASH_OFFSET = 8;
+
+  private static final int KEY_LENGTH_OFFSET = 12;
+
+  private static final int VALUE_OFFSET = 16;
+
+  // ------------------------------------------------------------------------
+
+  private final TypeSerializer<K> keySerializer;
+
+  private final TypeComparator<K> keyComparator;
+
+  private final ArrayList<MemorySegment> freeMemory;
+
+  private final int segmentSize;
+
+  private final int segmentSizeBits;
+
+  private final int valueLength;
+
+  private final int slotSizeBits;
+
+  private final int slotsPerSegmentBits;
+
+  private final KeyArea keyArea;
+
+  private final RandomAccessInputView keyReader;
+
+  private MemorySegment[] buckets;
+
+  private int slotMask;
+
+  private int growThreshold;
+
+  private int maxSize;
+
+  private int size;
+
+  private MemorySegment currentValueSegment;
+
+  private int currentValueOffset;
+
+  private K reuseKey;
+
+  // ------------------------------------------------------------------------
+
+  /**
+   * Creates a new hash table.
+   *
+   * @param keySerializer The serializer for the keys. It must produce the same bytes for equal
+   *     keys.
+   * @param keyComparator The comparator that provides the hash codes of the keys.
+   * @param valueLength The length of the values, in bytes.
+   * @param memory The memory budget, at least two segments of the same power-of-two size.
+   */
+  public OpenAddressingHashTable(
+      TypeSerializer<K> keySerializer,
+      TypeComparator<K> keyComparator,
+      int valueLength,
+      List<MemorySegment> memory) {
+    if (keySerializer == null || keyComparator == null || memory == null) {
+      throw new NullPointerException();
+    }
+    if (valueLength < 0) {
+      throw new IllegalArgumentException("The value length must not be negative.");
+    }
+    if (memory.size() < 2) {
+      throw new IllegalArgumentException("The hash table requires at least two memory segments.");
+    }
+
+    this.keySerializer = keySerializer;
+    this.keyComparator = keyComparator;
+    this.valueLength = valueLength;
+    this.freeMemory = new ArrayList<>(memory);
+    this.segmentSize = memory.get(0).size();
+    this.segmentSizeBits = MathUtils.log2strict(this.segmentSize);
+
+    final int slotSize = MathUtils.roundUpToPowerOfTwo(VALUE_OFFSET + valueLength);
+    if (slotSize > this.segmentSize) {
+      throw new IllegalArgumentException("The values are too large for the memory segments.");
+    }
+    this.slotSizeBits = MathUtils.log2strict(slotSize);
+    this.slotsPerSegmentBits = this.segmentSizeBits - this.slotSizeBits;
+
+    this.keyArea = new KeyArea();
+    this.keyReader = new RandomAccessInputView(this.keyArea.segments, this.segmentSize);
+    this.buckets = allocateBuckets(1);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Properties
+  // ------------------------------------------------------------------------
+
+  /** Gets the number of keys in the table. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Gets the number of slots in the table. */
+  public int getCapacity() {
+    return slotMask + 1;
+  }
+
+  public int getValueLength() {
+    return valueLength;
+  }
+
+  /** Gets the number of segments of the budget that are currently not used by the table. */
+  public int getNumFreeSegments() {
+    return freeMemory.size();
+  }
+
+  /**
+   * Gets the segment holding the value of the key of the last successful {@link
+   * #findOrInsert(Object)} or {@link #lookup(Object)}, or of the current entry of an {@link
+   * EntryIterator}.
+   */
+  public MemorySegment getValueSegment() {
+    return currentValueSegment;
+  }
+
+  /** Gets the offset of the current value in the {@link #getValueSegment() value segment}. */
+  public int getValueOffset() {
+    return currentValueOffset;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Access
+  // ------------------------------------------------------------------------
+
+  /**
+   * Finds the given key in the table or inserts it, if it is not contained. Unless the table is
+   * full, the key's value is afterwards available through {@link #getValueSegment()} and {@link
+   * #getValueOffset()}. The value of an inserted key is all zero bytes.
+   *
+   * @param key The key to find or insert.
+   * @return Whether the key was found or inserted, or whether the table is full.
+   * @throws IOException Thrown, if the key could not be serialized.
+   */
+  public Status findOrInsert(K key) throws IOException {
+    final int hash = hash(key);
+    final long keyStart = keyArea.getCurrentOffset();
+    try {
+      keySerializer.serialize(key, keyArea);
+    } catch (EOFException e) {
+      // the key area is exhausted. the key may still be contained, but it cannot be inserted
+      keyArea.rewind(keyStart);
+      return lookup(key, hash) ? Status.FOUND : Status.FULL;
+    }
+    final int keyLength = (int) (keyArea.getCurrentOffset() - keyStart);
+
+    int slot = findSlot(hash, keyStart, keyLength);
+    if (slot >= 0) {
+      keyArea.rewind(keyStart);
+      setCurrentValue(slot);
+      return Status.FOUND;
+    }
+
+    // the key is new
+    if (size >= growThreshold && !grow() && size >= maxSize) {
+      keyArea.rewind(keyStart);
+      return Status.FULL;
+    }
+    slot = findEmptySlot(hash);
+
+    final MemorySegment segment = buckets[slot >>> slotsPerSegmentBits];
+    final int offset = slotOffset(slot);
+    segment.putLong(offset + POINTER_OFFSET, keyStart);
+    segment.putInt(offset + HASH_OFFSET, hash);
+    segment.putInt(offset + KEY_LENGTH_OFFSET, keyLength);
+    for (int i = 0; i < valueLength; i++) {
+      segment.put(offset + VALUE_OFFSET + i, (byte) 0);
+    }
+    size++;
+
+    setCurrentValue(slot);
+    return Status.INSERTED;
+  }
+
+  /**
+   * Looks up the given key. If the key is contained, its value is afterwards available through
+   * {@link #getValueSegment()} and {@link #getValueOffset()}.
+   *
+   * @param key The key to look up.
+   * @return True, if the key is contained, false otherwise.
+   * @throws IOException Thrown, if the key could not be serialized.
+   */
+  public boolean lookup(K key) throws IOException {
+    return lookup(key, hash(key));
+  }
+
+  private boolean lookup(K key, int hash) throws IOException {
+    final long keyStart = keyArea.getCurrentOffset();
+    int slot;
+    try {
+      // serialize the key behind the stored keys to compare it binary, and drop it again
+      keySerializer.serialize(key, keyArea);
+      slot = findSlot(hash, keyStart, (int) (keyArea.getCurrentOffset() - keyStart));
+    } catch (EOFException e) {
+      slot = findSlotByComparator(hash, key);
+    } finally {
+      keyArea.rewind(keyStart);
+    }
+
+    if (slot >= 0) {
+      setCurrentValue(slot);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Removes all keys from the table and returns all memory but the initial segments to the budget.
+   */
+  public void reset() {
+    for (MemorySegment bucket : buckets) {
+      freeMemory.add(bucket);
+    }
+    keyArea.reset();
+    buckets = allocateBuckets(1);
+    size = 0;
+    currentValueSegment = null;
+  }
+
+  /**
+   * Gets an iterator over all entries of the table. The iterator is invalidated by any
+   * modification of the table.
+   *
+   * @return An iterator over all entries.
+   */
+  public EntryIterator getEntryIterator() {
+    return new EntryIterator();
+  }
+
+  // ------------------------------------------------------------------------
+  //  Probing
+  // ------------------------------------------------------------------------
+
+  private int hash(K key) {
+    return MathUtils.jenkinsHash(keyComparator.hash(key));
+  }
+
+  private int slotOffset(int slot) {
+    return (slot & ((1 << slotsPerSegmentBits) - 1)) << slotSizeBits;
+  }
+
+  /** Finds the slot of the key serialized at the given position, or returns -1. */
+  private int findSlot(int hash, long keyPointer, int keyLength) {
+    for (int slot = hash & slotMask; ; slot = (slot + 1) & slotMask) {
+      final MemorySegment segment = buckets[slot >>> slotsPerSegmentBits];
+      final int offset = slotOffset(slot);
+      final long pointer = segment.getLong(offset + POINTER_OFFSET);
+      if (pointer == EMPTY) {
+        return -1;
+      }
+      if (segment.getInt(offset + HASH_OFFSET) == hash
+          && segment.getInt(offset + KEY_LENGTH_OFFSET) == keyLength
+          && keysEqual(pointer, keyPointer, keyLength)) {
+        return slot;
+      }
+    }
+  }
+
+  /** Finds the slot of the given key, comparing the de-serialized keys, or returns -1. */
+  private int findSlotByComparator(int hash, K key) throws IOException {
+    for (int slot = hash & slotMask; ; slot = (slot + 1) & slotMask) {
+      final MemorySegment segment = buckets[slot >>> slotsPerSegmentBits];
+      final int offset = slotOffset(slot);
+      final long pointer = segment.getLong(offset + POINTER_OFFSET);
+      if (pointer == EMPTY) {
+        return -1;
+      }
+      if (segment.getInt(offset + HASH_OFFSET) == hash) {
+        keyReader.setReadPosition(pointer);
+        reuseKey = keySerializer.deserialize(reuseKey, keyReader);
+        if (keyComparator.compare(key, reuseKey) == 0) {
+          return slot;
+        }
+      }
+    }
+  }
+
+  private int findEmptySlot(int hash) {
+    for (int slot = hash & slotMask; ; slot = (slot + 1) & slotMask) {
+      if (buckets[slot >>> slotsPerSegmentBits].getLong(slotOffset(slot) + POINTER_OFFSET)
+          == EMPTY) {
+        return slot;
+      }
+    }
+  }
+
+  private boolean keysEqual(long pointer1, long pointer2, int length) {
+    final int mask = segmentSize - 1;
+    final List<MemorySegment> keySegments = keyArea.segments;
+    while (length > 0) {
+      final int offset1 = (int) (pointer1 & mask);
+      final int offset2 = (int) (pointer2 & mask);
+      final int chunk = Math.min(length, segmentSize - Math.max(offset1, offset2));
+      final MemorySegment segment1 = keySegments.get((int) (pointer1 >>> segmentSizeBits));
+      final MemorySegment segment2 = keySegments.get((int) (pointer2 >>> segmentSizeBits));
+      if (!segment1.equalTo(segment2, offset1, offset2, chunk)) {
+        return false;
+      }
+      pointer1 += chunk;
+      pointer2 += chunk;
+      length -= chunk;
+    }
+    return true;
+  }
+
+  private void setCurrentValue(int slot) {
+    currentValueSegment = buckets[slot >>> slotsPerSegmentBits];
+    currentValueOffset = slotOffset(slot) + VALUE_OFFSET;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Memory management
+  // ------------------------------------------------------------------------
+
+  private MemorySegment[] allocateBuckets(int numSegments) {
+    final MemorySegment[] newBuckets = new MemorySegment[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      final MemorySegment segment = freeMemory.remove(freeMemory.size() - 1);
+      for (int offset = 0; offset < segmentSize; offset += 1 << slotSizeBits) {
+        segment.putLong(offset + POINTER_OFFSET, EMPTY);
+      }
+      newBuckets[i] = segment;
+    }
+
+    final int numSlots = numSegments << slotsPerSegmentBits;
+    slotMask = numSlots - 1;
+    growThreshold = (int) (numSlots * LOAD_FACTOR);
+    maxSize = Math.min((int) (numSlots * MAX_LOAD_FACTOR), numSlots - 1);
+    return newBuckets;
+  }
+
+  /** Doubles the number of buckets, if the budget has enough free segments. */
+  private boolean grow() {
+    final int newNumSegments = buckets.length * 2;
+    if (freeMemory.size() < newNumSegments) {
+      return false;
+    }
+
+    final MemorySegment[] oldBuckets = buckets;
+    final int slotSize = 1 << slotSizeBits;
+    buckets = allocateBuckets(newNumSegments);
+
+    for (MemorySegment oldSegment : oldBuckets) {
+      for (int offset = 0; offset < segmentSize; offset += slotSize) {
+        if (oldSegment.getLong(offset + POINTER_OFFSET) != EMPTY) {
+          final int slot = findEmptySlot(oldSegment.getInt(offset + HASH_OFFSET));
+          final MemorySegment target = buckets[slot >>> slotsPerSegmentBits];
+          oldSegment.copyTo(offset, target, slotOffset(slot), slotSize);
+        }
+      }
+      freeMemory.add(oldSegment);
+    }
+    return true;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Key area
+  // ------------------------------------------------------------------------
+
+  /**
+   * The output view that appends the serialized keys to a growing list of segments. It can be
+   * rewound to drop the keys written last, keeping their segments for the next keys.
+   */
+  private final class KeyArea extends AbstractPagedOutputView {
+
+    private final ArrayList<MemorySegment> segments = new ArrayList<>();
+
+    private int currentSegmentIndex;
+
+    KeyArea() {
+      super(
+          freeMemory.remove(freeMemory.size() - 1), OpenAddressingHashTable.this.segmentSize, 0);
+      segments.add(getCurrentSegment());
+    }
+
+    @Override
+    protected MemorySegment nextSegment(MemorySegment current, int positionInCurrent)
+        throws EOFException {
+      final int next = currentSegmentIndex + 1;
+      if (next == segments.size()) {
+        if (freeMemory.isEmpty()) {
+          throw new EOFException();
+        }
+        segments.add(freeMemory.remove(freeMemory.size() - 1));
+      }
+      currentSegmentIndex = next;
+      return segments.get(next);
+    }
+
+    long getCurrentOffset() {
+      return (((long) currentSegmentIndex) << segmentSizeBits) + getCurrentPositionInSegment();
+    }
+
+    void rewind(long offset) {
+      int segmentIndex = (int) (offset >>> segmentSizeBits);
+      int position = (int) (offset & (segmentSize - 1));
+      if (segmentIndex == segments.size()) {
+        // the offset is the end of the last segment
+        segmentIndex--;
+        position = segmentSize;
+      }
+      currentSegmentIndex = segmentIndex;
+      seekOutput(segments.get(segmentIndex), position);
+    }
+
+    void reset() {
+      for (int i = segments.size() - 1; i > 0; i--) {
+        freeMemory.add(segments.remove(i));
+      }
+      rewind(0);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Iteration
+  // ------------------------------------------------------------------------
+
+  /**
+   * An iterator over the entries of the table. The iterator moves a cursor over the slots: After
+   * {@link #next()} returned true, the entry's key can be read through {@link #getKey(Object)} and
+   * its value through {@link #getValueSegment()} and {@link #getValueOffset()} of the table.
+   */
+  public final class EntryIterator {
+
+    private int slot = -1;
+
+    private EntryIterator() {}
+
+    /**
+     * Moves the cursor to the next entry.
+     *
+     * @return True, if the cursor is on an entry, false, if all entries have been visited.
+     */
+    public boolean next() {
+      while (++slot <= slotMask) {
+        final MemorySegment segment = buckets[slot >>> slotsPerSegmentBits];
+        if (segment.getLong(slotOffset(slot) + POINTER_OFFSET) != EMPTY) {
+          setCurrentValue(slot);
+          return true;
+        }
+      }
+      slot = slotMask;
+      return false;
+    }
+
+    /**
+     * Gets the key of the current entry.
+     *
+     * @param reuse The object to de-serialize the key into, if the serializer supports reuse.
+     * @return The key.
+     * @throws IOException Thrown, if the key could not be de-serialized.
+     */
+    public K getKey(K reuse) throws IOException {
+      final MemorySegment segment = buckets[slot >>> slotsPerSegmentBits];
+      keyReader.setReadPosition(segment.getLong(slotOffset(slot) + POINTER_OFFSET));
+      return keySerializer.deserialize(reuse, keyReader);
+    }
+  }
+}
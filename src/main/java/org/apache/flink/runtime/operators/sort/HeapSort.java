@@ -0,0 +1,49 @@
+package org.apache.flink.runtime.operators.sort;
+
+/**
+ * An in-place heap sort. It runs in guaranteed {@code O(n log n)} and serves as the fallback of the
+ * {@link QuickSort} for inputs that make the quick sort degenerate.
+ */
+public final class HeapSort implements IndexedSorter {
+
+  public HeapSort() {}
+
+  private static void downHeap(final IndexedSortable s, final int b, int i, final int n) {
+    for (int idx = i << 1; idx < n; idx = i << 1) {
+      if (idx + 1 < n && s.compare(b + idx, b + idx + 1) < 0) {
+        if (s.compare(b + i, b + idx + 1) < 0) {
+          s.swap(b + i, b + idx + 1);
+        } else {
+          return;
+        }
+        i = idx + 1;
+      } else if (s.compare(b + i, b + idx) < 0) {
+        s.swap(b + i, b + idx);
+        i = idx;
+      } else {
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void sort(final IndexedSortable s, final int p, final int r) {
+    final int n = r - p;
+    // build heap w/ reverse comparator, then write in-place from end
+    final int t = Integer.highestOneBit(n);
+    for (int i = t; i > 1; i >>>= 1) {
+      for (int j = i >>> 1; j < i; ++j) {
+        downHeap(s, p - 1, j, n + 1);
+      }
+    }
+    for (int i = r - 1; i > p; --i) {
+      s.swap(p, i);
+      downHeap(s, p - 1, 1, i - p + 1);
+    }
+  }
+
+  @Override
+  public void sort(IndexedSortable s) {
+    sort(s, 0, s.size());
+  }
+}
@@ -0,0 +1,91 @@
+package org.apache.flink.runtime.operators.sort;
+
+import java.io.IOException;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.util.MutableObjectIterator;
+
+/**
+ * A sort buffer that collects records in memory and sorts them in place.
+ *
+ * @param <T> The type of the records.
+ */
+public interface InMemorySorter<T> extends IndexedSortable {
+
+  /**
+   * Resets the sort buffer back to the state where it is empty. All contained data is discarded.
+   */
+  void reset();
+
+  /**
+   * Checks whether the buffer is empty.
+   *
+   * @return True, if no record is contained, false otherwise.
+   */
+  boolean isEmpty();
+
+  /**
+   * Disposes the sorter. This method does not release the memory segments used by the sorter,
+   * they remain owned by whoever handed them to the sorter.
+   */
+  void dispose();
+
+  /**
+   * Gets the total capacity of this sorter, in bytes.
+   *
+   * @return The sorter's total capacity.
+   */
+  long getCapacity();
+
+  /**
+   * Gets the number of bytes currently occupied in this sorter, records and sort index.
+   *
+   * @return The number of bytes occupied.
+   */
+  long getOccupancy();
+
+  /**
+   * Gets the record at the given logical position.
+   *
+   * @param logicalPosition The logical position of the record.
+   * @return The record.
+   * @throws IOException Thrown, if an exception occurred during deserialization.
+   */
+  T getRecord(int logicalPosition) throws IOException;
+
+  /**
+   * Gets the record at the given logical position.
+   *
+   * @param reuse The reuse object to deserialize the record into.
+   * @param logicalPosition The logical position of the record.
+   * @return The record.
+   * @throws IOException Thrown, if an exception occurred during deserialization.
+   */
+  T getRecord(T reuse, int logicalPosition) throws IOException;
+
+  /**
+   * Writes a given record to this sort buffer. The written record will be appended and take the
+   * last logical position.
+   *
+   * @param record The record to be written.
+   * @return True, if the record was successfully written, false, if the sort buffer was full.
+   * @throws IOException Thrown, if an error occurred while serializing the record into the
+   *     buffers.
+   */
+  boolean write(T record) throws IOException;
+
+  /**
+   * Gets an iterator over all records in this buffer in their logical order.
+   *
+   * @return An iterator returning the records in their logical order.
+   */
+  MutableObjectIterator<T> getIterator();
+
+  /**
+   * Writes all records in this buffer in their logical order to the given output. The records
+   * are copied in their serialized form and are not de-serialized on the way.
+   *
+   * @param output The output view to write the records to.
+   * @throws IOException Thrown, if an I/O exception occurred writing to the output view.
+   */
+  void writeToOutput(DataOutputView output) throws IOException;
+}
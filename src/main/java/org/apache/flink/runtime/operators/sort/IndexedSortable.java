@@ -0,0 +1,21 @@
+package org.apache.flink.runtime.operators.sort;
+
+/** A collection of elements that can be sorted in place by their index, such as a sort buffer. */
+public interface IndexedSortable {
+
+  /**
+   * Compare items at the given addresses consistent with the semantics of {@link
+   * java.util.Comparator#compare(Object, Object)}.
+   */
+  int compare(int i, int j);
+
+  /** Swap items at the given addresses. */
+  void swap(int i, int j);
+
+  /**
+   * Gets the number of elements in the sortable.
+   *
+   * @return The number of elements.
+   */
+  int size();
+}
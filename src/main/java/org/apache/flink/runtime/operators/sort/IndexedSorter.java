@@ -0,0 +1,18 @@
+package org.apache.flink.runtime.operators.sort;
+
+/** An algorithm that sorts an {@link IndexedSortable} in place. */
+public interface IndexedSorter {
+
+  /** Sorts the whole sortable. */
+  void sort(IndexedSortable s);
+
+  /**
+   * Sorts the items accessed through the given IndexedSortable over the given range of logical
+   * indices. From the perspective of the sort algorithm, each index between l (inclusive) and r
+   * (exclusive) is an addressable entry.
+   *
+   * @see IndexedSortable#compare
+   * @see IndexedSortable#swap
+   */
+  void sort(IndexedSortable s, int l, int r);
+}
@@ -0,0 +1,159 @@
+package org.apache.flink.runtime.operators.sort;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.flink.api.common.typeutils.TypeComparator;
+import org.apache.flink.util.MutableObjectIterator;
+
+/**
+ * An iterator that returns a sorted merge of the sequences of elements from a set of iterators,
+ * assuming those sequences are ordered themselves.
+ *
+ * <p>The iterators are merged through a loser tree (tournament tree): The leaves are the heads of
+ * the input iterators, every inner node holds the loser of the match played at that node, and the
+ * root holds the overall winner. After the winner was returned, only the matches on the path from
+ * its leaf to the root are replayed, so that every element costs about {@code log2(k)}
+ * comparisons for {@code k} inputs. Elements that compare equal are returned in the order of their
+ * iterators in the input list, which makes the merge stable.
+ *
+ * @param <E> The type of the elements.
+ */
+public class MergeIterator<E> implements MutableObjectIterator<E> {
+
+  private final List<MutableObjectIterator<E>> iterators; // the merged inputs
+
+  private final E[] heads; // the current head of every input, null if the input is exhausted
+
+  private final int[] tree; // tree[0] is the winner, tree[1 .. k-1] are the losers per node
+
+  private final TypeComparator<E> comparator; // comparator for the elements
+
+  private boolean initialized;
+
+  /**
+   * Creates a new merge iterator over the given inputs.
+   *
+   * @param iterators The iterators to merge, each returning its elements in sorted order.
+   * @param comparator The comparator that defines the order of the elements.
+   */
+  @SuppressWarnings("unchecked")
+  public MergeIterator(List<MutableObjectIterator<E>> iterators, TypeComparator<E> comparator) {
+    if (iterators.isEmpty()) {
+      throw new IllegalArgumentException("There must be at least one iterator to merge.");
+    }
+    this.iterators = new ArrayList<>(iterators);
+    this.heads = (E[]) new Object[iterators.size()];
+    this.tree = new int[iterators.size()];
+    this.comparator = comparator;
+  }
+
+  /**
+   * Gets the next smallest element, with respect to the definition of order implied by the {@link
+   * TypeComparator} provided to this iterator. The returned object may be a different one than the
+   * given reuse object, the reuse object is kept as buffer for the next element of the input that
+   * the returned element came from.
+   *
+   * @param reuse Object that may be reused.
+   * @return The next element if the iterator has another element, null otherwise.
+   * @see org.apache.flink.util.MutableObjectIterator#next(java.lang.Object)
+   */
+  @Override
+  public E next(E reuse) throws IOException {
+    if (!this.initialized) {
+      initialize();
+    }
+
+    final int winner = this.tree[0];
+    final E result = this.heads[winner];
+    if (result == null) {
+      return null;
+    }
+    this.heads[winner] =
+        reuse != null ? this.iterators.get(winner).next(reuse) : this.iterators.get(winner).next();
+    replay(winner);
+    return result;
+  }
+
+  /**
+   * Gets the next smallest element, with respect to the definition of order implied by the {@link
+   * TypeComparator} provided to this iterator.
+   *
+   * @return The next element if the iterator has another element, null otherwise.
+   * @see org.apache.flink.util.MutableObjectIterator#next()
+   */
+  @Override
+  public E next() throws IOException {
+    if (!this.initialized) {
+      initialize();
+    }
+
+    final int winner = this.tree[0];
+    final E result = this.heads[winner];
+    if (result == null) {
+      return null;
+    }
+    this.heads[winner] = this.iterators.get(winner).next();
+    replay(winner);
+    return result;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Loser tree
+  // ------------------------------------------------------------------------
+
+  private void initialize() throws IOException {
+    for (int i = 0; i < this.iterators.size(); i++) {
+      this.heads[i] = this.iterators.get(i).next();
+    }
+    this.tree[0] = build(1);
+    this.initialized = true;
+  }
+
+  /**
+   * Plays the matches of the subtree rooted at the given node and returns its winner. Nodes {@code
+   * 1 .. k-1} are inner nodes with the children {@code 2n} and {@code 2n+1}, nodes {@code k ..
+   * 2k-1} are the leaves for the inputs {@code 0 .. k-1}.
+   */
+  private int build(int node) {
+    final int k = this.iterators.size();
+    if (node >= k) {
+      return node - k;
+    }
+    final int left = build(2 * node);
+    final int right = build(2 * node + 1);
+    if (beats(left, right)) {
+      this.tree[node] = right;
+      return left;
+    } else {
+      this.tree[node] = left;
+      return right;
+    }
+  }
+
+  /** Replays the matches on the path from the given input's leaf to the root. */
+  private void replay(int input) {
+    int winner = input;
+    for (int node = (input + this.iterators.size()) >>> 1; node > 0; node >>>= 1) {
+      final int loser = this.tree[node];
+      if (beats(loser, winner)) {
+        this.tree[node] = winner;
+        winner = loser;
+      }
+    }
+    this.tree[0] = winner;
+  }
+
+  private boolean beats(int a, int b) {
+    final E headA = this.heads[a];
+    final E headB = this.heads[b];
+    if (headA == null) {
+      return false;
+    }
+    if (headB == null) {
+      return true;
+    }
+    final int cmp = this.comparator.compare(headA, headB);
+    return cmp < 0 || (cmp == 0 && a < b);
+  }
+}
@@ -0,0 +1,50 @@
+package org.apache.flink.runtime.operators.sort;
+
+import java.util.List;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A sortable whose entries are fixed-length index entries in memory segments, each holding a
+ * binary normalized key. Sorters such as the {@link RadixSort} move the entries directly, instead
+ * of going through {@link #compare(int, int)} and {@link #swap(int, int)}.
+ *
+ * <p>Entry {@code i} starts at offset {@code (i % getIndexEntriesPerSegment()) *
+ * getIndexEntrySize()} of segment {@code i / getIndexEntriesPerSegment()} of the sort index, and
+ * its normalized key at {@link #getNormalizedKeyOffset()} within the entry.
+ */
+public interface NormalizedKeySortable extends IndexedSortable {
+
+  /** Gets the segments of the sort index. */
+  List<MemorySegment> getSortIndex();
+
+  /**
+   * Gets segments of the same size that sorters may use as scratch space for the sort index, or
+   * an empty list, if the sortable reserves no scratch space. The contents of the segments are
+   * undefined.
+   */
+  List<MemorySegment> getSortIndexScratch();
+
+  /** Gets the size of an index entry in bytes. */
+  int getIndexEntrySize();
+
+  /** Gets the number of index entries per segment of the sort index. */
+  int getIndexEntriesPerSegment();
+
+  /** Gets the offset of the normalized key within an index entry. */
+  int getNormalizedKeyOffset();
+
+  /** Gets the number of bytes of the normalized key, which may be zero. */
+  int getNumKeyBytes();
+
+  /**
+   * Checks whether the normalized keys fully determine the order. Otherwise entries with equal
+   * normalized keys must be ordered through {@link #compare(int, int)}.
+   */
+  boolean isNormalizedKeyFullyDetermining();
+
+  /**
+   * Checks whether the order is the inverse of the binary order of the normalized keys, as for
+   * descending sort orders.
+   */
+  boolean isNormalizedKeyInverted();
+}
@@ -0,0 +1,547 @@
+package org.apache.flink.runtime.operators.sort;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.flink.api.common.typeutils.TypeComparator;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.disk.RandomAccessInputView;
+import org.apache.flink.runtime.io.disk.SimpleCollectingOutputView;
+import org.apache.flink.runtime.memory.ListMemorySegmentSource;
+import org.apache.flink.util.MutableObjectIterator;
+
+/**
+ * A sort buffer that keeps its records in serialized form in memory segments and sorts them with
+ * the help of normalized keys.
+ *
+ * <p>The buffer consists of two parts: The records are appended to a chain of record pages. The
+ * sort index holds one fixed-length entry per record, made up of an 8 byte pointer to the record
+ * and the first bytes of the record's normalized key. Sorting only moves the index entries: it
+ * compares the normalized key prefixes binary through {@link MemorySegment#compare(MemorySegment,
+ * int, int, int)} and swaps entries through {@link MemorySegment#swapBytes(byte[], MemorySegment,
+ * int, int, int)}. The records are only de-serialized and compared with the {@link TypeComparator}
+ * if the prefixes are equal and do not fully determine the order.
+ *
+ * <p>The sorter can optionally reserve one scratch segment per segment of the sort index, which
+ * lets a {@link RadixSort} sort the index entries without comparing them, see {@link
+ * NormalizedKeySortable}.
+ *
+ * @param <T> The type of the records.
+ */
+public final class NormalizedKeySorter<T> implements InMemorySorter<T>, NormalizedKeySortable {
+
+  private static final int OFFSET_LEN = 8;
+
+  static final int DEFAULT_MAX_NORMALIZED_KEY_LEN = 16;
+
+  private static final int MAX_NORMALIZED_KEY_LEN_PER_ELEMENT = 8;
+
+  private static final int MIN_REQUIRED_BUFFERS = 3;
+
+  // ------------------------------------------------------------------------
+  //                               Members
+  // ------------------------------------------------------------------------
+
+  private final byte[] swapBuffer;
+
+  private final TypeSerializer<T> serializer;
+
+  private final TypeComparator<T> comparator;
+
+  private final SimpleCollectingOutputView recordCollector;
+
+  private final RandomAccessInputView recordBuffer;
+
+  private final RandomAccessInputView recordBufferForComparison;
+
+  private MemorySegment currentSortIndexSegment;
+
+  private final ArrayList<MemorySegment> freeMemory;
+
+  private final ArrayList<MemorySegment> sortIndex;
+
+  private final ArrayList<MemorySegment> sortIndexScratch;
+
+  private final ArrayList<MemorySegment> recordBufferSegments;
+
+  private T recordForComparison1;
+
+  private T recordForComparison2;
+
+  private long currentDataBufferOffset;
+
+  private long sortIndexBytes;
+
+  private int currentSortIndexOffset;
+
+  private int numRecords;
+
+  private final int numKeyBytes;
+
+  private final int indexEntrySize;
+
+  private final int indexEntriesPerSegment;
+
+  private final int lastIndexEntryOffset;
+
+  private final int segmentSize;
+
+  private final int totalNumBuffers;
+
+  private final boolean normalizedKeyFullyDetermines;
+
+  private final boolean useNormKeyUninverted;
+
+  private final boolean reserveSortIndexScratch;
+
+  // -------------------------------------------------------------------------
+  // Constructors / Destructors
+  // -------------------------------------------------------------------------
+
+  public NormalizedKeySorter(
+      TypeSerializer<T> serializer, TypeComparator<T> comparator, List<MemorySegment> memory) {
+    this(serializer, comparator, memory, DEFAULT_MAX_NORMALIZED_KEY_LEN);
+  }
+
+  public NormalizedKeySorter(
+      TypeSerializer<T> serializer,
+      TypeComparator<T> comparator,
+      List<MemorySegment> memory,
+      int maxNormalizedKeyBytes) {
+    this(serializer, comparator, memory, maxNormalizedKeyBytes, false);
+  }
+
+  /**
+   * Creates a sort buffer.
+   *
+   * @param serializer The serializer for the records.
+   * @param comparator The comparator for the records.
+   * @param memory The memory segments for the records and the sort index, all of the same size.
+   * @param maxNormalizedKeyBytes The maximal number of normalized key bytes per index entry.
+   * @param reserveSortIndexScratch Whether to reserve a scratch segment for every segment of the
+   *     sort index, as required by the {@link RadixSort}.
+   */
+  public NormalizedKeySorter(
+      TypeSerializer<T> serializer,
+      TypeComparator<T> comparator,
+      List<MemorySegment> memory,
+      int maxNormalizedKeyBytes,
+      boolean reserveSortIndexScratch) {
+    if (serializer == null || comparator == null || memory == null) {
+      throw new NullPointerException();
+    }
+    if (maxNormalizedKeyBytes < 0) {
+      throw new IllegalArgumentException("Maximal number of normalized key bytes must not be negative.");
+    }
+
+    this.serializer = serializer;
+    this.comparator = comparator;
+    this.useNormKeyUninverted = !comparator.invertNormalizedKey();
+
+    // check the size of the first buffer and record it. all further buffers must have the same size.
+    // the size must also be a power of 2
+    this.totalNumBuffers = memory.size();
+    final int minBuffers =
+        reserveSortIndexScratch ? MIN_REQUIRED_BUFFERS + 1 : MIN_REQUIRED_BUFFERS;
+    if (this.totalNumBuffers < minBuffers) {
+      throw new IllegalArgumentException(
+          "Normalized-Key sorter requires at least " + minBuffers + " memory buffers.");
+    }
+    this.reserveSortIndexScratch = reserveSortIndexScratch;
+    this.segmentSize = memory.get(0).size();
+    this.freeMemory = new ArrayList<>(memory);
+
+    // create the buffer collections
+    this.sortIndex = new ArrayList<>(16);
+    this.sortIndexScratch = new ArrayList<>(16);
+    this.recordBufferSegments = new ArrayList<>(16);
+
+    // set up normalized key characteristics
+    if (this.comparator.supportsNormalizedKey()) {
+      // compute the max normalized key length
+      this.numKeyBytes = Math.min(this.comparator.getNormalizeKeyLen(), maxNormalizedKeyBytes);
+      this.normalizedKeyFullyDetermines =
+          !this.comparator.isNormalizedKeyPrefixOnly(this.numKeyBytes);
+    } else {
+      this.numKeyBytes = 0;
+      this.normalizedKeyFullyDetermines = false;
+    }
+
+    // compute the index entry size and limits
+    this.indexEntrySize = this.numKeyBytes + OFFSET_LEN;
+    this.indexEntriesPerSegment = this.segmentSize / this.indexEntrySize;
+    this.lastIndexEntryOffset = (this.indexEntriesPerSegment - 1) * this.indexEntrySize;
+    this.swapBuffer = new byte[this.indexEntrySize];
+
+    // set to initial state
+    addSortIndexSegment();
+
+    this.recordCollector =
+        new SimpleCollectingOutputView(
+            this.recordBufferSegments, new ListMemorySegmentSource(this.freeMemory), this.segmentSize);
+    this.recordBuffer = new RandomAccessInputView(this.recordBufferSegments, this.segmentSize);
+    this.recordBufferForComparison =
+        new RandomAccessInputView(this.recordBufferSegments, this.segmentSize);
+
+    this.recordForComparison1 = serializer.createInstance();
+    this.recordForComparison2 = serializer.createInstance();
+  }
+
+  // -------------------------------------------------------------------------
+  // Memory Segment
+  // -------------------------------------------------------------------------
+
+  /**
+   * Resets the sort buffer back to the state where it is empty. All contained data is discarded.
+   */
+  @Override
+  public void reset() {
+    // reset all offsets
+    this.numRecords = 0;
+    this.currentSortIndexOffset = 0;
+    this.currentDataBufferOffset = 0;
+    this.sortIndexBytes = 0;
+
+    // return all memory
+    this.freeMemory.addAll(this.sortIndex);
+    this.freeMemory.addAll(this.sortIndexScratch);
+    this.freeMemory.addAll(this.recordBufferSegments);
+    this.sortIndex.clear();
+    this.sortIndexScratch.clear();
+    this.recordBufferSegments.clear();
+
+    // grab first buffers
+    addSortIndexSegment();
+    this.recordCollector.reset();
+  }
+
+  /**
+   * Checks whether the buffer is empty.
+   *
+   * @return True, if no record is contained, false otherwise.
+   */
+  @Override
+  public boolean isEmpty() {
+    return this.numRecords == 0;
+  }
+
+  @Override
+  public void dispose() {
+    this.freeMemory.clear();
+    this.recordBufferSegments.clear();
+    this.sortIndex.clear();
+    this.sortIndexScratch.clear();
+  }
+
+  @Override
+  public long getCapacity() {
+    return ((long) this.totalNumBuffers) * this.segmentSize;
+  }
+
+  @Override
+  public long getOccupancy() {
+    return this.currentDataBufferOffset + this.sortIndexBytes;
+  }
+
+  // -------------------------------------------------------------------------
+  // Retrieving and Writing
+  // -------------------------------------------------------------------------
+
+  @Override
+  public T getRecord(int logicalPosition) throws IOException {
+    return getRecordFromBuffer(readPointer(logicalPosition));
+  }
+
+  @Override
+  public T getRecord(T reuse, int logicalPosition) throws IOException {
+    return getRecordFromBuffer(reuse, readPointer(logicalPosition));
+  }
+
+  /**
+   * Writes a given record to this sort buffer. The written record will be appended and take the
+   * last logical position. Once this method returned false, the buffer must be sorted and emptied
+   * or be {@link #reset()}, before further records can be written.
+   *
+   * @param record The record to be written.
+   * @return True, if the record was successfully written, false, if the sort buffer was full.
+   * @throws IOException Thrown, if an error occurred while serializing the record into the
+   *     buffers.
+   */
+  @Override
+  public boolean write(T record) throws IOException {
+    // check whether we need a new memory segment for the sort index
+    if (this.currentSortIndexOffset > this.lastIndexEntryOffset) {
+      if (memoryAvailableForSortIndex()) {
+        addSortIndexSegment();
+        this.currentSortIndexOffset = 0;
+        this.sortIndexBytes +=
+            this.reserveSortIndexScratch ? 2L * this.segmentSize : this.segmentSize;
+      } else {
+        return false;
+      }
+    }
+
+    // serialize the record into the data buffers
+    try {
+      this.serializer.serialize(record, this.recordCollector);
+    } catch (EOFException e) {
+      return false;
+    }
+
+    final long newOffset = this.recordCollector.getCurrentOffset();
+
+    // add the pointer and the normalized key
+    this.currentSortIndexSegment.putLong(this.currentSortIndexOffset, this.currentDataBufferOffset);
+    if (this.numKeyBytes != 0) {
+      this.comparator.putNormalizedKey(
+          record,
+          this.currentSortIndexSegment,
+          this.currentSortIndexOffset + OFFSET_LEN,
+          this.numKeyBytes);
+    }
+
+    this.currentSortIndexOffset += this.indexEntrySize;
+    this.currentDataBufferOffset = newOffset;
+    this.numRecords++;
+    return true;
+  }
+
+  // ------------------------------------------------------------------------
+  //                           Access Utilities
+  // ------------------------------------------------------------------------
+
+  private long readPointer(int logicalPosition) {
+    if (logicalPosition < 0 || logicalPosition >= this.numRecords) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    final int bufferNum = logicalPosition / this.indexEntriesPerSegment;
+    final int segmentOffset = logicalPosition % this.indexEntriesPerSegment;
+
+    return this.sortIndex.get(bufferNum).getLong(segmentOffset * this.indexEntrySize);
+  }
+
+  private T getRecordFromBuffer(T reuse, long pointer) throws IOException {
+    this.recordBuffer.setReadPosition(pointer);
+    return this.serializer.deserialize(reuse, this.recordBuffer);
+  }
+
+  private T getRecordFromBuffer(long pointer) throws IOException {
+    this.recordBuffer.setReadPosition(pointer);
+    return this.serializer.deserialize(this.recordBuffer);
+  }
+
+  private int compareRecords(long pointer1, long pointer2) {
+    this.recordBuffer.setReadPosition(pointer1);
+    this.recordBufferForComparison.setReadPosition(pointer2);
+
+    try {
+      this.recordForComparison1 =
+          this.serializer.deserialize(this.recordForComparison1, this.recordBuffer);
+      this.recordForComparison2 =
+          this.serializer.deserialize(this.recordForComparison2, this.recordBufferForComparison);
+      return this.comparator.compare(this.recordForComparison1, this.recordForComparison2);
+    } catch (IOException ioex) {
+      throw new RuntimeException("Error comparing two records.", ioex);
+    }
+  }
+
+  private boolean memoryAvailableForSortIndex() {
+    return this.freeMemory.size() >= (this.reserveSortIndexScratch ? 2 : 1);
+  }
+
+  private void addSortIndexSegment() {
+    this.currentSortIndexSegment = nextMemorySegment();
+    this.sortIndex.add(this.currentSortIndexSegment);
+    if (this.reserveSortIndexScratch) {
+      this.sortIndexScratch.add(nextMemorySegment());
+    }
+  }
+
+  private MemorySegment nextMemorySegment() {
+    return this.freeMemory.remove(this.freeMemory.size() - 1);
+  }
+
+  // -------------------------------------------------------------------------
+  // Indexed Sorting
+  // -------------------------------------------------------------------------
+
+  @Override
+  public int compare(int i, int j) {
+    final int bufferNumI = i / this.indexEntriesPerSegment;
+    final int segmentOffsetI = (i % this.indexEntriesPerSegment) * this.indexEntrySize;
+
+    final int bufferNumJ = j / this.indexEntriesPerSegment;
+    final int segmentOffsetJ = (j % this.indexEntriesPerSegment) * this.indexEntrySize;
+
+    final MemorySegment segI = this.sortIndex.get(bufferNumI);
+    final MemorySegment segJ = this.sortIndex.get(bufferNumJ);
+
+    int val =
+        segI.compare(segJ, segmentOffsetI + OFFSET_LEN, segmentOffsetJ + OFFSET_LEN, this.numKeyBytes);
+
+    if (val != 0 || this.normalizedKeyFullyDetermines) {
+      return this.useNormKeyUninverted ? val : -val;
+    }
+
+    final long pointerI = segI.getLong(segmentOffsetI);
+    final long pointerJ = segJ.getLong(segmentOffsetJ);
+
+    return compareRecords(pointerI, pointerJ);
+  }
+
+  @Override
+  public void swap(int i, int j) {
+    final int bufferNumI = i / this.indexEntriesPerSegment;
+    final int segmentOffsetI = (i % this.indexEntriesPerSegment) * this.indexEntrySize;
+
+    final int bufferNumJ = j / this.indexEntriesPerSegment;
+    final int segmentOffsetJ = (j % this.indexEntriesPerSegment) * this.indexEntrySize;
+
+    final MemorySegment segI = this.sortIndex.get(bufferNumI);
+    final MemorySegment segJ = this.sortIndex.get(bufferNumJ);
+
+    segI.swapBytes(this.swapBuffer, segJ, segmentOffsetI, segmentOffsetJ, this.indexEntrySize);
+  }
+
+  @Override
+  public int size() {
+    return this.numRecords;
+  }
+
+  @Override
+  public List<MemorySegment> getSortIndex() {
+    return this.sortIndex;
+  }
+
+  @Override
+  public List<MemorySegment> getSortIndexScratch() {
+    return this.sortIndexScratch;
+  }
+
+  @Override
+  public int getIndexEntrySize() {
+    return this.indexEntrySize;
+  }
+
+  @Override
+  public int getIndexEntriesPerSegment() {
+    return this.indexEntriesPerSegment;
+  }
+
+  @Override
+  public int getNormalizedKeyOffset() {
+    return OFFSET_LEN;
+  }
+
+  @Override
+  public int getNumKeyBytes() {
+    return this.numKeyBytes;
+  }
+
+  @Override
+  public boolean isNormalizedKeyFullyDetermining() {
+    return this.normalizedKeyFullyDetermines;
+  }
+
+  @Override
+  public boolean isNormalizedKeyInverted() {
+    return !this.useNormKeyUninverted;
+  }
+
+  // -------------------------------------------------------------------------
+
+  @Override
+  public void writeToOutput(DataOutputView output) throws IOException {
+    int recordsLeft = this.numRecords;
+    int currentMemSeg = 0;
+    while (recordsLeft > 0) {
+      final MemorySegment currentIndexSegment = this.sortIndex.get(currentMemSeg++);
+      int offset = 0;
+      // check whether we have a full or partially full segment
+      if (recordsLeft >= this.indexEntriesPerSegment) {
+        // full segment
+        for (; offset <= this.lastIndexEntryOffset; offset += this.indexEntrySize) {
+          final long pointer = currentIndexSegment.getLong(offset);
+          this.recordBuffer.setReadPosition(pointer);
+          this.serializer.copy(this.recordBuffer, output);
+        }
+        recordsLeft -= this.indexEntriesPerSegment;
+      } else {
+        // partially filled segment
+        for (; recordsLeft > 0; recordsLeft--, offset += this.indexEntrySize) {
+          final long pointer = currentIndexSegment.getLong(offset);
+          this.recordBuffer.setReadPosition(pointer);
+          this.serializer.copy(this.recordBuffer, output);
+        }
+      }
+    }
+  }
+
+  // -------------------------------------------------------------------------
+
+  /**
+   * Gets an iterator over all records in this buffer in their logical order.
+   *
+   * @return An iterator returning the records in their logical order.
+   */
+  @Override
+  public MutableObjectIterator<T> getIterator() {
+    return new MutableObjectIterator<T>() {
+      private final int size = size();
+      private int current = 0;
+
+      private int currentSegment = 0;
+      private int currentOffset = 0;
+
+      private MemorySegment currentIndexSegment = sortIndex.get(0);
+
+      @Override
+      public T next(T target) {
+        if (this.current < this.size) {
+          this.current++;
+          if (this.currentOffset > lastIndexEntryOffset) {
+            this.currentOffset = 0;
+            this.currentIndexSegment = sortIndex.get(++this.currentSegment);
+          }
+
+          long pointer = this.currentIndexSegment.getLong(this.currentOffset);
+          this.currentOffset += indexEntrySize;
+
+          try {
+            return getRecordFromBuffer(target, pointer);
+          } catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+          }
+        } else {
+          return null;
+        }
+      }
+
+      @Override
+      public T next() {
+        if (this.current < this.size) {
+          this.current++;
+          if (this.currentOffset > lastIndexEntryOffset) {
+            this.currentOffset = 0;
+            this.currentIndexSegment = sortIndex.get(++this.currentSegment);
+          }
+
+          long pointer = this.currentIndexSegment.getLong(this.currentOffset);
+          this.currentOffset += indexEntrySize;
+
+          try {
+            return getRecordFromBuffer(pointer);
+          } catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+          }
+        } else {
+          return null;
+        }
+      }
+    };
+  }
+}
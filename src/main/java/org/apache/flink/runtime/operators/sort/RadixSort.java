@@ -0,0 +1,152 @@
+package org.apache.flink.runtime.operators.sort;
+
+import java.util.List;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A least-significant-digit radix sort over the binary normalized keys of a {@link
+ * NormalizedKeySortable}. It takes one pass per normalized key byte, each of which moves all index
+ * entries between the sort index and the scratch segments of the sortable in the order of that
+ * byte. The passes are stable, so after the pass over the first byte the entries are ordered by
+ * the whole key. Passes over bytes that are equal in all entries, such as the high bytes of small
+ * integers, are skipped. The sort takes {@code O(n * k)} for {@code k} key bytes, without any
+ * comparisons, which pays off for integer and timestamp keys.
+ *
+ * <p>If the normalized keys are only a prefix of the sort key, the runs of entries with equal
+ * normalized keys are sorted afterwards with a {@link QuickSort}. Sortables that are not {@link
+ * NormalizedKeySortable}, have no normalized keys, or do not provide enough scratch segments,
+ * as well as very small ranges, are sorted entirely with the {@link QuickSort}.
+ */
+public final class RadixSort implements IndexedSorter {
+
+  /** Ranges smaller than this are sorted with the quick sort. */
+  private static final int MIN_RADIX_SORT_SIZE = 64;
+
+  private final IndexedSorter fallback = new QuickSort();
+
+  public RadixSort() {}
+
+  @Override
+  public void sort(IndexedSortable s) {
+    sort(s, 0, s.size());
+  }
+
+  @Override
+  public void sort(IndexedSortable s, int l, int r) {
+    if (r - l < 2) {
+      return;
+    }
+    if (r - l < MIN_RADIX_SORT_SIZE || !(s instanceof NormalizedKeySortable)) {
+      fallback.sort(s, l, r);
+      return;
+    }
+
+    final NormalizedKeySortable sortable = (NormalizedKeySortable) s;
+    final int entriesPerSegment = sortable.getIndexEntriesPerSegment();
+    if (sortable.getNumKeyBytes() == 0
+        || sortable.getSortIndexScratch().size() < (r - 1) / entriesPerSegment + 1) {
+      fallback.sort(s, l, r);
+      return;
+    }
+
+    radixSort(sortable, l, r);
+    if (!sortable.isNormalizedKeyFullyDetermining()) {
+      sortRunsOfEqualKeys(sortable, l, r);
+    }
+  }
+
+  private static void radixSort(NormalizedKeySortable sortable, int l, int r) {
+    final int numKeyBytes = sortable.getNumKeyBytes();
+    final int keyOffset = sortable.getNormalizedKeyOffset();
+    final int entrySize = sortable.getIndexEntrySize();
+    final int entriesPerSegment = sortable.getIndexEntriesPerSegment();
+    // descending orders sort by the complement of the key bytes
+    final int flip = sortable.isNormalizedKeyInverted() ? 0xff : 0;
+    final int n = r - l;
+
+    // count the values of all key bytes in one scan
+    final int[] counts = new int[numKeyBytes << 8];
+    for (int i = l; i < r; i++) {
+      final MemorySegment segment = sortable.getSortIndex().get(i / entriesPerSegment);
+      final int offset = (i % entriesPerSegment) * entrySize + keyOffset;
+      for (int b = 0; b < numKeyBytes; b++) {
+        counts[(b << 8) | ((segment.get(offset + b) & 0xff) ^ flip)]++;
+      }
+    }
+
+    List<MemorySegment> source = sortable.getSortIndex();
+    List<MemorySegment> target = sortable.getSortIndexScratch();
+    final int[] positions = new int[256];
+
+    for (int b = numKeyBytes - 1; b >= 0; b--) {
+      // turn the counts into start positions, skipping bytes that are the same in all entries
+      boolean trivial = false;
+      int position = l;
+      for (int v = 0; v < 256; v++) {
+        final int count = counts[(b << 8) | v];
+        if (count == n) {
+          trivial = true;
+          break;
+        }
+        positions[v] = position;
+        position += count;
+      }
+      if (trivial) {
+        continue;
+      }
+
+      for (int i = l; i < r; i++) {
+        final MemorySegment from = source.get(i / entriesPerSegment);
+        final int fromOffset = (i % entriesPerSegment) * entrySize;
+        final int j = positions[(from.get(fromOffset + keyOffset + b) & 0xff) ^ flip]++;
+        from.copyTo(
+            fromOffset,
+            target.get(j / entriesPerSegment),
+            (j % entriesPerSegment) * entrySize,
+            entrySize);
+      }
+
+      final List<MemorySegment> tmp = source;
+      source = target;
+      target = tmp;
+    }
+
+    if (source != sortable.getSortIndex()) {
+      // an odd number of passes left the entries in the scratch segments
+      for (int i = l; i < r; ) {
+        final int segmentIndex = i / entriesPerSegment;
+        final int offset = (i % entriesPerSegment) * entrySize;
+        final int numEntries = Math.min(r - i, entriesPerSegment - i % entriesPerSegment);
+        source
+            .get(segmentIndex)
+            .copyTo(offset, target.get(segmentIndex), offset, numEntries * entrySize);
+        i += numEntries;
+      }
+    }
+  }
+
+  private void sortRunsOfEqualKeys(NormalizedKeySortable sortable, int l, int r) {
+    final List<MemorySegment> index = sortable.getSortIndex();
+    final int numKeyBytes = sortable.getNumKeyBytes();
+    final int keyOffset = sortable.getNormalizedKeyOffset();
+    final int entrySize = sortable.getIndexEntrySize();
+    final int entriesPerSegment = sortable.getIndexEntriesPerSegment();
+
+    int runStart = l;
+    for (int i = l + 1; i <= r; i++) {
+      if (i < r) {
+        final int offset1 = (runStart % entriesPerSegment) * entrySize + keyOffset;
+        final int offset2 = (i % entriesPerSegment) * entrySize + keyOffset;
+        if (index
+            .get(runStart / entriesPerSegment)
+            .equalTo(index.get(i / entriesPerSegment), offset1, offset2, numKeyBytes)) {
+          continue;
+        }
+      }
+      if (i - runStart > 1) {
+        fallback.sort(sortable, runStart, i);
+      }
+      runStart = i;
+    }
+  }
+}
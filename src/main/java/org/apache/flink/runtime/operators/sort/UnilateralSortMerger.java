@@ -0,0 +1,399 @@
+package org.apache.flink.runtime.operators.sort;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.flink.api.common.typeutils.TypeComparator;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.compression.BlockCompressionCodec;
+import org.apache.flink.runtime.io.disk.ChannelReaderInputView;
+import org.apache.flink.runtime.io.disk.ChannelReaderInputViewIterator;
+import org.apache.flink.runtime.io.disk.ChannelWriterOutputView;
+import org.apache.flink.util.MutableObjectIterator;
+
+/**
+ * An external sorter that sorts arbitrarily large inputs within a fixed budget of memory
+ * segments.
+ *
+ * <p>The sorter reads its input into a {@link NormalizedKeySorter} that occupies all but one of
+ * the given segments. Whenever the sort buffer is full, it is sorted and written as a sorted run
+ * to a spill file through the remaining segment (see {@link ChannelWriterOutputView}). The spill
+ * files are distributed round robin over the configured spill directories. If the whole input fits
+ * into the sort buffer, nothing is spilled and the records are returned directly from memory.
+ *
+ * <p>Otherwise the runs are merged with a {@link MergeIterator}, which reads every run through
+ * one memory segment. If there are more runs than the fan-in allows, intermediate merge passes
+ * first merge runs into larger runs. The first pass merges only as many runs as necessary to bring
+ * the number of runs down to the fan-in, so that the final merge always reads all runs once, and
+ * as few records as possible are written to disk twice. The spill files can be compressed with a
+ * {@link BlockCompressionCodec}, which trades CPU time for disk bandwidth.
+ *
+ * <p>The sorter works on the thread that calls {@link #getIterator()}. It owns neither the input
+ * nor the memory; the spill files are deleted when the sorter is {@link #close() closed}.
+ *
+ * @param <E> The type of the records that are sorted.
+ */
+public class UnilateralSortMerger<E> implements Closeable {
+
+  /** The minimal number of memory segments required by the sorter. */
+  public static final int MIN_NUM_SEGMENTS = 4;
+
+  /** The fan-in that is used if none is configured. */
+  public static final int DEFAULT_MAX_FAN_IN = 128;
+
+  private static final String SPILL_FILE_PREFIX = "flink-sort-";
+
+  private static final String SPILL_FILE_SUFFIX = ".run";
+
+  // ------------------------------------------------------------------------
+
+  private final MutableObjectIterator<E> input;
+
+  private final TypeSerializer<E> serializer;
+
+  private final TypeComparator<E> comparator;
+
+  private final List<MemorySegment> memory;
+
+  private final File[] spillDirectories;
+
+  private final int maxFanIn;
+
+  private final boolean useRadixSort;
+
+  private final BlockCompressionCodec spillCompression; // null, if the spills are not compressed
+
+  private final List<File> spillFiles = new ArrayList<>();
+
+  private final List<FileChannel> openChannels = new ArrayList<>();
+
+  private final List<ChannelReaderInputView> openViews = new ArrayList<>();
+
+  private int nextSpillDirectory;
+
+  private long spilledBytes;
+
+  private int numSpilledRuns;
+
+  private int numMergePasses;
+
+  private MutableObjectIterator<E> result;
+
+  private boolean closed;
+
+  // ------------------------------------------------------------------------
+
+  /**
+   * Creates a new sorter with the {@link #DEFAULT_MAX_FAN_IN default fan-in}.
+   *
+   * @param input The input to sort.
+   * @param serializer The serializer for the records.
+   * @param comparator The comparator that defines the sort order.
+   * @param memory The memory segments to sort in, all of the same size.
+   * @param spillDirectories The directories to write the spill files to.
+   */
+  public UnilateralSortMerger(
+      MutableObjectIterator<E> input,
+      TypeSerializer<E> serializer,
+      TypeComparator<E> comparator,
+      List<MemorySegment> memory,
+      File[] spillDirectories) {
+    this(input, serializer, comparator, memory, spillDirectories, DEFAULT_MAX_FAN_IN);
+  }
+
+  /**
+   * Creates a new sorter.
+   *
+   * @param input The input to sort.
+   * @param serializer The serializer for the records.
+   * @param comparator The comparator that defines the sort order.
+   * @param memory The memory segments to sort in, all of the same size.
+   * @param spillDirectories The directories to write the spill files to.
+   * @param maxFanIn The maximal number of runs that are merged at once. The effective fan-in is
+   *     further limited by the number of memory segments, since every merged run is read through
+   *     its own segment.
+   */
+  public UnilateralSortMerger(
+      MutableObjectIterator<E> input,
+      TypeSerializer<E> serializer,
+      TypeComparator<E> comparator,
+      List<MemorySegment> memory,
+      File[] spillDirectories,
+      int maxFanIn) {
+    this(input, serializer, comparator, memory, spillDirectories, maxFanIn, false);
+  }
+
+  /**
+   * Creates a new sorter.
+   *
+   * @param input The input to sort.
+   * @param serializer The serializer for the records.
+   * @param comparator The comparator that defines the sort order.
+   * @param memory The memory segments to sort in, all of the same size.
+   * @param spillDirectories The directories to write the spill files to.
+   * @param maxFanIn The maximal number of runs that are merged at once.
+   * @param useRadixSort Whether to sort the sort buffer with a {@link RadixSort} instead of a
+   *     {@link QuickSort}. The radix sort pays off for short normalized keys, such as integers and
+   *     timestamps. It needs a scratch segment for every segment of the sort index, so the sort
+   *     buffer holds fewer records.
+   */
+  public UnilateralSortMerger(
+      MutableObjectIterator<E> input,
+      TypeSerializer<E> serializer,
+      TypeComparator<E> comparator,
+      List<MemorySegment> memory,
+      File[] spillDirectories,
+      int maxFanIn,
+      boolean useRadixSort) {
+    this(input, serializer, comparator, memory, spillDirectories, maxFanIn, useRadixSort, null);
+  }
+
+  /**
+   * Creates a new sorter.
+   *
+   * @param input The input to sort.
+   * @param serializer The serializer for the records.
+   * @param comparator The comparator that defines the sort order.
+   * @param memory The memory segments to sort in, all of the same size.
+   * @param spillDirectories The directories to write the spill files to.
+   * @param maxFanIn The maximal number of runs that are merged at once.
+   * @param useRadixSort Whether to sort the sort buffer with a {@link RadixSort} instead of a
+   *     {@link QuickSort}.
+   * @param spillCompression The codec to compress the spill files with, or null, to write them
+   *     uncompressed. The codec must not be used by other threads while the sorter runs.
+   */
+  public UnilateralSortMerger(
+      MutableObjectIterator<E> input,
+      TypeSerializer<E> serializer,
+      TypeComparator<E> comparator,
+      List<MemorySegment> memory,
+      File[] spillDirectories,
+      int maxFanIn,
+      boolean useRadixSort,
+      BlockCompressionCodec spillCompression) {
+    if (input == null || serializer == null || comparator == null || memory == null) {
+      throw new NullPointerException();
+    }
+    if (spillDirectories == null || spillDirectories.length == 0) {
+      throw new IllegalArgumentException("At least one spill directory is required.");
+    }
+    // the radix sort needs one more segment for the scratch space of the sort index
+    final int minNumSegments = useRadixSort ? MIN_NUM_SEGMENTS + 1 : MIN_NUM_SEGMENTS;
+    if (memory.size() < minNumSegments) {
+      throw new IllegalArgumentException(
+          "The sorter requires at least " + minNumSegments + " memory segments.");
+    }
+    if (maxFanIn < 2) {
+      throw new IllegalArgumentException("The fan-in must be at least 2.");
+    }
+
+    this.input = input;
+    this.serializer = serializer;
+    this.comparator = comparator;
+    this.memory = new ArrayList<>(memory);
+    this.spillDirectories = spillDirectories.clone();
+    // one segment is always reserved for writing merged runs
+    this.maxFanIn = Math.min(maxFanIn, memory.size() - 1);
+    this.useRadixSort = useRadixSort;
+    this.spillCompression = spillCompression;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Properties
+  // ------------------------------------------------------------------------
+
+  /**
+   * Gets the number of bytes written to spill files, over all passes and including the block
+   * headers. With spill compression, these are the compressed bytes.
+   */
+  public long getSpilledBytes() {
+    return spilledBytes;
+  }
+
+  /** Gets the number of sorted runs that were spilled from the sort buffer. */
+  public int getNumSpilledRuns() {
+    return numSpilledRuns;
+  }
+
+  /** Gets the number of intermediate merge passes that merged runs into larger runs. */
+  public int getNumMergePasses() {
+    return numMergePasses;
+  }
+
+  /** Gets the effective fan-in, the maximal number of runs that are merged at once. */
+  public int getMaxFanIn() {
+    return maxFanIn;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Sorting
+  // ------------------------------------------------------------------------
+
+  /**
+   * Sorts the input and returns an iterator over the sorted records. The first call consumes the
+   * complete input, all further calls return the same iterator.
+   *
+   * @return An iterator over the sorted records.
+   * @throws IOException Thrown, if the input could not be read, a record is too large for the sort
+   *     buffer, or the spill files could not be written or read.
+   */
+  public MutableObjectIterator<E> getIterator() throws IOException {
+    if (closed) {
+      throw new IllegalStateException("The sorter has been closed.");
+    }
+    if (result == null) {
+      result = sort();
+    }
+    return result;
+  }
+
+  private MutableObjectIterator<E> sort() throws IOException {
+    final int numSortSegments = memory.size() - 1;
+    final MemorySegment writeSegment = memory.get(numSortSegments);
+    final NormalizedKeySorter<E> buffer =
+        new NormalizedKeySorter<>(
+            serializer,
+            comparator,
+            memory.subList(0, numSortSegments),
+            NormalizedKeySorter.DEFAULT_MAX_NORMALIZED_KEY_LEN,
+            useRadixSort);
+    final IndexedSorter sortAlgorithm = useRadixSort ? new RadixSort() : new QuickSort();
+
+    final List<File> runs = new ArrayList<>();
+    E record;
+    while ((record = input.next()) != null) {
+      if (!buffer.write(record)) {
+        if (buffer.isEmpty()) {
+          throw new IOException("The record exceeds the maximum size of a sort buffer.");
+        }
+        sortAlgorithm.sort(buffer);
+        runs.add(spill(buffer, writeSegment));
+        buffer.reset();
+
+        if (!buffer.write(record)) {
+          throw new IOException("The record exceeds the maximum size of a sort buffer.");
+        }
+      }
+    }
+
+    if (runs.isEmpty()) {
+      // everything fit into memory
+      sortAlgorithm.sort(buffer);
+      return buffer.getIterator();
+    }
+
+    if (!buffer.isEmpty()) {
+      sortAlgorithm.sort(buffer);
+      runs.add(spill(buffer, writeSegment));
+    }
+    buffer.dispose();
+    numSpilledRuns = runs.size();
+
+    // merge until the remaining runs can be merged at once
+    while (runs.size() > maxFanIn) {
+      final int numToMerge = Math.min(maxFanIn, runs.size() - maxFanIn + 1);
+      final List<File> toMerge = new ArrayList<>(runs.subList(0, numToMerge));
+      runs.subList(0, numToMerge).clear();
+      runs.add(mergeRuns(toMerge, writeSegment));
+      numMergePasses++;
+    }
+
+    return openMergeIterator(runs);
+  }
+
+  private File spill(NormalizedKeySorter<E> buffer, MemorySegment writeSegment)
+      throws IOException {
+    final File file = createSpillFile();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      final ChannelWriterOutputView output =
+          new ChannelWriterOutputView(channel, writeSegment, true, spillCompression);
+      buffer.writeToOutput(output);
+      spilledBytes += output.close();
+    }
+    return file;
+  }
+
+  private File mergeRuns(List<File> runs, MemorySegment writeSegment) throws IOException {
+    final File file = createSpillFile();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      final ChannelWriterOutputView output =
+          new ChannelWriterOutputView(channel, writeSegment, true, spillCompression);
+      final MutableObjectIterator<E> merged = openMergeIterator(runs);
+      E record;
+      while ((record = merged.next()) != null) {
+        serializer.serialize(record, output);
+      }
+      spilledBytes += output.close();
+    } finally {
+      closeChannels();
+      for (File run : runs) {
+        deleteSpillFile(run);
+      }
+    }
+    return file;
+  }
+
+  private MutableObjectIterator<E> openMergeIterator(List<File> runs) throws IOException {
+    final List<MutableObjectIterator<E>> iterators = new ArrayList<>(runs.size());
+    for (int i = 0; i < runs.size(); i++) {
+      final FileChannel channel =
+          FileChannel.open(runs.get(i).toPath(), StandardOpenOption.READ);
+      openChannels.add(channel);
+      final ChannelReaderInputView inView =
+          new ChannelReaderInputView(channel, memory.get(i), runs.get(i), true, spillCompression);
+      openViews.add(inView);
+      iterators.add(new ChannelReaderInputViewIterator<>(inView, serializer));
+    }
+    return new MergeIterator<>(iterators, comparator);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Spill files
+  // ------------------------------------------------------------------------
+
+  private File createSpillFile() throws IOException {
+    final File dir = spillDirectories[nextSpillDirectory];
+    nextSpillDirectory = (nextSpillDirectory + 1) % spillDirectories.length;
+    final File file = File.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX, dir);
+    spillFiles.add(file);
+    return file;
+  }
+
+  private void deleteSpillFile(File file) {
+    spillFiles.remove(file);
+    file.delete();
+  }
+
+  private void closeChannels() {
+    // closing the views frees the segments that compressed blocks were read into
+    for (ChannelReaderInputView view : openViews) {
+      view.close();
+    }
+    openViews.clear();
+    for (FileChannel channel : openChannels) {
+      try {
+        channel.close();
+      } catch (IOException ignored) {
+        // the file is deleted anyway
+      }
+    }
+    openChannels.clear();
+  }
+
+  /** Closes all open spill files and deletes them. The memory is not touched. */
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      closeChannels();
+      for (File file : new ArrayList<>(spillFiles)) {
+        deleteSpillFile(file);
+      }
+    }
+  }
+}
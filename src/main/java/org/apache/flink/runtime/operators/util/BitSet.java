@@ -0,0 +1,115 @@
+package org.apache.flink.runtime.operators.util;
+
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A fixed-size bit set that lives in a range of a {@link MemorySegment}. The bits are kept in
+ * 64 bit words, which are read and written with {@link MemorySegment#getLong(int)} and {@link
+ * MemorySegment#putLong(int, long)}.
+ */
+public class BitSet {
+
+  private MemorySegment memorySegment;
+
+  // MemorySegment byte array offset.
+  private int offset;
+
+  // The BitSet byte size.
+  private final int byteLength;
+
+  // The BitSet bit size.
+  private final int bitLength;
+
+  /**
+   * Creates a bit set of the given size. The bit set is usable once its memory is set with {@link
+   * #setMemorySegment(MemorySegment, int)}.
+   *
+   * @param byteSize The size of the bit set in bytes, a positive multiple of 8.
+   */
+  public BitSet(int byteSize) {
+    if (byteSize <= 0 || (byteSize & 7) != 0) {
+      throw new IllegalArgumentException("The byte size must be a positive multiple of 8.");
+    }
+    this.byteLength = byteSize;
+    this.bitLength = byteSize << 3;
+  }
+
+  /**
+   * Sets the memory that backs the bit set. The memory is not cleared.
+   *
+   * @param memorySegment The segment that holds the bits.
+   * @param offset The offset of the bits in the segment.
+   */
+  public void setMemorySegment(MemorySegment memorySegment, int offset) {
+    if (memorySegment == null) {
+      throw new NullPointerException("MemorySegment can't be null.");
+    }
+    if (offset < 0 || offset > memorySegment.size() - byteLength) {
+      throw new IndexOutOfBoundsException("The bit set does not fit into the segment.");
+    }
+    this.memorySegment = memorySegment;
+    this.offset = offset;
+  }
+
+  public MemorySegment getMemorySegment() {
+    return memorySegment;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Sets the bit at the specified index.
+   *
+   * @param index The index of the bit.
+   */
+  public void set(int index) {
+    final int wordOffset = offset + ((index >>> 6) << 3);
+    memorySegment.putLong(wordOffset, memorySegment.getLong(wordOffset) | (1L << index));
+  }
+
+  /**
+   * Returns true if the bit is set in the specified index.
+   *
+   * @param index The index of the bit.
+   * @return True, if the bit is set.
+   */
+  public boolean get(int index) {
+    return (memorySegment.getLong(offset + ((index >>> 6) << 3)) & (1L << index)) != 0;
+  }
+
+  /** Number of bits. */
+  public int bitSize() {
+    return bitLength;
+  }
+
+  /** Number of bytes. */
+  public int byteSize() {
+    return byteLength;
+  }
+
+  /** Clear the bit set. */
+  public void clear() {
+    for (int i = 0; i < byteLength; i += 8) {
+      memorySegment.putLong(offset + i, 0L);
+    }
+  }
+
+  /**
+   * Sets all bits that are set in the other bit set, by OR-ing the two sets word by word.
+   *
+   * @param other The bit set to merge, of the same size.
+   */
+  public void or(BitSet other) {
+    if (other.byteLength != byteLength) {
+      throw new IllegalArgumentException("Bit sets of different sizes cannot be merged.");
+    }
+    final MemorySegment otherSegment = other.memorySegment;
+    final int otherOffset = other.offset;
+    for (int i = 0; i < byteLength; i += 8) {
+      memorySegment.putLong(
+          offset + i, memorySegment.getLong(offset + i) | otherSegment.getLong(otherOffset + i));
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package org.apache.flink.runtime.operators.util;
+
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A Bloom filter that keeps its bits in a {@link MemorySegment}. It tests whether a hash code
+ * might have been added to the filter: a negative answer is always correct, a positive answer is
+ * wrong with a small probability that depends on the number of added entries and the size of the
+ * filter.
+ *
+ * <p>The filter works on 32 bit hash codes that the caller computes, for example the key hash
+ * codes of a join. The {@code k} bit positions of a hash code are derived by double hashing from
+ * the hash code itself and a second hash that is obtained by mixing its bits, as described in
+ * "Less Hashing, Same Performance: Building a Better Bloom Filter" by Kirsch and Mitzenmacher.
+ *
+ * <p>Filters of the same size and number of hash functions can be merged by OR-ing their bits,
+ * which yields the filter of the union of their entries.
+ */
+public class BloomFilter {
+
+  /**
+   * The maximal number of hash functions. Filters with many more bits than entries, like the
+   * one-page filters of small partitions, would otherwise probe hundreds of thousands of bits per
+   * hash code. Beyond this bound, more functions barely lower the false positive probability.
+   */
+  static final int MAX_NUM_HASH_FUNCTIONS = 16;
+
+  protected final BitSet bitSet;
+
+  protected final int expectedEntries;
+
+  protected final int numHashFunctions;
+
+  /**
+   * Creates a filter for the given number of entries with the given size. The filter is usable
+   * once its memory is set with {@link #setBitsLocation(MemorySegment, int)}.
+   *
+   * @param expectedEntries The number of entries the filter is sized for.
+   * @param byteSize The size of the filter in bytes, a positive multiple of 8.
+   */
+  public BloomFilter(int expectedEntries, int byteSize) {
+    if (expectedEntries <= 0) {
+      throw new IllegalArgumentException("expectedEntries should be > 0");
+    }
+    this.expectedEntries = expectedEntries;
+    this.bitSet = new BitSet(byteSize);
+    this.numHashFunctions = optimalNumOfHashFunctions(expectedEntries, bitSet.bitSize());
+  }
+
+  /**
+   * Sets the memory that holds the filter's bits. The memory is not cleared, so that a filter can
+   * be set on memory that contains the bits of a previously built filter.
+   *
+   * @param memorySegment The segment that holds the bits.
+   * @param offset The offset of the bits in the segment.
+   */
+  public void setBitsLocation(MemorySegment memorySegment, int offset) {
+    bitSet.setMemorySegment(memorySegment, offset);
+  }
+
+  /**
+   * Computes the number of bits for a filter with the given number of entries and false positive
+   * probability.
+   *
+   * @param inputEntries The number of entries.
+   * @param fpp The false positive probability.
+   * @return The optimal number of bits.
+   */
+  public static int optimalNumOfBits(long inputEntries, double fpp) {
+    if (fpp <= 0 || fpp >= 1) {
+      throw new IllegalArgumentException("The false positive probability must be in (0, 1).");
+    }
+    return (int) (-inputEntries * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+  }
+
+  /**
+   * Computes the size in bytes of a filter with the given number of entries and false positive
+   * probability, rounded up to whole 64 bit words.
+   *
+   * @param inputEntries The number of entries.
+   * @param fpp The false positive probability.
+   * @return The size of the filter in bytes.
+   */
+  public static int getSizeInBytes(long inputEntries, double fpp) {
+    final long bits = Math.max(64, optimalNumOfBits(inputEntries, fpp));
+    return (int) (((bits + 63) >>> 6) << 3);
+  }
+
+  /**
+   * Computes the false positive probability of a filter with the given number of entries and
+   * bits, with the optimal number of hash functions.
+   *
+   * @param inputEntries The number of entries.
+   * @param bitSize The number of bits.
+   * @return The false positive probability.
+   */
+  public static double estimateFalsePositiveProbability(long inputEntries, int bitSize) {
+    final int numFunction = optimalNumOfHashFunctions(inputEntries, bitSize);
+    final double p = Math.pow(Math.E, -(double) numFunction * inputEntries / bitSize);
+    return Math.pow(1 - p, numFunction);
+  }
+
+  /**
+   * Computes the optimal number of hash functions for a filter with the given number of entries
+   * and bits.
+   *
+   * @param expectEntries The number of entries.
+   * @param bitSize The number of bits.
+   * @return The number of hash functions, at least one and at most {@link
+   *     #MAX_NUM_HASH_FUNCTIONS}.
+   */
+  static int optimalNumOfHashFunctions(long expectEntries, long bitSize) {
+    final long optimal = Math.round((double) bitSize / expectEntries * Math.log(2));
+    return (int) Math.max(1, Math.min(MAX_NUM_HASH_FUNCTIONS, optimal));
+  }
+
+  public int getNumHashFunctions() {
+    return numHashFunctions;
+  }
+
+  public int getExpectedEntries() {
+    return expectedEntries;
+  }
+
+  /** Gets the size of the filter in bytes. */
+  public int getByteSize() {
+    return bitSet.byteSize();
+  }
+
+  // ------------------------------------------------------------------------
+
+  /**
+   * Adds the given hash code to the filter.
+   *
+   * @param hash32 The hash code to add.
+   */
+  public void addHash(int hash32) {
+    final int hash2 = mix(hash32);
+    final int bitSize = bitSet.bitSize();
+    for (int i = 1; i <= numHashFunctions; i++) {
+      int combinedHash = hash32 + i * hash2;
+      // hashcode should be positive, flip all the bits if it's negative
+      if (combinedHash < 0) {
+        combinedHash = ~combinedHash;
+      }
+      bitSet.set(combinedHash % bitSize);
+    }
+  }
+
+  /**
+   * Tests whether the given hash code might have been added to the filter.
+   *
+   * @param hash32 The hash code to test.
+   * @return False, if the hash code was definitely not added, true, if it might have been added.
+   */
+  public boolean testHash(int hash32) {
+    final int hash2 = mix(hash32);
+    final int bitSize = bitSet.bitSize();
+    for (int i = 1; i <= numHashFunctions; i++) {
+      int combinedHash = hash32 + i * hash2;
+      if (combinedHash < 0) {
+        combinedHash = ~combinedHash;
+      }
+      if (!bitSet.get(combinedHash % bitSize)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Removes all entries from the filter by clearing its bits. */
+  public void reset() {
+    bitSet.clear();
+  }
+
+  /**
+   * Adds all entries of the other filter to this filter, by OR-ing the bits word by word.
+   *
+   * @param other The filter to merge, with the same size and number of hash functions.
+   */
+  public void merge(BloomFilter other) {
+    if (other.numHashFunctions != numHashFunctions) {
+      throw new IllegalArgumentException(
+          "Bloom filters with different numbers of hash functions cannot be merged.");
+    }
+    bitSet.or(other.bitSet);
+  }
+
+  /** The finalization step of MurmurHash3, to derive a second, independent hash code. */
+  private static int mix(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  @Override
+  public String toString() {
+    return "BloomFilter{expectedEntries="
+        + expectedEntries
+        + ", numHashFunctions="
+        + numHashFunctions
+        + ", byteSize="
+        + bitSet.byteSize()
+        + '}';
+  }
+}
@@ -0,0 +1,169 @@
+package org.apache.flink.runtime.state;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.apache.flink.api.common.state.State;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+/**
+ * Base class for keyed state backends. It keeps the current key and its key group, and the
+ * registry of the states by name.
+ *
+ * @param <K> The type of the keys.
+ */
+public abstract class AbstractKeyedStateBackend<K> implements KeyedStateBackend<K> {
+
+  protected final TypeSerializer<K> keySerializer;
+
+  protected final int numberOfKeyGroups;
+
+  protected final KeyGroupRange keyGroupRange;
+
+  private final HashMap<String, State> states = new HashMap<>();
+
+  private K currentKey;
+
+  private int currentKeyGroupIndex;
+
+  private boolean disposed;
+
+  protected AbstractKeyedStateBackend(
+      TypeSerializer<K> keySerializer, int numberOfKeyGroups, KeyGroupRange keyGroupRange) {
+    if (keySerializer == null || keyGroupRange == null) {
+      throw new NullPointerException();
+    }
+    KeyGroupRangeAssignment.checkNumberOfKeyGroups(numberOfKeyGroups);
+    if (keyGroupRange.getEndKeyGroup() >= numberOfKeyGroups) {
+      throw new IllegalArgumentException(
+          keyGroupRange + " exceeds the number of key groups " + numberOfKeyGroups + '.');
+    }
+    this.keySerializer = keySerializer;
+    this.numberOfKeyGroups = numberOfKeyGroups;
+    this.keyGroupRange = keyGroupRange;
+  }
+
+  @Override
+  public void setCurrentKey(K key) {
+    final int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(key, numberOfKeyGroups);
+    if (!keyGroupRange.contains(keyGroup)) {
+      throw new IllegalArgumentException(
+          "The key " + key + " of key group " + keyGroup + " is not within " + keyGroupRange + '.');
+    }
+    this.currentKey = key;
+    this.currentKeyGroupIndex = keyGroup;
+    onCurrentKeyChanged();
+  }
+
+  /** Called after the current key has changed. */
+  protected void onCurrentKeyChanged() {}
+
+  @Override
+  public K getCurrentKey() {
+    return currentKey;
+  }
+
+  @Override
+  public int getCurrentKeyGroupIndex() {
+    return currentKeyGroupIndex;
+  }
+
+  @Override
+  public int getNumberOfKeyGroups() {
+    return numberOfKeyGroups;
+  }
+
+  @Override
+  public KeyGroupRange getKeyGroupRange() {
+    return keyGroupRange;
+  }
+
+  /** Checks that a current key is set, before a state is accessed. */
+  protected void checkCurrentKey() {
+    if (currentKey == null) {
+      throw new IllegalStateException("No current key is set.");
+    }
+  }
+
+  /** Checks that the given key group is within the key group range of this backend. */
+  protected void checkKeyGroup(int keyGroup) {
+    if (!keyGroupRange.contains(keyGroup)) {
+      throw new IllegalArgumentException(
+          "The key group " + keyGroup + " is not within " + keyGroupRange + '.');
+    }
+  }
+
+  /**
+   * Gets the state registered under the given name, or registers the state created by the given
+   * factory.
+   *
+   * <p>The registered state is checked against the class of the states the factory creates, but
+   * not against the type arguments of the requested state, which are erased. Like a state that is
+   * registered again under the same name, it is returned as the requested type.
+   *
+   * @param name The name of the state.
+   * @param type The class of the states the factory creates.
+   * @param factory The factory that creates the state, if it is not registered yet.
+   * @param <S> The requested type of the state, for example {@code ValueState<T>}.
+   * @return The state registered under the name.
+   * @throws IllegalStateException Thrown, if a state of another class is registered under the name.
+   */
+  @SuppressWarnings("unchecked")
+  protected <S extends State> S getOrCreateState(
+      String name, Class<?> type, Supplier<? extends S> factory) {
+    if (name == null) {
+      throw new NullPointerException("name");
+    }
+    if (disposed) {
+      throw new IllegalStateException("The state backend has been disposed.");
+    }
+    final State state = states.get(name);
+    if (state == null) {
+      final S created = factory.get();
+      states.put(name, created);
+      return created;
+    }
+    if (!type.isInstance(state)) {
+      throw new IllegalStateException(
+          "The state '" + name + "' is not a " + type.getSimpleName() + '.');
+    }
+    return (S) state;
+  }
+
+  /**
+   * Gets the state registered under the given name.
+   *
+   * @param name The name of the state.
+   * @return The state.
+   * @throws IllegalArgumentException Thrown, if no state is registered under the name.
+   */
+  protected State getRegisteredState(String name) {
+    final State state = states.get(name);
+    if (state == null) {
+      throw new IllegalArgumentException("No state is registered under the name '" + name + "'.");
+    }
+    return state;
+  }
+
+  /**
+   * Gets the registered states by name.
+   *
+   * @return An unmodifiable view of the registered states.
+   */
+  protected Map<String, State> getRegisteredStates() {
+    return Collections.unmodifiableMap(states);
+  }
+
+  @Override
+  public void dispose() {
+    if (!disposed) {
+      disposed = true;
+      states.clear();
+      disposeResources();
+    }
+  }
+
+  /** Releases the resources of the backend, once. */
+  protected abstract void disposeResources();
+}
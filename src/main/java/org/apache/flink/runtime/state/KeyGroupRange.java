@@ -0,0 +1,88 @@
+package org.apache.flink.runtime.state;
+
+import java.io.Serializable;
+
+/**
+ * A contiguous range of key groups, from a start to an end key group, both inclusive.
+ *
+ * <p>Keys are assigned to a fixed number of key groups, see {@link KeyGroupRangeAssignment}. A
+ * keyed state backend holds the state of one range of key groups, so that the state can be
+ * redistributed in whole key groups when the parallelism changes.
+ */
+public final class KeyGroupRange implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int startKeyGroup;
+
+  private final int endKeyGroup;
+
+  /**
+   * Creates a range of key groups.
+   *
+   * @param startKeyGroup The first key group of the range.
+   * @param endKeyGroup The last key group of the range, inclusive.
+   */
+  public KeyGroupRange(int startKeyGroup, int endKeyGroup) {
+    if (startKeyGroup < 0 || endKeyGroup < startKeyGroup) {
+      throw new IllegalArgumentException(
+          "Invalid key group range [" + startKeyGroup + ", " + endKeyGroup + "].");
+    }
+    this.startKeyGroup = startKeyGroup;
+    this.endKeyGroup = endKeyGroup;
+  }
+
+  /**
+   * Creates the range of all key groups of the given number of key groups.
+   *
+   * @param numberOfKeyGroups The number of key groups.
+   * @return The range from key group 0 to the last key group.
+   */
+  public static KeyGroupRange of(int numberOfKeyGroups) {
+    return new KeyGroupRange(0, numberOfKeyGroups - 1);
+  }
+
+  public int getStartKeyGroup() {
+    return startKeyGroup;
+  }
+
+  public int getEndKeyGroup() {
+    return endKeyGroup;
+  }
+
+  public int getNumberOfKeyGroups() {
+    return endKeyGroup - startKeyGroup + 1;
+  }
+
+  /**
+   * Checks whether the given key group is within this range.
+   *
+   * @param keyGroup The key group.
+   * @return True, if the key group is within the range, false otherwise.
+   */
+  public boolean contains(int keyGroup) {
+    return keyGroup >= startKeyGroup && keyGroup <= endKeyGroup;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof KeyGroupRange)) {
+      return false;
+    }
+    KeyGroupRange that = (KeyGroupRange) o;
+    return startKeyGroup == that.startKeyGroup && endKeyGroup == that.endKeyGroup;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * startKeyGroup + endKeyGroup;
+  }
+
+  @Override
+  public String toString() {
+    return "KeyGroupRange{startKeyGroup=" + startKeyGroup + ", endKeyGroup=" + endKeyGroup + '}';
+  }
+}
@@ -0,0 +1,56 @@
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.util.MathUtils;
+
+/** Assigns keys to key groups. */
+public final class KeyGroupRangeAssignment {
+
+  /** The largest number of key groups, which allows to encode a key group in two bytes. */
+  public static final int UPPER_BOUND_NUMBER_OF_KEY_GROUPS = 1 << 15;
+
+  /**
+   * Assigns the given key to a key group. The key's hash code is scrambled first, so that keys
+   * with regular hash codes, like small integers, are spread over the key groups as well.
+   *
+   * @param key The key, which must not be null.
+   * @param numberOfKeyGroups The number of key groups.
+   * @return The key group of the key, between 0 (inclusive) and the number of key groups.
+   */
+  public static int assignToKeyGroup(Object key, int numberOfKeyGroups) {
+    if (key == null) {
+      throw new NullPointerException("Assigned key must not be null.");
+    }
+    return computeKeyGroupForKeyHash(key.hashCode(), numberOfKeyGroups);
+  }
+
+  /**
+   * Assigns the given key hash code to a key group.
+   *
+   * @param keyHash The hash code of the key.
+   * @param numberOfKeyGroups The number of key groups.
+   * @return The key group of the hash code, between 0 (inclusive) and the number of key groups.
+   */
+  public static int computeKeyGroupForKeyHash(int keyHash, int numberOfKeyGroups) {
+    return MathUtils.jenkinsHash(keyHash) % numberOfKeyGroups;
+  }
+
+  /**
+   * Checks that the given number of key groups is positive and not larger than {@link
+   * #UPPER_BOUND_NUMBER_OF_KEY_GROUPS}.
+   *
+   * @param numberOfKeyGroups The number of key groups.
+   * @throws IllegalArgumentException Thrown, if the number is out of bounds.
+   */
+  public static void checkNumberOfKeyGroups(int numberOfKeyGroups) {
+    if (numberOfKeyGroups <= 0 || numberOfKeyGroups > UPPER_BOUND_NUMBER_OF_KEY_GROUPS) {
+      throw new IllegalArgumentException(
+          "The number of key groups must be between 1 and "
+              + UPPER_BOUND_NUMBER_OF_KEY_GROUPS
+              + ", but was "
+              + numberOfKeyGroups
+              + '.');
+    }
+  }
+
+  private KeyGroupRangeAssignment() {}
+}
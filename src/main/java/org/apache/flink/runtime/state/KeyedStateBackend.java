@@ -0,0 +1,123 @@
+package org.apache.flink.runtime.state;
+
+import java.util.Iterator;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.ReducingState;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+/**
+ * A backend for the partitioned state of one operator instance. The backend holds the state of the
+ * key groups of its {@link KeyGroupRange}. Before the operator processes a record, the runtime sets
+ * the key of the record as the {@link #setCurrentKey(Object) current key}; all state objects of the
+ * backend then read and write the values of that key.
+ *
+ * <p>States are registered by name. Asking for a state under a name that is registered already
+ * returns the registered state, if it is of the same kind.
+ *
+ * <p>Backends are not thread-safe. They are used by the thread that processes the records.
+ *
+ * @param <K> The type of the keys.
+ */
+public interface KeyedStateBackend<K> {
+
+  /**
+   * Sets the key that the states refer to.
+   *
+   * @param key The key of the record that is processed next.
+   * @throws IllegalArgumentException Thrown, if the key does not belong to the key group range of
+   *     this backend.
+   */
+  void setCurrentKey(K key);
+
+  /**
+   * Gets the key that the states refer to.
+   *
+   * @return The current key, or null, if no key was set yet.
+   */
+  K getCurrentKey();
+
+  /**
+   * Gets the key group of the current key.
+   *
+   * @return The key group of the current key.
+   */
+  int getCurrentKeyGroupIndex();
+
+  /**
+   * Gets the total number of key groups, which is the same for all backends of an operator.
+   *
+   * @return The total number of key groups.
+   */
+  int getNumberOfKeyGroups();
+
+  /**
+   * Gets the range of key groups whose state this backend holds.
+   *
+   * @return The key group range of this backend.
+   */
+  KeyGroupRange getKeyGroupRange();
+
+  /**
+   * Gets or registers a value state.
+   *
+   * @param name The name of the state.
+   * @param serializer The serializer of the values.
+   * @param <T> The type of the values.
+   * @return The value state.
+   */
+  <T> ValueState<T> getValueState(String name, TypeSerializer<T> serializer);
+
+  /**
+   * Gets or registers a list state.
+   *
+   * @param name The name of the state.
+   * @param elementSerializer The serializer of the list elements.
+   * @param <T> The type of the list elements.
+   * @return The list state.
+   */
+  <T> ListState<T> getListState(String name, TypeSerializer<T> elementSerializer);
+
+  /**
+   * Gets or registers a reducing state.
+   *
+   * @param name The name of the state.
+   * @param reduceFunction The function that combines the added values.
+   * @param serializer The serializer of the values.
+   * @param <T> The type of the values.
+   * @return The reducing state.
+   */
+  <T> ReducingState<T> getReducingState(
+      String name, ReduceFunction<T> reduceFunction, TypeSerializer<T> serializer);
+
+  /**
+   * Gets or registers a map state.
+   *
+   * @param name The name of the state.
+   * @param userKeySerializer The serializer of the user keys. It must produce the same bytes for
+   *     equal user keys.
+   * @param userValueSerializer The serializer of the user values.
+   * @param <UK> The type of the user keys.
+   * @param <UV> The type of the user values.
+   * @return The map state.
+   */
+  <UK, UV> MapState<UK, UV> getMapState(
+      String name, TypeSerializer<UK> userKeySerializer, TypeSerializer<UV> userValueSerializer);
+
+  /**
+   * Gets the keys of one key group that have a value in the given state. The iterator must not be
+   * used after the state has been modified.
+   *
+   * @param state The name of the state.
+   * @param keyGroup The key group, within the key group range of this backend.
+   * @return An iterator over the keys.
+   * @throws IllegalArgumentException Thrown, if no state is registered under the name, or if the
+   *     key group is not within the key group range.
+   */
+  Iterator<K> getKeys(String state, int keyGroup);
+
+  /** Releases all resources of the backend. The states must not be used afterwards. */
+  void dispose();
+}
@@ -0,0 +1,26 @@
+package org.apache.flink.runtime.state;
+
+import java.io.IOException;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+/**
+ * A state backend defines where the partitioned state of the operators of a job is kept, and
+ * creates a {@link KeyedStateBackend} for every keyed operator instance. A job selects its backend
+ * through the {@link StateBackendLoader}.
+ */
+public interface StateBackend {
+
+  /**
+   * Creates the keyed state backend of one operator instance.
+   *
+   * @param keySerializer The serializer of the keys. It must produce the same bytes for equal keys.
+   * @param numberOfKeyGroups The total number of key groups of the operator.
+   * @param keyGroupRange The key groups of the operator instance.
+   * @param <K> The type of the keys.
+   * @return The keyed state backend.
+   * @throws IOException Thrown, if the resources of the backend cannot be acquired.
+   */
+  <K> KeyedStateBackend<K> createKeyedStateBackend(
+      TypeSerializer<K> keySerializer, int numberOfKeyGroups, KeyGroupRange keyGroupRange)
+      throws IOException;
+}
@@ -0,0 +1,115 @@
+package org.apache.flink.runtime.state;
+
+import java.util.Locale;
+import java.util.Properties;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.runtime.state.heap.HeapStateBackend;
+import org.apache.flink.runtime.state.offheap.OffHeapStateBackend;
+
+/**
+ * Creates the state backend that the configuration of a job selects. The configuration keys are:
+ *
+ * <ul>
+ *   <li>{@value #STATE_BACKEND}: {@value #HEAP} (the default) or {@value #OFF_HEAP}.
+ *   <li>{@value #OFF_HEAP_MEMORY_SIZE}: the memory budget of the off-heap state, in bytes, with an
+ *       optional unit suffix {@code k}, {@code m} or {@code g}. Defaults to 64 MiBytes.
+ *   <li>{@value #OFF_HEAP_PAGE_SIZE}: the page size of the off-heap state, in bytes, with an
+ *       optional unit suffix. Defaults to {@link MemoryManager#DEFAULT_PAGE_SIZE}.
+ * </ul>
+ */
+public final class StateBackendLoader {
+
+  /** The key of the state backend name. */
+  public static final String STATE_BACKEND = "state.backend";
+
+  /** The key of the memory budget of the off-heap state backend. */
+  public static final String OFF_HEAP_MEMORY_SIZE = "state.backend.off-heap.memory-size";
+
+  /** The key of the page size of the off-heap state backend. */
+  public static final String OFF_HEAP_PAGE_SIZE = "state.backend.off-heap.page-size";
+
+  /** The name of the heap state backend. */
+  public static final String HEAP = "heap";
+
+  /** The name of the off-heap state backend. */
+  public static final String OFF_HEAP = "off-heap";
+
+  /** The default memory budget of the off-heap state backend. */
+  public static final long DEFAULT_OFF_HEAP_MEMORY_SIZE = 64L << 20;
+
+  /**
+   * Creates the state backend selected by the given configuration.
+   *
+   * @param config The configuration of the job.
+   * @return The state backend.
+   * @throws IllegalArgumentException Thrown, if the configuration names an unknown backend or
+   *     contains a malformed size.
+   */
+  public static StateBackend loadStateBackend(Properties config) {
+    final String name = config.getProperty(STATE_BACKEND, HEAP).trim().toLowerCase(Locale.ROOT);
+    switch (name) {
+      case HEAP:
+        return new HeapStateBackend();
+      case OFF_HEAP:
+        final long memorySize =
+            parseSize(config, OFF_HEAP_MEMORY_SIZE, DEFAULT_OFF_HEAP_MEMORY_SIZE);
+        final long pageSize =
+            parseSize(config, OFF_HEAP_PAGE_SIZE, MemoryManager.DEFAULT_PAGE_SIZE);
+        if (pageSize > Integer.MAX_VALUE) {
+          throw new IllegalArgumentException(
+              "The value of '" + OFF_HEAP_PAGE_SIZE + "' is too large: " + pageSize);
+        }
+        return new OffHeapStateBackend(memorySize, (int) pageSize);
+      default:
+        throw new IllegalArgumentException(
+            "Unknown state backend '"
+                + name
+                + "'. Valid values of '"
+                + STATE_BACKEND
+                + "' are '"
+                + HEAP
+                + "' and '"
+                + OFF_HEAP
+                + "'.");
+    }
+  }
+
+  private static long parseSize(Properties config, String key, long defaultValue) {
+    final String value = config.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    String text = value.trim().toLowerCase(Locale.ROOT);
+    int shift = 0;
+    if (!text.isEmpty()) {
+      switch (text.charAt(text.length() - 1)) {
+        case 'k':
+          shift = 10;
+          break;
+        case 'm':
+          shift = 20;
+          break;
+        case 'g':
+          shift = 30;
+          break;
+        default:
+          break;
+      }
+    }
+    if (shift > 0) {
+      text = text.substring(0, text.length() - 1).trim();
+    }
+    try {
+      final long size = Long.parseLong(text);
+      if (size <= 0 || size > (Long.MAX_VALUE >> shift)) {
+        throw new IllegalArgumentException(
+            "The value of '" + key + "' is out of range: " + value);
+      }
+      return size << shift;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The value of '" + key + "' is not a size: " + value, e);
+    }
+  }
+
+  private StateBackendLoader() {}
+}
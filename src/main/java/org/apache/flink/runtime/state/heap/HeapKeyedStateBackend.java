@@ -0,0 +1,264 @@
+package org.apache.flink.runtime.state.heap;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.ReducingState;
+import org.apache.flink.api.common.state.State;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.KeyGroupRange;
+
+/**
+ * A keyed state backend that keeps the values as objects in hash maps, one map per state and key
+ * group. The values are stored by reference, without copies.
+ *
+ * @param <K> The type of the keys.
+ */
+public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
+
+  public HeapKeyedStateBackend(
+      TypeSerializer<K> keySerializer, int numberOfKeyGroups, KeyGroupRange keyGroupRange) {
+    super(keySerializer, numberOfKeyGroups, keyGroupRange);
+  }
+
+  @Override
+  public <T> ValueState<T> getValueState(String name, TypeSerializer<T> serializer) {
+    return getOrCreateState(name, HeapValueState.class, HeapValueState::new);
+  }
+
+  @Override
+  public <T> ListState<T> getListState(String name, TypeSerializer<T> elementSerializer) {
+    return getOrCreateState(name, HeapListState.class, HeapListState::new);
+  }
+
+  @Override
+  public <T> ReducingState<T> getReducingState(
+      String name, ReduceFunction<T> reduceFunction, TypeSerializer<T> serializer) {
+    if (reduceFunction == null) {
+      throw new NullPointerException("reduceFunction");
+    }
+    return getOrCreateState(
+        name, HeapReducingState.class, () -> new HeapReducingState<>(reduceFunction));
+  }
+
+  @Override
+  public <UK, UV> MapState<UK, UV> getMapState(
+      String name, TypeSerializer<UK> userKeySerializer, TypeSerializer<UV> userValueSerializer) {
+    return getOrCreateState(name, HeapMapState.class, HeapMapState::new);
+  }
+
+  @Override
+  public Iterator<K> getKeys(String state, int keyGroup) {
+    checkKeyGroup(keyGroup);
+    return heapState(getRegisteredState(state)).keyGroupMap(keyGroup)
+        .keySet()
+        .iterator();
+  }
+
+  @Override
+  protected void disposeResources() {}
+
+  /** Gets the given state, which this backend created, as the heap state it is. */
+  @SuppressWarnings("unchecked")
+  private AbstractHeapState<?> heapState(State state) {
+    return (AbstractHeapState<?>) state;
+  }
+
+  // ------------------------------------------------------------------------
+  //  States
+  // ------------------------------------------------------------------------
+
+  /** The base of the heap states, with one map from key to value per key group. */
+  private abstract class AbstractHeapState<V> {
+
+    private final HashMap<K, V>[] maps;
+
+    @SuppressWarnings("unchecked")
+    AbstractHeapState() {
+      this.maps = (HashMap<K, V>[]) new HashMap<?, ?>[keyGroupRange.getNumberOfKeyGroups()];
+      for (int i = 0; i < maps.length; i++) {
+        maps[i] = new HashMap<>();
+      }
+    }
+
+    HashMap<K, V> keyGroupMap(int keyGroup) {
+      return maps[keyGroup - keyGroupRange.getStartKeyGroup()];
+    }
+
+    V getCurrent() {
+      checkCurrentKey();
+      return keyGroupMap(getCurrentKeyGroupIndex()).get(getCurrentKey());
+    }
+
+    void putCurrent(V value) {
+      checkCurrentKey();
+      keyGroupMap(getCurrentKeyGroupIndex()).put(getCurrentKey(), value);
+    }
+
+    public void clear() {
+      checkCurrentKey();
+      keyGroupMap(getCurrentKeyGroupIndex()).remove(getCurrentKey());
+    }
+  }
+
+  private final class HeapValueState<T> extends AbstractHeapState<T> implements ValueState<T> {
+
+    @Override
+    public T value() {
+      return getCurrent();
+    }
+
+    @Override
+    public void update(T value) {
+      if (value == null) {
+        clear();
+      } else {
+        putCurrent(value);
+      }
+    }
+  }
+
+  private final class HeapReducingState<T> extends AbstractHeapState<T>
+      implements ReducingState<T> {
+
+    private final ReduceFunction<T> reduceFunction;
+
+    HeapReducingState(ReduceFunction<T> reduceFunction) {
+      this.reduceFunction = reduceFunction;
+    }
+
+    @Override
+    public T get() {
+      return getCurrent();
+    }
+
+    @Override
+    public void add(T value) throws Exception {
+      if (value == null) {
+        return;
+      }
+      final T current = getCurrent();
+      putCurrent(current == null ? value : reduceFunction.reduce(current, value));
+    }
+  }
+
+  private final class HeapListState<T> extends AbstractHeapState<ArrayList<T>>
+      implements ListState<T> {
+
+    @Override
+    public Iterable<T> get() {
+      final ArrayList<T> list = getCurrent();
+      return list == null ? new ArrayList<>() : list;
+    }
+
+    @Override
+    public void add(T value) {
+      if (value == null) {
+        throw new NullPointerException("List state elements must not be null.");
+      }
+      ArrayList<T> list = getCurrent();
+      if (list == null) {
+        list = new ArrayList<>();
+        putCurrent(list);
+      }
+      list.add(value);
+    }
+
+    @Override
+    public void update(List<T> values) {
+      clear();
+      addAll(values);
+    }
+
+    @Override
+    public void addAll(List<T> values) {
+      if (values != null) {
+        for (T value : values) {
+          add(value);
+        }
+      }
+    }
+  }
+
+  private final class HeapMapState<UK, UV> extends AbstractHeapState<HashMap<UK, UV>>
+      implements MapState<UK, UV> {
+
+    @Override
+    public UV get(UK key) {
+      final HashMap<UK, UV> map = getCurrent();
+      return map == null ? null : map.get(key);
+    }
+
+    @Override
+    public void put(UK key, UV value) {
+      HashMap<UK, UV> map = getCurrent();
+      if (map == null) {
+        map = new HashMap<>();
+        putCurrent(map);
+      }
+      map.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<UK, UV> map) {
+      for (Map.Entry<UK, UV> entry : map.entrySet()) {
+        put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    @Override
+    public void remove(UK key) {
+      final HashMap<UK, UV> map = getCurrent();
+      if (map != null) {
+        map.remove(key);
+        if (map.isEmpty()) {
+          clear();
+        }
+      }
+    }
+
+    @Override
+    public boolean contains(UK key) {
+      final HashMap<UK, UV> map = getCurrent();
+      return map != null && map.containsKey(key);
+    }
+
+    @Override
+    public Iterable<Map.Entry<UK, UV>> entries() {
+      final HashMap<UK, UV> map = getCurrent();
+      final List<Map.Entry<UK, UV>> entries = new ArrayList<>();
+      if (map != null) {
+        for (Map.Entry<UK, UV> entry : map.entrySet()) {
+          entries.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+        }
+      }
+      return entries;
+    }
+
+    @Override
+    public Iterable<UK> keys() {
+      final HashMap<UK, UV> map = getCurrent();
+      return map == null ? new ArrayList<>() : new ArrayList<>(map.keySet());
+    }
+
+    @Override
+    public Iterable<UV> values() {
+      final HashMap<UK, UV> map = getCurrent();
+      return map == null ? new ArrayList<>() : new ArrayList<>(map.values());
+    }
+
+    @Override
+    public boolean isEmpty() {
+      final HashMap<UK, UV> map = getCurrent();
+      return map == null || map.isEmpty();
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyedStateBackend;
+import org.apache.flink.runtime.state.StateBackend;
+
+/**
+ * The default state backend, which keeps the state as objects on the JVM heap. Accesses are fast,
+ * but a large number of keys puts a large number of long-lived objects on the heap.
+ */
+public class HeapStateBackend implements StateBackend {
+
+  @Override
+  public <K> KeyedStateBackend<K> createKeyedStateBackend(
+      TypeSerializer<K> keySerializer, int numberOfKeyGroups, KeyGroupRange keyGroupRange) {
+    return new HeapKeyedStateBackend<>(keySerializer, numberOfKeyGroups, keyGroupRange);
+  }
+
+  @Override
+  public String toString() {
+    return "HeapStateBackend";
+  }
+}
@@ -0,0 +1,180 @@
+package org.apache.flink.runtime.state.offheap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.util.Crc32C;
+
+/**
+ * The pages of a {@link SpaceAllocator} as they were at a snapshot barrier, shared between the
+ * task thread, which keeps modifying the state, and the snapshot thread, which writes the pages.
+ *
+ * <p>Every page that the snapshot writes is <i>shared</i> until the snapshot thread has written
+ * it. The first write of the task thread to a shared page copies the page and replaces it in the
+ * live page list by the copy, so that the snapshot keeps the page as it was at the barrier. The
+ * original page is returned to the memory manager by whichever thread is done with it last: by
+ * the snapshot thread after writing it, or by the task thread, if the snapshot thread had already
+ * written the page when the task thread copied it. Pages that are not written by the snapshot are
+ * never shared.
+ *
+ * <p>The task thread only performs a compare-and-swap per copied page, and never waits for the
+ * snapshot thread, unless the memory budget has no page left for a copy. The snapshot thread
+ * writes the pages under the lock of this object, so that closing the pages never releases a page
+ * that is being written.
+ */
+final class CopyOnWritePages {
+
+  /** The page is part of the snapshot and still in the live page list. */
+  private static final int SHARED = 0;
+
+  /** The page is part of the snapshot and was replaced in the live page list by a copy. */
+  private static final int COPIED = 1;
+
+  /** The snapshot does not need the page (anymore). */
+  private static final int RELEASED = 2;
+
+  private final MemoryManager memoryManager;
+
+  /** The pages at the barrier. */
+  private final MemorySegment[] pages;
+
+  private final AtomicIntegerArray states;
+
+  /** The indexes of the pages that the snapshot writes. */
+  private final BitSet pagesToWrite;
+
+  private volatile boolean closed;
+
+  /**
+   * Shares the given pages with a snapshot.
+   *
+   * @param memoryManager The memory manager the pages belong to.
+   * @param livePages The live pages of the allocator.
+   * @param pagesToWrite The indexes of the pages that the snapshot writes.
+   */
+  CopyOnWritePages(
+      MemoryManager memoryManager, List<MemorySegment> livePages, BitSet pagesToWrite) {
+    this.memoryManager = memoryManager;
+    this.pages = livePages.toArray(new MemorySegment[0]);
+    this.states = new AtomicIntegerArray(pages.length);
+    this.pagesToWrite = pagesToWrite;
+    for (int i = 0; i < pages.length; i++) {
+      if (!pagesToWrite.get(i)) {
+        states.set(i, RELEASED);
+      }
+    }
+  }
+
+  /** Gets the number of pages at the barrier. */
+  int getNumberOfPages() {
+    return pages.length;
+  }
+
+  /** Gets the number of pages that the snapshot writes. */
+  int getNumberOfPagesToWrite() {
+    return pagesToWrite.cardinality();
+  }
+
+  /** Gets the indexes of the pages that the snapshot writes. */
+  BitSet getPagesToWrite() {
+    return pagesToWrite;
+  }
+
+  /** Checks whether the snapshot has written all pages or has been cancelled. */
+  boolean isClosed() {
+    return closed;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Task thread
+  // ------------------------------------------------------------------------
+
+  /** Checks whether the given page must be copied before it is modified. */
+  boolean isShared(int page) {
+    return page < pages.length && states.get(page) == SHARED;
+  }
+
+  /**
+   * Notes that the task thread replaced the given page by a copy in the live page list. Releases
+   * the original page, if the snapshot is already done with it.
+   */
+  void copied(int page) {
+    if (!states.compareAndSet(page, SHARED, COPIED)) {
+      memoryManager.release(pages[page]);
+    }
+  }
+
+  /**
+   * Waits until the snapshot is done with the given page, so that the page can be modified
+   * without being copied. Used when the memory budget has no page left for a copy.
+   */
+  synchronized void awaitReleased(int page) {
+    boolean interrupted = false;
+    while (states.get(page) == SHARED) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Snapshot thread
+  // ------------------------------------------------------------------------
+
+  /**
+   * Writes the given page to the channel, and releases it.
+   *
+   * @return The CRC-32C checksum of the page.
+   * @throws IOException Thrown, if the pages have been closed, or if writing fails.
+   */
+  synchronized int write(int page, FileChannel channel) throws IOException {
+    if (closed) {
+      throw new IOException("The snapshot has been cancelled.");
+    }
+    final MemorySegment segment = pages[page];
+    final int checksum = Crc32C.compute(segment, 0, segment.size());
+    final ByteBuffer buffer = segment.wrap(0, segment.size());
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    release(page);
+    notifyAll();
+    return checksum;
+  }
+
+  /** Releases all pages that the snapshot has not written. The pages must not be used anymore. */
+  synchronized void close() {
+    if (!closed) {
+      closed = true;
+      for (int i = 0; i < pages.length; i++) {
+        release(i);
+      }
+      notifyAll();
+    }
+  }
+
+  private void release(int page) {
+    while (true) {
+      final int state = states.get(page);
+      if (state == RELEASED) {
+        return;
+      }
+      if (states.compareAndSet(page, state, RELEASED)) {
+        if (state == COPIED) {
+          memoryManager.release(pages[page]);
+        }
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,695 @@
+package org.apache.flink.runtime.state.offheap;
+
+import static org.apache.flink.runtime.state.offheap.SpaceAllocator.NULL;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.ReducingState;
+import org.apache.flink.api.common.state.State;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.disk.RandomAccessInputView;
+import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.KeyGroupRange;
+
+/**
+ * A keyed state backend that keeps the keys and values in serialized form in off-heap memory
+ * pages, so that the number of keys does not affect the garbage collection.
+ *
+ * <p>Every state is a {@link SkipListStateMap} over the pages of the backend, which are taken from
+ * a {@link MemoryManager} and bound the memory of the state. The keys of the map start with the key
+ * group and the serialized key:
+ *
+ * <pre>
+ * +---------------+----------------+-----------+---------------------------------+
+ * | key group: 2  | key length: 4  | key bytes | user key bytes (map state only) |
+ * +---------------+----------------+-----------+---------------------------------+
+ * </pre>
+ *
+ * <p>As the key group comes first in big endian order, the keys of one key group are adjacent,
+ * which lets {@link #getKeys(String, int)} iterate a key group without a scan over all keys. The
+ * map state stores one entry per user key behind the prefix of its key, so that the entries of a
+ * key are adjacent as well. The key serializer and the user key serializers must therefore produce
+ * the same bytes for equal keys. The serialized current key is cached until the key changes.
+ *
+ * <p>List states append every element as its own chunk, so adding an element does not copy the
+ * list. Single values and list elements must fit into one page.
+ *
+ * <p>{@link #snapshot(long, Path, boolean) Snapshots} are taken asynchronously. At the barrier,
+ * the pages are only marked copy-on-write, and the snapshot thread streams them to a local
+ * checkpoint file, while the task thread keeps modifying the state on copies of the pages it
+ * writes to. Incremental snapshots only write the pages modified since the previous snapshot.
+ *
+ * @param <K> The type of the keys.
+ */
+public class OffHeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
+
+  /** The length of the key group and key length fields in front of the key bytes. */
+  private static final int KEY_HEADER_LENGTH = 6;
+
+  private final SpaceAllocator space;
+
+  private final RandomAccessInputView reader;
+
+  private final DataOutputSerializer keyOut = new DataOutputSerializer(64);
+
+  private final DataOutputSerializer valueOut = new DataOutputSerializer(64);
+
+  /** The length of the serialized current key, or -1, if it is not serialized yet. */
+  private int currentKeyLength = -1;
+
+  /** The maps of the restored states that have not been registered again yet. */
+  private final HashMap<String, RestoredMap> restoredMaps = new HashMap<>();
+
+  /** The last completed snapshot, or null, if the next snapshot must be a full snapshot. */
+  private volatile OffHeapSnapshot lastSnapshot;
+
+  /**
+   * Creates a backend that takes its memory from the given memory manager.
+   *
+   * @param keySerializer The serializer of the keys.
+   * @param numberOfKeyGroups The total number of key groups.
+   * @param keyGroupRange The key groups of this backend.
+   * @param memoryManager The memory manager of off-heap pages.
+   * @throws IOException Thrown, if the memory manager has no page left.
+   */
+  public OffHeapKeyedStateBackend(
+      TypeSerializer<K> keySerializer,
+      int numberOfKeyGroups,
+      KeyGroupRange keyGroupRange,
+      MemoryManager memoryManager)
+      throws IOException {
+    super(keySerializer, numberOfKeyGroups, keyGroupRange);
+    this.space = new SpaceAllocator(memoryManager, this);
+    this.reader = new RandomAccessInputView(space.pages, space.getPageSize());
+  }
+
+  /**
+   * Creates a backend that takes its memory from the given memory manager, with the state of the
+   * given snapshot. The states of the snapshot are available once they are registered again, with
+   * the same kind. The next incremental snapshot builds upon the restored snapshot.
+   *
+   * @param keySerializer The serializer of the keys.
+   * @param numberOfKeyGroups The total number of key groups.
+   * @param keyGroupRange The key groups of this backend.
+   * @param memoryManager The memory manager of off-heap pages.
+   * @param snapshotFile The checkpoint file of the snapshot to restore.
+   * @throws IOException Thrown, if the snapshot cannot be read, does not match the key groups, or
+   *     exceeds the memory budget.
+   */
+  public OffHeapKeyedStateBackend(
+      TypeSerializer<K> keySerializer,
+      int numberOfKeyGroups,
+      KeyGroupRange keyGroupRange,
+      MemoryManager memoryManager,
+      Path snapshotFile)
+      throws IOException {
+    super(keySerializer, numberOfKeyGroups, keyGroupRange);
+    final SnapshotFiles.Restored restored =
+        SnapshotFiles.restore(snapshotFile, memoryManager, this, numberOfKeyGroups, keyGroupRange);
+    this.space = restored.space;
+    this.reader = new RandomAccessInputView(space.pages, space.getPageSize());
+    try {
+      final DataInputView in = restored.stateMetadata;
+      for (int i = in.readInt(); i > 0; i--) {
+        final String name = in.readUTF();
+        final int kind = in.readByte();
+        if (kind < 0 || kind >= StateKind.values().length) {
+          throw new IOException("Unknown kind of the state '" + name + "'.");
+        }
+        restoredMaps.put(
+            name, new RestoredMap(StateKind.values()[kind], new SkipListStateMap(space, in)));
+      }
+    } catch (IOException | RuntimeException e) {
+      space.dispose();
+      throw e;
+    }
+    this.lastSnapshot = restored.snapshot;
+  }
+
+  // ------------------------------------------------------------------------
+  //  States
+  // ------------------------------------------------------------------------
+
+  @Override
+  public <T> ValueState<T> getValueState(String name, TypeSerializer<T> serializer) {
+    return getOrCreateState(
+        name,
+        OffHeapValueState.class,
+        () -> new OffHeapValueState<>(name, serializer.duplicate()));
+  }
+
+  @Override
+  public <T> ListState<T> getListState(String name, TypeSerializer<T> elementSerializer) {
+    return getOrCreateState(
+        name,
+        OffHeapListState.class,
+        () -> new OffHeapListState<>(name, elementSerializer.duplicate()));
+  }
+
+  @Override
+  public <T> ReducingState<T> getReducingState(
+      String name, ReduceFunction<T> reduceFunction, TypeSerializer<T> serializer) {
+    if (reduceFunction == null) {
+      throw new NullPointerException("reduceFunction");
+    }
+    return getOrCreateState(
+        name,
+        OffHeapReducingState.class,
+        () -> new OffHeapReducingState<>(name, reduceFunction, serializer.duplicate()));
+  }
+
+  @Override
+  public <UK, UV> MapState<UK, UV> getMapState(
+      String name, TypeSerializer<UK> userKeySerializer, TypeSerializer<UV> userValueSerializer) {
+    return getOrCreateState(
+        name,
+        OffHeapMapState.class,
+        () ->
+            new OffHeapMapState<>(
+                name, userKeySerializer.duplicate(), userValueSerializer.duplicate()));
+  }
+
+  @Override
+  public Iterator<K> getKeys(String state, int keyGroup) {
+    checkKeyGroup(keyGroup);
+    return new KeyIterator(offHeapState(getRegisteredState(state)).map, keyGroup);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Snapshots
+  // ------------------------------------------------------------------------
+
+  /**
+   * Takes a snapshot of the state at the current point of the processing, which is the barrier of
+   * the checkpoint. This only marks the pages copy-on-write and captures the bookkeeping of the
+   * states, which takes time in the order of the number of states and pages, not of their size.
+   * The returned future writes the checkpoint file when it is run, which is meant to happen on a
+   * snapshot thread while the task thread continues processing.
+   *
+   * <p>Only one snapshot may be running at a time. The future must be run or cancelled, as pages
+   * that are copied for the snapshot are only returned once it is done. An incremental snapshot
+   * is a full snapshot, if there is no completed previous snapshot to build upon.
+   *
+   * @param checkpointId The ID of the checkpoint.
+   * @param file The checkpoint file to write. An existing file is overwritten.
+   * @param incremental True, to write only the pages modified since the previous snapshot.
+   * @return The future that writes the snapshot.
+   * @throws IOException Thrown, if the metadata of the states cannot be serialized.
+   * @throws IllegalStateException Thrown, if the previous snapshot is still running.
+   */
+  public RunnableFuture<OffHeapSnapshot> snapshot(long checkpointId, Path file, boolean incremental)
+      throws IOException {
+    if (file == null) {
+      throw new NullPointerException("file");
+    }
+    final OffHeapSnapshot parent = incremental ? lastSnapshot : null;
+
+    final DataOutputSerializer metadata = new DataOutputSerializer(256);
+    space.writeMetadata(metadata);
+    final Map<String, State> states = getRegisteredStates();
+    metadata.writeInt(states.size() + restoredMaps.size());
+    for (Map.Entry<String, State> entry : states.entrySet()) {
+      final OffHeapState state = offHeapState(entry.getValue());
+      metadata.writeUTF(entry.getKey());
+      metadata.writeByte(state.kind.ordinal());
+      state.map.writeMetadata(metadata);
+    }
+    for (Map.Entry<String, RestoredMap> entry : restoredMaps.entrySet()) {
+      metadata.writeUTF(entry.getKey());
+      metadata.writeByte(entry.getValue().kind.ordinal());
+      entry.getValue().map.writeMetadata(metadata);
+    }
+
+    final CopyOnWritePages pages = space.snapshot(parent != null);
+    lastSnapshot = null;
+    final byte[] metadataBytes = metadata.getCopyOfBuffer();
+    final int pageSize = space.getPageSize();
+    return new SnapshotTask(
+        () -> {
+          try {
+            final OffHeapSnapshot snapshot =
+                SnapshotFiles.write(
+                    file,
+                    checkpointId,
+                    parent,
+                    numberOfKeyGroups,
+                    keyGroupRange,
+                    pageSize,
+                    metadataBytes,
+                    pages);
+            lastSnapshot = snapshot;
+            return snapshot;
+          } catch (Throwable t) {
+            Files.deleteIfExists(file);
+            throw t;
+          } finally {
+            pages.close();
+          }
+        },
+        pages);
+  }
+
+  /** The future of a snapshot, which returns the pages of the snapshot if it is cancelled. */
+  private final class SnapshotTask extends FutureTask<OffHeapSnapshot> {
+
+    private final CopyOnWritePages pages;
+
+    SnapshotTask(Callable<OffHeapSnapshot> writer, CopyOnWritePages pages) {
+      super(writer);
+      this.pages = pages;
+    }
+
+    @Override
+    protected void done() {
+      if (isCancelled()) {
+        lastSnapshot = null;
+        pages.close();
+      }
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Memory
+  // ------------------------------------------------------------------------
+
+  /**
+   * Gets the number of bytes that the keys and values of all states occupy.
+   *
+   * @return The number of used bytes.
+   */
+  public long getUsedMemory() {
+    return space.getUsedBytes();
+  }
+
+  /**
+   * Gets the number of bytes of the pages that the backend took from its memory manager.
+   *
+   * @return The number of reserved bytes.
+   */
+  public long getReservedMemory() {
+    return space.getReservedBytes();
+  }
+
+  @Override
+  protected void disposeResources() {
+    space.dispose();
+  }
+
+  // ------------------------------------------------------------------------
+  //  Serialization
+  // ------------------------------------------------------------------------
+
+  @Override
+  protected void onCurrentKeyChanged() {
+    currentKeyLength = -1;
+  }
+
+  /**
+   * Writes the key group and the current key to the key buffer, unless they are there already,
+   * and places the buffer position behind them.
+   *
+   * @return The length of the serialized current key.
+   */
+  private int serializeCurrentKey() throws IOException {
+    checkCurrentKey();
+    if (currentKeyLength < 0) {
+      keyOut.clear();
+      keyOut.writeShort(getCurrentKeyGroupIndex());
+      keyOut.writeInt(0);
+      keySerializer.serialize(getCurrentKey(), keyOut);
+      keyOut.writeIntUnsafe(2, keyOut.length() - KEY_HEADER_LENGTH);
+      currentKeyLength = keyOut.length();
+    } else {
+      keyOut.setPosition(currentKeyLength);
+    }
+    return currentKeyLength;
+  }
+
+  private byte[] serializeValue(TypeSerializer<?> serializer, Object value) throws IOException {
+    valueOut.clear();
+    serializeUnchecked(serializer, value, valueOut);
+    return valueOut.getSharedBuffer();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> void serializeUnchecked(
+      TypeSerializer<T> serializer, Object value, DataOutputSerializer target) throws IOException {
+    serializer.serialize((T) value, target);
+  }
+
+  /** Gets the given state, which this backend created, as the off-heap state it is. */
+  @SuppressWarnings("unchecked")
+  private OffHeapState offHeapState(State state) {
+    return (OffHeapState) state;
+  }
+
+  private <T> T read(TypeSerializer<T> serializer, long pointer) throws IOException {
+    reader.setReadPosition(pointer);
+    return serializer.deserialize(reader);
+  }
+
+  // ------------------------------------------------------------------------
+  //  State implementations
+  // ------------------------------------------------------------------------
+
+  /** The kinds of states, whose ordinals are written to the snapshots. */
+  private enum StateKind {
+    VALUE,
+    LIST,
+    REDUCING,
+    MAP
+  }
+
+  /** The map of a restored state. */
+  private static final class RestoredMap {
+
+    final StateKind kind;
+
+    final SkipListStateMap map;
+
+    RestoredMap(StateKind kind, SkipListStateMap map) {
+      this.kind = kind;
+      this.map = map;
+    }
+  }
+
+  /** The base of the states, each with its own map. */
+  private abstract class OffHeapState {
+
+    final StateKind kind;
+
+    final SkipListStateMap map;
+
+    /** Creates the state, with the restored map of the state of the name, if there is one. */
+    OffHeapState(String name, StateKind kind) {
+      this.kind = kind;
+      final RestoredMap restored = restoredMaps.get(name);
+      if (restored == null) {
+        this.map = new SkipListStateMap(space);
+      } else if (restored.kind == kind) {
+        this.map = restored.map;
+        restoredMaps.remove(name);
+      } else {
+        throw new IllegalStateException(
+            "The state '" + name + "' was restored as a " + restored.kind + " state.");
+      }
+    }
+
+    public void clear() {
+      try {
+        map.remove(keyOut.getSharedBuffer(), serializeCurrentKey());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /** Gets the node of the current key, or {@link SpaceAllocator#NULL}. */
+    long currentNode() throws IOException {
+      return map.get(keyOut.getSharedBuffer(), serializeCurrentKey());
+    }
+
+    void putCurrent(TypeSerializer<?> serializer, Object value) throws IOException {
+      final int keyLength = serializeCurrentKey();
+      final byte[] bytes = serializeValue(serializer, value);
+      map.put(keyOut.getSharedBuffer(), keyLength, bytes, valueOut.length());
+    }
+  }
+
+  private final class OffHeapValueState<T> extends OffHeapState implements ValueState<T> {
+
+    private final TypeSerializer<T> serializer;
+
+    OffHeapValueState(String name, TypeSerializer<T> serializer) {
+      super(name, StateKind.VALUE);
+      this.serializer = serializer;
+    }
+
+    @Override
+    public T value() throws IOException {
+      final long node = currentNode();
+      return node == NULL ? null : read(serializer, map.getValuePointer(node));
+    }
+
+    @Override
+    public void update(T value) throws IOException {
+      if (value == null) {
+        clear();
+      } else {
+        putCurrent(serializer, value);
+      }
+    }
+  }
+
+  private final class OffHeapReducingState<T> extends OffHeapState implements ReducingState<T> {
+
+    private final ReduceFunction<T> reduceFunction;
+
+    private final TypeSerializer<T> serializer;
+
+    OffHeapReducingState(
+        String name, ReduceFunction<T> reduceFunction, TypeSerializer<T> serializer) {
+      super(name, StateKind.REDUCING);
+      this.reduceFunction = reduceFunction;
+      this.serializer = serializer;
+    }
+
+    @Override
+    public T get() throws IOException {
+      final long node = currentNode();
+      return node == NULL ? null : read(serializer, map.getValuePointer(node));
+    }
+
+    @Override
+    public void add(T value) throws Exception {
+      if (value == null) {
+        return;
+      }
+      final T current = get();
+      putCurrent(serializer, current == null ? value : reduceFunction.reduce(current, value));
+    }
+  }
+
+  private final class OffHeapListState<T> extends OffHeapState implements ListState<T> {
+
+    private final TypeSerializer<T> serializer;
+
+    OffHeapListState(String name, TypeSerializer<T> serializer) {
+      super(name, StateKind.LIST);
+      this.serializer = serializer;
+    }
+
+    @Override
+    public Iterable<T> get() throws IOException {
+      final ArrayList<T> elements = new ArrayList<>();
+      final long node = currentNode();
+      if (node != NULL) {
+        for (long e = map.getValuePointer(node); e != NULL; e = map.previousElement(e)) {
+          elements.add(read(serializer, map.elementDataPointer(e)));
+        }
+        Collections.reverse(elements);
+      }
+      return elements;
+    }
+
+    @Override
+    public void add(T value) throws IOException {
+      if (value == null) {
+        throw new NullPointerException("List state elements must not be null.");
+      }
+      final int keyLength = serializeCurrentKey();
+      final byte[] bytes = serializeValue(serializer, value);
+      map.appendToList(keyOut.getSharedBuffer(), keyLength, bytes, valueOut.length());
+    }
+
+    @Override
+    public void update(List<T> values) throws IOException {
+      clear();
+      addAll(values);
+    }
+
+    @Override
+    public void addAll(List<T> values) throws IOException {
+      if (values != null) {
+        for (T value : values) {
+          add(value);
+        }
+      }
+    }
+  }
+
+  private final class OffHeapMapState<UK, UV> extends OffHeapState implements MapState<UK, UV> {
+
+    private final TypeSerializer<UK> userKeySerializer;
+
+    private final TypeSerializer<UV> userValueSerializer;
+
+    OffHeapMapState(
+        String name, TypeSerializer<UK> userKeySerializer, TypeSerializer<UV> userValueSerializer) {
+      super(name, StateKind.MAP);
+      this.userKeySerializer = userKeySerializer;
+      this.userValueSerializer = userValueSerializer;
+    }
+
+    /** Writes the current key and the given user key to the key buffer. */
+    private int serializeUserKey(UK userKey) throws IOException {
+      serializeCurrentKey();
+      userKeySerializer.serialize(userKey, keyOut);
+      return keyOut.length();
+    }
+
+    @Override
+    public UV get(UK key) throws IOException {
+      final long node = map.get(keyOut.getSharedBuffer(), serializeUserKey(key));
+      return node == NULL ? null : read(userValueSerializer, map.getValuePointer(node));
+    }
+
+    @Override
+    public void put(UK key, UV value) throws IOException {
+      final int keyLength = serializeUserKey(key);
+      final byte[] bytes = serializeValue(userValueSerializer, value);
+      map.put(keyOut.getSharedBuffer(), keyLength, bytes, valueOut.length());
+    }
+
+    @Override
+    public void putAll(Map<UK, UV> entries) throws IOException {
+      for (Map.Entry<UK, UV> entry : entries.entrySet()) {
+        put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    @Override
+    public void remove(UK key) throws IOException {
+      map.remove(keyOut.getSharedBuffer(), serializeUserKey(key));
+    }
+
+    @Override
+    public boolean contains(UK key) throws IOException {
+      return map.get(keyOut.getSharedBuffer(), serializeUserKey(key)) != NULL;
+    }
+
+    @Override
+    public Iterable<Map.Entry<UK, UV>> entries() throws IOException {
+      final int prefixLength = serializeCurrentKey();
+      final byte[] prefix = keyOut.getSharedBuffer();
+      final List<Map.Entry<UK, UV>> entries = new ArrayList<>();
+      for (long node = map.ceiling(prefix, prefixLength);
+          node != NULL && map.startsWith(node, prefix, prefixLength);
+          node = map.next(node)) {
+        final UK userKey = read(userKeySerializer, map.keyPointer(node) + prefixLength);
+        final UV userValue = read(userValueSerializer, map.getValuePointer(node));
+        entries.add(new AbstractMap.SimpleImmutableEntry<>(userKey, userValue));
+      }
+      return entries;
+    }
+
+    @Override
+    public Iterable<UK> keys() throws IOException {
+      final List<UK> keys = new ArrayList<>();
+      for (Map.Entry<UK, UV> entry : entries()) {
+        keys.add(entry.getKey());
+      }
+      return keys;
+    }
+
+    @Override
+    public Iterable<UV> values() throws IOException {
+      final List<UV> values = new ArrayList<>();
+      for (Map.Entry<UK, UV> entry : entries()) {
+        values.add(entry.getValue());
+      }
+      return values;
+    }
+
+    @Override
+    public boolean isEmpty() throws IOException {
+      final int prefixLength = serializeCurrentKey();
+      final byte[] prefix = keyOut.getSharedBuffer();
+      final long node = map.ceiling(prefix, prefixLength);
+      return node == NULL || !map.startsWith(node, prefix, prefixLength);
+    }
+
+    @Override
+    public void clear() {
+      try {
+        final int prefixLength = serializeCurrentKey();
+        while (map.removeFirstWithPrefix(keyOut.getSharedBuffer(), prefixLength)) {}
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  // ------------------------------------------------------------------------
+
+  /** Iterates over the distinct keys of one key group of a map. */
+  private final class KeyIterator implements Iterator<K> {
+
+    private final SkipListStateMap map;
+
+    private final byte[] keyGroupPrefix;
+
+    private long next;
+
+    KeyIterator(SkipListStateMap map, int keyGroup) {
+      this.map = map;
+      this.keyGroupPrefix = new byte[] {(byte) (keyGroup >>> 8), (byte) keyGroup};
+      this.next = map.ceiling(keyGroupPrefix, 2);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != NULL && map.startsWith(next, keyGroupPrefix, 2);
+    }
+
+    @Override
+    public K next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final long node = next;
+      final K key;
+      try {
+        key = read(keySerializer, map.keyPointer(node) + KEY_HEADER_LENGTH);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      // the entries of a map state share the key prefix, the key is returned once
+      do {
+        next = map.next(next);
+      } while (next != NULL && hasSameKey(node, next));
+      return key;
+    }
+
+    private boolean hasSameKey(long node1, long node2) {
+      final MemorySegment segment1 = map.segment(node1);
+      final MemorySegment segment2 = map.segment(node2);
+      final int offset1 = map.keyOffset(node1);
+      final int offset2 = map.keyOffset(node2);
+      final int prefixLength = KEY_HEADER_LENGTH + segment1.getIntBigEndian(offset1 + 2);
+      return map.keyLength(node2) >= prefixLength
+          && segment1.equalTo(segment2, offset1, offset2, prefixLength);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package org.apache.flink.runtime.state.offheap;
+
+import java.nio.file.Path;
+
+/**
+ * Describes a completed snapshot of an {@link OffHeapKeyedStateBackend}, which is a local
+ * checkpoint file. The file of a full snapshot contains all pages of the state, the file of an
+ * incremental snapshot only the pages modified since its parent snapshot, and refers to the file of
+ * the parent. Restoring an incremental snapshot therefore needs the files of all its ancestors up
+ * to the last full snapshot.
+ */
+public final class OffHeapSnapshot {
+
+  private final long checkpointId;
+
+  private final Path file;
+
+  private final Path parentFile;
+
+  private final int numberOfPages;
+
+  private final int numberOfWrittenPages;
+
+  OffHeapSnapshot(
+      long checkpointId, Path file, Path parentFile, int numberOfPages, int numberOfWrittenPages) {
+    this.checkpointId = checkpointId;
+    this.file = file;
+    this.parentFile = parentFile;
+    this.numberOfPages = numberOfPages;
+    this.numberOfWrittenPages = numberOfWrittenPages;
+  }
+
+  /**
+   * Gets the ID of the checkpoint that the snapshot belongs to.
+   *
+   * @return The checkpoint ID.
+   */
+  public long getCheckpointId() {
+    return checkpointId;
+  }
+
+  /**
+   * Gets the checkpoint file of the snapshot.
+   *
+   * @return The path of the file.
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Gets the checkpoint file of the parent snapshot, if this snapshot is incremental.
+   *
+   * @return The path of the parent file, or null, if the snapshot is a full snapshot.
+   */
+  public Path getParentFile() {
+    return parentFile;
+  }
+
+  /**
+   * Checks whether the snapshot only contains the pages modified since its parent snapshot.
+   *
+   * @return True, if the snapshot is incremental, false if it is a full snapshot.
+   */
+  public boolean isIncremental() {
+    return parentFile != null;
+  }
+
+  /**
+   * Gets the number of pages the state had when the snapshot was taken.
+   *
+   * @return The number of pages of the state.
+   */
+  public int getNumberOfPages() {
+    return numberOfPages;
+  }
+
+  /**
+   * Gets the number of pages written to the checkpoint file of the snapshot.
+   *
+   * @return The number of written pages.
+   */
+  public int getNumberOfWrittenPages() {
+    return numberOfWrittenPages;
+  }
+
+  @Override
+  public String toString() {
+    return (isIncremental() ? "Incremental" : "Full")
+        + " snapshot of checkpoint "
+        + checkpointId
+        + " in "
+        + file
+        + " ("
+        + numberOfWrittenPages
+        + " of "
+        + numberOfPages
+        + " pages)";
+  }
+}
@@ -0,0 +1,116 @@
+package org.apache.flink.runtime.state.offheap;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.core.memory.MemoryType;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyedStateBackend;
+import org.apache.flink.runtime.state.StateBackend;
+
+/**
+ * A state backend that keeps the keyed state in serialized form in off-heap memory pages, see
+ * {@link OffHeapKeyedStateBackend}. All keyed state backends created by it share one memory
+ * budget, which is the size of the memory manager they take their pages from. A backend whose
+ * state outgrows the budget fails with an {@link IOException}.
+ */
+public class OffHeapStateBackend implements StateBackend, AutoCloseable {
+
+  private final MemoryManager memoryManager;
+
+  /** Whether the memory manager was created by this backend, and is shut down by it. */
+  private final boolean ownsMemoryManager;
+
+  /**
+   * Creates a backend with the given memory budget, in pages of the default page size.
+   *
+   * @param memorySize The memory budget of the state, in bytes.
+   */
+  public OffHeapStateBackend(long memorySize) {
+    this(memorySize, MemoryManager.DEFAULT_PAGE_SIZE);
+  }
+
+  /**
+   * Creates a backend with the given memory budget and page size. The memory is allocated when the
+   * backend is created. The largest value or list element of the state must fit into one page.
+   *
+   * @param memorySize The memory budget of the state, in bytes.
+   * @param pageSize The size of the pages, a power of two.
+   */
+  public OffHeapStateBackend(long memorySize, int pageSize) {
+    this.memoryManager = new MemoryManager(memorySize, pageSize, MemoryType.OFF_HEAP);
+    this.ownsMemoryManager = true;
+  }
+
+  /**
+   * Creates a backend that takes its pages from the given memory manager, which the caller shuts
+   * down.
+   *
+   * @param memoryManager The memory manager whose memory the state may use.
+   */
+  public OffHeapStateBackend(MemoryManager memoryManager) {
+    if (memoryManager == null) {
+      throw new NullPointerException("memoryManager");
+    }
+    this.memoryManager = memoryManager;
+    this.ownsMemoryManager = false;
+  }
+
+  @Override
+  public <K> KeyedStateBackend<K> createKeyedStateBackend(
+      TypeSerializer<K> keySerializer, int numberOfKeyGroups, KeyGroupRange keyGroupRange)
+      throws IOException {
+    return new OffHeapKeyedStateBackend<>(
+        keySerializer.duplicate(), numberOfKeyGroups, keyGroupRange, memoryManager);
+  }
+
+  /**
+   * Creates the keyed state backend of one operator instance, with the state of the given
+   * snapshot, see {@link OffHeapKeyedStateBackend#snapshot(long, Path, boolean)}.
+   *
+   * @param keySerializer The serializer of the keys.
+   * @param numberOfKeyGroups The total number of key groups of the operator.
+   * @param keyGroupRange The key groups of the operator instance, which must be those of the
+   *     snapshot.
+   * @param snapshotFile The checkpoint file of the snapshot.
+   * @param <K> The type of the keys.
+   * @return The keyed state backend.
+   * @throws IOException Thrown, if the snapshot cannot be restored.
+   */
+  public <K> OffHeapKeyedStateBackend<K> restoreKeyedStateBackend(
+      TypeSerializer<K> keySerializer,
+      int numberOfKeyGroups,
+      KeyGroupRange keyGroupRange,
+      Path snapshotFile)
+      throws IOException {
+    return new OffHeapKeyedStateBackend<>(
+        keySerializer.duplicate(), numberOfKeyGroups, keyGroupRange, memoryManager, snapshotFile);
+  }
+
+  /**
+   * Gets the memory manager the keyed state backends take their pages from.
+   *
+   * @return The memory manager.
+   */
+  public MemoryManager getMemoryManager() {
+    return memoryManager;
+  }
+
+  /** Shuts down the memory manager, if this backend created it. */
+  @Override
+  public void close() {
+    if (ownsMemoryManager) {
+      memoryManager.shutdown();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "OffHeapStateBackend (memory: "
+        + memoryManager.getMemorySize()
+        + " bytes, page size: "
+        + memoryManager.getPageSize()
+        + " bytes)";
+  }
+}
@@ -0,0 +1,427 @@
+package org.apache.flink.runtime.state.offheap;
+
+import static org.apache.flink.runtime.state.offheap.SpaceAllocator.NULL;
+
+import java.io.IOException;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * An ordered map from binary keys to binary values, kept as a skip list in the chunks of a {@link
+ * SpaceAllocator}. The keys are ordered by their bytes, compared as unsigned bytes in lexicographic
+ * order, so that all keys with a common prefix are adjacent and can be found with {@link
+ * #ceiling(byte[], int)} and {@link #startsWith(long, byte[], int)}.
+ *
+ * <p>Every key is a node chunk. A node holds the pointers to its successors on each of its levels
+ * and the key bytes; its value is a separate chunk:
+ *
+ * <pre>
+ * +----------+------------+-----------------+--------------+----------------+
+ * | level: 4 | key len: 4 | value pointer: 8 | value len: 4 | value cap: 4   |
+ * +----------+------------+-----------------+--------------+----------------+
+ * | next pointers: 8 * level | key bytes: key len                           |
+ * +--------------------------+----------------------------------------------+
+ * </pre>
+ *
+ * <p>The value capacity is the size the value chunk was allocated with. A value that fits into the
+ * chunk is overwritten in place, a larger one is moved to a new chunk. A value may also be a list,
+ * kept as a chain of element chunks, each with the pointer to the previous element, the element
+ * length and the element bytes, so that appending an element does not copy the list. The node
+ * points to the last element.
+ *
+ * <p>The levels of the nodes are drawn at random with a probability of 1/4 per additional level.
+ * The head of the list is a plain array of pointers, and the pointer {@link SpaceAllocator#NULL}
+ * stands for the head in the search path.
+ *
+ * <p>All writes go through {@link SpaceAllocator#segmentForWrite(long)}, so that the pages of a
+ * running snapshot are copied before they are modified.
+ *
+ * <p>This class is not thread-safe. Nodes must not be used after the map has been modified.
+ */
+final class SkipListStateMap {
+
+  static final int MAX_LEVEL = 16;
+
+  private static final int LEVEL_OFFSET = 0;
+
+  private static final int KEY_LENGTH_OFFSET = 4;
+
+  private static final int VALUE_POINTER_OFFSET = 8;
+
+  private static final int VALUE_LENGTH_OFFSET = 16;
+
+  private static final int VALUE_CAPACITY_OFFSET = 20;
+
+  private static final int NEXT_OFFSET = 24;
+
+  /** The value length that marks a value as a chain of list elements. */
+  private static final int LIST_VALUE = -1;
+
+  private static final int ELEMENT_PREVIOUS_OFFSET = 0;
+
+  private static final int ELEMENT_LENGTH_OFFSET = 8;
+
+  private static final int ELEMENT_HEADER_LENGTH = 12;
+
+  // ------------------------------------------------------------------------
+
+  private final SpaceAllocator space;
+
+  /** The successors of the head on each level. */
+  private final long[] head = new long[MAX_LEVEL];
+
+  /** The predecessors of the last searched key on each level, reused across searches. */
+  private final long[] predecessors = new long[MAX_LEVEL];
+
+  /** The highest level of any node, at least 1. */
+  private int level = 1;
+
+  private int size;
+
+  private int randomState = 0x9e3779b9;
+
+  SkipListStateMap(SpaceAllocator space) {
+    this.space = space;
+  }
+
+  /**
+   * Restores a map from the metadata written by {@link #writeMetadata(DataOutputView)}, over an
+   * allocator whose pages have been restored.
+   */
+  SkipListStateMap(SpaceAllocator space, DataInputView in) throws IOException {
+    this.space = space;
+    this.level = in.readInt();
+    this.size = in.readInt();
+    this.randomState = in.readInt();
+    if (level < 1 || level > MAX_LEVEL || size < 0) {
+      throw new IOException("Corrupt state map metadata.");
+    }
+    for (int i = 0; i < MAX_LEVEL; i++) {
+      head[i] = in.readLong();
+    }
+  }
+
+  /**
+   * Writes the fields of the map that are not kept in the pages, which are the head and the
+   * bookkeeping of the list.
+   */
+  void writeMetadata(DataOutputView out) throws IOException {
+    out.writeInt(level);
+    out.writeInt(size);
+    out.writeInt(randomState);
+    for (long next : head) {
+      out.writeLong(next);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Lookups
+  // ------------------------------------------------------------------------
+
+  /**
+   * Finds the node of the given key.
+   *
+   * @return The node, or {@link SpaceAllocator#NULL}, if the map does not contain the key.
+   */
+  long get(byte[] key, int keyLength) {
+    final long node = findPredecessors(key, keyLength);
+    return node != NULL && compare(node, key, keyLength) == 0 ? node : NULL;
+  }
+
+  /**
+   * Finds the node of the smallest key that is greater than or equal to the given key.
+   *
+   * @return The node, or {@link SpaceAllocator#NULL}, if all keys are smaller.
+   */
+  long ceiling(byte[] key, int keyLength) {
+    return findPredecessors(key, keyLength);
+  }
+
+  /** Gets the first node, or {@link SpaceAllocator#NULL}, if the map is empty. */
+  long first() {
+    return head[0];
+  }
+
+  /** Gets the node following the given one, or {@link SpaceAllocator#NULL}. */
+  long next(long node) {
+    return next(node, 0);
+  }
+
+  /** Checks whether the key of the given node starts with the given prefix. */
+  boolean startsWith(long node, byte[] prefix, int prefixLength) {
+    return keyLength(node) >= prefixLength
+        && space.segment(node).equalTo(keyOffset(node), prefix, 0, prefixLength);
+  }
+
+  int size() {
+    return size;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Updates
+  // ------------------------------------------------------------------------
+
+  /**
+   * Sets the value of the given key, inserting the key if the map does not contain it.
+   *
+   * @throws IOException Thrown, if the memory budget is exhausted, in which case the map is
+   *     unchanged.
+   */
+  void put(byte[] key, int keyLength, byte[] value, int valueLength) throws IOException {
+    long node = findPredecessors(key, keyLength);
+    if (node != NULL && compare(node, key, keyLength) == 0) {
+      final long valuePointer = getValuePointer(node);
+      final int oldLength = space.getInt(node + VALUE_LENGTH_OFFSET);
+      if (valuePointer != NULL
+          && oldLength != LIST_VALUE
+          && space.getInt(node + VALUE_CAPACITY_OFFSET) >= valueLength) {
+        space.segmentForWrite(valuePointer).put(space.offset(valuePointer), value, 0, valueLength);
+        space.putInt(node + VALUE_LENGTH_OFFSET, valueLength);
+        return;
+      }
+      final long chunk = allocateValue(value, valueLength);
+      freeValue(node);
+      setValue(node, chunk, valueLength, SpaceAllocator.capacity(valueLength));
+    } else {
+      final long chunk = allocateValue(value, valueLength);
+      try {
+        node = insert(key, keyLength);
+      } catch (IOException e) {
+        space.free(chunk, valueLength);
+        throw e;
+      }
+      setValue(node, chunk, valueLength, SpaceAllocator.capacity(valueLength));
+    }
+  }
+
+  /**
+   * Appends an element to the list value of the given key, inserting the key with a list of the
+   * one element if the map does not contain it.
+   *
+   * @throws IOException Thrown, if the memory budget is exhausted, in which case the map is
+   *     unchanged.
+   */
+  void appendToList(byte[] key, int keyLength, byte[] element, int elementLength)
+      throws IOException {
+    final long chunk = space.allocate(ELEMENT_HEADER_LENGTH + elementLength);
+    final MemorySegment segment = space.segmentForWrite(chunk);
+    final int offset = space.offset(chunk);
+    segment.putInt(offset + ELEMENT_LENGTH_OFFSET, elementLength);
+    segment.put(offset + ELEMENT_HEADER_LENGTH, element, 0, elementLength);
+
+    long node = findPredecessors(key, keyLength);
+    if (node == NULL || compare(node, key, keyLength) != 0) {
+      try {
+        node = insert(key, keyLength);
+      } catch (IOException e) {
+        space.free(chunk, ELEMENT_HEADER_LENGTH + elementLength);
+        throw e;
+      }
+    } else if (space.getInt(node + VALUE_LENGTH_OFFSET) != LIST_VALUE) {
+      freeValue(node);
+    }
+    segment.putLong(offset + ELEMENT_PREVIOUS_OFFSET, getValuePointer(node));
+    setValue(node, chunk, LIST_VALUE, 0);
+  }
+
+  /**
+   * Removes the given key and its value.
+   *
+   * @return True, if the map contained the key, false otherwise.
+   */
+  boolean remove(byte[] key, int keyLength) {
+    final long node = findPredecessors(key, keyLength);
+    if (node == NULL || compare(node, key, keyLength) != 0) {
+      return false;
+    }
+    unlink(node);
+    return true;
+  }
+
+  /**
+   * Removes the smallest key that starts with the given prefix, and its value.
+   *
+   * @return True, if a key was removed, false, if no key starts with the prefix.
+   */
+  boolean removeFirstWithPrefix(byte[] prefix, int prefixLength) {
+    final long node = findPredecessors(prefix, prefixLength);
+    if (node == NULL || !startsWith(node, prefix, prefixLength)) {
+      return false;
+    }
+    unlink(node);
+    return true;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Node fields
+  // ------------------------------------------------------------------------
+
+  /** Gets the position of the first key byte of the node over all pages. */
+  long keyPointer(long node) {
+    return node + NEXT_OFFSET + 8 * space.getInt(node + LEVEL_OFFSET);
+  }
+
+  /** Gets the offset of the first key byte of the node in its page. */
+  int keyOffset(long node) {
+    return space.offset(keyPointer(node));
+  }
+
+  /** Gets the page that holds the node and its key. */
+  MemorySegment segment(long node) {
+    return space.segment(node);
+  }
+
+  int keyLength(long node) {
+    return space.getInt(node + KEY_LENGTH_OFFSET);
+  }
+
+  /**
+   * Gets the position of the value of the node over all pages, or of the last element, if the
+   * value is a list.
+   */
+  long getValuePointer(long node) {
+    return space.getLong(node + VALUE_POINTER_OFFSET);
+  }
+
+  /** Gets the element preceding the given list element, or {@link SpaceAllocator#NULL}. */
+  long previousElement(long element) {
+    return space.getLong(element + ELEMENT_PREVIOUS_OFFSET);
+  }
+
+  /** Gets the position of the bytes of the given list element over all pages. */
+  long elementDataPointer(long element) {
+    return element + ELEMENT_HEADER_LENGTH;
+  }
+
+  // ------------------------------------------------------------------------
+  //  Internals
+  // ------------------------------------------------------------------------
+
+  private long next(long node, int level) {
+    return node == NULL ? head[level] : space.getLong(node + NEXT_OFFSET + 8 * level);
+  }
+
+  private void setNext(long node, int level, long next) {
+    if (node == NULL) {
+      head[level] = next;
+    } else {
+      space.putLong(node + NEXT_OFFSET + 8 * level, next);
+    }
+  }
+
+  private int compare(long node, byte[] key, int keyLength) {
+    final int nodeKeyLength = keyLength(node);
+    final int cmp =
+        space.segment(node).compare(keyOffset(node), key, 0, Math.min(nodeKeyLength, keyLength));
+    return cmp != 0 ? cmp : nodeKeyLength - keyLength;
+  }
+
+  /**
+   * Finds the predecessors of the given key on all levels, and returns the node that follows the
+   * predecessor on the lowest level, which is the node of the smallest key not smaller than the
+   * given key.
+   */
+  private long findPredecessors(byte[] key, int keyLength) {
+    long node = NULL;
+    for (int i = level - 1; i >= 0; i--) {
+      long next;
+      while ((next = next(node, i)) != NULL && compare(next, key, keyLength) < 0) {
+        node = next;
+      }
+      predecessors[i] = node;
+    }
+    return next(node, 0);
+  }
+
+  /** Inserts a node for the key behind the predecessors found by the last search. */
+  private long insert(byte[] key, int keyLength) throws IOException {
+    final int nodeLevel = randomLevel();
+    final int nodeSize = NEXT_OFFSET + 8 * nodeLevel + keyLength;
+    final long node = space.allocate(nodeSize);
+
+    for (int i = level; i < nodeLevel; i++) {
+      predecessors[i] = NULL;
+    }
+    level = Math.max(level, nodeLevel);
+
+    final MemorySegment segment = space.segmentForWrite(node);
+    final int offset = space.offset(node);
+    segment.putInt(offset + LEVEL_OFFSET, nodeLevel);
+    segment.putInt(offset + KEY_LENGTH_OFFSET, keyLength);
+    segment.putLong(offset + VALUE_POINTER_OFFSET, NULL);
+    segment.putInt(offset + VALUE_LENGTH_OFFSET, 0);
+    segment.putInt(offset + VALUE_CAPACITY_OFFSET, 0);
+    segment.put(offset + NEXT_OFFSET + 8 * nodeLevel, key, 0, keyLength);
+
+    for (int i = 0; i < nodeLevel; i++) {
+      setNext(node, i, next(predecessors[i], i));
+      setNext(predecessors[i], i, node);
+    }
+    size++;
+    return node;
+  }
+
+  /** Removes the node behind the predecessors found by the last search. */
+  private void unlink(long node) {
+    final int nodeLevel = space.getInt(node + LEVEL_OFFSET);
+    for (int i = 0; i < nodeLevel; i++) {
+      if (next(predecessors[i], i) == node) {
+        setNext(predecessors[i], i, next(node, i));
+      }
+    }
+    while (level > 1 && head[level - 1] == NULL) {
+      level--;
+    }
+
+    freeValue(node);
+    space.free(node, NEXT_OFFSET + 8 * nodeLevel + keyLength(node));
+    size--;
+  }
+
+  private long allocateValue(byte[] value, int valueLength) throws IOException {
+    final long chunk = space.allocate(valueLength);
+    space.segmentForWrite(chunk).put(space.offset(chunk), value, 0, valueLength);
+    return chunk;
+  }
+
+  private void setValue(long node, long valuePointer, int valueLength, int valueCapacity) {
+    space.putLong(node + VALUE_POINTER_OFFSET, valuePointer);
+    space.putInt(node + VALUE_LENGTH_OFFSET, valueLength);
+    space.putInt(node + VALUE_CAPACITY_OFFSET, valueCapacity);
+  }
+
+  private void freeValue(long node) {
+    final long valuePointer = getValuePointer(node);
+    if (valuePointer == NULL) {
+      return;
+    }
+    if (space.getInt(node + VALUE_LENGTH_OFFSET) == LIST_VALUE) {
+      long element = valuePointer;
+      while (element != NULL) {
+        final long previous = previousElement(element);
+        space.free(
+            element, ELEMENT_HEADER_LENGTH + space.getInt(element + ELEMENT_LENGTH_OFFSET));
+        element = previous;
+      }
+    } else {
+      space.free(valuePointer, space.getInt(node + VALUE_CAPACITY_OFFSET));
+    }
+    setValue(node, NULL, 0, 0);
+  }
+
+  private int randomLevel() {
+    int x = randomState;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    randomState = x;
+
+    int nodeLevel = 1;
+    while (nodeLevel < MAX_LEVEL && (x & 3) == 0) {
+      nodeLevel++;
+      x >>>= 2;
+    }
+    return nodeLevel;
+  }
+}
@@ -0,0 +1,340 @@
+package org.apache.flink.runtime.state.offheap;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.util.Crc32C;
+
+/**
+ * Writes and reads the checkpoint files of the snapshots of an {@link OffHeapKeyedStateBackend}.
+ * A file consists of a header, followed by the written pages in the order of their indexes:
+ *
+ * <pre>
+ * +----------+---------------+-----------------+------------------------------------------+
+ * | magic: 4 | header len: 4 | header CRC: 4   | version, checkpoint ID, key groups, page |
+ * |          |               |                 | size, page count, parent file, metadata, |
+ * |          |               |                 | index and CRC of each written page       |
+ * +----------+---------------+-----------------+------------------------------------------+
+ * | page | page | ...                                                                     |
+ * +-----------------------------------------------------------------------------------------+
+ * </pre>
+ *
+ * <p>The metadata holds the bookkeeping of the allocator and the maps of the states, which are
+ * not kept in the pages. A page that an incremental file does not contain is read from the
+ * nearest ancestor file that does.
+ *
+ * <p>The header and every page are protected by a CRC-32C checksum. The pages are written first
+ * and the header last, once the checksums of the pages are known. A corrupt header or page fails
+ * the restore with an {@link IOException} that names the file and the offset of the page.
+ */
+final class SnapshotFiles {
+
+  private static final int MAGIC = 0x4F48534E;
+
+  private static final int VERSION = 1;
+
+  /** The length of the magic number, the header length, and the header checksum. */
+  private static final int PREFIX_LENGTH = 12;
+
+  /**
+   * Writes the pages of a snapshot to a checkpoint file. Called by the snapshot thread.
+   *
+   * @return The description of the written snapshot.
+   */
+  static OffHeapSnapshot write(
+      Path file,
+      long checkpointId,
+      OffHeapSnapshot parent,
+      int numberOfKeyGroups,
+      KeyGroupRange keyGroupRange,
+      int pageSize,
+      byte[] metadata,
+      CopyOnWritePages pages)
+      throws IOException {
+
+    final BitSet pagesToWrite = pages.getPagesToWrite();
+    final int numWrittenPages = pages.getNumberOfPagesToWrite();
+    final DataOutputSerializer header =
+        new DataOutputSerializer(128 + metadata.length + 8 * numWrittenPages);
+    header.writeInt(MAGIC);
+    header.writeInt(0); // the header length, set below
+    header.writeInt(0); // the header checksum, set once the pages are written
+    header.writeInt(VERSION);
+    header.writeLong(checkpointId);
+    header.writeInt(numberOfKeyGroups);
+    header.writeInt(keyGroupRange.getStartKeyGroup());
+    header.writeInt(keyGroupRange.getEndKeyGroup());
+    header.writeInt(pageSize);
+    header.writeInt(pages.getNumberOfPages());
+    header.writeBoolean(parent != null);
+    if (parent != null) {
+      header.writeUTF(parent.getFile().toAbsolutePath().toString());
+    }
+    header.writeInt(metadata.length);
+    header.write(metadata);
+    header.writeInt(numWrittenPages);
+    int checksumOffset = header.length() + 4;
+    for (int i = pagesToWrite.nextSetBit(0); i >= 0; i = pagesToWrite.nextSetBit(i + 1)) {
+      header.writeInt(i);
+      header.writeInt(0); // the checksum, known once the page is written
+    }
+    final int headerLength = header.length() - PREFIX_LENGTH;
+    header.writeIntUnsafe(4, headerLength);
+
+    try (FileChannel channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE)) {
+      channel.position(header.length());
+      for (int i = pagesToWrite.nextSetBit(0); i >= 0; i = pagesToWrite.nextSetBit(i + 1)) {
+        header.writeIntUnsafe(checksumOffset, pages.write(i, channel));
+        checksumOffset += 8;
+      }
+      final byte[] headerBytes = header.getSharedBuffer();
+      final int headerChecksum =
+          Crc32C.compute(HeapMemorySegment.FACTORY.wrap(headerBytes), PREFIX_LENGTH, headerLength);
+      header.writeIntUnsafe(8, headerChecksum);
+      final ByteBuffer buffer = ByteBuffer.wrap(headerBytes, 0, header.length());
+      long position = 0L;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      channel.force(false);
+    }
+    return new OffHeapSnapshot(
+        checkpointId,
+        file,
+        parent == null ? null : parent.getFile(),
+        pages.getNumberOfPages(),
+        numWrittenPages);
+  }
+
+  /**
+   * Restores the pages of the snapshot in the given file, and of its ancestors, into a new
+   * allocator.
+   *
+   * @return The restored allocator, the metadata of the states and the description of the
+   *     snapshot.
+   * @throws IOException Thrown, if a file cannot be read, is corrupt, or does not match the key
+   *     groups or the page size.
+   */
+  static Restored restore(
+      Path file,
+      MemoryManager memoryManager,
+      Object owner,
+      int numberOfKeyGroups,
+      KeyGroupRange keyGroupRange)
+      throws IOException {
+
+    Header header = Header.read(file);
+    header.check(numberOfKeyGroups, keyGroupRange, memoryManager.getPageSize());
+    final DataInputView metadata =
+        new DataInputViewStreamWrapper(new ByteArrayInputStream(header.metadata));
+    final SpaceAllocator space =
+        new SpaceAllocator(memoryManager, owner, header.numPages, metadata);
+    final OffHeapSnapshot snapshot =
+        new OffHeapSnapshot(
+            header.checkpointId, file, header.parent, header.numPages, header.pages.length);
+
+    try {
+      final BitSet missing = new BitSet(header.numPages);
+      missing.set(0, header.numPages);
+      while (true) {
+        header.readPages(space, missing);
+        if (missing.isEmpty()) {
+          return new Restored(space, metadata, snapshot);
+        }
+        if (header.parent == null) {
+          throw new IOException(
+              "The snapshot in " + file + " lacks " + missing.cardinality() + " pages.");
+        }
+        header = Header.read(header.parent);
+        header.check(numberOfKeyGroups, keyGroupRange, memoryManager.getPageSize());
+      }
+    } catch (IOException | RuntimeException e) {
+      space.dispose();
+      throw e;
+    }
+  }
+
+  /** The result of restoring a snapshot. */
+  static final class Restored {
+
+    final SpaceAllocator space;
+
+    /** The metadata of the states, behind the metadata of the allocator. */
+    final DataInputView stateMetadata;
+
+    final OffHeapSnapshot snapshot;
+
+    Restored(SpaceAllocator space, DataInputView stateMetadata, OffHeapSnapshot snapshot) {
+      this.space = space;
+      this.stateMetadata = stateMetadata;
+      this.snapshot = snapshot;
+    }
+  }
+
+  /** The header of a checkpoint file. */
+  private static final class Header {
+
+    final Path file;
+
+    final long checkpointId;
+
+    final int numberOfKeyGroups;
+
+    final KeyGroupRange keyGroupRange;
+
+    final int pageSize;
+
+    final int numPages;
+
+    final Path parent;
+
+    final byte[] metadata;
+
+    /** The indexes of the pages in the file. */
+    final int[] pages;
+
+    /** The checksums of the pages in the file. */
+    final int[] checksums;
+
+    /** The position of the first page in the file. */
+    final long pagesOffset;
+
+    private Header(Path file, int headerLength, DataInputView in) throws IOException {
+      if (in.readInt() != VERSION) {
+        throw new IOException("Unsupported version of the checkpoint file " + file + '.');
+      }
+      this.file = file;
+      this.checkpointId = in.readLong();
+      this.numberOfKeyGroups = in.readInt();
+      this.keyGroupRange = new KeyGroupRange(in.readInt(), in.readInt());
+      this.pageSize = in.readInt();
+      this.numPages = in.readInt();
+      this.parent = in.readBoolean() ? Paths.get(in.readUTF()) : null;
+      this.metadata = new byte[in.readInt()];
+      in.readFully(metadata);
+      this.pages = new int[in.readInt()];
+      this.checksums = new int[pages.length];
+      for (int i = 0; i < pages.length; i++) {
+        pages[i] = in.readInt();
+        checksums[i] = in.readInt();
+        if (pages[i] < 0 || pages[i] >= numPages) {
+          throw new IOException("Corrupt checkpoint file " + file + '.');
+        }
+      }
+      this.pagesOffset = (long) PREFIX_LENGTH + headerLength;
+    }
+
+    static Header read(Path file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, READ)) {
+        final ByteBuffer prefix = ByteBuffer.allocate(PREFIX_LENGTH);
+        readFully(channel, prefix, 0L);
+        prefix.flip();
+        if (prefix.getInt() != MAGIC) {
+          throw new IOException(file + " is not a checkpoint file of off-heap state.");
+        }
+        final int headerLength = prefix.getInt();
+        if (headerLength < 0 || headerLength > channel.size() - PREFIX_LENGTH) {
+          throw new IOException("Corrupt checkpoint file " + file + '.');
+        }
+        final ByteBuffer header = ByteBuffer.allocate(headerLength);
+        readFully(channel, header, PREFIX_LENGTH);
+        final int expected = prefix.getInt();
+        final int actual =
+            Crc32C.compute(HeapMemorySegment.FACTORY.wrap(header.array()), 0, headerLength);
+        if (expected != actual) {
+          throw new IOException(
+              String.format(
+                  "Checksum mismatch in the header of the checkpoint file %s: expected 0x%08x, "
+                      + "but computed 0x%08x.",
+                  file, expected, actual));
+        }
+        return new Header(
+            file,
+            headerLength,
+            new DataInputViewStreamWrapper(new ByteArrayInputStream(header.array())));
+      }
+    }
+
+    void check(int expectedKeyGroups, KeyGroupRange expectedRange, int expectedPageSize)
+        throws IOException {
+      if (numberOfKeyGroups != expectedKeyGroups || !keyGroupRange.equals(expectedRange)) {
+        throw new IOException(
+            "The snapshot in "
+                + file
+                + " holds "
+                + keyGroupRange
+                + " of "
+                + numberOfKeyGroups
+                + " key groups, not "
+                + expectedRange
+                + " of "
+                + expectedKeyGroups
+                + '.');
+      }
+      if (pageSize != expectedPageSize) {
+        throw new IOException(
+            "The snapshot in "
+                + file
+                + " has a page size of "
+                + pageSize
+                + " bytes, not "
+                + expectedPageSize
+                + " bytes.");
+      }
+    }
+
+    /** Reads the pages of this file that are still missing, and verifies their checksums. */
+    void readPages(SpaceAllocator space, BitSet missing) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, READ)) {
+        for (int i = 0; i < pages.length; i++) {
+          final int page = pages[i];
+          if (page < space.pages.size() && missing.get(page)) {
+            final long position = pagesOffset + (long) i * pageSize;
+            final MemorySegment segment = space.pages.get(page);
+            readFully(channel, segment.wrap(0, pageSize), position);
+            final int actual = Crc32C.compute(segment, 0, pageSize);
+            if (checksums[i] != actual) {
+              throw new IOException(
+                  String.format(
+                      "Checksum mismatch in the page at offset %d of the checkpoint file %s: "
+                          + "expected 0x%08x, but computed 0x%08x.",
+                      position, file, checksums[i], actual));
+            }
+            missing.clear(page);
+          }
+        }
+      }
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer target, long position)
+      throws IOException {
+    long readPosition = position;
+    while (target.hasRemaining()) {
+      final int read = channel.read(target, readPosition);
+      if (read < 0) {
+        throw new EOFException("Unexpected end of the checkpoint file.");
+      }
+      readPosition += read;
+    }
+  }
+
+  private SnapshotFiles() {}
+}
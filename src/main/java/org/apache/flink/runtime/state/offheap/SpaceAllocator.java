@@ -0,0 +1,337 @@
+package org.apache.flink.runtime.state.offheap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.core.memory.MemoryAllocationException;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.util.MathUtils;
+
+/**
+ * Allocates chunks of memory in pages taken from a {@link MemoryManager}.
+ *
+ * <p>Chunks are addressed by a pointer that is the position of the chunk over all pages, with the
+ * page index in the high and the offset in the page in the low bits, like the positions of a
+ * {@link org.apache.flink.runtime.io.disk.RandomAccessInputView} over the pages. The first bytes of
+ * the first page are never handed out, so that the pointer {@link #NULL} marks the absence of a
+ * chunk.
+ *
+ * <p>The chunk sizes are powers of two, from {@value #MIN_CHUNK_SIZE} bytes up to the page size, so
+ * that a chunk never crosses a page boundary. Freed chunks are kept in one free list per size and
+ * are reused before new memory is taken. The free lists are threaded through the free chunks
+ * themselves, whose first 8 bytes point to the next free chunk. New chunks are cut from the end of
+ * the last page; when it has no room left, its rest is split into smaller free chunks and a new
+ * page is taken from the memory manager. Pages are only returned when the allocator is disposed.
+ *
+ * <p>All modifications of the pages go through {@link #segmentForWrite(long)}, which records the
+ * pages modified since the last snapshot, and copies a page that a running snapshot still has to
+ * write, see {@link CopyOnWritePages}. Reads see the live pages.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class SpaceAllocator {
+
+  /** The pointer that points to no chunk. */
+  static final long NULL = 0L;
+
+  private static final int MIN_CHUNK_SIZE_BITS = 4;
+
+  /** The size of the smallest chunk. */
+  static final int MIN_CHUNK_SIZE = 1 << MIN_CHUNK_SIZE_BITS;
+
+  private final MemoryManager memoryManager;
+
+  private final Object owner;
+
+  private final int pageSize;
+
+  private final int pageSizeBits;
+
+  private final int pageSizeMask;
+
+  /** The pages, in the order of their indexes. */
+  final ArrayList<MemorySegment> pages = new ArrayList<>();
+
+  /** The first free chunk of each size class, or {@link #NULL}. */
+  private final long[] freeLists;
+
+  /** The position of the first byte in the last page that was not handed out yet. */
+  private long bumpPosition;
+
+  /** The total size of the chunks that are handed out. */
+  private long usedBytes;
+
+  /** The pages modified since the last snapshot. */
+  private final BitSet dirtyPages = new BitSet();
+
+  /** The pages of the last snapshot, or null, if no snapshot was taken. */
+  private CopyOnWritePages snapshotPages;
+
+  SpaceAllocator(MemoryManager memoryManager, Object owner) throws IOException {
+    this.memoryManager = memoryManager;
+    this.owner = owner;
+    this.pageSize = memoryManager.getPageSize();
+    this.pageSizeBits = MathUtils.log2strict(pageSize);
+    this.pageSizeMask = pageSize - 1;
+    this.freeLists = new long[pageSizeBits - MIN_CHUNK_SIZE_BITS + 1];
+
+    addPage();
+    bumpPosition = MIN_CHUNK_SIZE;
+  }
+
+  /**
+   * Creates an allocator with the given number of pages, and the bookkeeping written by {@link
+   * #writeMetadata(DataOutputView)}. The contents of the pages must be restored by the caller.
+   *
+   * @throws IOException Thrown, if the metadata is corrupt, or if the memory budget is too small.
+   */
+  SpaceAllocator(MemoryManager memoryManager, Object owner, int numPages, DataInputView metadata)
+      throws IOException {
+    this.memoryManager = memoryManager;
+    this.owner = owner;
+    this.pageSize = memoryManager.getPageSize();
+    this.pageSizeBits = MathUtils.log2strict(pageSize);
+    this.pageSizeMask = pageSize - 1;
+    this.freeLists = new long[pageSizeBits - MIN_CHUNK_SIZE_BITS + 1];
+
+    this.bumpPosition = metadata.readLong();
+    this.usedBytes = metadata.readLong();
+    if (metadata.readInt() != freeLists.length
+        || numPages < 1
+        || (bumpPosition >>> pageSizeBits) > numPages) {
+      throw new IOException("Corrupt allocator metadata.");
+    }
+    for (int i = 0; i < freeLists.length; i++) {
+      freeLists[i] = metadata.readLong();
+    }
+    try {
+      memoryManager.allocatePages(owner, pages, numPages);
+    } catch (MemoryAllocationException e) {
+      throw new IOException(
+          "The snapshot of "
+              + numPages
+              + " pages exceeds the memory budget of "
+              + memoryManager.getMemorySize()
+              + " bytes.",
+          e);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+
+  /**
+   * Allocates a chunk of at least the given size.
+   *
+   * @param size The number of bytes the chunk must hold.
+   * @return The pointer to the chunk.
+   * @throws IOException Thrown, if the size exceeds the page size, or if the memory budget is
+   *     exhausted.
+   */
+  long allocate(int size) throws IOException {
+    if (size > pageSize) {
+      throw new IOException(
+          "A state entry of " + size + " bytes exceeds the page size of " + pageSize + " bytes.");
+    }
+    final int sizeClass = sizeClass(size);
+    final int chunkSize = MIN_CHUNK_SIZE << sizeClass;
+    usedBytes += chunkSize;
+
+    final long free = freeLists[sizeClass];
+    if (free != NULL) {
+      freeLists[sizeClass] = getLong(free);
+      return free;
+    }
+
+    if (pageSize - (int) (bumpPosition & pageSizeMask) < chunkSize
+        || (bumpPosition >>> pageSizeBits) >= pages.size()) {
+      // the rest of the last page goes to the free lists, in chunks as large as possible
+      int rest = (int) (((long) pages.size() << pageSizeBits) - bumpPosition);
+      while (rest >= MIN_CHUNK_SIZE) {
+        final int restClass = MathUtils.log2floor(rest) - MIN_CHUNK_SIZE_BITS;
+        putLong(bumpPosition, freeLists[restClass]);
+        freeLists[restClass] = bumpPosition;
+        bumpPosition += MIN_CHUNK_SIZE << restClass;
+        rest -= MIN_CHUNK_SIZE << restClass;
+      }
+      try {
+        addPage();
+      } catch (IOException e) {
+        usedBytes -= chunkSize;
+        throw e;
+      }
+      bumpPosition = (long) (pages.size() - 1) << pageSizeBits;
+    }
+
+    final long chunk = bumpPosition;
+    bumpPosition += chunkSize;
+    return chunk;
+  }
+
+  /**
+   * Returns a chunk to the free list of its size.
+   *
+   * @param chunk The pointer to the chunk.
+   * @param size The size that the chunk was allocated with.
+   */
+  void free(long chunk, int size) {
+    final int sizeClass = sizeClass(size);
+    putLong(chunk, freeLists[sizeClass]);
+    freeLists[sizeClass] = chunk;
+    usedBytes -= MIN_CHUNK_SIZE << sizeClass;
+  }
+
+  /**
+   * Gets the number of bytes a chunk allocated with the given size can hold.
+   *
+   * @param size The size that the chunk was allocated with.
+   * @return The capacity of the chunk.
+   */
+  static int capacity(int size) {
+    return MIN_CHUNK_SIZE << sizeClass(size);
+  }
+
+  private static int sizeClass(int size) {
+    return size <= MIN_CHUNK_SIZE
+        ? 0
+        : 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_CHUNK_SIZE_BITS;
+  }
+
+  private void addPage() throws IOException {
+    try {
+      pages.addAll(memoryManager.allocatePages(owner, 1));
+      dirtyPages.set(pages.size() - 1);
+    } catch (MemoryAllocationException e) {
+      throw new IOException(
+          "The off-heap state exceeded its memory budget of "
+              + memoryManager.getMemorySize()
+              + " bytes.",
+          e);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  //  Access by pointer
+  // ------------------------------------------------------------------------
+
+  MemorySegment segment(long pointer) {
+    return pages.get((int) (pointer >>> pageSizeBits));
+  }
+
+  /**
+   * Gets the page of the given pointer for a modification. Copies the page first, if a running
+   * snapshot still has to write it.
+   */
+  MemorySegment segmentForWrite(long pointer) {
+    final int page = (int) (pointer >>> pageSizeBits);
+    dirtyPages.set(page);
+    final CopyOnWritePages snapshot = snapshotPages;
+    if (snapshot != null && snapshot.isShared(page)) {
+      copyOnWrite(page, snapshot);
+    }
+    return pages.get(page);
+  }
+
+  private void copyOnWrite(int page, CopyOnWritePages snapshot) {
+    final MemorySegment copy;
+    try {
+      copy = memoryManager.allocatePages(owner, 1).get(0);
+    } catch (MemoryAllocationException e) {
+      // no room for a copy, the page is modified once the snapshot has written it
+      snapshot.awaitReleased(page);
+      return;
+    }
+    pages.get(page).copyTo(0, copy, 0, pageSize);
+    pages.set(page, copy);
+    snapshot.copied(page);
+  }
+
+  int offset(long pointer) {
+    return (int) pointer & pageSizeMask;
+  }
+
+  long getLong(long pointer) {
+    return segment(pointer).getLong(offset(pointer));
+  }
+
+  void putLong(long pointer, long value) {
+    segmentForWrite(pointer).putLong(offset(pointer), value);
+  }
+
+  int getInt(long pointer) {
+    return segment(pointer).getInt(offset(pointer));
+  }
+
+  void putInt(long pointer, int value) {
+    segmentForWrite(pointer).putInt(offset(pointer), value);
+  }
+
+  // ------------------------------------------------------------------------
+  //  Snapshots
+  // ------------------------------------------------------------------------
+
+  /**
+   * Shares the current pages with a new snapshot, which must be closed before the next snapshot is
+   * taken. Starts a new period of recording the modified pages.
+   *
+   * @param incremental True, to share only the pages modified since the last snapshot, false, to
+   *     share all pages.
+   * @return The pages of the snapshot.
+   * @throws IllegalStateException Thrown, if the pages of the last snapshot are not closed yet.
+   */
+  CopyOnWritePages snapshot(boolean incremental) {
+    if (snapshotPages != null && !snapshotPages.isClosed()) {
+      throw new IllegalStateException("The previous snapshot is still running.");
+    }
+    final BitSet pagesToWrite;
+    if (incremental) {
+      pagesToWrite = (BitSet) dirtyPages.clone();
+    } else {
+      pagesToWrite = new BitSet(pages.size());
+      pagesToWrite.set(0, pages.size());
+    }
+    dirtyPages.clear();
+    snapshotPages = new CopyOnWritePages(memoryManager, pages, pagesToWrite);
+    return snapshotPages;
+  }
+
+  /** Writes the bookkeeping of the allocator that is not kept in the pages. */
+  void writeMetadata(DataOutputView out) throws IOException {
+    out.writeLong(bumpPosition);
+    out.writeLong(usedBytes);
+    out.writeInt(freeLists.length);
+    for (long free : freeLists) {
+      out.writeLong(free);
+    }
+  }
+
+  // ------------------------------------------------------------------------
+
+  int getPageSize() {
+    return pageSize;
+  }
+
+  /** Gets the total size of the chunks that are handed out. */
+  long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /** Gets the total size of the pages taken from the memory manager. */
+  long getReservedBytes() {
+    return (long) pages.size() * pageSize;
+  }
+
+  /**
+   * Returns all pages to the memory manager, after cancelling a running snapshot. The allocator
+   * must not be used afterwards.
+   */
+  void dispose() {
+    if (snapshotPages != null) {
+      snapshotPages.close();
+    }
+    memoryManager.release(pages);
+    usedBytes = 0;
+  }
+}
@@ -0,0 +1,196 @@
+package org.apache.flink.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * Computes CRC-32C (Castagnoli) checksums over ranges of {@link MemorySegment}s, without copying
+ * the bytes into arrays.
+ *
+ * <p>On Java 9 and later, the checksum is computed by {@code java.util.zip.CRC32C}, which the JIT
+ * replaces by the CRC32 instructions of the CPU. Heap segments are passed to it as arrays, and
+ * off-heap segments as direct byte buffers. On older Java versions, a portable slicing-by-8
+ * implementation processes 8 bytes per step.
+ *
+ * <p>Like {@link java.util.zip.CRC32}, an instance accumulates the checksum over several updates.
+ * Instances are not thread-safe.
+ */
+public final class Crc32C {
+
+  /** The CRC-32C polynomial, in reversed bit order. */
+  private static final int POLYNOMIAL = 0x82F63B78;
+
+  /** The lookup tables of the slicing-by-8 algorithm, 256 entries for each of the 8 bytes. */
+  private static final int[] TABLE = new int[8 * 256];
+
+  /** Creates a {@code java.util.zip.CRC32C}, or is null, if the class does not exist. */
+  private static final MethodHandle NEW_JDK_CRC32C;
+
+  /** The {@code update(ByteBuffer)} method of {@code java.util.zip.CRC32C}. */
+  private static final MethodHandle UPDATE_BYTE_BUFFER;
+
+  static {
+    for (int n = 0; n < 256; n++) {
+      int crc = n;
+      for (int k = 0; k < 8; k++) {
+        crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+      }
+      TABLE[n] = crc;
+    }
+    for (int n = 0; n < 256; n++) {
+      for (int k = 1; k < 8; k++) {
+        final int previous = TABLE[((k - 1) << 8) + n];
+        TABLE[(k << 8) + n] = (previous >>> 8) ^ TABLE[previous & 0xff];
+      }
+    }
+
+    MethodHandle constructor = null;
+    MethodHandle update = null;
+    try {
+      final Class<?> clazz = Class.forName("java.util.zip.CRC32C");
+      final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      constructor =
+          lookup
+              .findConstructor(clazz, MethodType.methodType(void.class))
+              .asType(MethodType.methodType(Checksum.class));
+      update =
+          lookup
+              .findVirtual(clazz, "update", MethodType.methodType(void.class, ByteBuffer.class))
+              .asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+    } catch (ReflectiveOperationException e) {
+      // before Java 9, use the portable implementation
+      constructor = null;
+      update = null;
+    }
+    NEW_JDK_CRC32C = constructor;
+    UPDATE_BYTE_BUFFER = update;
+  }
+
+  // ------------------------------------------------------------------------
+
+  /** The JDK's checksum, or null, if the portable implementation is used. */
+  private final Checksum jdkChecksum;
+
+  /** The inverted checksum of the portable implementation. */
+  private int crc = 0xffffffff;
+
+  /** Creates a checksum that uses the JDK's CRC-32C implementation, if available. */
+  public Crc32C() {
+    this(true);
+  }
+
+  Crc32C(boolean useJdkImplementation) {
+    this.jdkChecksum = useJdkImplementation ? newJdkChecksum() : null;
+  }
+
+  /** Checks whether the checksums are computed by {@code java.util.zip.CRC32C}. */
+  public static boolean isJdkImplementationAvailable() {
+    return NEW_JDK_CRC32C != null;
+  }
+
+  /**
+   * Computes the checksum of the given range of a segment.
+   *
+   * @param segment The segment.
+   * @param offset The offset of the range.
+   * @param length The number of bytes of the range.
+   * @return The checksum.
+   */
+  public static int compute(MemorySegment segment, int offset, int length) {
+    final Crc32C checksum = new Crc32C();
+    checksum.update(segment, offset, length);
+    return checksum.getValue();
+  }
+
+  /**
+   * Adds the given range of a segment to the checksum.
+   *
+   * @param segment The segment.
+   * @param offset The offset of the range.
+   * @param length The number of bytes of the range.
+   * @throws IndexOutOfBoundsException Thrown, if the range is not within the segment.
+   * @throws IllegalStateException Thrown, if the segment has been freed.
+   */
+  public void update(MemorySegment segment, int offset, int length) {
+    if (jdkChecksum == null) {
+      updatePortable(segment, offset, length);
+    } else if (segment.isOffHeap()) {
+      try {
+        UPDATE_BYTE_BUFFER.invokeExact(jdkChecksum, segment.wrap(offset, length));
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new RuntimeException("Could not update the checksum.", t);
+      }
+    } else {
+      if ((offset | length) < 0 || offset > segment.size() - length) {
+        throw new IndexOutOfBoundsException(
+            String.format("offset=%d, length=%d, size=%d", offset, length, segment.size()));
+      }
+      if (segment.isFreed()) {
+        throw new IllegalStateException("segment has been freed");
+      }
+      jdkChecksum.update(segment.getArray(), offset, length);
+    }
+  }
+
+  /** Gets the checksum of all bytes added since the creation or the last reset. */
+  public int getValue() {
+    return jdkChecksum == null ? ~crc : (int) jdkChecksum.getValue();
+  }
+
+  /** Resets the checksum to that of zero bytes. */
+  public void reset() {
+    if (jdkChecksum == null) {
+      crc = 0xffffffff;
+    } else {
+      jdkChecksum.reset();
+    }
+  }
+
+  // ------------------------------------------------------------------------
+
+  private void updatePortable(MemorySegment segment, int offset, int length) {
+    if ((offset | length) < 0 || offset > segment.size() - length) {
+      throw new IndexOutOfBoundsException(
+          String.format("offset=%d, length=%d, size=%d", offset, length, segment.size()));
+    }
+    final int[] table = TABLE;
+    final int end = offset + length;
+    int c = crc;
+
+    for (; offset <= end - 8; offset += 8) {
+      final long word = segment.getLongLittleEndian(offset);
+      final int low = c ^ (int) word;
+      final int high = (int) (word >>> 32);
+      c =
+          table[(7 << 8) + (low & 0xff)]
+              ^ table[(6 << 8) + ((low >>> 8) & 0xff)]
+              ^ table[(5 << 8) + ((low >>> 16) & 0xff)]
+              ^ table[(4 << 8) + (low >>> 24)]
+              ^ table[(3 << 8) + (high & 0xff)]
+              ^ table[(2 << 8) + ((high >>> 8) & 0xff)]
+              ^ table[(1 << 8) + ((high >>> 16) & 0xff)]
+              ^ table[high >>> 24];
+    }
+    for (; offset < end; offset++) {
+      c = (c >>> 8) ^ table[(c ^ segment.get(offset)) & 0xff];
+    }
+    crc = c;
+  }
+
+  private static Checksum newJdkChecksum() {
+    if (NEW_JDK_CRC32C == null) {
+      return null;
+    }
+    try {
+      return (Checksum) NEW_JDK_CRC32C.invokeExact();
+    } catch (Throwable t) {
+      throw new RuntimeException("Could not create the CRC32C checksum.", t);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.apache.flink.util;
+
+/** Collection of simple mathematical routines. */
+public final class MathUtils {
+
+  /**
+   * Computes the logarithm of the given value to the base of 2. This method throws an error, if
+   * the given argument is not a power of 2.
+   *
+   * @param value The value to compute the logarithm for.
+   * @return The logarithm to the base of 2.
+   * @throws ArithmeticException Thrown, if the given value is zero.
+   * @throws IllegalArgumentException Thrown, if the given value is not a power of two.
+   */
+  public static int log2strict(int value) throws ArithmeticException, IllegalArgumentException {
+    if (value == 0) {
+      throw new ArithmeticException("Logarithm of zero is undefined.");
+    }
+    if ((value & (value - 1)) != 0) {
+      throw new IllegalArgumentException("The given value " + value + " is not a power of two.");
+    }
+    return 31 - Integer.numberOfLeadingZeros(value);
+  }
+
+  /**
+   * Computes the logarithm of the given value to the base of 2, rounded down. It corresponds to
+   * the position of the highest non-zero bit. The value must be positive.
+   *
+   * @param value The value to compute the logarithm for.
+   * @return The logarithm (rounded down) to the base of 2.
+   */
+  public static int log2floor(int value) {
+    if (value <= 0) {
+      throw new ArithmeticException("Logarithm of a non-positive value is undefined.");
+    }
+    return 31 - Integer.numberOfLeadingZeros(value);
+  }
+
+  /**
+   * Checks whether the given value is a power of two.
+   *
+   * @param value The value to check.
+   * @return True, if the value is a power of two, false otherwise.
+   */
+  public static boolean isPowerOf2(long value) {
+    return value > 0 && (value & (value - 1)) == 0;
+  }
+
+  /**
+   * Rounds the given value up to the next power of two. Values that are a power of two are
+   * returned unchanged.
+   *
+   * @param x The value to round up, in the range [0, 2^30].
+   * @return The next power of two that is larger or equal to the value.
+   */
+  public static int roundUpToPowerOfTwo(int x) {
+    x = x - 1;
+    x |= x >> 1;
+    x |= x >> 2;
+    x |= x >> 4;
+    x |= x >> 8;
+    x |= x >> 16;
+    return x + 1;
+  }
+
+  /**
+   * This function hashes an integer value. It is adapted from Bob Jenkins' website <a
+   * href="http://www.burtleburtle.net/bob/hash/integer.html">http://www.burtleburtle.net/bob/hash/integer.html</a>.
+   * The hash function has the <i>full avalanche</i> property, meaning that every bit of the value
+   * to be hashed affects every bit of the hash value.
+   *
+   * @param code The integer to be hashed.
+   * @return The hash code for the integer.
+   */
+  public static int jenkinsHash(int code) {
+    code = (code + 0x7ed55d16) + (code << 12);
+    code = (code ^ 0xc761c23c) ^ (code >>> 19);
+    code = (code + 0x165667b1) + (code << 5);
+    code = (code + 0xd3a2646c) ^ (code << 9);
+    code = (code + 0xfd7046c5) + (code << 3);
+    code = (code ^ 0xb55a4f09) ^ (code >>> 16);
+    return code >= 0 ? code : -(code + 1);
+  }
+
+  private MathUtils() {}
+}
@@ -0,0 +1,41 @@
+package org.apache.flink.util;
+
+import java.io.IOException;
+
+/**
+ * A simple iterator interface. The key differences to the {@link java.util.Iterator} are
+ *
+ * <ul>
+ *   <li>It has two distinct methods to get the next element, with and without passing a reuse
+ *       object.
+ *   <li>It signals the end of the iteration by returning null, rather than by an extra {@code
+ *       hasNext()} method.
+ *   <li>Its methods may throw {@link IOException}, as they may read from memory that is backed by
+ *       files.
+ * </ul>
+ *
+ * @param <E> The element type of the collection iterated over.
+ */
+public interface MutableObjectIterator<E> {
+
+  /**
+   * Gets the next element from the collection. The contents of that next element is put into the
+   * given reuse object, if the type is mutable.
+   *
+   * @param reuse The target object into which to place next element if E is mutable.
+   * @return The filled object or <code>null</code> if the iterator is exhausted.
+   * @throws IOException Thrown, if a problem occurred in the underlying I/O layer or in the
+   *     serialization / deserialization logic
+   */
+  E next(E reuse) throws IOException;
+
+  /**
+   * Gets the next element from the collection. The iterator implementation must obtain a new
+   * instance.
+   *
+   * @return The object or <code>null</code> if the iterator is exhausted.
+   * @throws IOException Thrown, if a problem occurred in the underlying I/O layer or in the
+   *     serialization / deserialization logic
+   */
+  E next() throws IOException;
+}
@@ -1,5 +1,6 @@
 package lan;
 
+import org.apache.flink.core.memory.MemoryUtils;
 import org.junit.Test;
 import sun.misc.Unsafe;
 
@@ -10,9 +11,9 @@ public class UnsafeTest {
 
   @Test
   public void testUnsage() {
-    Unsafe unsafe = Unsafe.getUnsafe();
+    Unsafe unsafe = MemoryUtils.UNSAFE;
     long addr = unsafe.allocateMemory(1);
-    unsafe.setMemory(addr,0,(byte)23);
+    unsafe.setMemory(addr,1,(byte)23);
     byte value = unsafe.getByte(addr);
     assert value==23;
   }
@@ -0,0 +1,380 @@
+package org.apache.flink.core.memory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/** Tests for the accessors of the {@link HybridMemorySegment}, on heap and off heap. */
+@RunWith(Parameterized.class)
+public class HybridMemorySegmentTest {
+
+  private static final int SIZE = 1024;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<Object[]> segmentTypes() {
+    return Arrays.asList(new Object[][] {{"heap"}, {"direct"}, {"unsafe"}});
+  }
+
+  private final String type;
+
+  public HybridMemorySegmentTest(String type) {
+    this.type = type;
+  }
+
+  private HybridMemorySegment createSegment(int size) {
+    switch (type) {
+      case "heap":
+        return HybridMemorySegment.FACTORY.allocateUnpooledSegment(size, null);
+      case "direct":
+        return HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(size, null);
+      default:
+        return HybridMemorySegment.FACTORY.allocateOffHeapUnsafeMemory(size, null);
+    }
+  }
+
+  @Test
+  public void testByteAccess() {
+    HybridMemorySegment segment = createSegment(SIZE);
+    for (int i = 0; i < SIZE; i++) {
+      segment.put(i, (byte) i);
+    }
+    for (int i = 0; i < SIZE; i++) {
+      assertEquals((byte) i, segment.get(i));
+    }
+
+    segment.putBoolean(3, true);
+    segment.putBoolean(4, false);
+    assertTrue(segment.getBoolean(3));
+    assertFalse(segment.getBoolean(4));
+
+    try {
+      segment.put(SIZE, (byte) 1);
+      fail("Expected an IndexOutOfBoundsException.");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+    try {
+      segment.put(-1, (byte) 1);
+      fail("Expected an IndexOutOfBoundsException.");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+    segment.free();
+  }
+
+  @Test
+  public void testBulkByteArrayAccess() {
+    HybridMemorySegment segment = createSegment(SIZE);
+    byte[] src = new byte[SIZE / 2];
+    new Random(42).nextBytes(src);
+
+    segment.put(17, src);
+    byte[] dst = new byte[SIZE / 2];
+    segment.get(17, dst);
+    assertArrayEquals(src, dst);
+
+    byte[] part = new byte[20];
+    segment.get(27, part, 5, 10);
+    assertArrayEquals(Arrays.copyOfRange(src, 10, 20), Arrays.copyOfRange(part, 5, 15));
+
+    try {
+      segment.get(SIZE - 10, dst);
+      fail("Expected an IndexOutOfBoundsException.");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+    try {
+      segment.put(0, src, 10, src.length);
+      fail("Expected an IndexOutOfBoundsException.");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+    segment.free();
+  }
+
+  @Test
+  public void testDataInputOutput() throws Exception {
+    HybridMemorySegment segment = createSegment(SIZE);
+    byte[] data = new byte[101];
+    new Random(7).nextBytes(data);
+
+    segment.put(new DataInputStream(new ByteArrayInputStream(data)), 3, data.length);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    segment.get(new DataOutputStream(bytes), 3, data.length);
+    assertArrayEquals(data, bytes.toByteArray());
+    segment.free();
+  }
+
+  @Test
+  public void testByteBufferAccess() {
+    HybridMemorySegment segment = createSegment(SIZE);
+    byte[] data = new byte[64];
+    new Random(11).nextBytes(data);
+
+    for (ByteBuffer source : new ByteBuffer[] {ByteBuffer.wrap(data), directCopy(data)}) {
+      segment.put(8, source, data.length);
+      assertEquals(data.length, source.position());
+
+      for (ByteBuffer target :
+          new ByteBuffer[] {ByteBuffer.allocate(data.length), ByteBuffer.allocateDirect(64)}) {
+        segment.get(8, target, data.length);
+        assertEquals(data.length, target.position());
+        target.flip();
+        byte[] read = new byte[data.length];
+        target.get(read);
+        assertArrayEquals(data, read);
+      }
+    }
+    segment.free();
+  }
+
+  @Test
+  public void testBulkPrimitiveArrayAccess() {
+    HybridMemorySegment segment = createSegment(SIZE);
+    Random rnd = new Random(11);
+
+    int[] ints = new int[SIZE / 4];
+    long[] longs = new long[SIZE / 8];
+    double[] doubles = new double[SIZE / 8];
+    for (int i = 0; i < ints.length; i++) {
+      ints[i] = rnd.nextInt();
+    }
+    for (int i = 0; i < longs.length; i++) {
+      longs[i] = rnd.nextLong();
+      doubles[i] = rnd.nextDouble();
+    }
+
+    for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+      boolean bigEndian = order == ByteOrder.BIG_ENDIAN;
+
+      // the values land where the scalar accessors of the same byte order expect them
+      segment.putInts(4, ints, 1, ints.length - 1, order);
+      for (int i = 1; i < ints.length; i++) {
+        int pos = 4 * i;
+        assertEquals(
+            ints[i], bigEndian ? segment.getIntBigEndian(pos) : segment.getIntLittleEndian(pos));
+      }
+      int[] intsRead = new int[ints.length];
+      segment.getInts(4, intsRead, 1, ints.length - 1, order);
+      assertArrayEquals(
+          Arrays.copyOfRange(ints, 1, ints.length), Arrays.copyOfRange(intsRead, 1, ints.length));
+
+      segment.putLongs(0, longs, 0, longs.length, order);
+      for (int i = 0; i < longs.length; i++) {
+        int pos = 8 * i;
+        assertEquals(
+            longs[i], bigEndian ? segment.getLongBigEndian(pos) : segment.getLongLittleEndian(pos));
+      }
+      long[] longsRead = new long[longs.length];
+      segment.getLongs(0, longsRead, 0, longs.length, order);
+      assertArrayEquals(longs, longsRead);
+
+      segment.putDoubles(0, doubles, 0, doubles.length, order);
+      for (int i = 0; i < doubles.length; i++) {
+        int pos = 8 * i;
+        double actual =
+            bigEndian ? segment.getDoubleBigEndian(pos) : segment.getDoubleLittleEndian(pos);
+        assertEquals(doubles[i], actual, 0.0);
+      }
+      double[] doublesRead = new double[doubles.length];
+      segment.getDoubles(0, doublesRead, 0, doubles.length, order);
+      assertArrayEquals(doubles, doublesRead, 0.0);
+    }
+
+    // native order variants
+    segment.putLongs(8, longs, 2, 10);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(longs[2 + i], segment.getLong(8 + 8 * i));
+    }
+
+    try {
+      segment.putLongs(SIZE - 8, longs, 0, 2);
+      fail("Expected an IndexOutOfBoundsException.");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+    try {
+      segment.getInts(0, ints, ints.length - 1, 2);
+      fail("Expected an IndexOutOfBoundsException.");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+    try {
+      segment.getDoubles(-8, doubles, 0, 1, ByteOrder.BIG_ENDIAN);
+      fail("Expected an IndexOutOfBoundsException.");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+
+    segment.free();
+    try {
+      segment.putInts(0, ints, 0, 1);
+      fail("Expected an IllegalStateException.");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testRangeEqualityAndMismatch() {
+    HybridMemorySegment seg1 = createSegment(SIZE);
+    MemorySegment seg2 = HeapMemorySegment.FACTORY.allocateUnpooledSegment(SIZE, null);
+    Random rnd = new Random(7);
+    byte[] data = new byte[SIZE];
+    rnd.nextBytes(data);
+    seg1.put(0, data);
+    seg2.put(0, data);
+
+    for (int len = 0; len <= 40; len++) {
+      assertTrue(seg1.equalTo(seg2, 3, 3, len));
+      assertEquals(-1, seg1.mismatch(seg2, 3, 3, len));
+      for (int diff = 0; diff < len; diff++) {
+        seg2.put(3 + diff, (byte) ~data[3 + diff]);
+        assertFalse(seg1.equalTo(seg2, 3, 3, len));
+        assertEquals(diff, seg1.mismatch(seg2, 3, 3, len));
+        assertEquals(diff, seg2.mismatch(seg1, 3, 3, len));
+        seg2.put(3 + diff, data[3 + diff]);
+      }
+    }
+
+    // shifted ranges
+    seg2.put(100, data, 0, 200);
+    assertTrue(seg1.equalTo(seg2, 0, 100, 200));
+    seg2.put(150, (byte) ~data[50]);
+    assertEquals(50, seg1.mismatch(seg2, 0, 100, 200));
+
+    try {
+      seg1.mismatch(seg2, SIZE - 4, 0, 5);
+      fail("Expected an IndexOutOfBoundsException.");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+    seg1.free();
+    try {
+      seg1.equalTo(seg2, 0, 0, 8);
+      fail("Expected an IllegalStateException.");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCompareAgainstByteWiseReference() {
+    HybridMemorySegment seg1 = createSegment(SIZE);
+    MemorySegment seg2 = HeapMemorySegment.FACTORY.allocateUnpooledSegment(SIZE, null);
+    Random rnd = new Random(13);
+    byte[] key = new byte[SIZE];
+
+    for (int round = 0; round < 5000; round++) {
+      int len = rnd.nextInt(24);
+      // place ranges at the end of the segments as well, where the tail cannot be masked
+      int offset1 = rnd.nextBoolean() ? SIZE - len : rnd.nextInt(SIZE - len);
+      int offset2 = rnd.nextBoolean() ? SIZE - len : rnd.nextInt(SIZE - len);
+      byte[] bytes1 = new byte[len];
+      rnd.nextBytes(bytes1);
+      byte[] bytes2 = bytes1.clone();
+      if (len > 0 && rnd.nextBoolean()) {
+        bytes2[rnd.nextInt(len)] = (byte) rnd.nextInt();
+      }
+      seg1.put(offset1, bytes1);
+      seg2.put(offset2, bytes2);
+      System.arraycopy(bytes2, 0, key, offset2, len);
+
+      int expected = Integer.signum(compareBytes(bytes1, bytes2));
+      assertEquals(expected, Integer.signum(seg1.compare(seg2, offset1, offset2, len)));
+      assertEquals(-expected, Integer.signum(seg2.compare(seg1, offset2, offset1, len)));
+      assertEquals(expected, Integer.signum(seg1.compare(offset1, key, offset2, len)));
+      assertEquals(expected == 0, seg1.equalTo(seg2, offset1, offset2, len));
+      assertEquals(expected == 0, seg1.equalTo(offset1, key, offset2, len));
+    }
+
+    try {
+      seg1.compare(0, key, SIZE - 2, 3);
+      fail("Expected an IndexOutOfBoundsException.");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testRangeHash() {
+    HybridMemorySegment segment = createSegment(SIZE);
+    byte[] abc = "abc".getBytes(StandardCharsets.US_ASCII);
+    segment.put(10, abc);
+
+    // reference values of xxHash64
+    assertEquals(0xEF46DB3751D8E999L, segment.hash64(0, 0, 0L));
+    assertEquals(0x44BC2CF5AD770999L, segment.hash64(10, 3, 0L));
+
+    // equal ranges hash equally, independent of their position and segment
+    Random rnd = new Random(11);
+    byte[] data = new byte[300];
+    rnd.nextBytes(data);
+    MemorySegment other = HeapMemorySegment.FACTORY.allocateUnpooledSegment(SIZE, null);
+    segment.put(1, data);
+    other.put(517, data);
+    for (int len = 0; len <= data.length; len += 7) {
+      assertEquals(segment.hash64(1, len, 42L), other.hash64(517, len, 42L));
+      assertEquals(segment.hash32(1, len), other.hash32(517, len));
+    }
+    assertFalse(segment.hash64(1, 100, 0L) == segment.hash64(1, 100, 1L));
+    assertFalse(segment.hash64(1, 100, 0L) == segment.hash64(2, 100, 0L));
+  }
+
+  @Test
+  public void testAccessAfterFree() {
+    HybridMemorySegment segment = createSegment(SIZE);
+    segment.free();
+    assertTrue(segment.isFreed());
+
+    try {
+      segment.put(0, (byte) 1);
+      fail("Expected an IllegalStateException.");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    try {
+      segment.get(0, new byte[8]);
+      fail("Expected an IllegalStateException.");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    // freeing twice must not release the memory twice
+    segment.free();
+  }
+
+  private static int compareBytes(byte[] bytes1, byte[] bytes2) {
+    for (int i = 0; i < bytes1.length; i++) {
+      int cmp = (bytes1[i] & 0xff) - (bytes2[i] & 0xff);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  private static ByteBuffer directCopy(byte[] data) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+    buffer.put(data);
+    buffer.flip();
+    return buffer;
+  }
+}
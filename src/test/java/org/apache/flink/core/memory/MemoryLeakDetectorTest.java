@@ -0,0 +1,100 @@
+package org.apache.flink.core.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the {@link MemoryLeakDetector}. */
+public class MemoryLeakDetectorTest {
+
+  private final List<MemoryLeakDetector.Leak> leaks = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void setUp() {
+    MemoryLeakDetector.setListener(leaks::add);
+    MemoryLeakDetector.setEnabled(true);
+  }
+
+  @After
+  public void tearDown() {
+    MemoryLeakDetector.setEnabled(false);
+    MemoryLeakDetector.setListener(null);
+  }
+
+  @Test
+  public void freedSegmentsAreNotReported() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      HybridMemorySegment.FACTORY.allocateUnpooledSegment(64, this).free();
+      HybridMemorySegment.FACTORY.allocateOffHeapUnsafeMemory(64, this).free();
+    }
+    collectGarbage();
+    MemoryLeakDetector.reportLeaks();
+    assertTrue(leaks.isEmpty());
+  }
+
+  @Test
+  public void reportsCollectedSegmentsThatWereNotFreed() throws Exception {
+    allocateAndLose();
+
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (leaks.isEmpty() && System.currentTimeMillis() < deadline) {
+      collectGarbage();
+      MemoryLeakDetector.reportLeaks();
+    }
+
+    assertEquals(1, leaks.size());
+    MemoryLeakDetector.Leak leak = leaks.get(0);
+    assertTrue(leak.getDescription(), leak.getDescription().contains("1234 bytes"));
+    assertTrue(leak.getDescription(), leak.getDescription().contains("leaking owner"));
+    assertTrue(stackContains(leak.getAllocationTrace(), "allocateAndLose"));
+  }
+
+  @Test
+  public void reportsUnreleasedPagesOnShutdown() throws Exception {
+    MemoryManager memoryManager =
+        new MemoryManager(
+            4L * MemoryManager.MIN_PAGE_SIZE, MemoryManager.MIN_PAGE_SIZE, MemoryType.OFF_HEAP);
+    List<MemorySegment> segments = memoryManager.allocatePages("task", 3);
+    memoryManager.release(segments.get(0));
+    memoryManager.shutdown();
+
+    assertEquals(2, leaks.size());
+    for (MemoryLeakDetector.Leak leak : leaks) {
+      assertTrue(leak.getDescription(), leak.getDescription().contains("owned by task"));
+      assertTrue(stackContains(leak.getAllocationTrace(), "reportsUnreleasedPagesOnShutdown"));
+    }
+  }
+
+  @Test
+  public void untrackedWhenDisabled() {
+    MemoryLeakDetector.setEnabled(false);
+    MemorySegment segment = HybridMemorySegment.FACTORY.allocateUnpooledSegment(64, this);
+    assertEquals(null, segment.leakTracker);
+    segment.free();
+  }
+
+  // ------------------------------------------------------------------------
+
+  private static void allocateAndLose() {
+    HybridMemorySegment.FACTORY.allocateUnpooledSegment(1234, "leaking owner").putInt(0, 42);
+  }
+
+  private static boolean stackContains(Throwable trace, String methodName) {
+    for (StackTraceElement element : trace.getStackTrace()) {
+      if (element.getMethodName().equals(methodName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void collectGarbage() throws InterruptedException {
+    System.gc();
+    Thread.sleep(10);
+  }
+}
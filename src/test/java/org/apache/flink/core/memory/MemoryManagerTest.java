@@ -0,0 +1,286 @@
+package org.apache.flink.core.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the {@link MemoryManager}. */
+public class MemoryManagerTest {
+
+  private static final int PAGE_SIZE = MemoryManager.MIN_PAGE_SIZE;
+
+  private static final int NUM_PAGES = 16;
+
+  private MemoryManager memoryManager;
+
+  @Before
+  public void setUp() {
+    memoryManager = new MemoryManager((long) PAGE_SIZE * NUM_PAGES, PAGE_SIZE, MemoryType.HEAP);
+  }
+
+  @After
+  public void tearDown() {
+    assertTrue(
+        "Not all memory was properly released to the memory manager.",
+        memoryManager.verifyEmpty());
+    memoryManager.shutdown();
+  }
+
+  @Test
+  public void allocateAndRelease() throws Exception {
+    Object owner = new Object();
+    List<MemorySegment> segments = memoryManager.allocatePages(owner, 5);
+
+    assertEquals(5, segments.size());
+    assertEquals(NUM_PAGES - 5, memoryManager.getNumberOfFreePages());
+    assertEquals(5, memoryManager.getNumberOfUsedPages());
+    for (MemorySegment segment : segments) {
+      assertSame(owner, segment.getOwner());
+      assertEquals(PAGE_SIZE, segment.size());
+    }
+
+    memoryManager.release(segments.get(0));
+    assertTrue(segments.get(0).isFreed());
+    assertEquals(NUM_PAGES - 4, memoryManager.getNumberOfFreePages());
+
+    // releasing twice is ignored
+    memoryManager.release(segments.get(0));
+    assertEquals(NUM_PAGES - 4, memoryManager.getNumberOfFreePages());
+
+    memoryManager.release(segments);
+    assertTrue(segments.isEmpty());
+  }
+
+  @Test
+  public void releaseAllByOwner() throws Exception {
+    Object owner1 = new Object();
+    Object owner2 = new Object();
+
+    List<MemorySegment> segments1 = memoryManager.allocatePages(owner1, 6);
+    List<MemorySegment> segments2 = memoryManager.allocatePages(owner2, 4);
+    assertEquals(NUM_PAGES - 10, memoryManager.getNumberOfFreePages());
+
+    memoryManager.releaseAll(owner1);
+    assertEquals(NUM_PAGES - 4, memoryManager.getNumberOfFreePages());
+    for (MemorySegment segment : segments1) {
+      assertTrue(segment.isFreed());
+    }
+    for (MemorySegment segment : segments2) {
+      assertFalse(segment.isFreed());
+    }
+
+    memoryManager.releaseAll(owner2);
+  }
+
+  @Test
+  public void allocateTooMuch() throws Exception {
+    Object owner = new Object();
+    memoryManager.allocatePages(owner, NUM_PAGES - 2);
+
+    try {
+      memoryManager.allocatePages(owner, 3);
+      fail("Expected a MemoryAllocationException.");
+    } catch (MemoryAllocationException e) {
+      // expected
+    }
+    // a failed request does not take any pages
+    assertEquals(2, memoryManager.getNumberOfFreePages());
+
+    memoryManager.releaseAll(owner);
+  }
+
+  @Test
+  public void reusesPooledMemory() throws Exception {
+    MemoryManager offHeap =
+        new MemoryManager((long) PAGE_SIZE * 2, PAGE_SIZE, MemoryType.OFF_HEAP);
+    try {
+      Object owner = new Object();
+      MemorySegment first = offHeap.allocatePages(owner, 1).get(0);
+      assertTrue(first.isOffHeap());
+      long address = first.getAddress();
+      offHeap.release(first);
+
+      List<MemorySegment> segments = offHeap.allocatePages(owner, 2);
+      boolean reused = false;
+      for (MemorySegment segment : segments) {
+        reused |= segment.getAddress() == address;
+      }
+      assertTrue(reused);
+      offHeap.releaseAll(owner);
+      assertTrue(offHeap.verifyEmpty());
+    } finally {
+      offHeap.shutdown();
+    }
+  }
+
+  @Test
+  public void concurrentAllocation() throws Exception {
+    final int numThreads = 4;
+    final Thread[] threads = new Thread[numThreads];
+    final Throwable[] errors = new Throwable[numThreads];
+
+    for (int t = 0; t < numThreads; t++) {
+      final int index = t;
+      threads[t] =
+          new Thread(
+              () -> {
+                try {
+                  Object owner = new Object();
+                  for (int i = 0; i < 1000; i++) {
+                    List<MemorySegment> segments = memoryManager.allocatePages(owner, 4);
+                    segments.get(0).putLong(0, i);
+                    memoryManager.release(segments.get(0));
+                    memoryManager.releaseAll(owner);
+                  }
+                } catch (Throwable e) {
+                  errors[index] = e;
+                }
+              });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (Throwable error : errors) {
+      if (error != null) {
+        throw new AssertionError(error);
+      }
+    }
+  }
+
+  @Test
+  public void reportsMetrics() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    memoryManager.registerMetrics(registry, "test");
+    Counter allocated = (Counter) registry.getMetric("test.HEAP.allocatedBytes");
+    Counter freed = (Counter) registry.getMetric("test.HEAP.freedBytes");
+    Counter live = (Counter) registry.getMetric("test.HEAP.liveBytes");
+
+    String owner = "sorter";
+    List<MemorySegment> segments = memoryManager.allocatePages(owner, 3);
+    memoryManager.allocatePages("join", 2);
+    assertEquals(5L * PAGE_SIZE, allocated.getCount());
+    assertEquals(5L * PAGE_SIZE, live.getCount());
+    String sorterPrefix = ownerMetricsPrefix(registry, "test.HEAP.owner.sorter#");
+    Gauge<?> ownerGauge = (Gauge<?>) registry.getMetric(sorterPrefix + "liveBytes");
+    Counter ownerFreed = (Counter) registry.getMetric(sorterPrefix + "freedBytes");
+    assertEquals(3L * PAGE_SIZE, ownerGauge.getValue());
+    assertEquals(
+        3L * PAGE_SIZE, ((Counter) registry.getMetric(sorterPrefix + "allocatedBytes")).getCount());
+
+    memoryManager.release(segments.get(0));
+    assertEquals(2L * PAGE_SIZE, ownerGauge.getValue());
+    assertEquals((long) PAGE_SIZE, ownerFreed.getCount());
+    assertEquals((long) PAGE_SIZE, freed.getCount());
+
+    memoryManager.release(segments);
+    assertNull(registry.getMetric(sorterPrefix + "liveBytes"));
+    assertNull(registry.getMetric(sorterPrefix + "freedBytes"));
+    memoryManager.releaseAll("join");
+    assertNull(ownerMetricsPrefix(registry, "test.HEAP.owner."));
+
+    assertEquals(5L * PAGE_SIZE, allocated.getCount());
+    assertEquals(5L * PAGE_SIZE, freed.getCount());
+    assertEquals(0L, live.getCount());
+  }
+
+  @Test
+  public void ownersWithEqualNamesHaveSeparateMetrics() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    memoryManager.registerMetrics(registry, "test");
+
+    // two distinct owners with the same string form
+    Object first = new NamedOwner("task");
+    Object second = new NamedOwner("task");
+    memoryManager.allocatePages(first, 1);
+    memoryManager.allocatePages(second, 2);
+
+    long total = 0;
+    int numGauges = 0;
+    for (String name : registry.getMetricNames()) {
+      if (name.startsWith("test.HEAP.owner.task#") && name.endsWith(".liveBytes")) {
+        total += (Long) ((Gauge<?>) registry.getMetric(name)).getValue();
+        numGauges++;
+      }
+    }
+    assertEquals(2, numGauges);
+    assertEquals(3L * PAGE_SIZE, total);
+
+    memoryManager.releaseAll(first);
+    memoryManager.releaseAll(second);
+    assertNull(ownerMetricsPrefix(registry, "test.HEAP.owner."));
+  }
+
+  @Test
+  public void countsUnpooledSegments() {
+    MetricRegistry registry = new MetricRegistry();
+    memoryManager.registerMetrics(registry, "test");
+    Counter allocated = (Counter) registry.getMetric("test.unpooled.allocatedBytes");
+    Counter freed = (Counter) registry.getMetric("test.unpooled.freedBytes");
+    Gauge<?> live = (Gauge<?>) registry.getMetric("test.unpooled.liveBytes");
+
+    // the counters are process-wide, so only their changes are checked
+    long allocatedBefore = allocated.getCount();
+    long freedBefore = freed.getCount();
+    MemorySegment heap = HeapMemorySegment.FACTORY.allocateUnpooledSegment(100, null);
+    MemorySegment offHeap = HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(200, null);
+    MemorySegment unsafe = HybridMemorySegment.FACTORY.allocateOffHeapUnsafeMemory(300, null);
+    assertEquals(allocatedBefore + 600, allocated.getCount());
+
+    heap.free();
+    offHeap.free();
+    unsafe.free();
+    unsafe.free();
+    assertEquals(freedBefore + 600, freed.getCount());
+    assertEquals(allocated.getCount() - freed.getCount(), live.getValue());
+  }
+
+  @Test
+  public void metricsMustBeRegisteredBeforeAllocation() throws Exception {
+    Object owner = new Object();
+    memoryManager.allocatePages(owner, 1);
+    try {
+      memoryManager.registerMetrics(new MetricRegistry(), "test");
+      fail("registering metrics after the first allocation should fail");
+    } catch (IllegalStateException expected) {
+    }
+    memoryManager.releaseAll(owner);
+  }
+
+  // ------------------------------------------------------------------------
+
+  /** Finds the common prefix of the metrics of the owner whose names start as given. */
+  private static String ownerMetricsPrefix(MetricRegistry registry, String start) {
+    for (String name : registry.getMetricNames()) {
+      if (name.startsWith(start) && name.endsWith(".liveBytes")) {
+        return name.substring(0, name.length() - "liveBytes".length());
+      }
+    }
+    return null;
+  }
+
+  private static final class NamedOwner {
+
+    private final String name;
+
+    NamedOwner(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
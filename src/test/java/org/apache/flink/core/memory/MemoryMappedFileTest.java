@@ -0,0 +1,129 @@
+package org.apache.flink.core.memory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests for the {@link MemoryMappedFile}. */
+public class MemoryMappedFileTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testSplitIntoSegments() throws Exception {
+    byte[] data = new byte[10_000];
+    new Random(42).nextBytes(data);
+    File file = temporaryFolder.newFile();
+    Files.write(file.toPath(), data);
+
+    try (MemoryMappedFile mapped = MemoryMappedFile.map(file, 4096, false, null)) {
+      assertEquals(3, mapped.getNumberOfSegments());
+      assertEquals(4096, mapped.getSegment(0).size());
+      assertEquals(10_000 - 2 * 4096, mapped.getSegment(2).size());
+
+      for (int i = 0; i < data.length; i++) {
+        assertEquals(
+            data[i], mapped.getSegmentFor(i).get(mapped.getOffsetInSegment(i)));
+      }
+
+      // non-writable mappings are read-only
+      assertTrue(mapped.getSegment(0).isReadOnly());
+      try {
+        mapped.getSegment(0).putLong(0, 0L);
+        fail("Expected a ReadOnlyBufferException.");
+      } catch (ReadOnlyBufferException e) {
+        // expected
+      }
+    }
+    assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  public void testReadOnlyFile() throws Exception {
+    byte[] data = new byte[5000];
+    new Random(7).nextBytes(data);
+    File file = temporaryFolder.newFile();
+    Files.write(file.toPath(), data);
+    assertTrue(file.setWritable(false));
+
+    try (MemoryMappedFile mapped = MemoryMappedFile.map(file, 1000L, 4000L, 4096, false, null)) {
+      MemorySegment segment = mapped.getSegment(0);
+      assertFalse(mapped.isWritable());
+      assertEquals(data[1000], segment.get(0));
+      assertEquals(data[4999], segment.get(3999));
+
+      byte[] bytes = new byte[16];
+      try {
+        segment.put(8, bytes);
+        fail("Expected a ReadOnlyBufferException.");
+      } catch (ReadOnlyBufferException e) {
+        // expected
+      }
+      try {
+        HeapMemorySegment.FACTORY.wrap(bytes).copyTo(0, segment, 0, bytes.length);
+        fail("Expected a ReadOnlyBufferException.");
+      } catch (ReadOnlyBufferException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testReadOnlyRegionPastEndOfFile() throws Exception {
+    File file = temporaryFolder.newFile();
+    Files.write(file.toPath(), new byte[1000]);
+
+    try {
+      MemoryMappedFile.map(file, 500L, 1000L, 4096, false, null);
+      fail("Expected an IOException.");
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(1000, file.length());
+  }
+
+  @Test
+  public void testWritableMapping() throws Exception {
+    File file = temporaryFolder.newFile();
+
+    MemoryMappedFile mapped = MemoryMappedFile.map(file, 0L, 8192L, 4096, true, null);
+    mapped.getSegment(0).putLongBigEndian(0, 0x0102030405060708L);
+    mapped.getSegment(1).putIntBigEndian(4092, 0xCAFEBABE);
+    mapped.flush();
+    mapped.close();
+
+    byte[] content = Files.readAllBytes(file.toPath());
+    assertEquals(8192, content.length);
+    assertEquals(1, content[0]);
+    assertEquals(8, content[7]);
+    assertEquals((byte) 0xCA, content[8188]);
+    assertEquals((byte) 0xBE, content[8191]);
+  }
+
+  @Test
+  public void testAccessAfterClose() throws Exception {
+    File file = temporaryFolder.newFile();
+    MemoryMappedFile mapped = MemoryMappedFile.map(file, 0L, 4096L, 4096, true, null);
+    MemorySegment segment = mapped.getSegment(0);
+    mapped.close();
+
+    assertTrue(segment.isFreed());
+    try {
+      segment.getLong(0);
+      fail("Expected an IllegalStateException.");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+}
@@ -1,15 +1,82 @@
 package org.apache.flink.core.memory;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
 import org.junit.Test;
 
 /**
  * created by pengmingguo on 1/22/19
  */
 public class MemorySegmentTest {
+
+  @After
+  public void tearDown() {
+    MemorySegment.setUseAfterFreeDetection(false);
+  }
+
   @Test
   public void test1() {
     byte[] array = new byte[5];
-    new MemorySegment(array,null);
+    new HeapMemorySegment(array,null);
+  }
+
+  @Test
+  public void recycleWithoutDetectionKeepsTheSegment() {
+    MemorySegment segment = HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(64, null);
+    assertSame(segment, segment.recycle());
+    assertEquals(0, segment.getGeneration());
+    segment.free();
+  }
+
+  @Test
+  public void recycledHandlesFailFast() {
+    MemorySegment.setUseAfterFreeDetection(true);
+    checkRecycledHandleFails(HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(64, null));
+    checkRecycledHandleFails(HybridMemorySegment.FACTORY.allocateUnpooledSegment(64, null));
+    checkRecycledHandleFails(HybridMemorySegment.FACTORY.allocateOffHeapUnsafeMemory(64, null));
+    checkRecycledHandleFails(HeapMemorySegment.FACTORY.allocateUnpooledSegment(64, null));
+  }
+
+  @Test
+  public void recyclingTwiceFails() {
+    MemorySegment.setUseAfterFreeDetection(true);
+    MemorySegment segment = HybridMemorySegment.FACTORY.allocateUnpooledSegment(64, null);
+    segment.recycle().free();
+    try {
+      segment.recycle();
+      fail("recycling a retired segment should fail");
+    } catch (IllegalStateException expected) {
+    }
   }
 
+  private static void checkRecycledHandleFails(MemorySegment stale) {
+    stale.putLong(0, 42L);
+    MemorySegment current = stale.recycle();
+
+    assertNotSame(stale, current);
+    assertEquals(stale.getGeneration() + 1, current.getGeneration());
+    assertTrue(stale.isFreed());
+    assertEquals(42L, current.getLong(0));
+    try {
+      stale.putLong(0, 13L);
+      fail("writing through a recycled handle should fail");
+    } catch (IllegalStateException | NullPointerException expected) {
+    }
+    try {
+      stale.getInt(8);
+      fail("reading through a recycled handle should fail");
+    } catch (IllegalStateException | NullPointerException expected) {
+    }
+
+    // the memory stays valid for the current handle, and freeing the stale one has no effect
+    stale.free();
+    current.putLong(8, 7L);
+    assertEquals(42L, current.getLong(0));
+    assertEquals(current.getGeneration() + 1, current.recycle().getGeneration());
+  }
 }
@@ -0,0 +1,107 @@
+package org.apache.flink.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import org.junit.Test;
+
+/** Tests for the {@link MetricRegistry} and the {@link JmxReporter}. */
+public class MetricRegistryTest {
+
+  @Test
+  public void countersAreSharedByName() {
+    MetricRegistry registry = new MetricRegistry();
+    Counter counter = registry.counter("a.count");
+    assertSame(counter, registry.counter("a.count"));
+
+    counter.inc();
+    counter.inc(10);
+    counter.dec(3);
+    counter.dec();
+    assertEquals(7L, registry.counter("a.count").getCount());
+  }
+
+  @Test
+  public void counterNameTakenByGauge() {
+    MetricRegistry registry = new MetricRegistry();
+    registry.register("a.gauge", (Gauge<Integer>) () -> 1);
+    try {
+      registry.counter("a.gauge");
+      fail("expected an exception");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void conditionalUnregister() {
+    MetricRegistry registry = new MetricRegistry();
+    Gauge<Integer> first = () -> 1;
+    Gauge<Integer> second = () -> 2;
+    registry.register("g", first);
+    registry.register("g", second);
+
+    assertFalse(registry.unregister("g", first));
+    assertSame(second, registry.getMetric("g"));
+    assertTrue(registry.unregister("g", second));
+    assertNull(registry.getMetric("g"));
+  }
+
+  @Test
+  public void snapshotReadsAllMetrics() {
+    MetricRegistry registry = new MetricRegistry();
+    registry.counter("b").inc(5);
+    registry.register("a", (Gauge<String>) () -> "value");
+
+    Map<String, Object> snapshot = registry.snapshot();
+    assertEquals("[a, b]", snapshot.keySet().toString());
+    assertEquals("value", snapshot.get("a"));
+    assertEquals(5L, snapshot.get("b"));
+  }
+
+  @Test
+  public void exposesMetricsThroughJmx() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    AtomicInteger value = new AtomicInteger(3);
+    registry.counter("memory.HEAP.liveBytes").inc(4096);
+    registry.register("memory.gauge", (Gauge<Integer>) value::get);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try (JmxReporter reporter =
+        JmxReporter.start(registry, "org.apache.flink:type=MetricRegistryTest")) {
+      ObjectName name = reporter.getObjectName();
+      assertEquals(2, server.getMBeanInfo(name).getAttributes().length);
+      assertEquals(4096L, server.getAttribute(name, "memory.HEAP.liveBytes"));
+      assertEquals(3, server.getAttribute(name, "memory.gauge"));
+
+      value.set(7);
+      registry.counter("memory.late").inc();
+      assertEquals(7, server.getAttribute(name, "memory.gauge"));
+      assertEquals(1L, server.getAttribute(name, "memory.late"));
+      assertEquals(3, server.getMBeanInfo(name).getAttributes().length);
+    }
+    assertFalse(server.isRegistered(new ObjectName("org.apache.flink:type=MetricRegistryTest")));
+  }
+
+  @Test
+  public void rejectsOperationsThroughJmx() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try (JmxReporter reporter =
+        JmxReporter.start(
+            new MetricRegistry(), "org.apache.flink:type=MetricRegistryTest,name=operations")) {
+      server.invoke(reporter.getObjectName(), "reset", new Object[0], new String[0]);
+      fail("expected a ReflectionException");
+    } catch (ReflectionException expected) {
+      assertTrue(expected.getCause() instanceof NoSuchMethodException);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package org.apache.flink.runtime.io.compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.junit.Test;
+
+/** Tests for the {@link Lz4BlockCompressionCodec} and the {@link NoCompressionCodec}. */
+public class BlockCompressionCodecTest {
+
+  private static final int SIZE = 64 * 1024;
+
+  private static byte[] randomBytes(Random rnd, int length) {
+    byte[] data = new byte[length];
+    rnd.nextBytes(data);
+    return data;
+  }
+
+  /** Text-like data from a small vocabulary, which compresses well. */
+  private static byte[] wordBytes(Random rnd, int length) {
+    String[] words = {"flink ", "memory ", "segment ", "window ", "join ", "spill ", "a ", "the "};
+    StringBuilder bld = new StringBuilder(length);
+    while (bld.length() < length) {
+      bld.append(words[rnd.nextInt(words.length)]);
+    }
+    return bld.substring(0, length).getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static void assertRoundTrip(
+      BlockCompressionCodec codec, byte[] data, MemorySegment source, MemorySegment compressed)
+      throws IOException {
+    final int offset = 7;
+    source.put(offset, data);
+    int compressedLength = codec.compress(source, offset, data.length, compressed, 3);
+    assertTrue(compressedLength <= codec.maxCompressedLength(data.length));
+
+    MemorySegment target = HeapMemorySegment.FACTORY.allocateUnpooledSegment(data.length + 8, null);
+    int length = codec.decompress(compressed, 3, compressedLength, target, 5, data.length);
+    assertEquals(data.length, length);
+    byte[] result = new byte[length];
+    target.get(5, result);
+    assertArrayEquals(data, result);
+  }
+
+  @Test
+  public void testRoundTrips() throws Exception {
+    Random rnd = new Random(42);
+    for (BlockCompressionCodec codec :
+        new BlockCompressionCodec[] {new Lz4BlockCompressionCodec(), NoCompressionCodec.INSTANCE}) {
+      MemorySegment source = HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(SIZE, null);
+      MemorySegment compressed =
+          HeapMemorySegment.FACTORY.allocateUnpooledSegment(codec.maxCompressedLength(SIZE), null);
+      for (int length : new int[] {0, 1, 12, 13, 14, 100, 1000, 40000, SIZE - 7}) {
+        assertRoundTrip(codec, randomBytes(rnd, length), source, compressed);
+        assertRoundTrip(codec, wordBytes(rnd, length), source, compressed);
+        assertRoundTrip(codec, new byte[length], source, compressed);
+      }
+    }
+  }
+
+  @Test
+  public void testCompressionRatio() {
+    Lz4BlockCompressionCodec codec = new Lz4BlockCompressionCodec();
+    Random rnd = new Random(7);
+    MemorySegment source = HeapMemorySegment.FACTORY.allocateUnpooledSegment(SIZE, null);
+    MemorySegment target =
+        HeapMemorySegment.FACTORY.allocateUnpooledSegment(codec.maxCompressedLength(SIZE), null);
+
+    source.put(0, wordBytes(rnd, SIZE));
+    assertTrue(codec.compress(source, 0, SIZE, target, 0) < SIZE / 2);
+
+    // runs of zeros are encoded as overlapping matches
+    source.put(0, new byte[SIZE]);
+    assertTrue(codec.compress(source, 0, SIZE, target, 0) < SIZE / 100);
+
+    source.put(0, randomBytes(rnd, SIZE));
+    assertTrue(codec.compress(source, 0, SIZE, target, 0) <= codec.maxCompressedLength(SIZE));
+  }
+
+  @Test
+  public void testReferenceBlock() throws Exception {
+    // "abc" eight times in the reference encoding: 3 literals and a match of 16 bytes at offset 3,
+    // then the 5 last literals
+    byte[] block = {0x3c, 'a', 'b', 'c', 3, 0, 0x50, 'b', 'c', 'a', 'b', 'c'};
+    MemorySegment source = HeapMemorySegment.FACTORY.wrap(block);
+    MemorySegment target = HeapMemorySegment.FACTORY.allocateUnpooledSegment(64, null);
+    int length = new Lz4BlockCompressionCodec().decompress(source, 0, block.length, target, 0, 64);
+    byte[] result = new byte[length];
+    target.get(0, result);
+    assertEquals("abcabcabcabcabcabcabcabc", new String(result, StandardCharsets.US_ASCII));
+  }
+
+  @Test
+  public void testMalformedInput() throws Exception {
+    Lz4BlockCompressionCodec codec = new Lz4BlockCompressionCodec();
+    MemorySegment source = HeapMemorySegment.FACTORY.allocateUnpooledSegment(SIZE, null);
+    source.put(0, wordBytes(new Random(3), 10000));
+    MemorySegment compressed =
+        HeapMemorySegment.FACTORY.allocateUnpooledSegment(codec.maxCompressedLength(SIZE), null);
+    int compressedLength = codec.compress(source, 0, 10000, compressed, 0);
+    MemorySegment target = HeapMemorySegment.FACTORY.allocateUnpooledSegment(SIZE, null);
+
+    // truncated input
+    assertMalformed(codec, compressed, compressedLength / 2, target, SIZE);
+    // too little output space
+    assertMalformed(codec, compressed, compressedLength, target, 9999);
+    // a back reference before the start of the output
+    MemorySegment bad = HeapMemorySegment.FACTORY.wrap(new byte[] {0x10, 'a', 5, 0, 0x00});
+    assertMalformed(codec, bad, 5, target, SIZE);
+
+    // random garbage must never read or write out of bounds
+    Random rnd = new Random(11);
+    for (int i = 0; i < 1000; i++) {
+      MemorySegment garbage = HeapMemorySegment.FACTORY.wrap(randomBytes(rnd, rnd.nextInt(64)));
+      try {
+        codec.decompress(garbage, 0, garbage.size(), target, 0, 256);
+      } catch (IOException e) {
+        // expected for most inputs
+      }
+    }
+  }
+
+  private static void assertMalformed(
+      BlockCompressionCodec codec,
+      MemorySegment compressed,
+      int length,
+      MemorySegment target,
+      int maxLength) {
+    try {
+      codec.decompress(compressed, 0, length, target, 0, maxLength);
+      fail("IOException expected");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed LZ4 block"));
+    }
+  }
+}
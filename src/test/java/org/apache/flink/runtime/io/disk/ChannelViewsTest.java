@@ -0,0 +1,160 @@
+package org.apache.flink.runtime.io.disk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.compression.BlockCompressionCodec;
+import org.apache.flink.runtime.io.compression.Lz4BlockCompressionCodec;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link ChannelWriterOutputView} and {@link ChannelReaderInputView}, with a focus
+ * on the block checksums.
+ */
+public class ChannelViewsTest {
+
+  private static final int SEGMENT_SIZE = 1024;
+
+  private static final int NUM_LONGS = 1000;
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File writeLongs(boolean checksums, boolean offHeap) throws IOException {
+    return writeLongs(checksums, offHeap, null);
+  }
+
+  private File writeLongs(boolean checksums, boolean offHeap, BlockCompressionCodec codec)
+      throws IOException {
+    File file = tempFolder.newFile();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      ChannelWriterOutputView out =
+          new ChannelWriterOutputView(channel, allocate(offHeap), checksums, codec);
+      for (long i = 0; i < NUM_LONGS; i++) {
+        out.writeLong(i * 31);
+      }
+      out.close();
+      assertTrue(out.getBlockCount() > 5);
+    }
+    return file;
+  }
+
+  private static void readLongs(File file, boolean checksums, boolean offHeap)
+      throws IOException {
+    readLongs(file, checksums, offHeap, null);
+  }
+
+  private static void readLongs(
+      File file, boolean checksums, boolean offHeap, BlockCompressionCodec codec)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ChannelReaderInputView in =
+          new ChannelReaderInputView(channel, allocate(offHeap), file, checksums, codec);
+      for (long i = 0; i < NUM_LONGS; i++) {
+        assertEquals(i * 31, in.readLong());
+      }
+      assertEquals(channel.size(), in.getBytesRead());
+    }
+  }
+
+  private static MemorySegment allocate(boolean offHeap) {
+    return offHeap
+        ? HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(SEGMENT_SIZE, null)
+        : HeapMemorySegment.FACTORY.allocateUnpooledSegment(SEGMENT_SIZE, null);
+  }
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    for (boolean checksums : new boolean[] {true, false}) {
+      for (boolean offHeap : new boolean[] {true, false}) {
+        readLongs(writeLongs(checksums, offHeap), checksums, !offHeap);
+      }
+    }
+  }
+
+  @Test
+  public void testCorruptBlockIsDetected() throws Exception {
+    File file = writeLongs(true, true);
+
+    // flip a bit in the data of the third block
+    final long position = 2L * SEGMENT_SIZE + 100;
+    try (FileChannel channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.allocate(1);
+      channel.read(buffer, position);
+      buffer.put(0, (byte) (buffer.get(0) ^ 0x10));
+      buffer.rewind();
+      channel.write(buffer, position);
+    }
+
+    try {
+      readLongs(file, true, false);
+      fail("Expected an IOException.");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Checksum mismatch"));
+      assertTrue(e.getMessage(), e.getMessage().contains("offset " + 2 * SEGMENT_SIZE));
+      assertTrue(e.getMessage(), e.getMessage().contains(file.getPath()));
+    }
+  }
+
+  @Test
+  public void testCompressedBlocks() throws Exception {
+    for (boolean offHeap : new boolean[] {true, false}) {
+      File file = writeLongs(true, offHeap, new Lz4BlockCompressionCodec());
+      assertTrue(file.length() < writeLongs(true, offHeap).length() * 3 / 4);
+      readLongs(file, true, !offHeap, new Lz4BlockCompressionCodec());
+
+      try {
+        readLongs(file, true, offHeap);
+        fail("Expected an IOException.");
+      } catch (IOException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("compressed"));
+      }
+    }
+  }
+
+  @Test
+  public void testMissingChecksumIsDetected() throws Exception {
+    try {
+      readLongs(writeLongs(false, true), true, true);
+      fail("Expected an IOException.");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("carries no checksum"));
+    }
+  }
+
+  @Test
+  public void testClearedChecksumFlagIsDetected() throws Exception {
+    File file = writeLongs(true, true);
+
+    // clear the checksum flag of the second block, as a corruption of the header might
+    final long position = SEGMENT_SIZE + ChannelWriterOutputView.HEADER_FLAGS_OFFSET;
+    try (FileChannel channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.allocate(2);
+      channel.read(buffer, position);
+      buffer.putShort(0, (short) (buffer.getShort(0) & ~ChannelWriterOutputView.FLAG_CHECKSUM));
+      buffer.rewind();
+      channel.write(buffer, position);
+    }
+
+    readLongs(file, false, true);
+    try {
+      readLongs(file, true, true);
+      fail("Expected an IOException.");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("carries no checksum"));
+      assertTrue(e.getMessage(), e.getMessage().contains("offset " + SEGMENT_SIZE));
+    }
+  }
+}
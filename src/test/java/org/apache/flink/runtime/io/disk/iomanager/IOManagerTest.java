@@ -0,0 +1,398 @@
+package org.apache.flink.runtime.io.disk.iomanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link IOManager}, its {@link BlockChannelWriter} and {@link BlockChannelReader},
+ * and the {@link BlockChannelWriterOutputView} and {@link BlockChannelReaderInputView} on top of
+ * them.
+ */
+public class IOManagerTest {
+
+  private static final int SEGMENT_SIZE = 1024;
+
+  private static final int NUM_BLOCKS = 20;
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File[] tempDirs;
+
+  private IOManager ioManager;
+
+  @Before
+  public void setup() throws IOException {
+    tempDirs = new File[] {tempFolder.newFolder(), tempFolder.newFolder()};
+    ioManager = new IOManager(tempDirs);
+  }
+
+  @After
+  public void shutdown() {
+    ioManager.shutdown();
+  }
+
+  private static MemorySegment allocate(boolean offHeap) {
+    return offHeap
+        ? HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(SEGMENT_SIZE, null)
+        : HeapMemorySegment.FACTORY.allocateUnpooledSegment(SEGMENT_SIZE, null);
+  }
+
+  private static List<MemorySegment> allocate(int numSegments, boolean offHeap) {
+    final List<MemorySegment> memory = new ArrayList<>(numSegments);
+    for (int i = 0; i < numSegments; i++) {
+      memory.add(allocate(offHeap));
+    }
+    return memory;
+  }
+
+  @Test
+  public void testChannelsAreSpreadOverDirectories() {
+    final File[] paths = ioManager.getSpillingDirectories();
+    assertEquals(2, paths.length);
+    for (int i = 0; i < paths.length; i++) {
+      assertEquals(tempDirs[i], paths[i].getParentFile());
+      assertTrue(paths[i].isDirectory());
+    }
+
+    final FileIOChannel.ID first = ioManager.createChannel();
+    final FileIOChannel.ID second = ioManager.createChannel();
+    final FileIOChannel.ID third = ioManager.createChannel();
+    assertEquals(paths[first.getThreadNum()], first.getPath().getParentFile());
+    assertNotEquals(first.getThreadNum(), second.getThreadNum());
+    assertEquals(first.getThreadNum(), third.getThreadNum());
+    assertNotEquals(first, third);
+
+    final FileIOChannel.Enumerator enumerator = ioManager.createChannelEnumerator();
+    final FileIOChannel.ID run0 = enumerator.next();
+    final FileIOChannel.ID run1 = enumerator.next();
+    assertEquals(0, run0.getThreadNum());
+    assertEquals(1, run1.getThreadNum());
+    assertEquals(paths[1], run1.getPath().getParentFile());
+  }
+
+  @Test
+  public void testWriteAndReadBlocks() throws Exception {
+    for (boolean offHeap : new boolean[] {true, false}) {
+      final FileIOChannel.ID id = ioManager.createChannel();
+      final LinkedBlockingQueue<MemorySegment> returnQueue = new LinkedBlockingQueue<>();
+      final BlockChannelWriter writer = ioManager.createBlockChannelWriter(id, returnQueue);
+      final List<MemorySegment> memory = allocate(4, offHeap);
+      returnQueue.addAll(memory);
+
+      for (int block = 0; block < NUM_BLOCKS; block++) {
+        final MemorySegment segment = writer.getNextReturnedBlock();
+        for (int pos = 0; pos < SEGMENT_SIZE; pos += 4) {
+          segment.putInt(pos, block * SEGMENT_SIZE + pos);
+        }
+        writer.writeBlock(segment);
+      }
+      writer.close();
+      assertEquals(memory.size(), returnQueue.size());
+      assertEquals((long) NUM_BLOCKS * SEGMENT_SIZE, id.getPath().length());
+
+      // read into segments of the other kind, through the staging buffer or directly
+      final BlockChannelReader reader = ioManager.createBlockChannelReader(id, returnQueue);
+      returnQueue.clear();
+      for (MemorySegment segment : allocate(3, !offHeap)) {
+        reader.readBlock(segment);
+      }
+      for (int block = 0; block < NUM_BLOCKS; block++) {
+        final MemorySegment segment = reader.getNextReturnedBlock();
+        for (int pos = 0; pos < SEGMENT_SIZE; pos += 4) {
+          assertEquals(block * SEGMENT_SIZE + pos, segment.getInt(pos));
+        }
+        if (block + 3 < NUM_BLOCKS) {
+          reader.readBlock(segment);
+        }
+      }
+      reader.closeAndDelete();
+      assertFalse(id.getPath().exists());
+    }
+  }
+
+  @Test
+  public void testSeekToPosition() throws Exception {
+    final FileIOChannel.ID id = ioManager.createChannel();
+    final LinkedBlockingQueue<MemorySegment> returnQueue = new LinkedBlockingQueue<>();
+    final BlockChannelWriter writer = ioManager.createBlockChannelWriter(id, returnQueue);
+    for (int block = 0; block < 3; block++) {
+      final MemorySegment segment = allocate(true);
+      segment.putInt(0, block);
+      writer.writeBlock(segment);
+    }
+    writer.close();
+
+    final BlockChannelReader reader = ioManager.createBlockChannelReader(id, returnQueue);
+    returnQueue.clear();
+    reader.seekToPosition(2L * SEGMENT_SIZE);
+    reader.readBlock(allocate(false));
+    reader.seekToPosition(SEGMENT_SIZE);
+    reader.readBlock(allocate(true));
+    assertEquals(2, reader.getNextReturnedBlock().getInt(0));
+    assertEquals(1, reader.getNextReturnedBlock().getInt(0));
+    reader.closeAndDelete();
+  }
+
+  @Test
+  public void testCallbackIsNotifiedInOrder() throws Exception {
+    final List<MemorySegment> written = new CopyOnWriteArrayList<>();
+    final RequestDoneCallback<MemorySegment> callback =
+        new RequestDoneCallback<MemorySegment>() {
+          @Override
+          public void requestSuccessful(MemorySegment buffer) {
+            written.add(buffer);
+          }
+
+          @Override
+          public void requestFailed(MemorySegment buffer, IOException e) {
+            fail("The write failed: " + e);
+          }
+        };
+
+    final BlockChannelWriter writer =
+        ioManager.createBlockChannelWriter(ioManager.createChannel(), callback);
+    final List<MemorySegment> memory = allocate(10, false);
+    for (MemorySegment segment : memory) {
+      writer.writeBlock(segment);
+    }
+    writer.closeAndDelete();
+    assertEquals(memory, written);
+
+    try {
+      writer.getReturnQueue();
+      fail("The writer has no return queue.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void testFailedReadIsReported() throws Exception {
+    final FileIOChannel.ID id = ioManager.createChannel();
+    try (RandomAccessFile file = new RandomAccessFile(id.getPath(), "rw")) {
+      file.setLength(SEGMENT_SIZE + SEGMENT_SIZE / 2);
+    }
+
+    final LinkedBlockingQueue<MemorySegment> returnQueue = new LinkedBlockingQueue<>();
+    final BlockChannelReader reader = ioManager.createBlockChannelReader(id, returnQueue);
+    final MemorySegment first = allocate(true);
+    final MemorySegment second = allocate(false);
+    reader.readBlock(first);
+    reader.readBlock(second);
+    try {
+      reader.close();
+      fail("Reading past the end of the file did not fail.");
+    } catch (IOException e) {
+      assertTrue(e.getCause() instanceof EOFException);
+    }
+
+    // the segment of the failed request is returned as well
+    assertSame(first, returnQueue.poll());
+    assertSame(second, returnQueue.poll());
+    IOManager.deleteChannel(id);
+  }
+
+  @Test
+  public void testShutdown() throws Exception {
+    final File[] paths = ioManager.getSpillingDirectories();
+    final FileIOChannel.ID id = ioManager.createChannel();
+    final LinkedBlockingQueue<MemorySegment> returnQueue = new LinkedBlockingQueue<>();
+    final BlockChannelWriter writer = ioManager.createBlockChannelWriter(id, returnQueue);
+    writer.writeBlock(allocate(true));
+    assertNotNull(writer.getNextReturnedBlock());
+
+    ioManager.shutdown();
+    assertTrue(ioManager.isShutdown());
+    for (File path : paths) {
+      assertFalse(path.exists());
+    }
+
+    try {
+      writer.writeBlock(allocate(true));
+      fail("The write was accepted after the shutdown.");
+    } catch (IOException expected) {
+    }
+    writer.close();
+
+    try {
+      ioManager.createChannel();
+      fail("A channel was created after the shutdown.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void testWriteAndReadViews() throws Exception {
+    for (boolean offHeap : new boolean[] {true, false}) {
+      final FileIOChannel.ID id = ioManager.createChannel();
+      final BlockChannelWriter writer =
+          ioManager.createBlockChannelWriter(id, new LinkedBlockingQueue<>());
+      final BlockChannelWriterOutputView out =
+          new BlockChannelWriterOutputView(writer, allocate(3, offHeap), SEGMENT_SIZE);
+      for (int i = 0; i < 5000; i++) {
+        out.writeInt(i);
+        out.writeUTF("record-" + i);
+      }
+      final List<MemorySegment> writeMemory = out.close();
+      assertEquals(3, writeMemory.size());
+      assertTrue(out.getBlockCount() > 10);
+      assertEquals(out.getBytesWritten(), id.getPath().length());
+
+      // fewer segments than blocks, so that the view reads ahead and recycles its segments
+      final BlockChannelReader reader =
+          ioManager.createBlockChannelReader(id, new LinkedBlockingQueue<>());
+      final BlockChannelReaderInputView in =
+          new BlockChannelReaderInputView(reader, allocate(4, !offHeap), out.getBlockCount());
+      for (int i = 0; i < 5000; i++) {
+        assertEquals(i, in.readInt());
+        assertEquals("record-" + i, in.readUTF());
+      }
+      try {
+        in.readByte();
+        fail("The view read past the last block.");
+      } catch (EOFException expected) {
+      }
+      assertEquals(4, in.close().size());
+      reader.deleteChannel();
+    }
+  }
+
+  @Test
+  public void testCorruptBlockIsDetected() throws Exception {
+    final FileIOChannel.ID id = ioManager.createChannel();
+    final BlockChannelWriter writer =
+        ioManager.createBlockChannelWriter(id, new LinkedBlockingQueue<>());
+    final BlockChannelWriterOutputView out =
+        new BlockChannelWriterOutputView(writer, allocate(2, true), SEGMENT_SIZE);
+    for (int i = 0; i < 1000; i++) {
+      out.writeLong(i);
+    }
+    out.close();
+
+    try (RandomAccessFile file = new RandomAccessFile(id.getPath(), "rw")) {
+      final long position = 2L * SEGMENT_SIZE + 100;
+      file.seek(position);
+      final int b = file.read();
+      file.seek(position);
+      file.write(b ^ 0x10);
+    }
+
+    final BlockChannelReader reader =
+        ioManager.createBlockChannelReader(id, new LinkedBlockingQueue<>());
+    final BlockChannelReaderInputView in =
+        new BlockChannelReaderInputView(reader, allocate(2, false), out.getBlockCount());
+    try {
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(i, in.readLong());
+      }
+      fail("The corrupt block was not detected.");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Checksum mismatch in the block 2"));
+    }
+
+    // the segment of the corrupt block is returned as well
+    final List<MemorySegment> memory = in.close();
+    assertEquals(2, memory.size());
+    assertNotSame(memory.get(0), memory.get(1));
+    reader.deleteChannel();
+  }
+
+  @Test
+  public void testFailedWriteReturnsViewMemory() throws Exception {
+    final FileIOChannel.ID id = ioManager.createChannel();
+    final LinkedBlockingQueue<MemorySegment> returnQueue = new LinkedBlockingQueue<>();
+    final BlockChannelWriter writer = ioManager.createBlockChannelWriter(id, returnQueue);
+    final List<MemorySegment> memory = allocate(3, true);
+    final BlockChannelWriterOutputView out =
+        new BlockChannelWriterOutputView(writer, memory, SEGMENT_SIZE);
+    ioManager.shutdown();
+
+    try {
+      for (int i = 0; i < SEGMENT_SIZE; i++) {
+        out.writeLong(i);
+      }
+      fail("The write was accepted after the shutdown.");
+    } catch (IOException expected) {
+    }
+    try {
+      out.close();
+      fail("The last block was written after the shutdown.");
+    } catch (IOException expected) {
+    }
+    writer.close();
+
+    assertSameSegments(memory, returnQueue);
+  }
+
+  @Test
+  public void testFailedReadReturnsViewMemory() throws Exception {
+    final FileIOChannel.ID id = ioManager.createChannel();
+    final BlockChannelWriter writer =
+        ioManager.createBlockChannelWriter(id, new LinkedBlockingQueue<>());
+    final BlockChannelWriterOutputView out =
+        new BlockChannelWriterOutputView(writer, allocate(2, true), SEGMENT_SIZE);
+    for (int i = 0; i < 1000; i++) {
+      out.writeLong(i);
+    }
+    out.close();
+    try (RandomAccessFile file = new RandomAccessFile(id.getPath(), "rw")) {
+      file.setLength(2L * SEGMENT_SIZE + SEGMENT_SIZE / 2);
+    }
+
+    final LinkedBlockingQueue<MemorySegment> returnQueue = new LinkedBlockingQueue<>();
+    final BlockChannelReader reader = ioManager.createBlockChannelReader(id, returnQueue);
+    final List<MemorySegment> memory = allocate(2, false);
+    final BlockChannelReaderInputView in =
+        new BlockChannelReaderInputView(reader, memory, out.getBlockCount());
+    try {
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(i, in.readLong());
+      }
+      fail("Reading past the end of the file did not fail.");
+    } catch (IOException expected) {
+    }
+    try {
+      in.close();
+      fail("The failed read was not reported on closing.");
+    } catch (IOException expected) {
+    }
+
+    assertSameSegments(memory, returnQueue);
+    reader.deleteChannel();
+  }
+
+  private static void assertSameSegments(
+      List<MemorySegment> expected, Collection<MemorySegment> actual) {
+    final Set<MemorySegment> segments = Collections.newSetFromMap(new IdentityHashMap<>());
+    segments.addAll(actual);
+    assertEquals(actual.size(), segments.size());
+    assertEquals(expected.size(), segments.size());
+    assertTrue(segments.containsAll(expected));
+  }
+}
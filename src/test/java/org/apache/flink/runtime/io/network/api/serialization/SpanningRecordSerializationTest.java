@@ -0,0 +1,206 @@
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer.DeserializationResult;
+import org.apache.flink.runtime.io.network.api.serialization.RecordSerializer.SerializationResult;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferRecycler;
+import org.apache.flink.runtime.io.network.buffer.NetworkBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link SpanningRecordSerializer} and the {@link
+ * SpillingAdaptiveSpanningRecordDeserializer}.
+ */
+public class SpanningRecordSerializationTest {
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /** A recycler that counts the recycled segments. */
+  private static final class CountingRecycler implements BufferRecycler {
+
+    int numRecycled;
+
+    @Override
+    public void recycle(MemorySegment memorySegment) {
+      numRecycled++;
+    }
+  }
+
+  private static <T> List<Buffer> serialize(
+      TypeSerializer<T> typeSerializer, List<T> records, int bufferSize, BufferRecycler recycler)
+      throws Exception {
+    SpanningRecordSerializer<T> serializer = new SpanningRecordSerializer<>(typeSerializer);
+    List<Buffer> buffers = new ArrayList<>();
+    Buffer current = newBuffer(bufferSize, recycler);
+
+    for (T record : records) {
+      serializer.serializeRecord(record);
+      SerializationResult result = serializer.copyToBuffer(current);
+      while (result.isFullBuffer()) {
+        buffers.add(current);
+        current = newBuffer(bufferSize, recycler);
+        if (result.isFullRecord()) {
+          break;
+        }
+        result = serializer.copyToBuffer(current);
+      }
+      assertFalse(serializer.hasSerializedData());
+    }
+    if (current.getSize() > 0) {
+      buffers.add(current);
+    }
+    return buffers;
+  }
+
+  private static Buffer newBuffer(int size, BufferRecycler recycler) {
+    return new NetworkBuffer(
+        HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(size, null), recycler);
+  }
+
+  private static <T> List<T> deserialize(RecordDeserializer<T> deserializer, List<Buffer> buffers)
+      throws Exception {
+    List<T> records = new ArrayList<>();
+    for (Buffer buffer : buffers) {
+      deserializer.setNextBuffer(buffer);
+      while (true) {
+        DeserializationResult result = deserializer.getNextRecord(null);
+        if (result.isFullRecord()) {
+          records.add(deserializer.getCurrentRecord());
+        }
+        if (result.isBufferConsumed()) {
+          break;
+        }
+      }
+    }
+    assertFalse(deserializer.hasUnfinishedData());
+    return records;
+  }
+
+  @Test
+  public void testSmallRecordsAcrossBufferBoundaries() throws Exception {
+    // buffer sizes that are not a multiple of the record size split lengths and values
+    for (int bufferSize : new int[] {11, 12, 13, 64, 4096}) {
+      List<Long> records = new ArrayList<>();
+      for (long i = 0; i < 1000; i++) {
+        records.add(i * 0x0101010101L);
+      }
+
+      CountingRecycler recycler = new CountingRecycler();
+      List<Buffer> buffers = serialize(LongSerializer.INSTANCE, records, bufferSize, recycler);
+      assertEquals((records.size() * 12 + bufferSize - 1) / bufferSize, buffers.size());
+
+      SpillingAdaptiveSpanningRecordDeserializer<Long> deserializer =
+          new SpillingAdaptiveSpanningRecordDeserializer<>(
+              LongSerializer.INSTANCE, new File[] {tempFolder.getRoot()});
+      assertEquals(records, deserialize(deserializer, buffers));
+      assertEquals(buffers.size(), recycler.numRecycled);
+    }
+  }
+
+  @Test
+  public void testRecordsOfMixedSizes() throws Exception {
+    Random rnd = new Random(42);
+    List<String> records = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      int length = rnd.nextInt(10) == 0 ? rnd.nextInt(20000) : rnd.nextInt(50);
+      StringBuilder bld = new StringBuilder(length);
+      for (int j = 0; j < length; j++) {
+        bld.append((char) ('a' + rnd.nextInt(26)));
+      }
+      records.add(bld.toString());
+    }
+
+    CountingRecycler recycler = new CountingRecycler();
+    List<Buffer> buffers = serialize(StringSerializer.INSTANCE, records, 1024, recycler);
+
+    SpillingAdaptiveSpanningRecordDeserializer<String> deserializer =
+        new SpillingAdaptiveSpanningRecordDeserializer<>(
+            StringSerializer.INSTANCE, new File[] {tempFolder.getRoot()});
+    assertEquals(records, deserialize(deserializer, buffers));
+    assertEquals(buffers.size(), recycler.numRecycled);
+    assertEquals(0, tempFolder.getRoot().list().length);
+  }
+
+  @Test
+  public void testSpillingLargeRecords() throws Exception {
+    File[] dirs = {tempFolder.newFolder(), tempFolder.newFolder()};
+    Random rnd = new Random(7);
+    List<String> records = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      StringBuilder bld = new StringBuilder();
+      int length = i % 2 == 0 ? 100000 + rnd.nextInt(100000) : rnd.nextInt(100);
+      for (int j = 0; j < length; j++) {
+        bld.append((char) rnd.nextInt(0x3000));
+      }
+      records.add(bld.toString());
+    }
+
+    CountingRecycler recycler = new CountingRecycler();
+    List<Buffer> buffers = serialize(StringSerializer.INSTANCE, records, 4096, recycler);
+
+    SpillingAdaptiveSpanningRecordDeserializer<String> deserializer =
+        new SpillingAdaptiveSpanningRecordDeserializer<>(StringSerializer.INSTANCE, dirs, 32 * 1024);
+
+    List<String> result = new ArrayList<>();
+    boolean sawSpillFile = false;
+    for (Buffer buffer : buffers) {
+      deserializer.setNextBuffer(buffer);
+      DeserializationResult status;
+      do {
+        status = deserializer.getNextRecord(null);
+        if (status.isFullRecord()) {
+          result.add(deserializer.getCurrentRecord());
+        }
+      } while (!status.isBufferConsumed());
+      sawSpillFile |= dirs[0].list().length + dirs[1].list().length > 0;
+    }
+
+    assertEquals(records, result);
+    assertTrue(sawSpillFile);
+    assertEquals(buffers.size(), recycler.numRecycled);
+    assertEquals(0, dirs[0].list().length + dirs[1].list().length);
+  }
+
+  @Test
+  public void testClearDropsPartialRecord() throws Exception {
+    File dir = tempFolder.newFolder();
+    List<String> records = new ArrayList<>();
+    StringBuilder bld = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      bld.append('x');
+    }
+    records.add(bld.toString());
+
+    CountingRecycler recycler = new CountingRecycler();
+    List<Buffer> buffers = serialize(StringSerializer.INSTANCE, records, 1024, recycler);
+
+    SpillingAdaptiveSpanningRecordDeserializer<String> deserializer =
+        new SpillingAdaptiveSpanningRecordDeserializer<>(
+            StringSerializer.INSTANCE, new File[] {dir}, 4096);
+    deserializer.setNextBuffer(buffers.get(0));
+    assertEquals(DeserializationResult.PARTIAL_RECORD, deserializer.getNextRecord(null));
+    deserializer.setNextBuffer(buffers.get(1));
+    assertTrue(deserializer.hasUnfinishedData());
+    assertEquals(1, dir.list().length);
+
+    deserializer.clear();
+    assertFalse(deserializer.hasUnfinishedData());
+    assertEquals(0, dir.list().length);
+    assertEquals(2, recycler.numRecycled);
+  }
+}
@@ -0,0 +1,129 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemoryLeakDetector;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.compression.Lz4BlockCompressionCodec;
+import org.junit.Test;
+
+/** Tests for the {@link BufferCompressor} and the {@link BufferDecompressor}. */
+public class BufferCompressionTest {
+
+  private static final int BUFFER_SIZE = 32 * 1024;
+
+  private static final BufferRecycler RECYCLER = segment -> {};
+
+  private static NetworkBuffer createBuffer(byte[] data, int readerIndex) {
+    MemorySegment segment =
+        HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(BUFFER_SIZE, null);
+    segment.put(readerIndex, data);
+    NetworkBuffer buffer = new NetworkBuffer(segment, RECYCLER, readerIndex + data.length);
+    buffer.setReaderIndex(readerIndex);
+    return buffer;
+  }
+
+  private static byte[] readableBytes(Buffer buffer) {
+    byte[] bytes = new byte[buffer.readableBytes()];
+    buffer.getMemorySegment().get(buffer.getMemorySegmentOffset() + buffer.getReaderIndex(), bytes);
+    return bytes;
+  }
+
+  @Test
+  public void testCompressAndDecompressInPlace() throws Exception {
+    BufferCompressor compressor = new BufferCompressor(BUFFER_SIZE, new Lz4BlockCompressionCodec());
+    BufferDecompressor decompressor =
+        new BufferDecompressor(BUFFER_SIZE, new Lz4BlockCompressionCodec());
+
+    byte[] data = new byte[BUFFER_SIZE - 100];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i % 13);
+    }
+    NetworkBuffer buffer = createBuffer(data, 100);
+
+    assertSame(buffer, compressor.compressToOriginalBuffer(buffer));
+    assertTrue(buffer.isCompressed());
+    assertEquals(100, buffer.getReaderIndex());
+    assertTrue(buffer.readableBytes() < data.length / 10);
+    assertTrue(buffer.readOnlySlice().isCompressed());
+
+    assertSame(buffer, decompressor.decompressToOriginalBuffer(buffer));
+    assertFalse(buffer.isCompressed());
+    assertArrayEquals(data, readableBytes(buffer));
+  }
+
+  @Test
+  public void testIncompressibleBufferIsLeftAsIs() {
+    BufferCompressor compressor = new BufferCompressor(BUFFER_SIZE, new Lz4BlockCompressionCodec());
+    byte[] data = new byte[1000];
+    new Random(42).nextBytes(data);
+    NetworkBuffer buffer = createBuffer(data, 0);
+
+    compressor.compressToOriginalBuffer(buffer);
+    assertFalse(buffer.isCompressed());
+    assertArrayEquals(data, readableBytes(buffer));
+  }
+
+  @Test
+  public void testReadOnlySlicesAreRejected() throws Exception {
+    BufferCompressor compressor = new BufferCompressor(BUFFER_SIZE, new Lz4BlockCompressionCodec());
+    NetworkBuffer buffer = createBuffer(new byte[1000], 0);
+    try {
+      compressor.compressToOriginalBuffer(buffer.readOnlySlice());
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    BufferDecompressor decompressor =
+        new BufferDecompressor(BUFFER_SIZE, new Lz4BlockCompressionCodec());
+    try {
+      decompressor.decompressToOriginalBuffer(buffer);
+      fail("IllegalArgumentException expected, the buffer is not compressed");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCloseFreesIntermediateSegments() throws Exception {
+    NetworkBuffer buffer = createBuffer(new byte[1000], 0);
+    MemoryLeakDetector.setEnabled(true);
+    try {
+      final int numTracked = MemoryLeakDetector.getNumberOfTrackedSegments();
+      BufferCompressor compressor =
+          new BufferCompressor(BUFFER_SIZE, new Lz4BlockCompressionCodec());
+      BufferDecompressor decompressor =
+          new BufferDecompressor(BUFFER_SIZE, new Lz4BlockCompressionCodec());
+      assertEquals(numTracked + 2, MemoryLeakDetector.getNumberOfTrackedSegments());
+
+      compressor.close();
+      decompressor.close();
+      decompressor.close();
+      assertEquals(numTracked, MemoryLeakDetector.getNumberOfTrackedSegments());
+
+      try {
+        compressor.compressToOriginalBuffer(buffer);
+        fail("IllegalStateException expected");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+      buffer.setCompressed(true);
+      try {
+        decompressor.decompressToOriginalBuffer(buffer);
+        fail("IllegalStateException expected");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+    } finally {
+      MemoryLeakDetector.setEnabled(false);
+    }
+  }
+}
@@ -0,0 +1,299 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.flink.core.memory.MemorySegment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the {@link NetworkBufferPool} and its {@link LocalBufferPool}s. */
+public class LocalBufferPoolTest {
+
+  private static final int NUM_BUFFERS = 64;
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  private NetworkBufferPool networkBufferPool;
+
+  @Before
+  public void setup() {
+    networkBufferPool = new NetworkBufferPool(NUM_BUFFERS, SEGMENT_SIZE);
+  }
+
+  @After
+  public void teardown() {
+    networkBufferPool.destroyAllBufferPools();
+    assertEquals(NUM_BUFFERS, networkBufferPool.getNumberOfAvailableMemorySegments());
+    networkBufferPool.destroy();
+  }
+
+  private static List<MemorySegment> requestAll(LocalBufferPool pool) {
+    List<MemorySegment> segments = new ArrayList<>();
+    MemorySegment segment;
+    while ((segment = pool.requestMemorySegment()) != null) {
+      segments.add(segment);
+    }
+    return segments;
+  }
+
+  @Test
+  public void testRequestUpToPoolSize() throws Exception {
+    LocalBufferPool pool = networkBufferPool.createBufferPool(4, 16);
+    // the single pool receives all excess buffers up to its maximum
+    assertEquals(16, pool.getNumBuffers());
+
+    List<MemorySegment> segments = requestAll(pool);
+    assertEquals(16, segments.size());
+    assertEquals(SEGMENT_SIZE, segments.get(0).size());
+    assertTrue(segments.get(0).isOffHeap());
+    assertEquals(16, pool.bestEffortGetNumOfUsedBuffers());
+    assertEquals(NUM_BUFFERS - 16, networkBufferPool.getNumberOfAvailableMemorySegments());
+
+    MemorySegment first = segments.remove(0);
+    pool.recycle(first);
+    assertEquals(1, pool.getNumberOfAvailableMemorySegments());
+    assertTrue(pool.requestMemorySegment() == first);
+    assertNull(pool.requestMemorySegment());
+    pool.recycle(first);
+
+    for (MemorySegment segment : segments) {
+      pool.recycle(segment);
+    }
+  }
+
+  @Test
+  public void testRedistribution() throws Exception {
+    LocalBufferPool first = networkBufferPool.createBufferPool(8, Integer.MAX_VALUE);
+    assertEquals(NUM_BUFFERS, first.getNumBuffers());
+
+    List<MemorySegment> segments = requestAll(first);
+    assertEquals(NUM_BUFFERS, segments.size());
+
+    // the second pool shrinks the first one, which returns its excess buffers when they are
+    // recycled
+    LocalBufferPool second = networkBufferPool.createBufferPool(8, Integer.MAX_VALUE);
+    assertEquals(NUM_BUFFERS / 2, first.getNumBuffers());
+    assertEquals(NUM_BUFFERS / 2, second.getNumBuffers());
+    assertNull(second.requestMemorySegment());
+
+    for (int i = 0; i < NUM_BUFFERS / 2; i++) {
+      first.recycle(segments.remove(segments.size() - 1));
+    }
+    assertEquals(0, first.getNumberOfAvailableMemorySegments());
+    List<MemorySegment> secondSegments = requestAll(second);
+    assertEquals(NUM_BUFFERS / 2, secondSegments.size());
+
+    try {
+      networkBufferPool.createBufferPool(NUM_BUFFERS, NUM_BUFFERS);
+      fail("required buffers exceed the network buffer pool");
+    } catch (IOException expected) {
+    }
+
+    first.lazyDestroy();
+    assertTrue(first.isDestroyed());
+    assertEquals(1, networkBufferPool.getNumberOfRegisteredBufferPools());
+    assertEquals(NUM_BUFFERS, second.getNumBuffers());
+
+    // outstanding segments of a destroyed pool go back to the network buffer pool
+    for (MemorySegment segment : segments) {
+      first.recycle(segment);
+    }
+    secondSegments.addAll(requestAll(second));
+    assertEquals(NUM_BUFFERS, secondSegments.size());
+    for (MemorySegment segment : secondSegments) {
+      second.recycle(segment);
+    }
+  }
+
+  @Test
+  public void testBlockingRequestIsUnblockedByRecycling() throws Exception {
+    final LocalBufferPool pool = networkBufferPool.createBufferPool(2, 2);
+    List<MemorySegment> segments = requestAll(pool);
+    assertEquals(2, segments.size());
+
+    final BlockingQueue<MemorySegment> received = new ArrayBlockingQueue<>(1);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread requester =
+        new Thread(
+            () -> {
+              try {
+                received.add(pool.requestMemorySegmentBlocking());
+              } catch (Throwable t) {
+                error.set(t);
+              }
+            });
+    requester.start();
+
+    assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    pool.recycle(segments.get(0));
+    assertTrue(received.poll(10, TimeUnit.SECONDS) == segments.get(0));
+    requester.join();
+    assertNull(error.get());
+
+    pool.recycle(segments.get(0));
+    pool.recycle(segments.get(1));
+  }
+
+  @Test
+  public void testBlockingRequestIsUnblockedByGlobalPool() throws Exception {
+    LocalBufferPool first = networkBufferPool.createBufferPool(1, Integer.MAX_VALUE);
+    List<MemorySegment> segments = requestAll(first);
+    assertEquals(NUM_BUFFERS, segments.size());
+
+    final LocalBufferPool second = networkBufferPool.createBufferPool(1, 1);
+    final BlockingQueue<MemorySegment> received = new ArrayBlockingQueue<>(1);
+    Thread requester =
+        new Thread(
+            () -> {
+              try {
+                received.add(second.requestMemorySegmentBlocking());
+              } catch (InterruptedException ignored) {
+              }
+            });
+    requester.start();
+
+    assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    // the first pool is above its size and returns the segment to the network buffer pool
+    first.recycle(segments.remove(0));
+    MemorySegment segment = received.poll(1, TimeUnit.SECONDS);
+    assertNotNull(segment);
+    requester.join();
+
+    second.recycle(segment);
+    for (MemorySegment s : segments) {
+      first.recycle(s);
+    }
+  }
+
+  @Test
+  public void testBufferListener() throws Exception {
+    LocalBufferPool pool = networkBufferPool.createBufferPool(1, 1);
+    final AtomicInteger destroyed = new AtomicInteger();
+    final List<MemorySegment> notified = new ArrayList<>();
+    BufferListener listener =
+        new BufferListener() {
+          @Override
+          public void notifyBufferAvailable(MemorySegment segment) {
+            notified.add(segment);
+          }
+
+          @Override
+          public void notifyBufferDestroyed() {
+            destroyed.incrementAndGet();
+          }
+        };
+
+    // not registered, as long as segments are available
+    assertFalse(pool.addBufferListener(listener));
+
+    MemorySegment segment = pool.requestMemorySegment();
+    assertNotNull(segment);
+    assertTrue(pool.addBufferListener(listener));
+
+    // the recycled segment is handed to the listener instead of the pool
+    pool.recycle(segment);
+    assertEquals(1, notified.size());
+    assertTrue(notified.get(0) == segment);
+    assertEquals(0, pool.getNumberOfAvailableMemorySegments());
+
+    assertTrue(pool.addBufferListener(listener));
+    pool.lazyDestroy();
+    assertEquals(1, destroyed.get());
+    pool.recycle(segment);
+
+    try {
+      pool.requestMemorySegment();
+      fail("the pool has been destroyed");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void testConcurrentProducersAndConsumers() throws Exception {
+    final int numPools = 8;
+    final int numRounds = 10000;
+    final List<Thread> threads = new ArrayList<>();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    for (int p = 0; p < numPools; p++) {
+      final LocalBufferPool pool = networkBufferPool.createBufferPool(2, 16);
+      final BlockingQueue<MemorySegment> channel = new ArrayBlockingQueue<>(64);
+
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  for (int i = 0; i < numRounds; i++) {
+                    MemorySegment segment = pool.requestMemorySegmentBlocking();
+                    segment.putInt(0, i);
+                    channel.put(segment);
+                  }
+                } catch (Throwable t) {
+                  error.compareAndSet(null, t);
+                }
+              }));
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  for (int i = 0; i < numRounds; i++) {
+                    MemorySegment segment = channel.take();
+                    assertEquals(i, segment.getInt(0));
+                    pool.recycle(segment);
+                  }
+                } catch (Throwable t) {
+                  error.compareAndSet(null, t);
+                }
+              }));
+    }
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(error.get());
+  }
+
+  @Test
+  public void testStaleBufferFailsWithUseAfterFreeDetection() throws Exception {
+    MemorySegment.setUseAfterFreeDetection(true);
+    try {
+      LocalBufferPool pool = networkBufferPool.createBufferPool(1, 1);
+      Buffer stale = pool.requestBuffer();
+      MemorySegment staleSegment = stale.getMemorySegment();
+      staleSegment.putInt(0, 1);
+      stale.recycleBuffer();
+
+      Buffer current = pool.requestBuffer();
+      assertNotNull(current);
+      current.getMemorySegment().putInt(0, 2);
+      try {
+        staleSegment.putInt(0, 3);
+        fail("writing through a recycled buffer's segment should fail");
+      } catch (IllegalStateException expected) {
+      }
+      assertEquals(2, current.getMemorySegment().getInt(0));
+      assertEquals(staleSegment.getGeneration() + 1, current.getMemorySegment().getGeneration());
+      current.recycleBuffer();
+      pool.lazyDestroy();
+    } finally {
+      MemorySegment.setUseAfterFreeDetection(false);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package org.apache.flink.runtime.io.network.buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.junit.Test;
+
+/** Tests for the {@link NetworkBuffer} and its {@link ReadOnlySlicedNetworkBuffer slices}. */
+public class NetworkBufferTest {
+
+  private static final int SEGMENT_SIZE = 1024;
+
+  /** A recycler that remembers the segments it received. */
+  private static final class CountingRecycler implements BufferRecycler {
+
+    final List<MemorySegment> recycled = new ArrayList<>();
+
+    @Override
+    public synchronized void recycle(MemorySegment memorySegment) {
+      recycled.add(memorySegment);
+    }
+  }
+
+  private static NetworkBuffer newBuffer(BufferRecycler recycler) {
+    return new NetworkBuffer(
+        HeapMemorySegment.FACTORY.allocateUnpooledSegment(SEGMENT_SIZE, null), recycler);
+  }
+
+  @Test
+  public void testReferenceCounting() {
+    CountingRecycler recycler = new CountingRecycler();
+    NetworkBuffer buffer = newBuffer(recycler);
+    assertEquals(1, buffer.refCnt());
+
+    assertTrue(buffer.retainBuffer() == buffer);
+    assertEquals(2, buffer.refCnt());
+
+    buffer.recycleBuffer();
+    assertFalse(buffer.isRecycled());
+    assertTrue(recycler.recycled.isEmpty());
+
+    buffer.recycleBuffer();
+    assertTrue(buffer.isRecycled());
+    assertEquals(1, recycler.recycled.size());
+    assertTrue(recycler.recycled.get(0) == buffer.getMemorySegment());
+
+    try {
+      buffer.recycleBuffer();
+      fail("the buffer has been recycled");
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      buffer.retainBuffer();
+      fail("the buffer has been recycled");
+    } catch (IllegalStateException expected) {
+    }
+    assertEquals(1, recycler.recycled.size());
+  }
+
+  @Test
+  public void testIndices() {
+    NetworkBuffer buffer = newBuffer(new CountingRecycler());
+    assertEquals(SEGMENT_SIZE, buffer.getMaxCapacity());
+    assertEquals(0, buffer.getSize());
+
+    buffer.getMemorySegment().putLong(0, 42L);
+    buffer.getMemorySegment().putLong(8, 43L);
+    buffer.setSize(16);
+    buffer.setReaderIndex(8);
+    assertEquals(8, buffer.readableBytes());
+
+    ByteBuffer nio = buffer.getNioBufferReadable();
+    assertTrue(nio.isReadOnly());
+    assertEquals(8, nio.remaining());
+    assertEquals(43L, nio.order(ByteOrder.nativeOrder()).getLong());
+
+    try {
+      buffer.setSize(4);
+      fail("the size must not be smaller than the reader index");
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      buffer.setSize(SEGMENT_SIZE + 1);
+      fail("the size must not exceed the capacity");
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      buffer.setReaderIndex(17);
+      fail("the reader index must not exceed the size");
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  @Test
+  public void testSlicesShareMemoryAndReferenceCount() {
+    CountingRecycler recycler = new CountingRecycler();
+    NetworkBuffer buffer = newBuffer(recycler);
+    buffer.setSize(100);
+    buffer.setReaderIndex(10);
+
+    ReadOnlySlicedNetworkBuffer slice = buffer.readOnlySlice();
+    assertEquals(10, slice.getMemorySegmentOffset());
+    assertEquals(90, slice.getSize());
+    assertEquals(0, slice.getReaderIndex());
+    assertEquals(1, buffer.refCnt());
+
+    // writes to the buffer are visible through the slice
+    buffer.getMemorySegment().putInt(10, 0xCAFE);
+    assertEquals(0xCAFE, slice.getMemorySegment().getInt(slice.getMemorySegmentOffset()));
+
+    // slices of slices refer to the original buffer
+    ReadOnlySlicedNetworkBuffer nested = slice.readOnlySlice(20, 30);
+    assertEquals(30, nested.getMemorySegmentOffset());
+    assertEquals(30, nested.getSize());
+
+    slice.setReaderIndex(50);
+    assertEquals(40, slice.readableBytes());
+    assertEquals(10, buffer.getReaderIndex());
+
+    try {
+      slice.setSize(10);
+      fail("slices are read-only");
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      slice.readOnlySlice(80, 20);
+      fail("the slice exceeds its parent");
+    } catch (IndexOutOfBoundsException expected) {
+    }
+
+    nested.retainBuffer();
+    assertEquals(2, buffer.refCnt());
+    buffer.recycleBuffer();
+    assertTrue(recycler.recycled.isEmpty());
+    nested.recycleBuffer();
+    assertTrue(slice.isRecycled());
+    assertEquals(1, recycler.recycled.size());
+  }
+
+  @Test
+  public void testBroadcastReturnsSegmentToPool() throws Exception {
+    final int numChannels = 16;
+    NetworkBufferPool networkBufferPool = new NetworkBufferPool(4, SEGMENT_SIZE);
+    LocalBufferPool pool = networkBufferPool.createBufferPool(1, 1);
+
+    Buffer buffer = pool.requestBuffer();
+    assertNull(pool.requestBuffer());
+    buffer.getMemorySegment().putLong(0, 1234L);
+    buffer.setSize(8);
+
+    // one slice per channel, each holding a reference, then the writer releases its own one
+    List<Buffer> slices = new ArrayList<>();
+    for (int i = 0; i < numChannels; i++) {
+      slices.add(buffer.retainBuffer().readOnlySlice());
+    }
+    buffer.recycleBuffer();
+    assertEquals(numChannels, buffer.refCnt());
+
+    List<Thread> consumers = new ArrayList<>();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    for (final Buffer slice : slices) {
+      consumers.add(
+          new Thread(
+              () -> {
+                try {
+                  assertEquals(1234L, slice.getMemorySegment().getLong(0));
+                  slice.recycleBuffer();
+                } catch (Throwable t) {
+                  error.set(t);
+                }
+              }));
+    }
+    for (Thread consumer : consumers) {
+      consumer.start();
+    }
+    for (Thread consumer : consumers) {
+      consumer.join();
+    }
+
+    assertNull(error.get());
+    assertTrue(buffer.isRecycled());
+    assertEquals(1, pool.getNumberOfAvailableMemorySegments());
+    Buffer next = pool.requestBuffer();
+    assertTrue(next.getMemorySegment() == buffer.getMemorySegment());
+    next.recycleBuffer();
+
+    networkBufferPool.destroyAllBufferPools();
+    networkBufferPool.destroy();
+  }
+}
@@ -0,0 +1,150 @@
+package org.apache.flink.runtime.memory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.disk.RandomAccessInputView;
+import org.apache.flink.runtime.io.disk.RandomAccessOutputView;
+import org.apache.flink.runtime.io.disk.SimpleCollectingOutputView;
+import org.junit.Test;
+
+/** Tests for the paged input and output views, with values crossing page boundaries. */
+public class PagedViewsTest {
+
+  private static final int SEGMENT_SIZE = 64;
+
+  private static List<MemorySegment> allocate(int num, boolean offHeap) {
+    List<MemorySegment> segments = new ArrayList<>(num);
+    for (int i = 0; i < num; i++) {
+      segments.add(
+          offHeap
+              ? HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(SEGMENT_SIZE, null)
+              : HeapMemorySegment.FACTORY.allocateUnpooledSegment(SEGMENT_SIZE, null));
+    }
+    return segments;
+  }
+
+  @Test
+  public void testWriteAndReadAllTypes() throws Exception {
+    for (boolean offHeap : new boolean[] {false, true}) {
+      ArrayList<MemorySegment> full = new ArrayList<>();
+      SimpleCollectingOutputView out =
+          new SimpleCollectingOutputView(
+              full, new ListMemorySegmentSource(allocate(128, offHeap)), SEGMENT_SIZE);
+
+      byte[] bytes = new byte[150];
+      new Random(13).nextBytes(bytes);
+
+      // an odd offset makes most values straddle the page boundaries
+      for (int i = 0; i < 100; i++) {
+        out.writeByte(i);
+        out.writeBoolean(i % 2 == 0);
+        out.writeShort(i * 7);
+        out.writeChar('a' + i % 26);
+        out.writeInt(i * 31);
+        out.writeLong(i * 1_000_000_007L);
+        out.writeFloat(i / 3.0f);
+        out.writeDouble(i / 7.0);
+        out.writeUTF("value-ä中-" + i);
+      }
+      out.write(bytes);
+      final long length = out.getCurrentOffset();
+
+      RandomAccessInputView in =
+          new RandomAccessInputView(
+              full, SEGMENT_SIZE, out.getCurrentPositionInSegment());
+      for (int i = 0; i < 100; i++) {
+        assertEquals((byte) i, in.readByte());
+        assertEquals(i % 2 == 0, in.readBoolean());
+        assertEquals((short) (i * 7), in.readShort());
+        assertEquals('a' + i % 26, in.readChar());
+        assertEquals(i * 31, in.readInt());
+        assertEquals(i * 1_000_000_007L, in.readLong());
+        assertEquals(i / 3.0f, in.readFloat(), 0.0f);
+        assertEquals(i / 7.0, in.readDouble(), 0.0);
+        assertEquals("value-ä中-" + i, in.readUTF());
+      }
+      byte[] read = new byte[bytes.length];
+      in.readFully(read);
+      assertArrayEquals(bytes, read);
+      assertEquals(length, in.getReadPosition());
+
+      try {
+        in.readByte();
+        fail("Expected an EOFException.");
+      } catch (EOFException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testSeekAndSkip() throws Exception {
+    MemorySegment[] segments = allocate(4, false).toArray(new MemorySegment[0]);
+    RandomAccessOutputView out = new RandomAccessOutputView(segments, SEGMENT_SIZE);
+
+    for (int i = 0; i < 4 * SEGMENT_SIZE / 8; i++) {
+      out.writeLong(i);
+    }
+
+    // overwrite a value that straddles two pages
+    out.setWritePosition(SEGMENT_SIZE - 3);
+    out.writeLong(-1L);
+    assertEquals(SEGMENT_SIZE + 5, out.getWritePosition());
+
+    ArrayList<MemorySegment> list = new ArrayList<>();
+    for (MemorySegment segment : segments) {
+      list.add(segment);
+    }
+    RandomAccessInputView in = new RandomAccessInputView(list, SEGMENT_SIZE);
+
+    in.setReadPosition(SEGMENT_SIZE - 3);
+    assertEquals(-1L, in.readLong());
+
+    in.setReadPosition(8 * 5);
+    assertEquals(5L, in.readLong());
+    in.skipBytesToRead(8 * 10 + SEGMENT_SIZE);
+    assertEquals(24L, in.readLong());
+
+    // skipBytes stops at the end of the input
+    in.setReadPosition(4 * SEGMENT_SIZE - 10);
+    assertEquals(10, in.skipBytes(100));
+    assertEquals(-1, in.read(new byte[4]));
+
+    try {
+      in.setReadPosition(4 * SEGMENT_SIZE - 4);
+      in.skipBytesToRead(5);
+      fail("Expected an EOFException.");
+    } catch (EOFException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCollectingViewDepletesSource() throws Exception {
+    ArrayList<MemorySegment> full = new ArrayList<>();
+    SimpleCollectingOutputView out =
+        new SimpleCollectingOutputView(
+            full, new ListMemorySegmentSource(allocate(2, false)), SEGMENT_SIZE);
+
+    out.skipBytesToWrite(SEGMENT_SIZE + 10);
+    assertEquals(2, full.size());
+    try {
+      out.write(new byte[SEGMENT_SIZE]);
+      fail("Expected an EOFException.");
+    } catch (EOFException e) {
+      assertTrue(e.getMessage().contains("depleted"));
+    }
+    assertFalse(full.isEmpty());
+  }
+}
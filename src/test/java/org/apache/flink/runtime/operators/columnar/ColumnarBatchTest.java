@@ -0,0 +1,291 @@
+package org.apache.flink.runtime.operators.columnar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import org.apache.flink.core.memory.MemoryAllocationException;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.core.memory.MemoryType;
+import org.apache.flink.runtime.operators.columnar.ColumnKernels.CompareOp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the {@link ColumnarBatch}, its writer and the {@link ColumnKernels}. */
+public class ColumnarBatchTest {
+
+  private static final int PAGE_SIZE = 4096;
+
+  private static final int NUM_PAGES = 64;
+
+  private static final ColumnType[] TYPES = {
+    ColumnType.INT, ColumnType.LONG, ColumnType.DOUBLE, ColumnType.BYTES
+  };
+
+  private final Object owner = new Object();
+
+  private MemoryManager memoryManager;
+
+  @Before
+  public void setup() {
+    memoryManager = new MemoryManager((long) PAGE_SIZE * NUM_PAGES, PAGE_SIZE, MemoryType.OFF_HEAP);
+  }
+
+  @After
+  public void teardown() {
+    assertTrue("Not all memory was returned.", memoryManager.verifyEmpty());
+    memoryManager.shutdown();
+  }
+
+  /** Writes rows where every seventh row has null values in all columns. */
+  private static void fill(ColumnarBatch batch, int numRows) throws MemoryAllocationException {
+    ColumnarBatchWriter writer = new ColumnarBatchWriter(batch);
+    for (int i = 0; i < numRows; i++) {
+      if (i % 7 != 3) {
+        writer.setInt(0, i - 500);
+        writer.setLong(1, (long) i * 1_000_000_007L);
+        writer.setDouble(2, i * 0.5);
+        writer.setString(3, "value-" + i);
+      }
+      writer.finishRow();
+    }
+  }
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    final int numRows = 3000;
+    try (ColumnarBatch batch = new ColumnarBatch(memoryManager, owner, TYPES, numRows)) {
+      fill(batch, numRows);
+      assertEquals(numRows, batch.getNumRows());
+
+      FixedWidthColumnVector ints = batch.getFixedWidthColumn(0);
+      FixedWidthColumnVector longs = batch.getFixedWidthColumn(1);
+      FixedWidthColumnVector doubles = batch.getFixedWidthColumn(2);
+      VariableWidthColumnVector strings = batch.getVariableWidthColumn(3);
+
+      for (int i = 0; i < numRows; i++) {
+        boolean isNull = i % 7 == 3;
+        for (int c = 0; c < TYPES.length; c++) {
+          assertEquals(isNull, batch.getColumn(c).isNull(i));
+        }
+        if (isNull) {
+          assertNull(strings.getString(i));
+          assertEquals(0, strings.getLength(i));
+        } else {
+          assertEquals(i - 500, ints.getInt(i));
+          assertEquals((long) i * 1_000_000_007L, longs.getLong(i));
+          assertEquals(i * 0.5, doubles.getDouble(i), 0.0);
+          assertEquals("value-" + i, strings.getString(i));
+        }
+      }
+      assertEquals((numRows + 3) / 7, ints.getNullCount());
+    }
+  }
+
+  @Test
+  public void testBulkAccessAcrossPages() throws Exception {
+    final int numRows = 2500;
+    try (ColumnarBatch batch =
+        new ColumnarBatch(memoryManager, owner, new ColumnType[] {ColumnType.LONG}, numRows)) {
+      FixedWidthColumnVector vector = batch.getFixedWidthColumn(0);
+      long[] values = new long[numRows];
+      for (int i = 0; i < numRows; i++) {
+        values[i] = i * 31L - 7;
+      }
+      vector.setLongs(0, values, 0, numRows);
+
+      long[] read = new long[numRows + 10];
+      vector.getLongs(0, read, 10, numRows);
+      for (int i = 0; i < numRows; i++) {
+        assertEquals(values[i], read[i + 10]);
+        assertEquals(values[i], vector.getLong(i));
+      }
+    }
+  }
+
+  @Test
+  public void testLongValuesSpanDataPages() throws Exception {
+    try (ColumnarBatch batch =
+        new ColumnarBatch(memoryManager, owner, new ColumnType[] {ColumnType.BYTES}, 16)) {
+      ColumnarBatchWriter writer = new ColumnarBatchWriter(batch);
+      Random rnd = new Random(42);
+      byte[][] values = new byte[10][];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = new byte[rnd.nextInt(3 * PAGE_SIZE)];
+        rnd.nextBytes(values[i]);
+        writer.setBytes(0, values[i]);
+        writer.finishRow();
+      }
+      VariableWidthColumnVector vector = batch.getVariableWidthColumn(0);
+      for (int i = 0; i < values.length; i++) {
+        assertArrayEquals(values[i], vector.getBytes(i));
+      }
+    }
+  }
+
+  @Test
+  public void testFilterAndAggregate() throws Exception {
+    final int numRows = 3000;
+    try (ColumnarBatch batch = new ColumnarBatch(memoryManager, owner, TYPES, numRows)) {
+      fill(batch, numRows);
+
+      // expected results, computed row by row
+      int expectedCount = 0;
+      long expectedSum = 0;
+      long expectedMin = Long.MAX_VALUE;
+      long expectedMax = Long.MIN_VALUE;
+      double expectedDoubleSum = 0;
+      for (int i = 0; i < numRows; i++) {
+        if (i % 7 != 3 && i - 500 >= 0 && i * 0.5 < 1000.0) {
+          expectedCount++;
+          long value = (long) i * 1_000_000_007L;
+          expectedSum += value;
+          expectedMin = Math.min(expectedMin, value);
+          expectedMax = Math.max(expectedMax, value);
+          expectedDoubleSum += i * 0.5;
+        }
+      }
+
+      int[] selection = new int[numRows];
+      int n = ColumnKernels.filter(batch, 0, CompareOp.GREATER_OR_EQUAL, 0L, null, 0, selection);
+      n = ColumnKernels.filter(batch, 2, CompareOp.LESS, 1000.0, selection, n, selection);
+      assertEquals(expectedCount, n);
+      for (int i = 1; i < n; i++) {
+        assertTrue(selection[i - 1] < selection[i]);
+      }
+
+      assertEquals(expectedCount, ColumnKernels.count(batch, 1, selection, n));
+      assertEquals(expectedSum, ColumnKernels.sumLong(batch, 1, selection, n));
+      assertEquals(expectedMin, ColumnKernels.minLong(batch, 1, selection, n));
+      assertEquals(expectedMax, ColumnKernels.maxLong(batch, 1, selection, n));
+      assertEquals(expectedDoubleSum, ColumnKernels.sumDouble(batch, 2, selection, n), 1e-6);
+
+      // aggregates over all rows skip the nulls
+      assertEquals(numRows - (numRows + 3) / 7, ColumnKernels.count(batch, 0, null, 0));
+      assertEquals(-500L, ColumnKernels.minLong(batch, 0, null, 0));
+      // the last row is null
+      assertEquals(numRows - 2 - 500L, ColumnKernels.maxLong(batch, 0, null, 0));
+      assertEquals(0.0, ColumnKernels.minDouble(batch, 2, null, 0), 0.0);
+
+      // no selected rows gives the identities
+      assertEquals(0L, ColumnKernels.sumLong(batch, 1, selection, 0));
+      assertEquals(Long.MAX_VALUE, ColumnKernels.minLong(batch, 1, selection, 0));
+    }
+  }
+
+  @Test
+  public void testCompareOps() throws Exception {
+    try (ColumnarBatch batch =
+        new ColumnarBatch(memoryManager, owner, new ColumnType[] {ColumnType.INT}, 10)) {
+      ColumnarBatchWriter writer = new ColumnarBatchWriter(batch);
+      for (int i = 0; i < 10; i++) {
+        writer.setInt(0, i);
+        writer.finishRow();
+      }
+      int[] result = new int[10];
+      assertEquals(5, ColumnKernels.filter(batch, 0, CompareOp.LESS, 5L, null, 0, result));
+      assertEquals(6, ColumnKernels.filter(batch, 0, CompareOp.LESS_OR_EQUAL, 5L, null, 0, result));
+      assertEquals(1, ColumnKernels.filter(batch, 0, CompareOp.EQUAL, 5L, null, 0, result));
+      assertEquals(5, result[0]);
+      assertEquals(9, ColumnKernels.filter(batch, 0, CompareOp.NOT_EQUAL, 5L, null, 0, result));
+      assertEquals(
+          5, ColumnKernels.filter(batch, 0, CompareOp.GREATER_OR_EQUAL, 5L, null, 0, result));
+      assertEquals(4, ColumnKernels.filter(batch, 0, CompareOp.GREATER, 5L, null, 0, result));
+    }
+  }
+
+  @Test
+  public void testProjectAndReset() throws Exception {
+    try (ColumnarBatch batch = new ColumnarBatch(memoryManager, owner, TYPES, 100)) {
+      fill(batch, 100);
+
+      ColumnarBatch projection = batch.project(3, 1);
+      assertEquals(2, projection.getNumColumns());
+      assertEquals(ColumnType.BYTES, projection.getType(0));
+      assertEquals(100, projection.getNumRows());
+      assertEquals("value-11", projection.getVariableWidthColumn(0).getString(11));
+      assertEquals(11L * 1_000_000_007L, projection.getFixedWidthColumn(1).getLong(11));
+      projection.close();
+
+      batch.reset();
+      assertEquals(0, batch.getNumRows());
+      assertEquals(0, batch.getColumn(0).getNullCount());
+      assertFalse(batch.getColumn(0).isNull(3));
+
+      ColumnarBatchWriter writer = new ColumnarBatchWriter(batch);
+      writer.setString(3, "again");
+      writer.finishRow();
+      assertEquals("again", batch.getVariableWidthColumn(3).getString(0));
+      assertTrue(batch.getColumn(0).isNull(0));
+    }
+  }
+
+  @Test
+  public void testWriterChecks() throws Exception {
+    try (ColumnarBatch batch = new ColumnarBatch(memoryManager, owner, TYPES, 1)) {
+      ColumnarBatchWriter writer = new ColumnarBatchWriter(batch);
+      writer.setString(3, "a");
+      try {
+        writer.setString(3, "b");
+        fail("IllegalStateException expected");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+      try {
+        writer.setLong(0, 1L);
+        fail("IllegalArgumentException expected");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      writer.finishRow();
+      assertTrue(writer.isFull());
+      try {
+        writer.setInt(0, 1);
+        fail("IllegalStateException expected");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testFailedAppendLeavesColumnUnset() throws Exception {
+    try (ColumnarBatch batch = new ColumnarBatch(memoryManager, owner, TYPES, 2)) {
+      ColumnarBatchWriter writer = new ColumnarBatchWriter(batch);
+      writer.setInt(0, 42);
+      try {
+        writer.setBytes(3, new byte[(NUM_PAGES + 1) * PAGE_SIZE]);
+        fail("MemoryAllocationException expected");
+      } catch (MemoryAllocationException e) {
+        // expected, the memory manager ran out of pages
+      }
+      writer.finishRow();
+
+      VariableWidthColumnVector bytes = batch.getVariableWidthColumn(3);
+      assertEquals(1, batch.getNumRows());
+      assertEquals(batch.getNumRows(), bytes.getNumValues());
+      assertTrue(bytes.isNull(0));
+      assertEquals(42, batch.getFixedWidthColumn(0).getInt(0));
+
+      writer.setString(3, "after");
+      writer.finishRow();
+      assertEquals(2, bytes.getNumValues());
+      assertEquals("after", bytes.getString(1));
+    }
+  }
+
+  @Test
+  public void testAllocationFailureReleasesMemory() {
+    try {
+      new ColumnarBatch(memoryManager, owner, TYPES, NUM_PAGES * PAGE_SIZE);
+      fail("MemoryAllocationException expected");
+    } catch (MemoryAllocationException e) {
+      // expected, the teardown checks that the memory was returned
+    }
+  }
+}
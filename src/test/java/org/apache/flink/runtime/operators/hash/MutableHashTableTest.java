@@ -0,0 +1,238 @@
+package org.apache.flink.runtime.operators.hash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.flink.api.common.typeutils.SameTypePairComparator;
+import org.apache.flink.api.common.typeutils.base.IntComparator;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringComparator;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.compression.Lz4BlockCompressionCodec;
+import org.apache.flink.util.MutableObjectIterator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests for the hybrid hash join of the {@link MutableHashTable}. */
+public class MutableHashTableTest {
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static List<MemorySegment> allocate(int num, boolean offHeap) {
+    List<MemorySegment> segments = new ArrayList<>(num);
+    for (int i = 0; i < num; i++) {
+      segments.add(
+          offHeap
+              ? HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(SEGMENT_SIZE, null)
+              : HeapMemorySegment.FACTORY.allocateUnpooledSegment(SEGMENT_SIZE, null));
+    }
+    return segments;
+  }
+
+  private static <T> MutableObjectIterator<T> iteratorOf(final List<T> values) {
+    final Iterator<T> iter = values.iterator();
+    return new MutableObjectIterator<T>() {
+      @Override
+      public T next(T reuse) {
+        return next();
+      }
+
+      @Override
+      public T next() {
+        return iter.hasNext() ? iter.next() : null;
+      }
+    };
+  }
+
+  private static <T> Map<T, Integer> counts(List<T> values) {
+    Map<T, Integer> counts = new HashMap<>();
+    for (T value : values) {
+      counts.merge(value, 1, Integer::sum);
+    }
+    return counts;
+  }
+
+  private static <T> long expectedMatches(List<T> build, List<T> probe) {
+    Map<T, Integer> buildCounts = counts(build);
+    long matches = 0;
+    for (T value : probe) {
+      matches += buildCounts.getOrDefault(value, 0);
+    }
+    return matches;
+  }
+
+  private <T> long join(MutableHashTable<T, T> table, List<T> build, List<T> probe)
+      throws Exception {
+    table.open(iteratorOf(build), iteratorOf(probe));
+    long matches = 0;
+    while (table.nextRecord()) {
+      T probeRecord = table.getCurrentProbeRecord();
+      MutableObjectIterator<T> buildSide = table.getBuildSideIterator();
+      T match;
+      while ((match = buildSide.next()) != null) {
+        assertEquals(probeRecord, match);
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  private File[] spillDirs() throws Exception {
+    return new File[] {tempFolder.newFolder(), tempFolder.newFolder()};
+  }
+
+  private static int countFiles(File[] dirs) {
+    int count = 0;
+    for (File dir : dirs) {
+      count += dir.list().length;
+    }
+    return count;
+  }
+
+  private static MutableHashTable<Integer, Integer> intTable(
+      List<MemorySegment> memory, File[] dirs) {
+    return new MutableHashTable<>(
+        IntSerializer.INSTANCE,
+        IntSerializer.INSTANCE,
+        new IntComparator(true),
+        new IntComparator(true),
+        new SameTypePairComparator<>(new IntComparator(true)),
+        memory,
+        dirs);
+  }
+
+  @Test
+  public void testJoinWithCompressedSpilling() throws Exception {
+    File[] dirs = spillDirs();
+    Random rnd = new Random(5);
+    List<String> build = new ArrayList<>();
+    List<String> probe = new ArrayList<>();
+    for (int i = 0; i < 50000; i++) {
+      build.add("window-key-" + rnd.nextInt(20000));
+      probe.add("window-key-" + rnd.nextInt(30000));
+    }
+
+    final long uncompressedBytes;
+    try (MutableHashTable<String, String> table = stringTable(dirs, null)) {
+      assertEquals(expectedMatches(build, probe), join(table, build, probe));
+      assertTrue(table.getNumSpilledPartitions() > 0);
+      uncompressedBytes = table.getSpilledBytes();
+    }
+    try (MutableHashTable<String, String> table =
+        stringTable(dirs, new Lz4BlockCompressionCodec())) {
+      assertEquals(expectedMatches(build, probe), join(table, build, probe));
+      assertTrue(table.getNumSpilledPartitions() > 0);
+      assertTrue(table.getSpilledBytes() < uncompressedBytes * 3 / 4);
+    }
+    assertEquals(0, countFiles(dirs));
+  }
+
+  private static MutableHashTable<String, String> stringTable(
+      File[] dirs, Lz4BlockCompressionCodec codec) {
+    return new MutableHashTable<>(
+        StringSerializer.INSTANCE,
+        StringSerializer.INSTANCE,
+        new StringComparator(true),
+        new StringComparator(true),
+        new SameTypePairComparator<>(new StringComparator(true)),
+        allocate(32, true),
+        dirs,
+        codec);
+  }
+
+  @Test
+  public void testInMemoryJoin() throws Exception {
+    File[] dirs = spillDirs();
+    Random rnd = new Random(1);
+    List<Integer> build = new ArrayList<>();
+    List<Integer> probe = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      build.add(rnd.nextInt(1000));
+      probe.add(rnd.nextInt(1500));
+    }
+
+    try (MutableHashTable<Integer, Integer> table = intTable(allocate(64, false), dirs)) {
+      assertEquals(expectedMatches(build, probe), join(table, build, probe));
+      assertEquals(0, table.getNumSpilledPartitions());
+      assertEquals(0, table.getSpilledBytes());
+    }
+    assertEquals(0, countFiles(dirs));
+  }
+
+  @Test
+  public void testJoinWithSpilling() throws Exception {
+    for (boolean offHeap : new boolean[] {false, true}) {
+      File[] dirs = spillDirs();
+      Random rnd = new Random(2);
+      List<Integer> build = new ArrayList<>();
+      List<Integer> probe = new ArrayList<>();
+      for (int i = 0; i < 200000; i++) {
+        build.add(rnd.nextInt(100000));
+      }
+      for (int i = 0; i < 100000; i++) {
+        probe.add(rnd.nextInt(150000));
+      }
+
+      MutableHashTable<Integer, Integer> table = intTable(allocate(32, offHeap), dirs);
+      assertEquals(expectedMatches(build, probe), join(table, build, probe));
+      assertTrue(table.getNumSpilledPartitions() > 0);
+      assertTrue(table.getSpilledBytes() > 0);
+      assertTrue(table.getNumFilteredProbeRecords() > 0);
+      table.close();
+      assertEquals(0, countFiles(dirs));
+    }
+  }
+
+  @Test
+  public void testJoinStringsWithSpilling() throws Exception {
+    File[] dirs = spillDirs();
+    Random rnd = new Random(3);
+    List<String> build = new ArrayList<>();
+    List<String> probe = new ArrayList<>();
+    for (int i = 0; i < 30000; i++) {
+      build.add("key-with-some-padding-" + rnd.nextInt(20000));
+      probe.add("key-with-some-padding-" + rnd.nextInt(30000));
+    }
+
+    try (MutableHashTable<String, String> table =
+        new MutableHashTable<>(
+            StringSerializer.INSTANCE,
+            StringSerializer.INSTANCE,
+            new StringComparator(true),
+            new StringComparator(true),
+            new SameTypePairComparator<>(new StringComparator(true)),
+            allocate(24, false),
+            dirs)) {
+      assertEquals(expectedMatches(build, probe), join(table, build, probe));
+      assertTrue(table.getNumSpilledPartitions() > 0);
+    }
+    assertEquals(0, countFiles(dirs));
+  }
+
+  @Test
+  public void testEmptyInputs() throws Exception {
+    File[] dirs = spillDirs();
+    List<Integer> values = new ArrayList<>();
+    values.add(1);
+    try (MutableHashTable<Integer, Integer> table = intTable(allocate(8, false), dirs)) {
+      table.open(iteratorOf(new ArrayList<Integer>()), iteratorOf(values));
+      assertTrue(table.nextRecord());
+      assertEquals(null, table.getBuildSideIterator().next());
+      assertFalse(table.nextRecord());
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package org.apache.flink.runtime.operators.hash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.flink.api.common.typeutils.base.IntComparator;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringComparator;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.operators.hash.OpenAddressingHashTable.Status;
+import org.junit.Test;
+
+/** Tests for the {@link OpenAddressingHashTable}. */
+public class OpenAddressingHashTableTest {
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  private static List<MemorySegment> allocate(int num, boolean offHeap) {
+    List<MemorySegment> segments = new ArrayList<>(num);
+    for (int i = 0; i < num; i++) {
+      segments.add(
+          offHeap
+              ? HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(SEGMENT_SIZE, null)
+              : HeapMemorySegment.FACTORY.allocateUnpooledSegment(SEGMENT_SIZE, null));
+    }
+    return segments;
+  }
+
+  private static void add(OpenAddressingHashTable<?> table, long delta) {
+    MemorySegment segment = table.getValueSegment();
+    int offset = table.getValueOffset();
+    segment.putLong(offset, segment.getLong(offset) + delta);
+  }
+
+  @Test
+  public void testAggregateAndGrow() throws Exception {
+    for (boolean offHeap : new boolean[] {false, true}) {
+      OpenAddressingHashTable<Integer> table =
+          new OpenAddressingHashTable<>(
+              IntSerializer.INSTANCE, new IntComparator(true), 8, allocate(128, offHeap));
+      int initialCapacity = table.getCapacity();
+
+      Random rnd = new Random(42);
+      Map<Integer, Long> expected = new HashMap<>();
+      for (int i = 0; i < 50000; i++) {
+        int key = rnd.nextInt(5000);
+        Status status = table.findOrInsert(key);
+        assertEquals(expected.containsKey(key) ? Status.FOUND : Status.INSERTED, status);
+        add(table, i);
+        expected.merge(key, (long) i, Long::sum);
+      }
+
+      assertEquals(expected.size(), table.size());
+      assertTrue(table.getCapacity() > initialCapacity);
+
+      for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+        assertTrue(table.lookup(entry.getKey()));
+        assertEquals(
+            entry.getValue().longValue(),
+            table.getValueSegment().getLong(table.getValueOffset()));
+      }
+      assertFalse(table.lookup(-1));
+
+      OpenAddressingHashTable<Integer>.EntryIterator iter = table.getEntryIterator();
+      int count = 0;
+      while (iter.next()) {
+        Integer key = iter.getKey(null);
+        assertEquals(
+            expected.get(key).longValue(),
+            table.getValueSegment().getLong(table.getValueOffset()));
+        count++;
+      }
+      assertEquals(expected.size(), count);
+      assertFalse(iter.next());
+    }
+  }
+
+  @Test
+  public void testStringKeys() throws Exception {
+    OpenAddressingHashTable<String> table =
+        new OpenAddressingHashTable<>(
+            StringSerializer.INSTANCE, new StringComparator(true), 4, allocate(32, false));
+
+    String[] words = {"the", "quick", "brown", "fox", "jumps", "over", "the", "lazy", "dog"};
+    for (int round = 0; round < 100; round++) {
+      for (String word : words) {
+        Status status = table.findOrInsert(word + (round % 10 == 0 ? "" : "-" + (round % 7)));
+        assertTrue(status != Status.FULL);
+        MemorySegment segment = table.getValueSegment();
+        segment.putInt(table.getValueOffset(), segment.getInt(table.getValueOffset()) + 1);
+      }
+    }
+
+    assertTrue(table.lookup("the"));
+    assertEquals(20, table.getValueSegment().getInt(table.getValueOffset()));
+    assertTrue(table.lookup("fox-3"));
+    assertFalse(table.lookup("cat"));
+    assertEquals(8 * 8, table.size());
+  }
+
+  @Test
+  public void testFullAndReset() throws Exception {
+    OpenAddressingHashTable<String> table =
+        new OpenAddressingHashTable<>(
+            StringSerializer.INSTANCE, new StringComparator(true), 8, allocate(4, false));
+    int numFree = table.getNumFreeSegments();
+
+    int inserted = 0;
+    String prefix = "some-rather-long-key-";
+    while (table.findOrInsert(prefix + inserted) == Status.INSERTED) {
+      add(table, inserted);
+      inserted++;
+    }
+    assertEquals(inserted, table.size());
+
+    // existing keys are still found, when the table is full
+    assertEquals(Status.FOUND, table.findOrInsert(prefix + 0));
+    assertTrue(table.lookup(prefix + (inserted - 1)));
+    assertEquals(inserted - 1, table.getValueSegment().getLong(table.getValueOffset()));
+    assertEquals(Status.FULL, table.findOrInsert(prefix + inserted));
+    assertEquals(inserted, table.size());
+
+    table.reset();
+    assertTrue(table.isEmpty());
+    assertEquals(numFree, table.getNumFreeSegments());
+    assertFalse(table.lookup(prefix + 0));
+    assertEquals(Status.INSERTED, table.findOrInsert(prefix + 0));
+    assertEquals(0L, table.getValueSegment().getLong(table.getValueOffset()));
+  }
+
+  @Test
+  public void testKeyEndingAtSegmentBoundary() throws Exception {
+    // with two segments, the key area has a single segment, which the key fills exactly
+    OpenAddressingHashTable<String> table =
+        new OpenAddressingHashTable<>(
+            StringSerializer.INSTANCE, new StringComparator(true), 8, allocate(2, false));
+    char[] chars = new char[SEGMENT_SIZE - 2]; // two bytes of the segment hold the length
+    Arrays.fill(chars, 'k');
+    String key = new String(chars);
+
+    assertEquals(Status.INSERTED, table.findOrInsert(key));
+    add(table, 17);
+
+    // the key area is full, so the next keys are rewound to the end of its segment
+    assertEquals(Status.FULL, table.findOrInsert("other"));
+    assertFalse(table.lookup("other"));
+    assertEquals(Status.FOUND, table.findOrInsert(key));
+    assertEquals(17L, table.getValueSegment().getLong(table.getValueOffset()));
+    assertEquals(1, table.size());
+  }
+}
@@ -0,0 +1,179 @@
+package org.apache.flink.runtime.operators.sort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.apache.flink.api.common.typeutils.base.IntComparator;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.LongComparator;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.common.typeutils.base.StringComparator;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.util.MutableObjectIterator;
+import org.junit.Test;
+
+/** Tests for the {@link NormalizedKeySorter} with both {@link QuickSort} and {@link HeapSort}. */
+public class NormalizedKeySorterTest {
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  private static List<MemorySegment> allocate(int num, boolean offHeap) {
+    List<MemorySegment> segments = new ArrayList<>(num);
+    for (int i = 0; i < num; i++) {
+      segments.add(
+          offHeap
+              ? HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(SEGMENT_SIZE, null)
+              : HeapMemorySegment.FACTORY.allocateUnpooledSegment(SEGMENT_SIZE, null));
+    }
+    return segments;
+  }
+
+  private static IndexedSorter[] sorters() {
+    return new IndexedSorter[] {new QuickSort(), new HeapSort()};
+  }
+
+  @Test
+  public void testWriteAndIterate() throws Exception {
+    NormalizedKeySorter<Integer> sorter =
+        new NormalizedKeySorter<>(IntSerializer.INSTANCE, new IntComparator(true), allocate(8, false));
+    assertTrue(sorter.isEmpty());
+
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(sorter.write(i * 7));
+    }
+    assertEquals(1000, sorter.size());
+    assertEquals(Integer.valueOf(7 * 500), sorter.getRecord(500));
+
+    MutableObjectIterator<Integer> iter = sorter.getIterator();
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(Integer.valueOf(i * 7), iter.next());
+    }
+    assertNull(iter.next());
+
+    sorter.reset();
+    assertTrue(sorter.isEmpty());
+    assertEquals(0, sorter.getOccupancy());
+  }
+
+  @Test
+  public void testSortRandomInts() throws Exception {
+    for (boolean offHeap : new boolean[] {false, true}) {
+      for (IndexedSorter algorithm : sorters()) {
+        for (boolean ascending : new boolean[] {true, false}) {
+          NormalizedKeySorter<Integer> sorter =
+              new NormalizedKeySorter<>(
+                  IntSerializer.INSTANCE, new IntComparator(ascending), allocate(64, offHeap));
+          Random rnd = new Random(42);
+          List<Integer> expected = new ArrayList<>();
+          for (int i = 0; i < 10000; i++) {
+            int value = rnd.nextInt();
+            expected.add(value);
+            assertTrue(sorter.write(value));
+          }
+
+          algorithm.sort(sorter);
+
+          Collections.sort(expected);
+          if (!ascending) {
+            Collections.reverse(expected);
+          }
+          MutableObjectIterator<Integer> iter = sorter.getIterator();
+          for (Integer value : expected) {
+            assertEquals(value, iter.next(null));
+          }
+          assertNull(iter.next(null));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSortLongsWithDuplicates() throws Exception {
+    for (IndexedSorter algorithm : sorters()) {
+      NormalizedKeySorter<Long> sorter =
+          new NormalizedKeySorter<>(
+              LongSerializer.INSTANCE, new LongComparator(true), allocate(32, false));
+      Random rnd = new Random(7);
+      List<Long> expected = new ArrayList<>();
+      for (int i = 0; i < 5000; i++) {
+        long value = rnd.nextInt(50) - 25L + (rnd.nextBoolean() ? Long.MIN_VALUE / 2 : 0);
+        expected.add(value);
+        assertTrue(sorter.write(value));
+      }
+
+      algorithm.sort(sorter);
+
+      Collections.sort(expected);
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i), sorter.getRecord(i));
+      }
+    }
+  }
+
+  @Test
+  public void testSortStringsWithCommonPrefixes() throws Exception {
+    for (IndexedSorter algorithm : sorters()) {
+      // the normalized key covers only a few characters, so that ties are resolved on the records
+      NormalizedKeySorter<String> sorter =
+          new NormalizedKeySorter<>(
+              StringSerializer.INSTANCE, new StringComparator(true), allocate(64, true), 4);
+      Random rnd = new Random(11);
+      List<String> expected = new ArrayList<>();
+      for (int i = 0; i < 3000; i++) {
+        StringBuilder bld = new StringBuilder("prefix-");
+        int len = rnd.nextInt(20);
+        for (int k = 0; k < len; k++) {
+          bld.append((char) ('a' + rnd.nextInt(4)));
+        }
+        if (rnd.nextInt(10) == 0) {
+          bld.append('é').append('中');
+        }
+        String value = bld.toString();
+        expected.add(value);
+        assertTrue(sorter.write(value));
+      }
+
+      algorithm.sort(sorter);
+
+      Collections.sort(expected);
+      MutableObjectIterator<String> iter = sorter.getIterator();
+      for (String value : expected) {
+        assertEquals(value, iter.next());
+      }
+      assertNull(iter.next());
+    }
+  }
+
+  @Test
+  public void testWriteUntilFull() throws Exception {
+    NormalizedKeySorter<Long> sorter =
+        new NormalizedKeySorter<>(LongSerializer.INSTANCE, new LongComparator(true), allocate(4, false));
+
+    long count = 0;
+    while (sorter.write(count)) {
+      count++;
+    }
+    assertTrue(count > 0);
+    assertEquals(count, sorter.size());
+    assertTrue(sorter.getOccupancy() <= sorter.getCapacity());
+
+    new QuickSort().sort(sorter);
+    for (int i = 0; i < count; i++) {
+      assertEquals(Long.valueOf(i), sorter.getRecord(i));
+    }
+
+    sorter.reset();
+    assertTrue(sorter.isEmpty());
+    assertTrue(sorter.write(1L));
+    assertFalse(sorter.isEmpty());
+  }
+}
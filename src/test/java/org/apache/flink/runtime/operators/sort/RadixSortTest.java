@@ -0,0 +1,188 @@
+package org.apache.flink.runtime.operators.sort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.apache.flink.api.common.typeutils.base.IntComparator;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.LongComparator;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.common.typeutils.base.StringComparator;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.util.MutableObjectIterator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests for the {@link RadixSort} over the {@link NormalizedKeySorter}. */
+public class RadixSortTest {
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static List<MemorySegment> allocate(int num, boolean offHeap) {
+    List<MemorySegment> segments = new ArrayList<>(num);
+    for (int i = 0; i < num; i++) {
+      segments.add(
+          offHeap
+              ? HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(SEGMENT_SIZE, null)
+              : HeapMemorySegment.FACTORY.allocateUnpooledSegment(SEGMENT_SIZE, null));
+    }
+    return segments;
+  }
+
+  @Test
+  public void testSortRandomInts() throws Exception {
+    for (boolean offHeap : new boolean[] {false, true}) {
+      for (boolean ascending : new boolean[] {true, false}) {
+        NormalizedKeySorter<Integer> sorter =
+            new NormalizedKeySorter<>(
+                IntSerializer.INSTANCE,
+                new IntComparator(ascending),
+                allocate(96, offHeap),
+                16,
+                true);
+        Random rnd = new Random(42);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+          int value = rnd.nextInt();
+          expected.add(value);
+          assertTrue(sorter.write(value));
+        }
+        assertEquals(sorter.getSortIndex().size(), sorter.getSortIndexScratch().size());
+
+        new RadixSort().sort(sorter);
+
+        Collections.sort(expected);
+        if (!ascending) {
+          Collections.reverse(expected);
+        }
+        MutableObjectIterator<Integer> iter = sorter.getIterator();
+        for (Integer value : expected) {
+          assertEquals(value, iter.next(null));
+        }
+        assertNull(iter.next(null));
+      }
+    }
+  }
+
+  @Test
+  public void testSortSubRangeOfLongs() throws Exception {
+    // small values make the passes over the high key bytes trivial, so that they are skipped
+    NormalizedKeySorter<Long> sorter =
+        new NormalizedKeySorter<>(
+            LongSerializer.INSTANCE, new LongComparator(true), allocate(64, false), 16, true);
+    Random rnd = new Random(7);
+    List<Long> values = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      long value = rnd.nextInt(1000) + 1_500_000_000_000L;
+      values.add(value);
+      assertTrue(sorter.write(value));
+    }
+
+    new RadixSort().sort(sorter, 1000, 4000);
+
+    List<Long> expected = new ArrayList<>(values);
+    Collections.sort(expected.subList(1000, 4000));
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), sorter.getRecord(i));
+    }
+  }
+
+  @Test
+  public void testSortStringsWithPrefixKeys() throws Exception {
+    // the normalized key covers only a few characters, so that ties are resolved on the records
+    NormalizedKeySorter<String> sorter =
+        new NormalizedKeySorter<>(
+            StringSerializer.INSTANCE, new StringComparator(true), allocate(64, true), 4, true);
+    Random rnd = new Random(11);
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      StringBuilder bld = new StringBuilder();
+      int len = rnd.nextInt(12);
+      for (int k = 0; k < len; k++) {
+        bld.append((char) ('a' + rnd.nextInt(3)));
+      }
+      expected.add(bld.toString());
+      assertTrue(sorter.write(bld.toString()));
+    }
+
+    new RadixSort().sort(sorter);
+
+    Collections.sort(expected);
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), sorter.getRecord(i));
+    }
+  }
+
+  @Test
+  public void testFallbackWithoutScratch() throws Exception {
+    NormalizedKeySorter<Integer> sorter =
+        new NormalizedKeySorter<>(
+            IntSerializer.INSTANCE, new IntComparator(true), allocate(8, false));
+    assertTrue(sorter.getSortIndexScratch().isEmpty());
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      expected.add(999 - i);
+      assertTrue(sorter.write(999 - i));
+    }
+
+    new RadixSort().sort(sorter);
+
+    Collections.sort(expected);
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), sorter.getRecord(i));
+    }
+  }
+
+  @Test
+  public void testSortMergerWithRadixSort() throws Exception {
+    File[] dirs = {tempFolder.newFolder()};
+    Random rnd = new Random(3);
+    final List<Long> values = new ArrayList<>();
+    for (int i = 0; i < 50000; i++) {
+      values.add(rnd.nextLong());
+    }
+    final Iterator<Long> input = values.iterator();
+
+    UnilateralSortMerger<Long> sorter =
+        new UnilateralSortMerger<>(
+            new MutableObjectIterator<Long>() {
+              @Override
+              public Long next(Long reuse) {
+                return next();
+              }
+
+              @Override
+              public Long next() {
+                return input.hasNext() ? input.next() : null;
+              }
+            },
+            LongSerializer.INSTANCE,
+            new LongComparator(true),
+            allocate(16, true),
+            dirs,
+            UnilateralSortMerger.DEFAULT_MAX_FAN_IN,
+            true);
+    MutableObjectIterator<Long> sorted = sorter.getIterator();
+    assertTrue(sorter.getNumSpilledRuns() > 1);
+
+    Collections.sort(values);
+    for (Long value : values) {
+      assertEquals(value, sorted.next());
+    }
+    assertNull(sorted.next());
+    sorter.close();
+  }
+}
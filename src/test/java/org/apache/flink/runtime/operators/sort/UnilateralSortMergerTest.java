@@ -0,0 +1,265 @@
+package org.apache.flink.runtime.operators.sort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.apache.flink.api.common.typeutils.base.IntComparator;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringComparator;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemoryLeakDetector;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.compression.Lz4BlockCompressionCodec;
+import org.apache.flink.util.MutableObjectIterator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests for the {@link UnilateralSortMerger} and the {@link MergeIterator}. */
+public class UnilateralSortMergerTest {
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static List<MemorySegment> allocate(int num, boolean offHeap) {
+    List<MemorySegment> segments = new ArrayList<>(num);
+    for (int i = 0; i < num; i++) {
+      segments.add(
+          offHeap
+              ? HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(SEGMENT_SIZE, null)
+              : HeapMemorySegment.FACTORY.allocateUnpooledSegment(SEGMENT_SIZE, null));
+    }
+    return segments;
+  }
+
+  private static <T> MutableObjectIterator<T> iteratorOf(final List<T> values) {
+    final Iterator<T> iter = values.iterator();
+    return new MutableObjectIterator<T>() {
+      @Override
+      public T next(T reuse) {
+        return next();
+      }
+
+      @Override
+      public T next() {
+        return iter.hasNext() ? iter.next() : null;
+      }
+    };
+  }
+
+  private File[] spillDirs() throws Exception {
+    return new File[] {tempFolder.newFolder(), tempFolder.newFolder()};
+  }
+
+  private static int countFiles(File[] dirs) {
+    int count = 0;
+    for (File dir : dirs) {
+      count += dir.list().length;
+    }
+    return count;
+  }
+
+  @Test
+  public void testMergeIterator() throws Exception {
+    List<MutableObjectIterator<Integer>> inputs = new ArrayList<>();
+    List<Integer> expected = new ArrayList<>();
+    Random rnd = new Random(1);
+    for (int i = 0; i < 7; i++) {
+      List<Integer> values = new ArrayList<>();
+      int num = i == 3 ? 0 : rnd.nextInt(200);
+      for (int k = 0; k < num; k++) {
+        values.add(rnd.nextInt(100));
+      }
+      Collections.sort(values);
+      expected.addAll(values);
+      inputs.add(iteratorOf(values));
+    }
+    Collections.sort(expected);
+
+    MergeIterator<Integer> merged = new MergeIterator<>(inputs, new IntComparator(true));
+    for (Integer value : expected) {
+      assertEquals(value, merged.next(0));
+    }
+    assertNull(merged.next());
+  }
+
+  @Test
+  public void testSortInMemory() throws Exception {
+    File[] dirs = spillDirs();
+    List<Integer> values = Arrays.asList(5, 3, 9, 1, 7);
+    try (UnilateralSortMerger<Integer> sorter =
+        new UnilateralSortMerger<>(
+            iteratorOf(values),
+            IntSerializer.INSTANCE,
+            new IntComparator(true),
+            allocate(4, false),
+            dirs)) {
+      MutableObjectIterator<Integer> sorted = sorter.getIterator();
+      for (int expected : new int[] {1, 3, 5, 7, 9}) {
+        assertEquals(Integer.valueOf(expected), sorted.next());
+      }
+      assertNull(sorted.next());
+      assertEquals(0, sorter.getSpilledBytes());
+      assertEquals(0, sorter.getNumSpilledRuns());
+      assertEquals(0, countFiles(dirs));
+    }
+  }
+
+  @Test
+  public void testSortWithSpillingAndMergePasses() throws Exception {
+    for (boolean offHeap : new boolean[] {false, true}) {
+      File[] dirs = spillDirs();
+      Random rnd = new Random(42);
+      List<Integer> values = new ArrayList<>();
+      for (int i = 0; i < 100000; i++) {
+        values.add(rnd.nextInt());
+      }
+
+      UnilateralSortMerger<Integer> sorter =
+          new UnilateralSortMerger<>(
+              iteratorOf(values),
+              IntSerializer.INSTANCE,
+              new IntComparator(true),
+              allocate(6, offHeap),
+              dirs,
+              3);
+      MutableObjectIterator<Integer> sorted = sorter.getIterator();
+
+      assertTrue(sorter.getNumSpilledRuns() > 3);
+      assertTrue(sorter.getNumMergePasses() > 0);
+      assertTrue(sorter.getSpilledBytes() > 4L * values.size());
+      assertTrue(countFiles(dirs) <= 3);
+
+      Collections.sort(values);
+      Integer reuse = 0;
+      for (Integer value : values) {
+        reuse = sorted.next(reuse);
+        assertEquals(value, reuse);
+      }
+      assertNull(sorted.next());
+
+      sorter.close();
+      assertEquals(0, countFiles(dirs));
+    }
+  }
+
+  @Test
+  public void testSortWithCompressedSpills() throws Exception {
+    File[] dirs = spillDirs();
+    Random rnd = new Random(9);
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 100000; i++) {
+      // few distinct values give long runs of equal records in the sorted runs
+      values.add(rnd.nextInt(100));
+    }
+
+    try (UnilateralSortMerger<Integer> sorter =
+        new UnilateralSortMerger<>(
+            iteratorOf(values),
+            IntSerializer.INSTANCE,
+            new IntComparator(true),
+            allocate(6, false),
+            dirs,
+            3,
+            false,
+            new Lz4BlockCompressionCodec())) {
+      MutableObjectIterator<Integer> sorted = sorter.getIterator();
+      assertTrue(sorter.getNumMergePasses() > 0);
+      assertTrue(sorter.getSpilledBytes() < values.size());
+
+      Collections.sort(values);
+      for (Integer value : values) {
+        assertEquals(value, sorted.next());
+      }
+      assertNull(sorted.next());
+    }
+    assertEquals(0, countFiles(dirs));
+  }
+
+  @Test
+  public void testCompressedSpillsFreeTheirMemory() throws Exception {
+    final List<MemoryLeakDetector.Leak> leaks = new ArrayList<>();
+    MemoryLeakDetector.setListener(leaks::add);
+    MemoryLeakDetector.setEnabled(true);
+    try {
+      File[] dirs = spillDirs();
+      Random rnd = new Random(3);
+      List<Integer> values = new ArrayList<>();
+      for (int i = 0; i < 50000; i++) {
+        values.add(rnd.nextInt(100));
+      }
+
+      List<MemorySegment> memory = allocate(6, true);
+      final int numTracked = MemoryLeakDetector.getNumberOfTrackedSegments();
+      try (UnilateralSortMerger<Integer> sorter =
+          new UnilateralSortMerger<>(
+              iteratorOf(values),
+              IntSerializer.INSTANCE,
+              new IntComparator(true),
+              memory,
+              dirs,
+              3,
+              false,
+              new Lz4BlockCompressionCodec())) {
+        MutableObjectIterator<Integer> sorted = sorter.getIterator();
+        assertTrue(sorter.getNumMergePasses() > 0);
+        int count = 0;
+        while (sorted.next() != null) {
+          count++;
+        }
+        assertEquals(values.size(), count);
+      }
+      // the views of the spills and merges freed the segments they compressed into
+      assertEquals(numTracked, MemoryLeakDetector.getNumberOfTrackedSegments());
+
+      for (MemorySegment segment : memory) {
+        segment.free();
+      }
+      System.gc();
+      MemoryLeakDetector.reportLeaks();
+      assertTrue(leaks.toString(), leaks.isEmpty());
+    } finally {
+      MemoryLeakDetector.setEnabled(false);
+      MemoryLeakDetector.setListener(null);
+    }
+  }
+
+  @Test
+  public void testSortStringsDescending() throws Exception {
+    File[] dirs = spillDirs();
+    Random rnd = new Random(3);
+    List<String> values = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      values.add(Long.toString(rnd.nextLong() & 0xffffffL, 36) + "-" + i);
+    }
+
+    try (UnilateralSortMerger<String> sorter =
+        new UnilateralSortMerger<>(
+            iteratorOf(values),
+            StringSerializer.INSTANCE,
+            new StringComparator(false),
+            allocate(8, false),
+            dirs)) {
+      MutableObjectIterator<String> sorted = sorter.getIterator();
+      assertTrue(sorter.getNumSpilledRuns() > 1);
+
+      Collections.sort(values, Collections.reverseOrder());
+      for (String value : values) {
+        assertEquals(value, sorted.next());
+      }
+      assertNull(sorted.next());
+    }
+    assertEquals(0, countFiles(dirs));
+  }
+}
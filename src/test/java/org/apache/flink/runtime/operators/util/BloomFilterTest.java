@@ -0,0 +1,141 @@
+package org.apache.flink.runtime.operators.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.junit.Test;
+
+/** Tests for the {@link BloomFilter}. */
+public class BloomFilterTest {
+
+  private static BloomFilter createFilter(int expectedEntries, double fpp, MemorySegment memory) {
+    BloomFilter filter =
+        new BloomFilter(expectedEntries, BloomFilter.getSizeInBytes(expectedEntries, fpp));
+    filter.setBitsLocation(memory, 16);
+    filter.reset();
+    return filter;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidByteSize() {
+    new BloomFilter(100, 12);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testFilterExceedsSegment() {
+    new BloomFilter(100, 64)
+        .setBitsLocation(HeapMemorySegment.FACTORY.allocateUnpooledSegment(64, null), 8);
+  }
+
+  @Test
+  public void testNumHashFunctionsIsBounded() {
+    // a page sized filter for a single entry, like the filter of a small spilled partition
+    BloomFilter filter = new BloomFilter(1, 32 * 1024);
+    assertEquals(BloomFilter.MAX_NUM_HASH_FUNCTIONS, filter.getNumHashFunctions());
+    filter.setBitsLocation(HeapMemorySegment.FACTORY.allocateUnpooledSegment(32 * 1024, null), 0);
+    filter.reset();
+    filter.addHash(42);
+    assertTrue(filter.testHash(42));
+    assertFalse(filter.testHash(43));
+
+    int byteSize = BloomFilter.getSizeInBytes(1000, 0.01);
+    assertEquals(7, new BloomFilter(1000, byteSize).getNumHashFunctions());
+    assertEquals(1, new BloomFilter(100000, 64).getNumHashFunctions());
+  }
+
+  @Test
+  public void testNoFalseNegativesAndFalsePositiveRate() {
+    for (boolean offHeap : new boolean[] {false, true}) {
+      final int numEntries = 10000;
+      final double fpp = 0.01;
+      int size = BloomFilter.getSizeInBytes(numEntries, fpp) + 16;
+      MemorySegment memory =
+          offHeap
+              ? HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(size, null)
+              : HeapMemorySegment.FACTORY.allocateUnpooledSegment(size, null);
+      BloomFilter filter = createFilter(numEntries, fpp, memory);
+
+      Random rnd = new Random(7);
+      Set<Integer> added = new HashSet<>();
+      while (added.size() < numEntries) {
+        int hash = rnd.nextInt();
+        added.add(hash);
+        filter.addHash(hash);
+      }
+      for (int hash : added) {
+        assertTrue(filter.testHash(hash));
+      }
+
+      int falsePositives = 0;
+      final int numTests = 100000;
+      for (int i = 0; i < numTests; i++) {
+        int hash = rnd.nextInt();
+        if (!added.contains(hash) && filter.testHash(hash)) {
+          falsePositives++;
+        }
+      }
+      assertTrue("false positives: " + falsePositives, falsePositives < numTests * fpp * 2);
+    }
+  }
+
+  @Test
+  public void testSequentialHashes() {
+    MemorySegment memory = HeapMemorySegment.FACTORY.allocateUnpooledSegment(4096, null);
+    BloomFilter filter = new BloomFilter(1000, 4096);
+    filter.setBitsLocation(memory, 0);
+    filter.reset();
+    for (int i = 0; i < 1000; i++) {
+      filter.addHash(i);
+    }
+    int falsePositives = 0;
+    for (int i = 1000; i < 101000; i++) {
+      if (filter.testHash(i)) {
+        falsePositives++;
+      }
+    }
+    double expected = BloomFilter.estimateFalsePositiveProbability(1000, 4096 * 8);
+    assertTrue(falsePositives < 100000 * Math.max(expected * 3, 0.001));
+  }
+
+  @Test
+  public void testMergeAndReset() {
+    MemorySegment memory = HeapMemorySegment.FACTORY.allocateUnpooledSegment(2048, null);
+    BloomFilter first = new BloomFilter(100, 1024);
+    first.setBitsLocation(memory, 0);
+    first.reset();
+    BloomFilter second = new BloomFilter(100, 1024);
+    second.setBitsLocation(memory, 1024);
+    second.reset();
+    assertEquals(first.getNumHashFunctions(), second.getNumHashFunctions());
+
+    for (int i = 0; i < 100; i++) {
+      first.addHash(i * 31);
+      second.addHash(-i * 17 - 1);
+    }
+    assertFalse(first.testHash(-1) && first.testHash(-18) && first.testHash(-35));
+
+    first.merge(second);
+    for (int i = 0; i < 100; i++) {
+      assertTrue(first.testHash(i * 31));
+      assertTrue(first.testHash(-i * 17 - 1));
+    }
+
+    first.reset();
+    int set = 0;
+    for (int i = 0; i < 100; i++) {
+      if (first.testHash(i * 31)) {
+        set++;
+      }
+    }
+    assertEquals(0, set);
+    // the second filter is not affected
+    assertTrue(second.testHash(-1));
+  }
+}
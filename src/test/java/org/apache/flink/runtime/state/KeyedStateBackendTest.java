@@ -0,0 +1,361 @@
+package org.apache.flink.runtime.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.ReducingState;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.runtime.state.heap.HeapStateBackend;
+import org.apache.flink.runtime.state.offheap.OffHeapKeyedStateBackend;
+import org.apache.flink.runtime.state.offheap.OffHeapStateBackend;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/** Tests for the {@link KeyedStateBackend} implementations. */
+@RunWith(Parameterized.class)
+public class KeyedStateBackendTest {
+
+  private static final int NUM_KEY_GROUPS = 128;
+
+  private static final int PAGE_SIZE = MemoryManager.MIN_PAGE_SIZE;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<Object[]> backends() {
+    return Arrays.asList(
+        new Object[] {StateBackendLoader.HEAP}, new Object[] {StateBackendLoader.OFF_HEAP});
+  }
+
+  private final String backendName;
+
+  private StateBackend stateBackend;
+
+  private KeyedStateBackend<String> backend;
+
+  public KeyedStateBackendTest(String backendName) {
+    this.backendName = backendName;
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    stateBackend =
+        backendName.equals(StateBackendLoader.HEAP)
+            ? new HeapStateBackend()
+            : new OffHeapStateBackend(64L * PAGE_SIZE, PAGE_SIZE);
+    backend =
+        stateBackend.createKeyedStateBackend(
+            StringSerializer.INSTANCE, NUM_KEY_GROUPS, KeyGroupRange.of(NUM_KEY_GROUPS));
+  }
+
+  @After
+  public void tearDown() {
+    backend.dispose();
+    if (stateBackend instanceof OffHeapStateBackend) {
+      final OffHeapStateBackend offHeap = (OffHeapStateBackend) stateBackend;
+      assertTrue(offHeap.getMemoryManager().verifyEmpty());
+      offHeap.close();
+    }
+  }
+
+  @Test
+  public void valueState() throws Exception {
+    final ValueState<Long> state = backend.getValueState("value", LongSerializer.INSTANCE);
+
+    backend.setCurrentKey("a");
+    assertNull(state.value());
+    state.update(1L);
+    backend.setCurrentKey("b");
+    assertNull(state.value());
+    state.update(2L);
+
+    backend.setCurrentKey("a");
+    assertEquals(Long.valueOf(1L), state.value());
+    state.update(3L);
+    assertEquals(Long.valueOf(3L), state.value());
+
+    state.update(null);
+    assertNull(state.value());
+    backend.setCurrentKey("b");
+    assertEquals(Long.valueOf(2L), state.value());
+    state.clear();
+    assertNull(state.value());
+  }
+
+  @Test
+  public void valueStateWithGrowingValues() throws Exception {
+    final ValueState<String> state = backend.getValueState("value", StringSerializer.INSTANCE);
+    backend.setCurrentKey("key");
+
+    final StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      value.append((char) ('a' + i % 26));
+      state.update(value.toString());
+      assertEquals(value.toString(), state.value());
+    }
+    for (int i = 0; i < 300; i++) {
+      state.update(value.substring(i));
+      assertEquals(value.substring(i), state.value());
+    }
+  }
+
+  @Test
+  public void listState() throws Exception {
+    final ListState<Long> state = backend.getListState("list", LongSerializer.INSTANCE);
+
+    backend.setCurrentKey("a");
+    assertFalse(state.get().iterator().hasNext());
+    state.add(1L);
+    state.add(2L);
+    backend.setCurrentKey("b");
+    state.addAll(Arrays.asList(10L, 11L, 12L));
+
+    backend.setCurrentKey("a");
+    state.add(3L);
+    assertEquals(Arrays.asList(1L, 2L, 3L), toList(state.get()));
+    backend.setCurrentKey("b");
+    assertEquals(Arrays.asList(10L, 11L, 12L), toList(state.get()));
+
+    state.update(Collections.singletonList(20L));
+    assertEquals(Collections.singletonList(20L), toList(state.get()));
+    state.clear();
+    assertFalse(state.get().iterator().hasNext());
+
+    backend.setCurrentKey("a");
+    assertEquals(Arrays.asList(1L, 2L, 3L), toList(state.get()));
+  }
+
+  @Test
+  public void reducingState() throws Exception {
+    final ReducingState<Long> state =
+        backend.getReducingState("sum", (a, b) -> a + b, LongSerializer.INSTANCE);
+
+    backend.setCurrentKey("a");
+    assertNull(state.get());
+    for (long i = 1; i <= 10; i++) {
+      state.add(i);
+    }
+    backend.setCurrentKey("b");
+    state.add(100L);
+
+    backend.setCurrentKey("a");
+    assertEquals(Long.valueOf(55L), state.get());
+    state.clear();
+    assertNull(state.get());
+    backend.setCurrentKey("b");
+    assertEquals(Long.valueOf(100L), state.get());
+  }
+
+  @Test
+  public void mapState() throws Exception {
+    final MapState<String, Long> state =
+        backend.getMapState("map", StringSerializer.INSTANCE, LongSerializer.INSTANCE);
+
+    backend.setCurrentKey("a");
+    assertTrue(state.isEmpty());
+    state.put("x", 1L);
+    state.put("y", 2L);
+    backend.setCurrentKey("ab");
+    state.put("x", 10L);
+
+    backend.setCurrentKey("a");
+    assertFalse(state.isEmpty());
+    assertEquals(Long.valueOf(1L), state.get("x"));
+    assertNull(state.get("z"));
+    assertTrue(state.contains("y"));
+    assertFalse(state.contains("z"));
+
+    final Map<String, Long> expected = new HashMap<>();
+    expected.put("x", 1L);
+    expected.put("y", 2L);
+    assertEquals(expected, toMap(state.entries()));
+    assertEquals(expected.keySet(), new HashSet<>(toList(state.keys())));
+    assertEquals(new HashSet<>(expected.values()), new HashSet<>(toList(state.values())));
+
+    state.remove("x");
+    assertFalse(state.contains("x"));
+    state.putAll(Collections.singletonMap("z", 3L));
+    assertEquals(Long.valueOf(3L), state.get("z"));
+
+    state.clear();
+    assertTrue(state.isEmpty());
+    backend.setCurrentKey("ab");
+    assertEquals(Collections.singletonMap("x", 10L), toMap(state.entries()));
+  }
+
+  @Test
+  public void manyKeysAgainstReference() throws Exception {
+    final ValueState<Long> state = backend.getValueState("value", LongSerializer.INSTANCE);
+    final Map<String, Long> reference = new HashMap<>();
+    final Random random = new Random(42);
+
+    for (int i = 0; i < 20_000; i++) {
+      final String key = "key-" + random.nextInt(2_000);
+      backend.setCurrentKey(key);
+      if (random.nextInt(4) == 0) {
+        state.clear();
+        reference.remove(key);
+      } else {
+        final long value = random.nextLong();
+        state.update(value);
+        reference.put(key, value);
+      }
+    }
+
+    for (int i = 0; i < 2_000; i++) {
+      final String key = "key-" + i;
+      backend.setCurrentKey(key);
+      assertEquals(reference.get(key), state.value());
+    }
+  }
+
+  @Test
+  public void keysByKeyGroup() throws Exception {
+    final MapState<String, Long> map =
+        backend.getMapState("map", StringSerializer.INSTANCE, LongSerializer.INSTANCE);
+    backend.getValueState("value", LongSerializer.INSTANCE);
+
+    final Map<Integer, Set<String>> expected = new HashMap<>();
+    for (int i = 0; i < 500; i++) {
+      final String key = "key-" + i;
+      backend.setCurrentKey(key);
+      map.put("first", 1L);
+      map.put("second", 2L);
+      expected.computeIfAbsent(backend.getCurrentKeyGroupIndex(), kg -> new HashSet<>()).add(key);
+    }
+
+    for (int keyGroup = 0; keyGroup < NUM_KEY_GROUPS; keyGroup++) {
+      final Set<String> keys = new HashSet<>();
+      for (Iterator<String> it = backend.getKeys("map", keyGroup); it.hasNext(); ) {
+        assertTrue("duplicate key", keys.add(it.next()));
+      }
+      assertEquals(expected.getOrDefault(keyGroup, Collections.emptySet()), keys);
+      assertFalse(backend.getKeys("value", keyGroup).hasNext());
+    }
+
+    try {
+      backend.getKeys("unknown", 0);
+      fail("exception expected");
+    } catch (IllegalArgumentException expectedException) {
+      // expected
+    }
+  }
+
+  @Test
+  public void keysOutsideOfRangeAreRejected() throws IOException {
+    final KeyedStateBackend<String> partial =
+        stateBackend.createKeyedStateBackend(
+            StringSerializer.INSTANCE, NUM_KEY_GROUPS, new KeyGroupRange(0, 0));
+    try {
+      for (int i = 0; ; i++) {
+        final String key = "key-" + i;
+        if (KeyGroupRangeAssignment.assignToKeyGroup(key, NUM_KEY_GROUPS) != 0) {
+          try {
+            partial.setCurrentKey(key);
+            fail("exception expected");
+          } catch (IllegalArgumentException expected) {
+            // expected
+          }
+          break;
+        }
+      }
+      try {
+        partial.getKeys("state", 1);
+        fail("exception expected");
+      } catch (IllegalArgumentException expected) {
+        // expected
+      }
+    } finally {
+      partial.dispose();
+    }
+  }
+
+  @Test
+  public void statesOfDifferentKindsMustNotShareNames() {
+    backend.getValueState("state", LongSerializer.INSTANCE);
+    try {
+      backend.getListState("state", LongSerializer.INSTANCE);
+      fail("exception expected");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void accessWithoutCurrentKeyFails() throws Exception {
+    final ValueState<Long> state = backend.getValueState("value", LongSerializer.INSTANCE);
+    try {
+      state.value();
+      fail("exception expected");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void exceedingTheMemoryBudgetFails() throws Exception {
+    if (!(backend instanceof OffHeapKeyedStateBackend)) {
+      return;
+    }
+    final OffHeapKeyedStateBackend<String> offHeap = (OffHeapKeyedStateBackend<String>) backend;
+    final ListState<String> state = backend.getListState("list", StringSerializer.INSTANCE);
+    backend.setCurrentKey("key");
+
+    final char[] chars = new char[1000];
+    Arrays.fill(chars, 'x');
+    final String element = new String(chars);
+    try {
+      while (true) {
+        state.add(element);
+      }
+    } catch (IOException expected) {
+      assertTrue(expected.getMessage().contains("memory budget"));
+    }
+    assertTrue(offHeap.getReservedMemory() <= 64L * PAGE_SIZE);
+
+    // clearing the state makes its memory available again
+    state.clear();
+    assertEquals(0L, offHeap.getUsedMemory());
+    state.add(element);
+    assertEquals(Collections.singletonList(element), toList(state.get()));
+  }
+
+  // ------------------------------------------------------------------------
+
+  private static <T> List<T> toList(Iterable<T> iterable) {
+    final List<T> list = new ArrayList<>();
+    for (T element : iterable) {
+      list.add(element);
+    }
+    return list;
+  }
+
+  private static <K, V> Map<K, V> toMap(Iterable<Map.Entry<K, V>> entries) {
+    final Map<K, V> map = new HashMap<>();
+    for (Map.Entry<K, V> entry : entries) {
+      map.put(entry.getKey(), entry.getValue());
+    }
+    return map;
+  }
+}
@@ -0,0 +1,58 @@
+package org.apache.flink.runtime.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Properties;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.runtime.state.heap.HeapStateBackend;
+import org.apache.flink.runtime.state.offheap.OffHeapStateBackend;
+import org.junit.Test;
+
+/** Tests for the {@link StateBackendLoader}. */
+public class StateBackendLoaderTest {
+
+  @Test
+  public void heapIsTheDefault() {
+    assertTrue(StateBackendLoader.loadStateBackend(new Properties()) instanceof HeapStateBackend);
+  }
+
+  @Test
+  public void loadsOffHeapBackendWithBudget() {
+    final Properties config = new Properties();
+    config.setProperty(StateBackendLoader.STATE_BACKEND, "Off-Heap");
+    config.setProperty(StateBackendLoader.OFF_HEAP_MEMORY_SIZE, "2 m");
+    config.setProperty(StateBackendLoader.OFF_HEAP_PAGE_SIZE, "8k");
+
+    final OffHeapStateBackend backend =
+        (OffHeapStateBackend) StateBackendLoader.loadStateBackend(config);
+    try {
+      final MemoryManager memoryManager = backend.getMemoryManager();
+      assertEquals(2L << 20, memoryManager.getMemorySize());
+      assertEquals(8 << 10, memoryManager.getPageSize());
+    } finally {
+      backend.close();
+    }
+  }
+
+  @Test
+  public void rejectsInvalidConfiguration() {
+    assertInvalid(StateBackendLoader.STATE_BACKEND, "rocksdb");
+    assertInvalid(StateBackendLoader.OFF_HEAP_MEMORY_SIZE, "lots");
+    assertInvalid(StateBackendLoader.OFF_HEAP_MEMORY_SIZE, "0");
+    assertInvalid(StateBackendLoader.OFF_HEAP_PAGE_SIZE, "4g");
+  }
+
+  private static void assertInvalid(String key, String value) {
+    final Properties config = new Properties();
+    config.setProperty(StateBackendLoader.STATE_BACKEND, StateBackendLoader.OFF_HEAP);
+    config.setProperty(key, value);
+    try {
+      StateBackendLoader.loadStateBackend(config);
+      fail("exception expected for " + key + '=' + value);
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+}
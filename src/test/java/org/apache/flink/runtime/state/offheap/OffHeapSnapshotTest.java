@@ -0,0 +1,406 @@
+package org.apache.flink.runtime.state.offheap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RunnableFuture;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.ReducingState;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.MemoryManager;
+import org.apache.flink.core.memory.MemoryType;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests for the snapshots of the {@link OffHeapKeyedStateBackend}. */
+public class OffHeapSnapshotTest {
+
+  private static final int PAGE_SIZE = MemoryManager.MIN_PAGE_SIZE;
+
+  private static final int NUM_KEY_GROUPS = 16;
+
+  private static final KeyGroupRange KEY_GROUPS = KeyGroupRange.of(NUM_KEY_GROUPS);
+
+  private static final int NUM_KEYS = 500;
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private MemoryManager memoryManager;
+
+  private OffHeapStateBackend stateBackend;
+
+  private final List<OffHeapKeyedStateBackend<String>> backends = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    memoryManager = new MemoryManager(512L * PAGE_SIZE, PAGE_SIZE, MemoryType.OFF_HEAP);
+    stateBackend = new OffHeapStateBackend(memoryManager);
+  }
+
+  @After
+  public void tearDown() {
+    for (OffHeapKeyedStateBackend<String> backend : backends) {
+      backend.dispose();
+    }
+    assertTrue(memoryManager.verifyEmpty());
+    memoryManager.shutdown();
+  }
+
+  @Test
+  public void restoresAllKindsOfState() throws Exception {
+    final OffHeapKeyedStateBackend<String> backend = createBackend();
+    fill(backend, 0);
+
+    final Path file = tempFolder.newFile().toPath();
+    final OffHeapSnapshot snapshot = run(backend.snapshot(1L, file, false));
+    assertFalse(snapshot.isIncremental());
+    assertEquals(snapshot.getNumberOfPages(), snapshot.getNumberOfWrittenPages());
+    assertEquals(backend.getReservedMemory(), (long) snapshot.getNumberOfPages() * PAGE_SIZE);
+
+    final OffHeapKeyedStateBackend<String> restored = restore(file);
+    verify(restored, 0);
+    assertEquals(backend.getUsedMemory(), restored.getUsedMemory());
+
+    final Set<String> keys = new HashSet<>();
+    for (int keyGroup = 0; keyGroup < NUM_KEY_GROUPS; keyGroup++) {
+      for (Iterator<String> it = restored.getKeys("map", keyGroup); it.hasNext(); ) {
+        keys.add(it.next());
+      }
+    }
+    assertEquals(NUM_KEYS, keys.size());
+
+    // the restored state can be modified further
+    fill(restored, 1);
+    verify(restored, 1);
+    verify(backend, 0);
+  }
+
+  @Test
+  public void snapshotHoldsStateOfBarrier() throws Exception {
+    final OffHeapKeyedStateBackend<String> backend = createBackend();
+    fill(backend, 0);
+
+    final Path file = tempFolder.newFile().toPath();
+    final RunnableFuture<OffHeapSnapshot> future = backend.snapshot(1L, file, false);
+
+    // the processing continues on copies of the pages
+    fill(backend, 1);
+    verify(backend, 1);
+    assertTrue(
+        memoryManager.getNumberOfUsedPages() > backend.getReservedMemory() / PAGE_SIZE);
+
+    run(future);
+    assertEquals(backend.getReservedMemory() / PAGE_SIZE, memoryManager.getNumberOfUsedPages());
+
+    verify(restore(file), 0);
+    verify(backend, 1);
+  }
+
+  @Test
+  public void incrementalSnapshotWritesModifiedPages() throws Exception {
+    final OffHeapKeyedStateBackend<String> backend = createBackend();
+    fill(backend, 0);
+    final Path file1 = tempFolder.newFile().toPath();
+    final OffHeapSnapshot full = run(backend.snapshot(1L, file1, true));
+    assertFalse("no previous snapshot", full.isIncremental());
+
+    final ValueState<Long> value = backend.getValueState("value", LongSerializer.INSTANCE);
+    backend.setCurrentKey("key-7");
+    value.update(-7L);
+
+    final Path file2 = tempFolder.newFile().toPath();
+    final OffHeapSnapshot incremental = run(backend.snapshot(2L, file2, true));
+    assertTrue(incremental.isIncremental());
+    assertEquals(file1.toAbsolutePath(), incremental.getParentFile());
+    assertEquals(1, incremental.getNumberOfWrittenPages());
+    assertTrue(Files.size(file2) < Files.size(file1));
+
+    final OffHeapKeyedStateBackend<String> restored = restore(file2);
+    restored.setCurrentKey("key-7");
+    assertEquals(
+        Long.valueOf(-7L), restored.getValueState("value", LongSerializer.INSTANCE).value());
+    restored.setCurrentKey("key-8");
+    assertEquals(
+        Long.valueOf(8L), restored.getValueState("value", LongSerializer.INSTANCE).value());
+
+    // an incremental snapshot of the restored backend builds upon the restored snapshot
+    final Path file3 = tempFolder.newFile().toPath();
+    final OffHeapSnapshot next = run(restored.snapshot(3L, file3, true));
+    assertEquals(file2, next.getParentFile());
+    assertEquals(0, next.getNumberOfWrittenPages());
+
+    // the ancestors are needed to restore an incremental snapshot
+    Files.delete(file1);
+    try {
+      restore(file2);
+      fail("exception expected");
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void copiesWaitForSnapshotWhenBudgetIsExhausted() throws Exception {
+    final MemoryManager smallMemoryManager =
+        new MemoryManager(8L * PAGE_SIZE, PAGE_SIZE, MemoryType.OFF_HEAP);
+    final OffHeapKeyedStateBackend<String> backend =
+        new OffHeapKeyedStateBackend<>(
+            StringSerializer.INSTANCE, NUM_KEY_GROUPS, KEY_GROUPS, smallMemoryManager);
+    try {
+      final ValueState<Long> state = backend.getValueState("value", LongSerializer.INSTANCE);
+      int numKeys = 0;
+      try {
+        while (true) {
+          backend.setCurrentKey("key-" + numKeys);
+          state.update((long) numKeys);
+          numKeys++;
+        }
+      } catch (IOException expected) {
+        assertEquals(0, smallMemoryManager.getNumberOfFreePages());
+      }
+
+      final Path file = tempFolder.newFile().toPath();
+      final RunnableFuture<OffHeapSnapshot> future = backend.snapshot(1L, file, false);
+      final Thread snapshotThread = new Thread(future, "snapshot");
+      snapshotThread.start();
+
+      for (int i = 0; i < numKeys; i++) {
+        backend.setCurrentKey("key-" + i);
+        state.update(-1L - i);
+      }
+      snapshotThread.join();
+      future.get();
+
+      final OffHeapKeyedStateBackend<String> restored = restore(file);
+      final ValueState<Long> restoredState =
+          restored.getValueState("value", LongSerializer.INSTANCE);
+      for (int i = 0; i < numKeys; i++) {
+        restored.setCurrentKey("key-" + i);
+        assertEquals(Long.valueOf(i), restoredState.value());
+        backend.setCurrentKey("key-" + i);
+        assertEquals(Long.valueOf(-1L - i), state.value());
+      }
+    } finally {
+      backend.dispose();
+      assertTrue(smallMemoryManager.verifyEmpty());
+      smallMemoryManager.shutdown();
+    }
+  }
+
+  @Test
+  public void cancelledSnapshotReleasesPages() throws Exception {
+    final OffHeapKeyedStateBackend<String> backend = createBackend();
+    fill(backend, 0);
+    run(backend.snapshot(1L, tempFolder.newFile().toPath(), false));
+
+    final Path file = tempFolder.newFile().toPath();
+    final RunnableFuture<OffHeapSnapshot> future = backend.snapshot(2L, file, true);
+    try {
+      backend.snapshot(3L, tempFolder.newFile().toPath(), false);
+      fail("exception expected");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+
+    fill(backend, 1);
+    future.cancel(true);
+    assertEquals(backend.getReservedMemory() / PAGE_SIZE, memoryManager.getNumberOfUsedPages());
+
+    // the snapshot after a cancelled one must contain all pages
+    final OffHeapSnapshot snapshot = run(backend.snapshot(4L, file, true));
+    assertFalse(snapshot.isIncremental());
+    verify(restore(file), 1);
+  }
+
+  @Test
+  public void disposingCancelsRunningSnapshot() throws Exception {
+    final OffHeapKeyedStateBackend<String> backend = createBackend();
+    fill(backend, 0);
+    final RunnableFuture<OffHeapSnapshot> future =
+        backend.snapshot(1L, tempFolder.newFile().toPath(), false);
+    fill(backend, 1);
+
+    backend.dispose();
+    assertTrue(memoryManager.verifyEmpty());
+    future.run();
+    try {
+      future.get();
+      fail("exception expected");
+    } catch (Exception expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void rejectsSnapshotOfOtherKeyGroups() throws Exception {
+    final OffHeapKeyedStateBackend<String> backend = createBackend();
+    final Path file = tempFolder.newFile().toPath();
+    run(backend.snapshot(1L, file, false));
+    try {
+      stateBackend.restoreKeyedStateBackend(
+          StringSerializer.INSTANCE, NUM_KEY_GROUPS, new KeyGroupRange(0, 7), file);
+      fail("exception expected");
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void restoredStateMustKeepItsKind() throws Exception {
+    final OffHeapKeyedStateBackend<String> backend = createBackend();
+    fill(backend, 0);
+    final Path file = tempFolder.newFile().toPath();
+    run(backend.snapshot(1L, file, false));
+
+    final OffHeapKeyedStateBackend<String> restored = restore(file);
+    try {
+      restored.getValueState("list", LongSerializer.INSTANCE);
+      fail("exception expected");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+
+    // states that are not registered again are kept in the next snapshot
+    final Path file2 = tempFolder.newFile().toPath();
+    run(restored.snapshot(2L, file2, false));
+    verify(restore(file2), 0);
+  }
+
+  @Test
+  public void detectsCorruptPage() throws Exception {
+    final OffHeapKeyedStateBackend<String> backend = createBackend();
+    fill(backend, 0);
+    final Path file = tempFolder.newFile().toPath();
+    run(backend.snapshot(1L, file, false));
+
+    // flip a bit in the data of the last page
+    final long pageOffset = Files.size(file) - PAGE_SIZE;
+    flipBit(file, pageOffset + PAGE_SIZE / 2);
+    try {
+      restore(file);
+      fail("exception expected");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Checksum mismatch"));
+      assertTrue(e.getMessage(), e.getMessage().contains("offset " + pageOffset));
+      assertTrue(e.getMessage(), e.getMessage().contains(file.toString()));
+    }
+  }
+
+  @Test
+  public void detectsCorruptHeader() throws Exception {
+    final OffHeapKeyedStateBackend<String> backend = createBackend();
+    fill(backend, 0);
+    final Path file = tempFolder.newFile().toPath();
+    run(backend.snapshot(1L, file, false));
+
+    // flip a bit in the checkpoint ID
+    flipBit(file, 20);
+    try {
+      restore(file);
+      fail("exception expected");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Checksum mismatch in the header"));
+      assertTrue(e.getMessage(), e.getMessage().contains(file.toString()));
+    }
+  }
+
+  // ------------------------------------------------------------------------
+
+  private static void flipBit(Path file, long position) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      final ByteBuffer buffer = ByteBuffer.allocate(1);
+      channel.read(buffer, position);
+      buffer.put(0, (byte) (buffer.get(0) ^ 0x10));
+      buffer.rewind();
+      channel.write(buffer, position);
+    }
+  }
+
+  private OffHeapKeyedStateBackend<String> createBackend() throws IOException {
+    final OffHeapKeyedStateBackend<String> backend =
+        (OffHeapKeyedStateBackend<String>)
+            stateBackend.createKeyedStateBackend(
+                StringSerializer.INSTANCE, NUM_KEY_GROUPS, KEY_GROUPS);
+    backends.add(backend);
+    return backend;
+  }
+
+  private OffHeapKeyedStateBackend<String> restore(Path file) throws IOException {
+    final OffHeapKeyedStateBackend<String> backend =
+        stateBackend.restoreKeyedStateBackend(
+            StringSerializer.INSTANCE, NUM_KEY_GROUPS, KEY_GROUPS, file);
+    backends.add(backend);
+    return backend;
+  }
+
+  private static OffHeapSnapshot run(RunnableFuture<OffHeapSnapshot> future) throws Exception {
+    future.run();
+    return future.get();
+  }
+
+  /** Puts state of all kinds for all keys, with values that depend on the round. */
+  private static void fill(OffHeapKeyedStateBackend<String> backend, int round) throws Exception {
+    final ValueState<Long> value = backend.getValueState("value", LongSerializer.INSTANCE);
+    final ListState<Long> list = backend.getListState("list", LongSerializer.INSTANCE);
+    final ReducingState<Long> sum =
+        backend.getReducingState("sum", (a, b) -> a + b, LongSerializer.INSTANCE);
+    final MapState<String, Long> map =
+        backend.getMapState("map", StringSerializer.INSTANCE, LongSerializer.INSTANCE);
+
+    for (int i = 0; i < NUM_KEYS; i++) {
+      backend.setCurrentKey("key-" + i);
+      value.update(i + 1000L * round);
+      list.add((long) round);
+      sum.add((long) i);
+      map.put("round-" + round, (long) i);
+    }
+  }
+
+  /** Checks that the backend holds the state put by all rounds up to the given one. */
+  private static void verify(OffHeapKeyedStateBackend<String> backend, int round)
+      throws Exception {
+    final ValueState<Long> value = backend.getValueState("value", LongSerializer.INSTANCE);
+    final ListState<Long> list = backend.getListState("list", LongSerializer.INSTANCE);
+    final ReducingState<Long> sum =
+        backend.getReducingState("sum", (a, b) -> a + b, LongSerializer.INSTANCE);
+    final MapState<String, Long> map =
+        backend.getMapState("map", StringSerializer.INSTANCE, LongSerializer.INSTANCE);
+
+    final List<Long> rounds = new ArrayList<>();
+    for (long r = 0; r <= round; r++) {
+      rounds.add(r);
+    }
+    for (int i = 0; i < NUM_KEYS; i++) {
+      backend.setCurrentKey("key-" + i);
+      assertEquals(Long.valueOf(i + 1000L * round), value.value());
+      final List<Long> elements = new ArrayList<>();
+      list.get().forEach(elements::add);
+      assertEquals(rounds, elements);
+      assertEquals(Long.valueOf((long) i * (round + 1)), sum.get());
+      assertEquals(Long.valueOf(i), map.get("round-" + round));
+      assertNull(map.get("round-" + (round + 1)));
+    }
+  }
+}
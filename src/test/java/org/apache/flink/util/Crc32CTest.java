@@ -0,0 +1,57 @@
+package org.apache.flink.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.apache.flink.core.memory.HeapMemorySegment;
+import org.apache.flink.core.memory.HybridMemorySegment;
+import org.apache.flink.core.memory.MemorySegment;
+import org.junit.Test;
+
+/** Tests for the {@link Crc32C}. */
+public class Crc32CTest {
+
+  @Test
+  public void testReferenceValues() {
+    MemorySegment segment =
+        HeapMemorySegment.FACTORY.wrap("123456789".getBytes(StandardCharsets.US_ASCII));
+    assertEquals(0xE3069283, Crc32C.compute(segment, 0, 9));
+    assertEquals(0xE3069283, portable(segment, 0, 9));
+    assertEquals(0, Crc32C.compute(segment, 0, 0));
+
+    // 32 bytes of zeros, from RFC 3720, B.4
+    MemorySegment zeros = HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(32, null);
+    assertEquals(0x8A9136AA, Crc32C.compute(zeros, 0, 32));
+    assertEquals(0x8A9136AA, portable(zeros, 0, 32));
+  }
+
+  @Test
+  public void testSegmentKindsAndSplitUpdatesAgree() {
+    Random rnd = new Random(17);
+    byte[] data = new byte[1000];
+    rnd.nextBytes(data);
+    MemorySegment heap = HeapMemorySegment.FACTORY.wrap(data);
+    MemorySegment offHeap = HybridMemorySegment.FACTORY.allocateUnpooledOffHeapMemory(1000, null);
+    offHeap.put(0, data);
+
+    for (int offset = 0; offset < 20; offset++) {
+      for (int length = 0; length < 100; length += 3) {
+        int expected = portable(heap, offset, length);
+        assertEquals(expected, Crc32C.compute(heap, offset, length));
+        assertEquals(expected, Crc32C.compute(offHeap, offset, length));
+
+        Crc32C split = new Crc32C();
+        split.update(offHeap, offset, length / 2);
+        split.update(heap, offset + length / 2, length - length / 2);
+        assertEquals(expected, split.getValue());
+      }
+    }
+  }
+
+  private static int portable(MemorySegment segment, int offset, int length) {
+    Crc32C checksum = new Crc32C(false);
+    checksum.update(segment, offset, length);
+    return checksum.getValue();
+  }
+}